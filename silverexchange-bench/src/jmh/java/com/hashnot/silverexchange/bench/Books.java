@@ -0,0 +1,70 @@
+package com.hashnot.silverexchange.bench;
+
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.Side;
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.trade.LimitOrder;
+import org.knowm.xchange.service.trade.TradeService;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Random;
+
+/**
+ * Generates order books for benchmarks. Asks are placed above and bids below the {@link #MID} price, so the generated book never crosses.
+ */
+class Books {
+    /**
+     * Mid price in ticks
+     */
+    static final int MID = 100_000;
+
+    /**
+     * Number of price levels of each side
+     */
+    static final int LEVELS = 1000;
+
+    static final int PRICE_SCALE = 2;
+
+    static final CurrencyPair PAIR = CurrencyPair.BTC_EUR;
+
+    private Books() {
+        // util class
+    }
+
+    static BigDecimal price(Side side, int level) {
+        int ticks = side == Side.ASK ? MID + 1 + level : MID - 1 - level;
+        return BigDecimal.valueOf(ticks, PRICE_SCALE);
+    }
+
+    static Offer offer(Side side, int level) {
+        return new Offer(side, BigDecimal.ONE, new OfferRate(price(side, level)));
+    }
+
+    /**
+     * Post size offers of each side
+     */
+    static void fill(Exchange<?, Offer> exchange, int size, PriceDistribution distribution, Random random) {
+        for (int i = 0; i < size; i++) {
+            for (Side side : Side.values())
+                exchange.post(offer(side, distribution.level(random, LEVELS)));
+        }
+    }
+
+    static LimitOrder limitOrder(Side side, int level) {
+        return new LimitOrder.Builder(side == Side.ASK ? Order.OrderType.ASK : Order.OrderType.BID, PAIR)
+                .originalAmount(BigDecimal.ONE)
+                .limitPrice(price(side, level))
+                .build();
+    }
+
+    static void fill(TradeService tradeService, int size, PriceDistribution distribution, Random random) throws IOException {
+        for (int i = 0; i < size; i++) {
+            for (Side side : Side.values())
+                tradeService.placeLimitOrder(limitOrder(side, distribution.level(random, LEVELS)));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.hashnot.silverexchange.bench;
+
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.xchange.impl.ExchangeRegistry;
+import com.hashnot.silverexchange.xchange.impl.SilverTransactionFactory;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.service.IIdGenerator;
+import com.hashnot.silverexchange.xchange.service.marketdata.SilverMarketDataService;
+import com.hashnot.silverexchange.xchange.service.trade.SilverTradeService;
+import com.hashnot.silverexchange.xchange.util.Clock;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.marketdata.Ticker;
+import org.knowm.xchange.dto.trade.MarketOrder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Market data queries against a book of varying size, with some trades in the transaction log.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MarketDataBenchmark {
+    private static final int TRADES = 100;
+
+    @Param({"1000", "100000"})
+    private int bookSize;
+
+    @Param({"UNIFORM", "EXPONENTIAL"})
+    private PriceDistribution distribution;
+
+    private SilverMarketDataService marketDataService;
+
+    @Setup
+    public void setup() throws IOException {
+        Clock clock = Clock.systemDefaultZone();
+        SilverTransactionFactory transactionFactory = new SilverTransactionFactory(IIdGenerator.DEFAULT, clock);
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> new Exchange<>(transactionFactory, SilverOrder::getId));
+        SilverTradeService tradeService = new SilverTradeService(exchanges, IIdGenerator.DEFAULT, clock);
+        marketDataService = new SilverMarketDataService(exchanges, clock);
+
+        Books.fill(tradeService, bookSize + TRADES, distribution, new Random(0));
+        for (int i = 0; i < TRADES; i++)
+            tradeService.placeMarketOrder(new MarketOrder(i % 2 == 0 ? Order.OrderType.ASK : Order.OrderType.BID, BigDecimal.ONE, Books.PAIR));
+    }
+
+    @Benchmark
+    public OrderBook getOrderBook() {
+        return marketDataService.getOrderBook(Books.PAIR);
+    }
+
+    /**
+     * Aggregated top 10 levels of each side
+     */
+    @Benchmark
+    public OrderBook getOrderBookDepth() {
+        return marketDataService.getOrderBook(Books.PAIR, 10);
+    }
+
+    @Benchmark
+    public Ticker getTicker() {
+        return marketDataService.getTicker(Books.PAIR);
+    }
+}
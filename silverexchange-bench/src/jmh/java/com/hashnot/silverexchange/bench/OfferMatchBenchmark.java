@@ -0,0 +1,61 @@
+package com.hashnot.silverexchange.bench;
+
+import com.hashnot.silverexchange.FixedPoint;
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.match.ITransactionListener;
+import com.hashnot.silverexchange.match.MutableMatchResult;
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.OfferMatchResult;
+import com.hashnot.silverexchange.match.Side;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single match of an active offer against a passive one, leaving a remainder of the active offer,
+ * either creating the remainder or reducing the active offer in place.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OfferMatchBenchmark {
+    @Param({"false", "true"})
+    private boolean fixedPoint;
+
+    private Offer active;
+    private Offer passive;
+    private ITransactionListener<Offer> listener;
+    private final MutableMatchResult result = new MutableMatchResult();
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        listener = (amount, rate, offer) -> blackhole.consume(amount);
+        resetOffers();
+    }
+
+    /**
+     * {@link #fill()} reduces the offers, so they're recreated before each call
+     */
+    @Setup(Level.Invocation)
+    public void resetOffers() {
+        active = new Offer(Side.BID, new BigDecimal("2.5"), new OfferRate(new BigDecimal("100.01")));
+        passive = new Offer(Side.ASK, new BigDecimal("1.5"), new OfferRate(new BigDecimal("100.00")));
+        if (fixedPoint) {
+            FixedPoint fp = new FixedPoint(2, 8);
+            active.toFixedPoint(fp);
+            passive.toFixedPoint(fp);
+        }
+    }
+
+    @Benchmark
+    public OfferMatchResult<Offer> match() {
+        return active.match(passive, listener);
+    }
+
+    @Benchmark
+    public MutableMatchResult fill() {
+        return active.fill(passive, listener, result);
+    }
+}
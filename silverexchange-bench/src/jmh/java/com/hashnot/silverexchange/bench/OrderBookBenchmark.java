@@ -0,0 +1,56 @@
+package com.hashnot.silverexchange.bench;
+
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.FixedPoint;
+import com.hashnot.silverexchange.Transaction;
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passive insert into a book of varying depth. Each operation posts an offer that doesn't cross the book and cancels it,
+ * so that the book keeps its size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderBookBenchmark {
+    private static final int OFFERS = 1024;
+
+    /**
+     * Number of offers of each side of the book
+     */
+    @Param({"1000", "100000"})
+    private int bookSize;
+
+    @Param({"UNIFORM", "EXPONENTIAL"})
+    private PriceDistribution distribution;
+
+    @Param({"false", "true"})
+    private boolean fixedPoint;
+
+    private Exchange<Transaction, Offer> exchange;
+    private Offer[] offers;
+    private int i;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        exchange = fixedPoint ? Exchange.create(new FixedPoint(Books.PRICE_SCALE, 0)) : Exchange.create();
+        Books.fill(exchange, bookSize, distribution, random);
+
+        offers = new Offer[OFFERS];
+        for (int j = 0; j < OFFERS; j++)
+            offers[j] = Books.offer(j % 2 == 0 ? Side.ASK : Side.BID, distribution.level(random, Books.LEVELS));
+    }
+
+    @Benchmark
+    public Offer postPassiveAndCancel() {
+        Offer o = offers[i++ & (OFFERS - 1)];
+        exchange.post(o);
+        return exchange.cancel(o);
+    }
+}
@@ -0,0 +1,31 @@
+package com.hashnot.silverexchange.bench;
+
+import java.util.Random;
+
+/**
+ * Distribution of offers among price levels of one side of the book; level 0 is the best price.
+ */
+public enum PriceDistribution {
+    /**
+     * Offers spread evenly across all levels
+     */
+    UNIFORM {
+        @Override
+        int level(Random random, int levels) {
+            return random.nextInt(levels);
+        }
+    },
+
+    /**
+     * Most offers close to the top of the book, as in real markets
+     */
+    EXPONENTIAL {
+        @Override
+        int level(Random random, int levels) {
+            double level = -Math.log(1 - random.nextDouble()) * levels / 16;
+            return Math.min(levels - 1, (int) level);
+        }
+    };
+
+    abstract int level(Random random, int levels);
+}
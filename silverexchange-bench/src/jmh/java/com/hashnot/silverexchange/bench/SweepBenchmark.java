@@ -0,0 +1,63 @@
+package com.hashnot.silverexchange.bench;
+
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.FixedPoint;
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.Transaction;
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.Side;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggressive order sweeping all offers of the given number of best ask levels. The swept levels are restored before each invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SweepBenchmark {
+    private static final int OFFERS_PER_LEVEL = 4;
+
+    @Param({"1", "10", "100"})
+    private int levels;
+
+    /**
+     * Number of offers of each side of the book, beyond the swept levels
+     */
+    @Param({"1000", "100000"})
+    private int bookSize;
+
+    @Param({"false", "true"})
+    private boolean fixedPoint;
+
+    private Exchange<Transaction, Offer> exchange;
+
+    @Setup(Level.Trial)
+    public void setupBook() {
+        exchange = fixedPoint ? Exchange.create(new FixedPoint(Books.PRICE_SCALE, 0)) : Exchange.create();
+
+        // the rest of the book lies behind the swept levels
+        Random random = new Random(0);
+        for (int i = 0; i < bookSize; i++) {
+            for (Side side : Side.values())
+                exchange.post(Books.offer(side, levels + random.nextInt(Books.LEVELS)));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void restoreLevels() {
+        for (int level = 0; level < levels; level++) {
+            for (int i = 0; i < OFFERS_PER_LEVEL; i++)
+                exchange.post(Books.offer(Side.ASK, level));
+        }
+    }
+
+    @Benchmark
+    public Offer sweep() {
+        BigDecimal amount = BigDecimal.valueOf(levels * OFFERS_PER_LEVEL);
+        return exchange.post(new Offer(Side.BID, amount, new OfferRate(Books.price(Side.ASK, levels - 1))));
+    }
+}
@@ -0,0 +1,77 @@
+package com.hashnot.silverexchange.bench;
+
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.xchange.impl.ExchangeRegistry;
+import com.hashnot.silverexchange.xchange.impl.SilverTransactionFactory;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.service.IIdGenerator;
+import com.hashnot.silverexchange.xchange.service.SequenceIdGenerator;
+import com.hashnot.silverexchange.xchange.service.trade.SilverTradeService;
+import com.hashnot.silverexchange.xchange.util.Clock;
+import org.knowm.xchange.dto.trade.LimitOrder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancel through {@link SilverTradeService#cancelOrder(String)} of an order placed just before, in a book of varying size,
+ * placing orders one by one or in batches, with random or sequence ids.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TradeServiceBenchmark {
+    private static final int ORDERS = 1024;
+    private static final int BATCH = 64;
+
+    @Param({"1000", "100000"})
+    private int bookSize;
+
+    @Param({"UNIFORM", "EXPONENTIAL"})
+    private PriceDistribution distribution;
+
+    @Param({"false", "true"})
+    private boolean sequenceIds;
+
+    private SilverTradeService tradeService;
+    private LimitOrder[] orders;
+    private List<LimitOrder> batch;
+    private int i;
+
+    @Setup
+    public void setup() throws IOException {
+        Clock clock = Clock.systemDefaultZone();
+        IIdGenerator idGenerator = sequenceIds ? new SequenceIdGenerator() : IIdGenerator.DEFAULT;
+        SilverTransactionFactory transactionFactory = new SilverTransactionFactory(idGenerator, clock);
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> new Exchange<>(transactionFactory, SilverOrder::getId));
+        tradeService = new SilverTradeService(exchanges, idGenerator, clock);
+
+        Random random = new Random(0);
+        Books.fill(tradeService, bookSize, distribution, random);
+
+        orders = new LimitOrder[ORDERS];
+        for (int j = 0; j < ORDERS; j++)
+            orders[j] = Books.limitOrder(j % 2 == 0 ? Side.ASK : Side.BID, distribution.level(random, Books.LEVELS));
+        batch = Arrays.asList(orders).subList(0, BATCH);
+    }
+
+    @Benchmark
+    public boolean placeAndCancel() {
+        String id = tradeService.placeLimitOrder(orders[i++ & (ORDERS - 1)]);
+        return tradeService.cancelOrder(id);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean placeBatchAndCancel() {
+        boolean result = true;
+        for (LimitOrder order : tradeService.placeLimitOrders(batch))
+            result &= tradeService.cancelOrder(order.getId());
+        return result;
+    }
+}
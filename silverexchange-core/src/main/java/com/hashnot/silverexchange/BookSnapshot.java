@@ -0,0 +1,69 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.util.PersistentSortedMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable state of the aggregated price levels of an order book after a command. Snapshots share unchanged parts with each other,
+ * so creating one costs only the changed levels, and they can be read by any thread without locking the order book.
+ */
+public final class BookSnapshot {
+    private final long sequence;
+    private final PersistentSortedMap<OfferRate, DepthLevel> bids;
+    private final PersistentSortedMap<OfferRate, DepthLevel> asks;
+
+    BookSnapshot(long sequence, PersistentSortedMap<OfferRate, DepthLevel> bids, PersistentSortedMap<OfferRate, DepthLevel> asks) {
+        assert bids != null;
+        assert asks != null;
+
+        this.sequence = sequence;
+        this.bids = bids;
+        this.asks = asks;
+    }
+
+    /**
+     * @return number of the last change of price levels included in this snapshot
+     * @see OrderBook#getSequence()
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    private PersistentSortedMap<OfferRate, DepthLevel> levels(Side side) {
+        return side == Side.BID ? bids : asks;
+    }
+
+    /**
+     * @return rate of the best level of the side or null if the side is empty
+     */
+    public OfferRate getBestRate(Side side) {
+        DepthLevel best = levels(side).first();
+        return best == null ? null : best.getRate();
+    }
+
+    /**
+     * @param maxLevels maximum number of levels
+     * @return levels of one side, best rate first
+     */
+    public List<DepthLevel> getDepth(Side side, int maxLevels) {
+        if (maxLevels < 0)
+            throw new IllegalArgumentException("Negative depth");
+
+        PersistentSortedMap<OfferRate, DepthLevel> levels = levels(side);
+        List<DepthLevel> result = new ArrayList<>(Math.min(maxLevels, levels.size()));
+        for (DepthLevel level : levels) {
+            if (result.size() == maxLevels)
+                break;
+            result.add(level);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " bids=" + bids + ", asks=" + asks;
+    }
+}
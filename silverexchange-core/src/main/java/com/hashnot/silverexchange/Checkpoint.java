@@ -0,0 +1,143 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.ext.IJournalCodec;
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.util.BigDecimals;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary image of all passive offers and pending stop offers of an exchange, with the sequence number of the last journal record applied to it.
+ * Restoring an exchange from a checkpoint and then replaying only the following journal records takes time proportional
+ * to the size of the order book, not to the length of its history.
+ * <p>
+ * An image is captured by the thread owning the exchange, so it's consistent, and then written to the disk by any other thread.
+ * Each offer is written by the journal codec as it was posted, followed by its time in force, display amount, owner and remaining amount,
+ * displayed and hidden; offers are written in order of execution, so restoring them in the same order keeps their time priority.
+ * Pending stop offers follow, with their stop prices and post-only handling, in order of triggering.
+ */
+public class Checkpoint {
+    private static final int MAGIC = 0x53584350;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private Checkpoint() {
+        // util class
+    }
+
+    /**
+     * Encode passive and pending stop offers of the exchange, called by the thread owning the exchange
+     *
+     * @param sequence sequence number of the last journal record applied to the exchange
+     * @return the image, ready to be written
+     */
+    public static <OfferT extends Offer> ByteBuffer capture(Exchange<?, OfferT> exchange, long sequence, IJournalCodec<OfferT> codec) {
+        Map<Side, List<OfferT>> offers = exchange.getAllOffers();
+        Map<Side, List<OfferT>> stops = exchange.getAllStopOffers();
+        int capacity = INITIAL_CAPACITY;
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            try {
+                buffer.putInt(MAGIC).putLong(sequence);
+                for (Side side : Side.values()) {
+                    List<OfferT> sideOffers = offers.get(side);
+                    buffer.putInt(sideOffers.size());
+                    for (OfferT offer : sideOffers) {
+                        codec.writeOffer(offer, buffer);
+                        Journal.writeTimeInForce(offer, buffer);
+                        Journal.writeDisplayAmount(offer, buffer);
+                        Journal.writeOwner(offer, buffer);
+                        BigDecimals.write(offer.getAmount(), buffer);
+                        if (offer.getDisplayAmount() != null)
+                            BigDecimals.write(offer.getHiddenAmount(), buffer);
+                    }
+                }
+                for (Side side : Side.values()) {
+                    List<OfferT> sideStops = stops.get(side);
+                    buffer.putInt(sideStops.size());
+                    for (OfferT offer : sideStops) {
+                        codec.writeOffer(offer, buffer);
+                        Journal.writeTimeInForce(offer, buffer);
+                        Journal.writeStopPrice(offer, buffer);
+                        Journal.writeDisplayAmount(offer, buffer);
+                        Journal.writePostOnly(offer, buffer);
+                        Journal.writeOwner(offer, buffer);
+                    }
+                }
+                buffer.flip();
+                return buffer;
+            } catch (BufferOverflowException e) {
+                capacity *= 2;
+            }
+        }
+    }
+
+    /**
+     * @return sequence number of the last journal record included in the captured image
+     */
+    public static long getSequence(ByteBuffer image) {
+        return image.getLong(Integer.BYTES);
+    }
+
+    /**
+     * Write the image to the file, replacing the previous checkpoint only once the new one is forced to the disk
+     */
+    public static void write(ByteBuffer image, Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (image.hasRemaining())
+                channel.write(image);
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Post offers of the checkpoint to an empty exchange, which must not be journaling yet
+     *
+     * @return sequence number of the last journal record applied to the checkpointed exchange, to replay the journal after it
+     * @throws IllegalArgumentException if the file is not a checkpoint
+     */
+    public static <OfferT extends Offer> long restore(Path file, Exchange<?, OfferT> exchange, IJournalCodec<OfferT> codec) throws IOException {
+        assert OrderBook.isEmpty(exchange.getAllOffers());
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < Integer.BYTES || buffer.getInt() != MAGIC)
+            throw new IllegalArgumentException("Not a checkpoint: " + file);
+
+        long sequence = buffer.getLong();
+        for (Side side : Side.values()) {
+            for (int i = buffer.getInt(); i > 0; i--) {
+                OfferT offer = codec.readOffer(buffer);
+                Journal.readTimeInForce(offer, buffer);
+                Journal.readDisplayAmount(offer, buffer);
+                Journal.readOwner(offer, buffer);
+                offer.restoreAmount(BigDecimals.read(buffer));
+                if (offer.getDisplayAmount() != null)
+                    offer.restoreHiddenAmount(BigDecimals.read(buffer));
+                exchange.post(offer);
+            }
+        }
+        for (Side side : Side.values()) {
+            for (int i = buffer.getInt(); i > 0; i--) {
+                OfferT offer = codec.readOffer(buffer);
+                Journal.readTimeInForce(offer, buffer);
+                Journal.readStopPrice(offer, buffer);
+                Journal.readDisplayAmount(offer, buffer);
+                Journal.readPostOnly(offer, buffer);
+                Journal.readOwner(offer, buffer);
+                exchange.post(offer);
+            }
+        }
+        return sequence;
+    }
+}
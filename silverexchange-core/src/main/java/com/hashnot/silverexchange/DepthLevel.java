@@ -0,0 +1,64 @@
+package com.hashnot.silverexchange;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Aggregated price level of one side of an order book: total amount and number of offers at a rate.
+ */
+public final class DepthLevel {
+    private final OfferRate rate;
+    private final BigDecimal amount;
+    private final int count;
+
+    public DepthLevel(OfferRate rate, BigDecimal amount, int count) {
+        assert rate != null;
+        assert amount != null;
+
+        this.rate = rate;
+        this.amount = amount;
+        this.count = count;
+    }
+
+    public OfferRate getRate() {
+        return rate;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return number of offers at this level
+     */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof DepthLevel && equals((DepthLevel) o);
+    }
+
+    private boolean equals(DepthLevel l) {
+        return
+                rate.equals(l.rate)
+                        && amount.equals(l.amount)
+                        && count == l.count
+                ;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+                rate,
+                amount,
+                count
+        );
+    }
+
+    @Override
+    public String toString() {
+        return amount + "@" + rate + " (" + count + ")";
+    }
+}
@@ -1,43 +1,435 @@
 package com.hashnot.silverexchange;
 
+import com.hashnot.silverexchange.ext.IDepthListener;
 import com.hashnot.silverexchange.ext.ITransactionFactory;
+import com.hashnot.silverexchange.match.ITransactionListener;
 import com.hashnot.silverexchange.match.Offer;
 import com.hashnot.silverexchange.match.Side;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public class Exchange<TransactionT extends Transaction, OfferT extends Offer> {
     private OrderBook<OfferT> orderBook;
-    private List<TransactionT> transactions = new LinkedList<>();
+
+    /**
+     * Pending stop offers, posted to the order book once a trade reaches their stop price
+     */
+    private final TriggerBook<OfferT> triggers;
+
+    /**
+     * True if offers are keyed by long ids, which are boxed as Long keys of pending stop offers
+     */
+    private final boolean longIds;
+
+    /**
+     * Range of trade prices since stop offers were last triggered, null if there was no trade
+     */
+    private BigDecimal lowPrice;
+    private BigDecimal highPrice;
+    private final TransactionLog<TransactionT> transactions;
+    private final List<ITransactionListener<OfferT>> transactionListeners = new CopyOnWriteArrayList<>();
+    private final List<IDepthListener> depthListeners = new CopyOnWriteArrayList<>();
     private ITransactionFactory<OfferT, TransactionT> transactionFactory;
+    private final FixedPoint fixedPoint;
+    private final TradeStats tradeStats = new TradeStats();
+
+    /**
+     * Set by each transaction, until the trade statistics are published
+     */
+    private boolean tradeStatsChanged;
+
+    /**
+     * Published after each command, for readers in other threads
+     */
+    private volatile BookSnapshot snapshot;
+
+    /**
+     * Copy of the trade statistics, published after each command with transactions, for readers in other threads
+     */
+    private volatile TradeStats publishedTradeStats = new TradeStats();
+
+    /**
+     * Records commands before they're applied, null if commands aren't journaled
+     */
+    private Journal<OfferT> journal;
 
     public static Exchange<Transaction, Offer> create() {
         return new Exchange<>(Exchange::createTransaction);
     }
 
+    /**
+     * @return exchange working in fixed-point mode with the given scales
+     */
+    public static Exchange<Transaction, Offer> create(FixedPoint fixedPoint) {
+        return new Exchange<>(Exchange::createTransaction, null, fixedPoint);
+    }
+
     public Exchange(ITransactionFactory<OfferT, TransactionT> transactionFactory) {
+        this(transactionFactory, null);
+    }
+
+    /**
+     * @param idFunction function returning a unique key of an offer, used to find offers in the order book. If null, offers are identified by object identity.
+     */
+    public Exchange(ITransactionFactory<OfferT, TransactionT> transactionFactory, Function<? super OfferT, ?> idFunction) {
+        this(transactionFactory, idFunction, null);
+    }
+
+    /**
+     * @param fixedPoint if not null, price and amount scales of the instrument. Offers are converted to fixed-point representation when posted
+     *                   and matched using long arithmetic; amounts and rates are converted back to BigDecimal only for transactions.
+     */
+    public Exchange(ITransactionFactory<OfferT, TransactionT> transactionFactory, Function<? super OfferT, ?> idFunction, FixedPoint fixedPoint) {
+        this(transactionFactory, idFunction, fixedPoint, TransactionLog.unbounded());
+    }
+
+    /**
+     * @param transactions log of executed transactions, defining how many of them are retained
+     */
+    public Exchange(ITransactionFactory<OfferT, TransactionT> transactionFactory, Function<? super OfferT, ?> idFunction, FixedPoint fixedPoint, TransactionLog<TransactionT> transactions) {
+        this(transactionFactory, idFunction, null, fixedPoint, transactions);
+    }
+
+    private Exchange(ITransactionFactory<OfferT, TransactionT> transactionFactory, Function<? super OfferT, ?> idFunction, ToLongFunction<? super OfferT> longIdFunction, FixedPoint fixedPoint, TransactionLog<TransactionT> transactions) {
         this.transactionFactory = transactionFactory;
-        orderBook = new OrderBook<>(this::transactionHandler);
+        this.fixedPoint = fixedPoint;
+        this.transactions = transactions;
+        orderBook = new OrderBook<>(this::transactionHandler, idFunction, longIdFunction);
+        longIds = longIdFunction != null;
+        triggers = new TriggerBook<>(longIds ? o -> longIdFunction.applyAsLong(o) : idFunction);
+        snapshot = orderBook.snapshot();
+    }
+
+    /**
+     * @param longIdFunction function returning a unique primitive key of an offer. Offers are indexed by these keys without boxing them,
+     *                       and found with {@link #cancelLong(long)} and {@link #getOfferLong(long)}.
+     * @return exchange keying offers by primitive long ids
+     */
+    public static <TransactionT extends Transaction, OfferT extends Offer> Exchange<TransactionT, OfferT> withLongIds(ITransactionFactory<OfferT, TransactionT> transactionFactory, ToLongFunction<? super OfferT> longIdFunction, FixedPoint fixedPoint, TransactionLog<TransactionT> transactions) {
+        assert longIdFunction != null;
+
+        return new Exchange<>(transactionFactory, null, longIdFunction, fixedPoint, transactions);
     }
 
     /**
-     * Execute o as an order. If o is a Market Order it may return remaining part as another Offer object. All executed transactions are added to the internal transactions list.
+     * Execute o as an order. If o is a Market Order or an immediate-or-cancel one it may return remaining part, which is cancelled.
+     * A fill-or-kill offer is checked against the price levels first and returned unexecuted if it can't be filled in full,
+     * including if it has an owner and would reach an offer of the same owner before being filled, unless it cancels the oldest offer.
+     * A post-only offer which would execute is returned unexecuted or repriced, see {@link com.hashnot.silverexchange.match.PostOnly}.
+     * An offer with an owner never executes against an offer of the same owner; if it's cancelled by self-trade prevention,
+     * the remainder is returned.
+     * All executed transactions are added to the internal transactions list.
+     * <p>
+     * An offer with a stop price waits in the trigger book until a trade at or through that price; then it's posted like any other offer,
+     * with the remainder of a market stop offer cancelled. Stop offers are triggered by trades of each command before it returns.
      *
      * @param o an offer to execute against the order book
-     * @return Non-executed part of an offer represented by the parameter
+     * @return Non-executed part of an offer represented by the parameter, null if it's a pending stop offer
+     * @throws IllegalArgumentException in fixed-point mode, if amount or rate of the offer don't fit in the scales of the exchange
      */
     public Offer post(OfferT o) {
-        return orderBook.post(o);
+        if (fixedPoint != null)
+            o.toFixedPoint(fixedPoint);
+        if (journal != null)
+            journal.appendPost(o);
+
+        try {
+            return execute(o);
+        } finally {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Execute the offers one after another, as with {@link #post(OfferT)}, publishing the snapshot once for the whole batch.
+     * In fixed-point mode all offers are converted before the first one is executed, so a batch with an invalid offer is rejected as a whole.
+     * Otherwise an offer rejected by the matching engine, e.g. one with a duplicate id, stops the batch with the offers before it executed.
+     *
+     * @return non-executed parts of the offers, at the indexes of the offers in iteration order
+     * @throws IllegalArgumentException in fixed-point mode, if amount or rate of any offer don't fit in the scales of the exchange
+     */
+    public Offer[] postAll(Collection<? extends OfferT> offers) {
+        if (fixedPoint != null)
+            for (OfferT o : offers)
+                o.toFixedPoint(fixedPoint);
+
+        Offer[] result = new Offer[offers.size()];
+        int i = 0;
+        try {
+            for (OfferT o : offers) {
+                // journaled one by one, so that offers after a rejected one, which never executed, aren't replayed
+                if (journal != null)
+                    journal.appendPost(o);
+                result[i++] = execute(o);
+            }
+        } finally {
+            publishSnapshot();
+        }
+        return result;
+    }
+
+    private Offer execute(OfferT o) {
+        if (o.getStopPrice() != null) {
+            if (orderBook.get(triggers.id(o)) != null)
+                throw new IllegalArgumentException("Duplicate offer id " + triggers.id(o));
+            triggers.add(o);
+            return null;
+        }
+        if (!triggers.isEmpty() && triggers.get(triggers.id(o)) != null)
+            throw new IllegalArgumentException("Duplicate offer id " + triggers.id(o));
+
+        Offer remainder = orderBook.post(o);
+        triggerStops();
+        return remainder;
+    }
+
+    /**
+     * Post stop offers triggered by the trades since the last call, and then those triggered by their trades, until no more are triggered
+     */
+    private void triggerStops() {
+        while (lowPrice != null) {
+            BigDecimal low = lowPrice;
+            BigDecimal high = highPrice;
+            lowPrice = highPrice = null;
+            if (triggers.isEmpty())
+                return;
+
+            for (OfferT o : triggers.trigger(low, high)) {
+                o.setStopPrice(null);
+                orderBook.post(o);
+            }
+        }
+    }
+
+    /**
+     * Remove a passive offer from the order book, or a pending stop offer.
+     *
+     * @param id key of the offer as returned by the id function, or the offer itself if the exchange has no id function
+     * @return the removed offer, or null if the exchange holds no offer of that id
+     */
+    public OfferT cancel(Object id) {
+        if (journal != null)
+            journal.appendCancel(id);
+
+        try {
+            OfferT o = orderBook.cancel(id);
+            return o != null || triggers.isEmpty() ? o : triggers.cancel(stopId(id));
+        } finally {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Remove a passive offer from the order book or a pending stop offer, as with {@link #cancel(Object)}, without boxing the id
+     * if offers are keyed by long ids, unless it's an id of a stop offer.
+     *
+     * @return the removed offer, or null if the exchange holds no offer of that id
+     */
+    public OfferT cancelLong(long id) {
+        if (journal != null)
+            journal.appendCancel(id);
+
+        try {
+            OfferT o = orderBook.cancelLong(id);
+            return o != null || triggers.isEmpty() ? o : triggers.cancel(id);
+        } finally {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Change the amount and rate of a passive offer in one command, instead of cancelling it and posting a new one.
+     * Reducing the amount at the same rate keeps the time priority of the offer, other changes move it behind the offers of its new rate.
+     *
+     * @see OrderBook#amend(Object, BigDecimal, OfferRate)
+     */
+    public OfferT amend(Object id, BigDecimal amount, OfferRate rate) {
+        if (journal != null)
+            journal.appendAmend(id, amount, rate);
+
+        try {
+            OfferT o = orderBook.amend(id, amount, rate);
+            triggerStops();
+            return o;
+        } finally {
+            publishSnapshot();
+        }
     }
 
+    /**
+     * @return key of a pending stop offer, the id boxed as a Long if offers are keyed by long ids
+     */
+    private Object stopId(Object id) {
+        return longIds && id instanceof Number ? (Object) ((Number) id).longValue() : id;
+    }
+
+    /**
+     * Remove good till date offers which expired up to the given time. Should be called as the time passes, at least before each command,
+     * so that an expired offer is never matched. Costs constant time for each expired offer, however many offers wait for expiry.
+     *
+     * @param now current time, in units of expire times of offers, e.g. milliseconds since the epoch
+     * @return the expired offers, in order of their expire times
+     */
+    public List<OfferT> expire(long now) {
+        try {
+            List<OfferT> expired = orderBook.expire(now);
+            if (journal != null && !expired.isEmpty())
+                journal.appendExpire(now);
+            return expired;
+        } finally {
+            publishSnapshot();
+        }
+    }
+
+    /**
+     * Record all following commands in the journal before applying them. The journal should be replayed to this exchange first.
+     *
+     * @param journal the journal, or null to stop journaling
+     */
+    public void setJournal(Journal<OfferT> journal) {
+        this.journal = journal;
+    }
+
+    private void publishSnapshot() {
+        // statistics first, so that they're never older than the snapshot read before them
+        if (tradeStatsChanged) {
+            publishedTradeStats = new TradeStats(tradeStats);
+            tradeStatsChanged = false;
+        }
+        if (snapshot.getSequence() != orderBook.getSequence())
+            snapshot = orderBook.snapshot();
+    }
+
+    /**
+     * @return the price levels after the last command, safe to read from any thread without synchronization with the commands
+     */
+    public BookSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return passive offer of the given id, or null if the order book holds no offer of that id
+     */
+    public OfferT getOffer(Object id) {
+        return orderBook.get(id);
+    }
+
+    /**
+     * @return passive offer of the given long id, or null if the order book holds no offer of that id
+     */
+    public OfferT getOfferLong(long id) {
+        return orderBook.getLong(id);
+    }
+
+    /**
+     * @return passive offers of the owner, most recently inserted first, found by an index of owners rather than by scanning the order book
+     */
+    public List<OfferT> getOffersOfOwner(long owner) {
+        return orderBook.getOffersOfOwner(owner);
+    }
+
+    /**
+     * @return pending stop offers of the owner, found by an index of owners
+     */
+    public List<OfferT> getStopOffersOfOwner(long owner) {
+        return triggers.getOffersOfOwner(owner);
+    }
+
+    /**
+     * @return pending stop offer of the given id, or null if there's none
+     */
+    public OfferT getStopOffer(Object id) {
+        return triggers.get(stopId(id));
+    }
+
+    /**
+     * @return pending stop offers of each side, in order of triggering
+     */
+    public Map<Side, List<OfferT>> getAllStopOffers() {
+        return triggers.getAllOffers();
+    }
+
+    /**
+     * @return transactions retained by the transaction log, oldest first
+     */
     public List<TransactionT> getAllTransactions() {
         return Collections.unmodifiableList(transactions);
     }
 
+    /**
+     * @return statistics of all transactions, updated with each transaction
+     */
+    public TradeStats getTradeStats() {
+        return tradeStats;
+    }
+
+    /**
+     * @return copy of the statistics after the last command, safe to read from any thread without synchronization with the commands.
+     * It's shared by all readers and must not be modified.
+     */
+    public TradeStats getPublishedTradeStats() {
+        return publishedTradeStats;
+    }
+
+    /**
+     * @return rate of the best passive offer of the side or null if there's none
+     */
+    public OfferRate getBestRate(Side side) {
+        return orderBook.getBestRate(side);
+    }
+
+    /**
+     * @see OrderBook#getDepth(Side, int)
+     */
+    public List<DepthLevel> getDepth(Side side, int maxLevels) {
+        return orderBook.getDepth(side, maxLevels);
+    }
+
+    /**
+     * Register a listener notified of every executed transaction, whether the transaction log retains it or not.
+     * Listeners are called by the thread executing the offer.
+     */
+    public void addTransactionListener(ITransactionListener<OfferT> listener) {
+        assert listener != null;
+
+        transactionListeners.add(listener);
+    }
+
+    public void removeTransactionListener(ITransactionListener<OfferT> listener) {
+        transactionListeners.remove(listener);
+    }
+
+    /**
+     * Register a listener notified of every change of the aggregated price levels.
+     * Listeners are called by the thread changing the order book; without listeners the levels aren't converted to events at all.
+     */
+    public void addDepthListener(IDepthListener listener) {
+        assert listener != null;
+
+        depthListeners.add(listener);
+        orderBook.setDepthListener(this::depthHandler);
+    }
+
+    public void removeDepthListener(IDepthListener listener) {
+        depthListeners.remove(listener);
+        if (depthListeners.isEmpty())
+            orderBook.setDepthListener(null);
+    }
+
+    /**
+     * @return number of the last change of the price levels, as passed to depth listeners
+     */
+    public long getDepthSequence() {
+        return orderBook.getSequence();
+    }
+
     public Map<Side, List<OfferT>> getAllOffers() {
         return orderBook.getAllOffers();
     }
@@ -48,6 +440,19 @@ public class Exchange<TransactionT extends Transaction, OfferT extends Offer> {
         assert offer != null;
 
         transactions.add(transactionFactory.create(amount, rate, offer));
+        tradeStats.update(amount, rate);
+        tradeStatsChanged = true;
+        if (lowPrice == null || rate.compareTo(lowPrice) < 0)
+            lowPrice = rate;
+        if (highPrice == null || rate.compareTo(highPrice) > 0)
+            highPrice = rate;
+        for (ITransactionListener<OfferT> listener : transactionListeners)
+            listener.notifyTransaction(amount, rate, offer);
+    }
+
+    private void depthHandler(long sequence, IDepthListener.Change change, Side side, OfferRate rate, BigDecimal amount, int count) {
+        for (IDepthListener listener : depthListeners)
+            listener.levelChanged(sequence, change, side, rate, amount, count);
     }
 
     @SuppressWarnings("unchecked")
@@ -0,0 +1,71 @@
+package com.hashnot.silverexchange;
+
+import java.math.BigDecimal;
+
+/**
+ * Scales of prices and amounts of an instrument. In fixed-point mode the matching engine represents prices and amounts as
+ * <code>long</code> numbers of units of the given scale, i.e. the unscaled value of a {@link BigDecimal} of that scale.
+ */
+public final class FixedPoint {
+    public final int priceScale;
+    public final int amountScale;
+
+    public FixedPoint(int priceScale, int amountScale) {
+        if (priceScale < 0 || amountScale < 0)
+            throw new IllegalArgumentException("Negative scale");
+
+        this.priceScale = priceScale;
+        this.amountScale = amountScale;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the price has more decimal places than the price scale or doesn't fit in a long
+     */
+    public long toPrice(BigDecimal price) {
+        return toLong(price, priceScale);
+    }
+
+    public BigDecimal fromPrice(long price) {
+        return BigDecimal.valueOf(price, priceScale);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the amount has more decimal places than the amount scale or doesn't fit in a long
+     */
+    public long toAmount(BigDecimal amount) {
+        return toLong(amount, amountScale);
+    }
+
+    public BigDecimal fromAmount(long amount) {
+        return BigDecimal.valueOf(amount, amountScale);
+    }
+
+    private static long toLong(BigDecimal value, int scale) {
+        assert value != null;
+
+        try {
+            return value.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(value.toPlainString() + " doesn't fit in a fixed-point number of scale " + scale, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this || obj instanceof FixedPoint && equals((FixedPoint) obj);
+    }
+
+    private boolean equals(FixedPoint fp) {
+        return priceScale == fp.priceScale && amountScale == fp.amountScale;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * priceScale + amountScale;
+    }
+
+    @Override
+    public String toString() {
+        return "price scale " + priceScale + ", amount scale " + amountScale;
+    }
+}
@@ -0,0 +1,467 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.ext.IJournalCodec;
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.PostOnly;
+import com.hashnot.silverexchange.match.SelfTradePrevention;
+import com.hashnot.silverexchange.match.TimeInForce;
+import com.hashnot.silverexchange.util.BigDecimals;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead log of commands of an {@link Exchange}, appended to memory-mapped segment files of a fixed, pre-allocated size.
+ * <p>
+ * Appending a command only copies it to the mapped memory, so it survives a crash of the process but not of the system.
+ * Records are forced to the disk by {@link #flush()}, either called explicitly or periodically by the flusher thread,
+ * so that many commands share one fsync (group commit).
+ * <p>
+ * Each record consists of its length, type, sequence number and the payload: an offer written by the codec followed by its time in force,
+ * stop price, display amount, post-only handling and owner, an id written by the codec, optionally followed by the new amount and rate
+ * of an amended offer, or the time of an expiry. The length is written last, after a zero length at the position of the next record,
+ * so a record interrupted by a crash reads as the end of the journal, and so do the remains of a longer interrupted record overwritten by it.
+ * A length which doesn't fit in the segment, or a record out of the order of sequence numbers, also ends the journal.
+ * <p>
+ * Commands are appended by a single thread, the one applying them to the exchange.
+ */
+public class Journal<OfferT extends Offer> implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(Journal.class.getName());
+
+    private static final byte POST = 1;
+    private static final byte CANCEL = 2;
+    private static final byte EXPIRE = 3;
+    private static final byte AMEND = 4;
+
+    private static final TimeInForce[] TIMES_IN_FORCE = TimeInForce.values();
+    private static final PostOnly[] POST_ONLY = PostOnly.values();
+    private static final SelfTradePrevention[] SELF_TRADE_PREVENTION = SelfTradePrevention.values();
+
+    private static final int LENGTH_SIZE = Integer.BYTES;
+    private static final int HEADER_SIZE = LENGTH_SIZE + 1 + Long.BYTES;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".dat";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final IJournalCodec<OfferT> codec;
+
+    private int segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Sequence number of the last appended record
+     */
+    private long sequence;
+    private volatile long appendedSequence;
+    private volatile long durableSequence;
+
+    private Thread flusher;
+    private volatile boolean running = true;
+
+    /**
+     * Open the journal in the directory, positioned after its last record
+     *
+     * @param segmentSize size of each segment file, larger than any record
+     */
+    public Journal(Path directory, int segmentSize, IJournalCodec<OfferT> codec) throws IOException {
+        if (segmentSize <= HEADER_SIZE)
+            throw new IllegalArgumentException("Segment too small");
+        assert codec != null;
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.codec = codec;
+
+        Files.createDirectories(directory);
+        List<Path> segments = segments();
+        segment = segments.isEmpty() ? 0 : index(segments.get(segments.size() - 1));
+        map(segment);
+        buffer.position(end(buffer));
+        // the remains of a record interrupted by a crash
+        markEnd(buffer);
+
+        // the last segment may be empty if the process stopped right after creating it
+        for (int i = segments.size() - 1; i >= 0 && sequence == 0; i--)
+            sequence = lastSequence(i == segments.size() - 1 ? buffer : read(segments.get(i)));
+        appendedSequence = durableSequence = sequence;
+    }
+
+    /**
+     * Start a thread forcing appended records to the disk every interval
+     */
+    public Journal<OfferT> startFlusher(ThreadFactory threadFactory, long intervalNanos) {
+        if (intervalNanos <= 0)
+            throw new IllegalArgumentException("Non-positive interval");
+
+        flusher = threadFactory.newThread(() -> {
+            while (running) {
+                LockSupport.parkNanos(this, intervalNanos);
+                flush();
+            }
+        });
+        flusher.start();
+        return this;
+    }
+
+    /**
+     * @return sequence number of the record
+     */
+    public long appendPost(OfferT offer) {
+        return append(POST, offer, null, 0, null, null);
+    }
+
+    /**
+     * @return sequence number of the record
+     */
+    public long appendCancel(Object id) {
+        return append(CANCEL, null, id, 0, null, null);
+    }
+
+    /**
+     * @param rate the new rate, or null if the rate is kept
+     * @return sequence number of the record
+     */
+    public long appendAmend(Object id, BigDecimal amount, OfferRate rate) {
+        return append(AMEND, null, id, 0, amount, rate);
+    }
+
+    /**
+     * Record an expiry of offers, appended after it's applied, as its effect depends only on the time and the preceding commands
+     *
+     * @return sequence number of the record
+     */
+    public long appendExpire(long time) {
+        return append(EXPIRE, null, null, time, null, null);
+    }
+
+    private long append(byte type, OfferT offer, Object id, long time, BigDecimal amount, OfferRate rate) {
+        long sequence = this.sequence + 1;
+        while (true) {
+            int start = buffer.position();
+            try {
+                if (buffer.remaining() < HEADER_SIZE)
+                    throw new BufferOverflowException();
+
+                buffer.position(start + LENGTH_SIZE);
+                buffer.put(type).putLong(sequence);
+                if (type == POST) {
+                    codec.writeOffer(offer, buffer);
+                    writeTimeInForce(offer, buffer);
+                    writeStopPrice(offer, buffer);
+                    writeDisplayAmount(offer, buffer);
+                    writePostOnly(offer, buffer);
+                    writeOwner(offer, buffer);
+                } else if (type == CANCEL) {
+                    codec.writeId(id, buffer);
+                } else if (type == AMEND) {
+                    codec.writeId(id, buffer);
+                    BigDecimals.write(amount, buffer);
+                    buffer.put((byte) (rate == null ? 0 : 1));
+                    if (rate != null)
+                        BigDecimals.write(rate.getValue(), buffer);
+                } else {
+                    buffer.putLong(time);
+                }
+
+                markEnd(buffer);
+                buffer.putInt(start, buffer.position() - start - LENGTH_SIZE);
+                this.sequence = sequence;
+                appendedSequence = sequence;
+                return sequence;
+            } catch (BufferOverflowException e) {
+                if (start == 0)
+                    throw new IllegalArgumentException("Record larger than segment");
+                // the length of the unfinished record is still zero, marking the end of the segment
+                nextSegment();
+            }
+        }
+    }
+
+    private synchronized void nextSegment() {
+        buffer.force();
+        close(channel);
+        map(++segment);
+    }
+
+    /**
+     * Force all appended records to the disk
+     */
+    public synchronized void flush() {
+        long appended = appendedSequence;
+        if (appended == durableSequence)
+            return;
+
+        buffer.force();
+        durableSequence = appended;
+    }
+
+    /**
+     * @return sequence number of the last appended record, 0 if the journal is empty
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return sequence number of the last record forced to the disk
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Apply commands recorded after the given sequence number to the exchange. Commands rejected by the exchange were rejected
+     * when they were recorded too, so they're skipped. The exchange must not write to this journal while it's replayed.
+     *
+     * @return sequence number of the last replayed record, or afterSequence if there was none
+     */
+    public long replay(Exchange<?, OfferT> exchange, long afterSequence) throws IOException {
+        long last = afterSequence;
+        long previous = 0;
+        for (Path path : segments()) {
+            MappedByteBuffer segment = read(path);
+            int position = 0;
+            int length;
+            while ((length = length(segment, position, previous)) != 0) {
+                long sequence = previous = sequence(segment, position);
+                if (sequence > afterSequence) {
+                    segment.position(position + HEADER_SIZE);
+                    apply(exchange, segment.get(position + LENGTH_SIZE), sequence, segment);
+                    last = sequence;
+                }
+                position += LENGTH_SIZE + length;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Delete segments containing only records up to the given sequence number, e.g. those included in a checkpoint.
+     * The segment being appended to is never deleted. May be called by any thread.
+     */
+    public void compact(long sequence) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size() - 1; i++) {
+            // records of a segment precede the first record of the next one
+            MappedByteBuffer next = read(segments.get(i + 1));
+            long nextFirst = length(next, 0, 0) == 0 ? 0 : sequence(next, 0);
+            if (nextFirst == 0 || nextFirst > sequence + 1)
+                break;
+            Files.delete(segments.get(i));
+        }
+    }
+
+    private void apply(Exchange<?, OfferT> exchange, byte type, long sequence, MappedByteBuffer record) {
+        try {
+            if (type == POST) {
+                OfferT offer = codec.readOffer(record);
+                readTimeInForce(offer, record);
+                readStopPrice(offer, record);
+                readDisplayAmount(offer, record);
+                readPostOnly(offer, record);
+                readOwner(offer, record);
+                exchange.post(offer);
+            } else if (type == CANCEL) {
+                exchange.cancel(codec.readId(record));
+            } else if (type == AMEND) {
+                Object id = codec.readId(record);
+                BigDecimal amount = BigDecimals.read(record);
+                OfferRate rate = record.get() == 0 ? null : new OfferRate(BigDecimals.read(record));
+                exchange.amend(id, amount, rate);
+            } else {
+                exchange.expire(record.getLong());
+            }
+        } catch (IllegalArgumentException e) {
+            // rejected again, as when it was recorded
+            log.log(Level.INFO, "Replayed command " + sequence + " rejected: " + e.getMessage());
+        }
+    }
+
+    static void writeTimeInForce(Offer offer, ByteBuffer buffer) {
+        TimeInForce timeInForce = offer.getTimeInForce();
+        buffer.put((byte) timeInForce.ordinal());
+        if (timeInForce == TimeInForce.GTD)
+            buffer.putLong(offer.getExpireTime());
+    }
+
+    static void readTimeInForce(Offer offer, ByteBuffer buffer) {
+        TimeInForce timeInForce = TIMES_IN_FORCE[buffer.get()];
+        if (timeInForce == TimeInForce.GTD)
+            offer.setGoodTillDate(buffer.getLong());
+        else
+            offer.setTimeInForce(timeInForce);
+    }
+
+    static void writeStopPrice(Offer offer, ByteBuffer buffer) {
+        BigDecimal stopPrice = offer.getStopPrice();
+        buffer.put((byte) (stopPrice == null ? 0 : 1));
+        if (stopPrice != null)
+            BigDecimals.write(stopPrice, buffer);
+    }
+
+    static void readStopPrice(Offer offer, ByteBuffer buffer) {
+        if (buffer.get() != 0)
+            offer.setStopPrice(BigDecimals.read(buffer));
+    }
+
+    static void writeDisplayAmount(Offer offer, ByteBuffer buffer) {
+        BigDecimal displayAmount = offer.getDisplayAmount();
+        buffer.put((byte) (displayAmount == null ? 0 : 1));
+        if (displayAmount != null)
+            BigDecimals.write(displayAmount, buffer);
+    }
+
+    static void readDisplayAmount(Offer offer, ByteBuffer buffer) {
+        if (buffer.get() != 0)
+            offer.setDisplayAmount(BigDecimals.read(buffer));
+    }
+
+    static void writePostOnly(Offer offer, ByteBuffer buffer) {
+        PostOnly postOnly = offer.getPostOnly();
+        buffer.put((byte) (postOnly == null ? 0 : postOnly.ordinal() + 1));
+    }
+
+    static void readPostOnly(Offer offer, ByteBuffer buffer) {
+        byte postOnly = buffer.get();
+        if (postOnly != 0)
+            offer.setPostOnly(POST_ONLY[postOnly - 1]);
+    }
+
+    static void writeOwner(Offer offer, ByteBuffer buffer) {
+        buffer.putLong(offer.getOwner());
+        buffer.put((byte) offer.getSelfTradePrevention().ordinal());
+    }
+
+    static void readOwner(Offer offer, ByteBuffer buffer) {
+        offer.setOwner(buffer.getLong());
+        offer.setSelfTradePrevention(SELF_TRADE_PREVENTION[buffer.get()]);
+    }
+
+    /**
+     * Stop the flusher and force all appended records to the disk.
+     * If the calling thread is interrupted while waiting for the flusher, still flushes and keeps its interrupt flag set.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (flusher != null) {
+            LockSupport.unpark(flusher);
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        close(channel);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(p -> p.getFileName().toString().startsWith(PREFIX) && p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int index(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private void map(int segment) {
+        Path path = directory.resolve(String.format("%s%08d%s", PREFIX, segment, SUFFIX));
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MappedByteBuffer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write a zero length at the position of the buffer, if it fits, marking the end of the segment
+     */
+    private static void markEnd(MappedByteBuffer buffer) {
+        if (buffer.remaining() >= LENGTH_SIZE)
+            buffer.putInt(buffer.position(), 0);
+    }
+
+    /**
+     * @param previous sequence number of the preceding record, 0 if there is none
+     * @return length of the record at the position, 0 at the end of the segment or if the record isn't valid
+     */
+    private static int length(MappedByteBuffer segment, int position, long previous) {
+        if (position + LENGTH_SIZE > segment.limit())
+            return 0;
+        int length = segment.getInt(position);
+        if (length < HEADER_SIZE - LENGTH_SIZE || length > segment.limit() - position - LENGTH_SIZE)
+            return 0;
+        byte type = segment.get(position + LENGTH_SIZE);
+        if (type < POST || type > AMEND || sequence(segment, position) <= previous)
+            return 0;
+        return length;
+    }
+
+    private static long sequence(MappedByteBuffer segment, int position) {
+        return segment.getLong(position + LENGTH_SIZE + 1);
+    }
+
+    /**
+     * @return position after the last record of the segment
+     */
+    private static int end(MappedByteBuffer segment) {
+        int position = 0;
+        long previous = 0;
+        int length;
+        while ((length = length(segment, position, previous)) != 0) {
+            previous = sequence(segment, position);
+            position += LENGTH_SIZE + length;
+        }
+        return position;
+    }
+
+    private static long lastSequence(MappedByteBuffer segment) {
+        long result = 0;
+        int position = 0;
+        int length;
+        while ((length = length(segment, position, result)) != 0) {
+            result = sequence(segment, position);
+            position += LENGTH_SIZE + length;
+        }
+        return result;
+    }
+}
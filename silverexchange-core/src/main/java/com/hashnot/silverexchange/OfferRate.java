@@ -6,12 +6,58 @@ import java.math.BigDecimal;
 import java.util.Objects;
 
 public class OfferRate extends AbstractRate implements Comparable<OfferRate> {
+    /**
+     * Scales of the fixed-point representation of this rate, null if the rate has none
+     */
+    private final FixedPoint fixedPoint;
+
+    /**
+     * The value in units of {@link FixedPoint#priceScale}, valid if fixedPoint is not null
+     */
+    private final long fixedValue;
 
     public OfferRate(BigDecimal value) {
         super(value);
         if (value != null && !BigDecimals.gtz(value))
             throw new IllegalArgumentException("Non-positive rate");
 
+        fixedPoint = null;
+        fixedValue = 0;
+    }
+
+    private OfferRate(BigDecimal value, FixedPoint fixedPoint) {
+        super(value);
+        this.fixedPoint = fixedPoint;
+        fixedValue = fixedPoint.toPrice(value);
+    }
+
+    /**
+     * @return equal rate which is compared to other rates of the same price scale using its fixed-point representation
+     * @throws IllegalArgumentException if the value doesn't fit in the price scale
+     */
+    public OfferRate toFixedPoint(FixedPoint fixedPoint) {
+        assert fixedPoint != null;
+
+        if (value == null || fixedPoint.equals(this.fixedPoint))
+            return this;
+        else
+            return new OfferRate(value, fixedPoint);
+    }
+
+    /**
+     * @return scales of the fixed-point representation or null if this rate has none
+     */
+    public FixedPoint getFixedPoint() {
+        return fixedPoint;
+    }
+
+    /**
+     * @return the value in units of the price scale
+     */
+    public long getFixedValue() {
+        assert fixedPoint != null : "Not a fixed-point rate";
+
+        return fixedValue;
     }
 
     public static OfferRate market() {
@@ -42,6 +88,8 @@ public class OfferRate extends AbstractRate implements Comparable<OfferRate> {
             return 1;
         else if (r.value == null)
             return -1;
+        else if (fixedPoint != null && r.fixedPoint != null && fixedPoint.priceScale == r.fixedPoint.priceScale)
+            return Long.compare(fixedValue, r.fixedValue);
         else
             return value.compareTo(r.value);
     }
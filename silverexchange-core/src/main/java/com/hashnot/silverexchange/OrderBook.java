@@ -1,104 +1,781 @@
 package com.hashnot.silverexchange;
 
+import com.hashnot.silverexchange.ext.IDepthListener;
+import com.hashnot.silverexchange.ext.IDepthListener.Change;
 import com.hashnot.silverexchange.match.ITransactionListener;
+import com.hashnot.silverexchange.match.MutableMatchResult;
 import com.hashnot.silverexchange.match.Offer;
-import com.hashnot.silverexchange.match.OfferMatchResult;
+import com.hashnot.silverexchange.match.PostOnly;
+import com.hashnot.silverexchange.match.SelfTradePrevention;
 import com.hashnot.silverexchange.match.Side;
-import com.hashnot.silverexchange.util.Lists;
+import com.hashnot.silverexchange.match.TimeInForce;
+import com.hashnot.silverexchange.util.LongHashMap;
+import com.hashnot.silverexchange.util.PersistentSortedMap;
+import com.hashnot.silverexchange.util.TimingWheel;
 
+import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public class OrderBook<OfferT extends Offer> {
     private final ITransactionListener<OfferT> transactionListener;
+
+    /**
+     * Price levels of each side, best rate first
+     */
+    private final Map<Side, NavigableMap<OfferRate, PriceLevel<OfferT>>> levels;
     private final Map<Side, List<OfferT>> allOffers;
 
+    /**
+     * First level of each side, kept up to date on each change of the order book
+     */
+    private final Map<Side, PriceLevel<OfferT>> bestLevels = new EnumMap<>(Side.class);
+
+    /**
+     * Immutable copies of price levels of each side, updated by each snapshot and shared by snapshots
+     */
+    private final Map<Side, PersistentSortedMap<OfferRate, DepthLevel>> depth = new EnumMap<>(Side.class);
+
+    /**
+     * Levels of each side changed since the last snapshot, each one once, so that the matching loop doesn't copy the immutable
+     * price levels on every fill
+     */
+    private final Map<Side, List<PriceLevel<OfferT>>> changedLevels = new EnumMap<>(Side.class);
+
+    /**
+     * Function returning the key of an offer in the index, or null if offers are identified by identity.
+     */
+    private final Function<? super OfferT, ?> idFunction;
+
+    /**
+     * Entries of all passive offers by their id, null if offers are keyed by long ids
+     */
+    private final Map<Object, PriceLevel.Entry<OfferT>> index;
+
+    /**
+     * Function returning the primitive key of an offer, or null if offers are keyed by objects
+     */
+    private final ToLongFunction<? super OfferT> longIdFunction;
+
+    /**
+     * Entries of all passive offers by their long id, null if offers are keyed by objects
+     */
+    private final LongHashMap<PriceLevel.Entry<OfferT>> longIndex;
+
+    /**
+     * Heads of the lists of entries of passive offers of each owner, linked through the entries, so that an owner's offers are listed
+     * in time proportional to their number and unlinked in constant time
+     */
+    private final LongHashMap<PriceLevel.Entry<OfferT>> owners = new LongHashMap<>();
+
+    /**
+     * Expiry of passive good till date offers
+     */
+    private final TimingWheel<PriceLevel.Entry<OfferT>> expiries = new TimingWheel<>(0);
+
+    /**
+     * Reused by all matches, the order book isn't thread safe anyway
+     */
+    private final MutableMatchResult fill = new MutableMatchResult();
+
+    /**
+     * Receives changes of price levels, or null if nobody is interested
+     */
+    private IDepthListener depthListener;
+
+    /**
+     * Number of the last change of price levels, counted even without a listener, so a snapshot can be matched with the following changes
+     */
+    private long sequence;
+
     OrderBook(ITransactionListener<OfferT> transactionListener) {
+        this(transactionListener, null);
+    }
+
+    /**
+     * @param idFunction function returning a unique key of an offer; if null, offers are identified by object identity
+     */
+    OrderBook(ITransactionListener<OfferT> transactionListener, Function<? super OfferT, ?> idFunction) {
+        this(transactionListener, idFunction, null);
+    }
+
+    /**
+     * @param longIdFunction if not null, function returning a unique primitive key of an offer, used instead of the idFunction;
+     *                       offers are then indexed without boxing their keys
+     */
+    OrderBook(ITransactionListener<OfferT> transactionListener, Function<? super OfferT, ?> idFunction, ToLongFunction<? super OfferT> longIdFunction) {
         assert transactionListener != null;
+        assert idFunction == null || longIdFunction == null;
 
         this.transactionListener = transactionListener;
+        this.idFunction = idFunction;
+        this.longIdFunction = longIdFunction;
+        if (longIdFunction != null) {
+            index = null;
+            longIndex = new LongHashMap<>();
+        } else {
+            index = idFunction == null ? new IdentityHashMap<>() : new HashMap<>();
+            longIndex = null;
+        }
 
+        levels = new EnumMap<>(Side.class);
         allOffers = new EnumMap<>(Side.class);
-        // these lists will be more or less as frequently searched as inserted to, use LinkedList for now.
-        allOffers.put(Side.ASK, new LinkedList<>());
-        allOffers.put(Side.BID, new LinkedList<>());
+        for (Side side : Side.values()) {
+            NavigableMap<OfferRate, PriceLevel<OfferT>> sideLevels = new TreeMap<>((a, b) -> a.compareTo(b) * side.orderSignum);
+            levels.put(side, sideLevels);
+            depth.put(side, PersistentSortedMap.empty(sideLevels.comparator()));
+            changedLevels.put(side, new ArrayList<>());
+            allOffers.put(side, new SideView(sideLevels));
+        }
     }
 
     public OfferT post(OfferT o) {
         assert o != null;
 
-        List<OfferT> otherSideOffers = allOffers.get(o.getSide().reverse());
-        if (otherSideOffers.isEmpty()) {
-            if (o.isMarketOrder()) {
+        if (longIndex != null) {
+            long id = longIdFunction.applyAsLong(o);
+            if (longIndex.containsKey(id))
+                throw new IllegalArgumentException("Duplicate offer id " + id);
+        } else if (index.containsKey(id(o))) {
+            throw new IllegalArgumentException("Duplicate offer id " + id(o));
+        }
+
+        if (o.getPostOnly() != null) {
+            if (!postOnly(o))
+                return o;
+            if (!rests(o))
+                return o;
+            insert(o);
+            return null;
+        }
+
+        NavigableMap<OfferRate, PriceLevel<OfferT>> otherSideLevels = levels.get(o.getSide().reverse());
+        if (o.getTimeInForce() == TimeInForce.FOK && !canFill(o, otherSideLevels))
+            return o;
+
+        if (otherSideLevels.isEmpty()) {
+            if (!rests(o)) {
                 return o;
             } else {
                 insert(o);
                 return null;
             }
         } else {
-            return execute(o, otherSideOffers);
+            return execute(o, otherSideLevels);
         }
     }
 
-    private OfferT execute(OfferT active, List<OfferT> passiveOffers) {
-        assert active != null;
-        assert passiveOffers != null;
-        assert !passiveOffers.isEmpty();
-        assert passiveOffers.get(0).getSide() != active.getSide();
+    /**
+     * Remove a passive offer from the order book
+     *
+     * @param id key of the offer, as returned by the id function, or the offer itself if the book has no id function.
+     *           If offers are keyed by long ids, a {@link Number}.
+     * @return the removed offer, or null if there was no passive offer of that id
+     */
+    public OfferT cancel(Object id) {
+        if (longIndex != null)
+            return id instanceof Number ? cancelLong(((Number) id).longValue()) : null;
+
+        return remove(index.remove(id));
+    }
 
-        OfferT currentActive = active;
-        do {
-            OfferT passive = passiveOffers.get(0);
-            OfferMatchResult<OfferT> execResult = currentActive.match(passive, transactionListener);
+    /**
+     * Change the amount and rate of a passive offer in one operation. Reducing the amount at the same rate changes the offer in place,
+     * keeping its time priority. Any other change takes the offer out of the order book and posts it again, behind the offers of its new rate,
+     * where it executes as a newly posted offer would; if it's then cancelled instead of resting or executing in full, e.g. a post-only offer
+     * which would execute and is rejected, it's no longer in the order book and null is returned.
+     *
+     * @param id     key of the offer, as with {@link #cancel(Object)}
+     * @param amount the new amount of the offer before any match; the filled amount is kept and the remaining amount changes by the difference
+     * @param rate   the new rate, or null to keep the rate
+     * @return the amended offer, or null if there was no passive offer of that id or the amended offer was cancelled
+     * @throws IllegalArgumentException if the amount isn't above the filled amount, or the amount or rate don't fit in the scales
+     *                                  of a fixed-point offer; the offer is left unchanged
+     */
+    public OfferT amend(Object id, BigDecimal amount, OfferRate rate) {
+        assert amount != null;
 
-            currentActive = execResult.activeRemainder;
+        PriceLevel.Entry<OfferT> entry;
+        if (longIndex != null)
+            entry = id instanceof Number ? longIndex.get(((Number) id).longValue()) : null;
+        else
+            entry = index.get(id);
+        if (entry == null)
+            return null;
+        if (rate != null && rate.isMarket())
+            throw new IllegalArgumentException("Market rate");
 
-            if (execResult.passiveRemainder != null) {
-                passiveOffers.set(0, execResult.passiveRemainder);
-                break;
+        OfferT o = entry.getOffer();
+        PriceLevel<OfferT> level = entry.getLevel();
+        if ((rate == null || rate.compareTo(level.getRate()) == 0) && amount.compareTo(o.getOriginalAmount()) <= 0) {
+            level.amend(entry, amount);
+            levelChanged(Change.CHANGED, o.getSide(), level);
+            return o;
+        }
+
+        // check the new values before the offer leaves the book
+        FixedPoint fixedPoint = o.getFixedPoint();
+        if (rate == null)
+            rate = o.getRate();
+        else if (fixedPoint != null)
+            rate = rate.toFixedPoint(fixedPoint);
+        if (amount.compareTo(o.getFilledAmount()) <= 0)
+            throw new IllegalArgumentException("Amount not above filled amount");
+        if (fixedPoint != null)
+            fixedPoint.toAmount(amount);
+
+        unindex(entry);
+        remove(entry);
+        o.showReserve();
+        o.amendAmount(amount);
+        o.reprice(rate);
+        return post(o) == null ? o : null;
+    }
+
+    /**
+     * Remove good till date offers which expired up to the given time
+     *
+     * @param now current time, in units of expire times of offers
+     * @return the expired offers, in order of their expire times
+     */
+    public List<OfferT> expire(long now) {
+        if (expiries.size() == 0) {
+            expiries.advance(now, null);
+            return Collections.emptyList();
+        }
+
+        List<OfferT> result = new ArrayList<>();
+        expiries.advance(now, entry -> {
+            unindex(entry);
+            result.add(remove(entry));
+        });
+        return result;
+    }
+
+    /**
+     * Remove a passive offer from an order book keyed by long ids, without boxing the id
+     *
+     * @return the removed offer, or null if there was no passive offer of that id
+     */
+    public OfferT cancelLong(long id) {
+        if (longIndex == null)
+            return cancel((Object) id);
+
+        return remove(longIndex.remove(id));
+    }
+
+    private OfferT remove(PriceLevel.Entry<OfferT> entry) {
+        if (entry == null)
+            return null;
+        if (entry.expiry != null)
+            expiries.cancel(entry.expiry);
+        unlinkOwner(entry);
+
+        PriceLevel<OfferT> level = entry.getLevel();
+        level.remove(entry);
+        Side side = entry.getOffer().getSide();
+        if (level.isEmpty()) {
+            NavigableMap<OfferRate, PriceLevel<OfferT>> sideLevels = levels.get(side);
+            sideLevels.remove(level.getRate());
+            if (bestLevels.get(side) == level)
+                updateBestLevel(side, sideLevels);
+            levelChanged(Change.REMOVED, side, level);
+        } else {
+            levelChanged(Change.CHANGED, side, level);
+        }
+
+        return entry.getOffer();
+    }
+
+    /**
+     * @return passive offer of the given id or null if there's none
+     */
+    public OfferT get(Object id) {
+        if (longIndex != null)
+            return id instanceof Number ? getLong(((Number) id).longValue()) : null;
+
+        PriceLevel.Entry<OfferT> entry = index.get(id);
+        return entry == null ? null : entry.getOffer();
+    }
+
+    /**
+     * @return passive offer of the given long id or null if there's none
+     */
+    public OfferT getLong(long id) {
+        if (longIndex == null)
+            return get((Object) id);
+
+        PriceLevel.Entry<OfferT> entry = longIndex.get(id);
+        return entry == null ? null : entry.getOffer();
+    }
+
+    private Object id(OfferT o) {
+        return idFunction == null ? o : idFunction.apply(o);
+    }
+
+    private void unindex(PriceLevel.Entry<OfferT> entry) {
+        if (longIndex != null)
+            longIndex.remove(entry.longId);
+        else
+            index.remove(entry.id);
+    }
+
+    private static boolean rests(Offer o) {
+        return !o.isMarketOrder() && o.getTimeInForce().rests;
+    }
+
+    /**
+     * Check a post-only offer against the best opposite rate, in constant time. An offer which would execute is either rejected
+     * or repriced one tick, a unit of the price scale, behind the best opposite rate. Without fixed-point scales there's no tick,
+     * so an offer which would be repriced is rejected too.
+     *
+     * @return false if the offer is rejected
+     */
+    private boolean postOnly(OfferT o) {
+        PriceLevel<OfferT> best = bestLevels.get(o.getSide().reverse());
+        if (best == null)
+            return true;
+
+        OfferRate bestRate = best.getRate();
+        int signum = o.getSide().orderSignum;
+        if (o.getRate().compareTo(bestRate) * signum > 0)
+            return true;
+        if (o.getPostOnly() == PostOnly.REJECT)
+            return false;
+
+        FixedPoint fixedPoint = bestRate.getFixedPoint();
+        // the scale of a decimal rate is the caller's choice, not the instrument's
+        if (fixedPoint == null)
+            return false;
+
+        BigDecimal tick = BigDecimal.ONE.movePointLeft(fixedPoint.priceScale);
+        BigDecimal price = bestRate.getValue().add(signum > 0 ? tick : tick.negate());
+        if (price.signum() <= 0)
+            return false;
+
+        o.reprice(new OfferRate(price));
+        return true;
+    }
+
+    /**
+     * Check, without executing, that the passive offers matching the rate of the active one hold at least its amount,
+     * hidden amounts of iceberg offers included. Uses the aggregated amounts of price levels, so it costs one step per level, not per offer.
+     * <p>
+     * An active offer with an owner walks the offers of the levels holding any offers with an owner, in the order it would execute against them,
+     * and stops as soon as it's filled. An offer of the same owner ends the check under {@link SelfTradePrevention#CANCEL_NEWEST},
+     * and under {@link SelfTradePrevention#DECREMENT}, which uses up the amount of the active offer without filling it;
+     * under {@link SelfTradePrevention#CANCEL_OLDEST} it's cancelled, so it supplies nothing.
+     * Refilled slices of iceberg offers are queued behind all visible offers of their level, so hidden amounts count only after them.
+     */
+    private boolean canFill(OfferT active, NavigableMap<OfferRate, PriceLevel<OfferT>> passiveLevels) {
+        long owner = active.getOwner();
+        boolean cancelOldest = active.getSelfTradePrevention() == SelfTradePrevention.CANCEL_OLDEST;
+        boolean fixed = active.getFixedPoint() != null;
+        long fixedRemaining = fixed ? active.getFixedAmount() : 0;
+        BigDecimal remaining = fixed ? null : active.getAmount();
+        int signum = active.getSide().orderSignum;
+        for (PriceLevel<OfferT> level : passiveLevels.values()) {
+            if (!active.isMarketOrder() && active.getRate().compareTo(level.getRate()) * signum > 0)
+                return false;
+
+            if (owner == 0 || !level.hasOwnedOffers()) {
+                if (fixed) {
+                    fixedRemaining -= level.getFixedAmount() + level.getFixedHiddenAmount();
+                    if (fixedRemaining <= 0)
+                        return true;
+                } else {
+                    remaining = remaining.subtract(level.getAmount()).subtract(level.getHiddenAmount());
+                    if (remaining.signum() <= 0)
+                        return true;
+                }
+                continue;
+            }
+
+            // visible amounts in time priority, hidden amounts of cancelled offers of the owner set aside
+            long fixedOwnHidden = 0;
+            BigDecimal ownHidden = BigDecimal.ZERO;
+            for (PriceLevel.Entry<OfferT> entry = level.firstEntry(); entry != null; entry = entry.getNext()) {
+                OfferT passive = entry.getOffer();
+                if (passive.getOwner() == owner) {
+                    if (!cancelOldest)
+                        return false;
+                    if (fixed)
+                        fixedOwnHidden += passive.getFixedHiddenAmount();
+                    else
+                        ownHidden = ownHidden.add(passive.getHiddenAmount());
+                } else if (fixed) {
+                    fixedRemaining -= passive.getFixedAmount();
+                    if (fixedRemaining <= 0)
+                        return true;
+                } else {
+                    remaining = remaining.subtract(passive.getAmount());
+                    if (remaining.signum() <= 0)
+                        return true;
+                }
+            }
+
+            if (fixed) {
+                fixedRemaining -= level.getFixedHiddenAmount() - fixedOwnHidden;
+                if (fixedRemaining <= 0)
+                    return true;
             } else {
-                passiveOffers.remove(0);
+                remaining = remaining.subtract(level.getHiddenAmount()).add(ownHidden);
+                if (remaining.signum() <= 0)
+                    return true;
             }
+        }
+        return false;
+    }
+
+    /**
+     * Match the active offer in place against the best passive offers until either side runs out.
+     * <p>
+     * Self-trades are prevented as the passive offers are visited: an active offer with an owner compares it to the owner
+     * of each passive offer it's about to execute against, and acts according to its {@link SelfTradePrevention}.
+     * Offers cancelled this way, including a passive offer cancelled by decrement, aren't reported other than by their absence from the order book.
+     */
+    private OfferT execute(OfferT active, NavigableMap<OfferRate, PriceLevel<OfferT>> passiveLevels) {
+        assert active != null;
+        assert passiveLevels != null;
+        assert !passiveLevels.isEmpty();
+        assert passiveLevels.firstEntry().getValue().first().getSide() != active.getSide();
+
+        MutableMatchResult fill = this.fill;
+        Side passiveSide = active.getSide().reverse();
+        PriceLevel<OfferT> level = passiveLevels.firstEntry().getValue();
+        // changes of a level are reported once per execution, when the level is removed or after the last fill
+        boolean levelChanged = false;
+        long owner = active.getOwner();
+        SelfTradePrevention selfTradePrevention = active.getSelfTradePrevention();
+        boolean activeCancelled = false;
+        while (true) {
+            PriceLevel.Entry<OfferT> entry = level.firstEntry();
+            OfferT passive = entry.getOffer();
+            if (owner != 0 && passive.getOwner() == owner && active.crosses(passive)) {
+                if (selfTradePrevention == SelfTradePrevention.CANCEL_NEWEST) {
+                    activeCancelled = true;
+                    break;
+                }
+                if (selfTradePrevention == SelfTradePrevention.CANCEL_OLDEST) {
+                    level.remove(entry);
+                    levelChanged = true;
+                    PriceLevel<OfferT> next = removed(entry, level, passiveSide, passiveLevels);
+                    if (next != level) {
+                        levelChanged = false;
+                        level = next;
+                        if (level == null)
+                            break;
+                    }
+                    continue;
+                }
+                active.decrement(passive, fill);
+            } else {
+                active.fill(passive, transactionListener, fill);
+                if (!fill.isRateMatch())
+                    break;
+            }
+
+            // a partially filled passive offer was reduced in place and keeps its id and time priority
+            level.reduce(fill);
+            levelChanged = true;
+            // a filled slice of an iceberg offer is refilled in place, the offer loses its time priority
+            if (fill.isPassiveFilled() && passive.refill()) {
+                level.requeue(entry);
+            } else if (fill.isPassiveFilled()) {
+                level.remove(entry);
+                PriceLevel<OfferT> next = removed(entry, level, passiveSide, passiveLevels);
+                if (next != level) {
+                    levelChanged = false;
+                    level = next;
+                    if (level == null)
+                        break;
+                }
+            }
+
+            if (fill.isActiveFilled())
+                break;
+        }
+
+        if (levelChanged)
+            levelChanged(Change.CHANGED, passiveSide, level);
+
+        if (activeCancelled)
+            return active;
 
-        } while (!passiveOffers.isEmpty() && currentActive != null);
+        // the last visited passive offer may have been cancelled without a match
+        if (active.isFilled())
+            return null;
 
-        if (currentActive != null && !currentActive.isMarketOrder()) {
-            insert(currentActive);
-            currentActive = null;
+        if (rests(active)) {
+            insert(active);
+            return null;
         }
 
-        return currentActive;
+        return active;
+    }
+
+    /**
+     * Finish removal of a passive entry by execution: drop it from the index and the expiries, and the level from the side if it's empty
+     *
+     * @param level the best level of the side, which the entry was removed from
+     * @return the best level of the side after the removal, the same one if it still holds offers, null if the side is empty
+     */
+    private PriceLevel<OfferT> removed(PriceLevel.Entry<OfferT> entry, PriceLevel<OfferT> level, Side side, NavigableMap<OfferRate, PriceLevel<OfferT>> sideLevels) {
+        unindex(entry);
+        if (entry.expiry != null)
+            expiries.cancel(entry.expiry);
+        unlinkOwner(entry);
+        if (!level.isEmpty())
+            return level;
+
+        sideLevels.pollFirstEntry();
+        levelChanged(Change.REMOVED, side, level);
+        return updateBestLevel(side, sideLevels);
     }
 
     private void insert(OfferT o) {
         assert o != null;
 
-        List<OfferT> offers = this.allOffers.get(o.getSide());
-        int index = Collections.binarySearch(offers, o, Offer::compareByRate);
-        if (index < 0)
-            offers.add(-index - 1, o);
-        else {
-            // Offer with the same rate as offers already present in the order book, should always be placed after the all existing ones
-            // Consider forward search starting from the result of binarySearch, but for now, avoid premature optimisation
-            index = Lists.lastIndexOf(offers, o, OfferT::getRate);
-            offers.add(index + 1, o);
+        // Offer with the same rate as offers already present in the order book is always placed after all the existing ones
+        o.hideReserve();
+        Side side = o.getSide();
+        NavigableMap<OfferRate, PriceLevel<OfferT>> sideLevels = levels.get(side);
+        PriceLevel<OfferT> level = sideLevels.computeIfAbsent(o.getRate(), PriceLevel::new);
+        boolean added = level.isEmpty();
+        PriceLevel.Entry<OfferT> entry;
+        if (longIndex != null) {
+            long id = longIdFunction.applyAsLong(o);
+            entry = level.addLong(id, o);
+            longIndex.put(id, entry);
+        } else {
+            Object id = id(o);
+            entry = level.add(id, o);
+            index.put(id, entry);
+        }
+        if (o.getTimeInForce() == TimeInForce.GTD)
+            entry.expiry = expiries.schedule(o.getExpireTime(), entry);
+        if (o.getOwner() != 0)
+            linkOwner(entry);
+
+        PriceLevel<OfferT> best = bestLevels.get(side);
+        if (best == null || sideLevels.comparator().compare(level.getRate(), best.getRate()) < 0)
+            bestLevels.put(side, level);
+
+        levelChanged(added ? Change.ADDED : Change.CHANGED, side, level);
+    }
+
+    private void linkOwner(PriceLevel.Entry<OfferT> entry) {
+        PriceLevel.Entry<OfferT> head = owners.put(entry.getOffer().getOwner(), entry);
+        entry.ownerNext = head;
+        if (head != null)
+            head.ownerPrev = entry;
+    }
+
+    private void unlinkOwner(PriceLevel.Entry<OfferT> entry) {
+        long owner = entry.getOffer().getOwner();
+        if (owner == 0)
+            return;
+
+        if (entry.ownerPrev != null)
+            entry.ownerPrev.ownerNext = entry.ownerNext;
+        else if (entry.ownerNext != null)
+            owners.put(owner, entry.ownerNext);
+        else
+            owners.remove(owner);
+        if (entry.ownerNext != null)
+            entry.ownerNext.ownerPrev = entry.ownerPrev;
+        entry.ownerPrev = entry.ownerNext = null;
+    }
+
+    /**
+     * @return passive offers of the owner, most recently inserted first, found in time proportional to their number
+     */
+    public List<OfferT> getOffersOfOwner(long owner) {
+        List<OfferT> result = new ArrayList<>();
+        for (PriceLevel.Entry<OfferT> entry = owners.get(owner); entry != null; entry = entry.ownerNext)
+            result.add(entry.getOffer());
+        return result;
+    }
+
+    private void levelChanged(Change change, Side side, PriceLevel<OfferT> level) {
+        long sequence = ++this.sequence;
+        OfferRate rate = level.getRate();
+        BigDecimal amount = level.getAmount();
+        if (!level.depthChanged) {
+            level.depthChanged = true;
+            changedLevels.get(side).add(level);
         }
+
+        IDepthListener listener = depthListener;
+        if (listener != null)
+            listener.levelChanged(sequence, change, side, rate, amount, level.size());
     }
 
     /**
-     * @return All offers, bids ordered by price in descending order, then asks ordered ascending
+     * Copy the levels changed since the last snapshot to the immutable price levels, once per level however many times it changed.
+     *
+     * @return immutable state of the price levels, created in time proportional to the number of the changed levels
+     */
+    public BookSnapshot snapshot() {
+        for (Side side : Side.values()) {
+            List<PriceLevel<OfferT>> changed = changedLevels.get(side);
+            if (changed.isEmpty())
+                continue;
+
+            NavigableMap<OfferRate, PriceLevel<OfferT>> sideLevels = levels.get(side);
+            PersistentSortedMap<OfferRate, DepthLevel> sideDepth = depth.get(side);
+            for (PriceLevel<OfferT> level : changed) {
+                level.depthChanged = false;
+                OfferRate rate = level.getRate();
+                // a removed level may have been replaced by a new one of the same rate
+                PriceLevel<OfferT> current = sideLevels.get(rate);
+                sideDepth = current == null ? sideDepth.remove(rate) : sideDepth.put(rate, new DepthLevel(rate, current.getAmount(), current.size()));
+            }
+            depth.put(side, sideDepth);
+            changed.clear();
+        }
+        return new BookSnapshot(sequence, depth.get(Side.BID), depth.get(Side.ASK));
+    }
+
+    /**
+     * @param depthListener receives each change of the price levels, or null to stop sending them
+     */
+    void setDepthListener(IDepthListener depthListener) {
+        this.depthListener = depthListener;
+    }
+
+    /**
+     * @return number of the last change of the price levels, the next change has the number one higher
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Called after the best level of the side was removed
+     *
+     * @return the new best level or null if the side is empty
+     */
+    private PriceLevel<OfferT> updateBestLevel(Side side, NavigableMap<OfferRate, PriceLevel<OfferT>> sideLevels) {
+        PriceLevel<OfferT> best = sideLevels.isEmpty() ? null : sideLevels.firstEntry().getValue();
+        bestLevels.put(side, best);
+        return best;
+    }
+
+    /**
+     * @return rate of the best passive offer of the side or null if the side is empty
+     */
+    public OfferRate getBestRate(Side side) {
+        PriceLevel<OfferT> best = bestLevels.get(side);
+        return best == null ? null : best.getRate();
+    }
+
+    /**
+     * @return total amount of passive offers at the best rate of the side, or null if the side is empty
+     */
+    public BigDecimal getBestAmount(Side side) {
+        PriceLevel<OfferT> best = bestLevels.get(side);
+        return best == null ? null : best.getAmount();
+    }
+
+    /**
+     * @return All offers, bids ordered by price in descending order, then asks ordered ascending. Lists are views of the order book.
      */
     public Map<Side, List<OfferT>> getAllOffers() {
         return allOffers;
     }
 
+    /**
+     * @param maxLevels maximum number of levels
+     * @return aggregated levels of one side, best rate first. The cost depends on the number of returned levels, not on the number of offers.
+     */
+    public List<DepthLevel> getDepth(Side side, int maxLevels) {
+        if (maxLevels < 0)
+            throw new IllegalArgumentException("Negative depth");
+
+        NavigableMap<OfferRate, PriceLevel<OfferT>> sideLevels = levels.get(side);
+        List<DepthLevel> result = new ArrayList<>(Math.min(maxLevels, sideLevels.size()));
+        for (PriceLevel<OfferT> level : sideLevels.values()) {
+            if (result.size() == maxLevels)
+                break;
+            result.add(new DepthLevel(level.getRate(), level.getAmount(), level.size()));
+        }
+        return result;
+    }
+
     /**
      * @return true if this order book contains no passive offers
      */
     public boolean isEmpty() {
-        return isEmpty(allOffers);
+        return levels.values().stream().allMatch(Map::isEmpty);
     }
 
     static <OfferT extends Offer> boolean isEmpty(Map<Side, List<OfferT>> orderBook) {
         return orderBook.values().stream().allMatch(List::isEmpty);
     }
+
+    /**
+     * Read-only list view of offers of one side, in order of execution.
+     */
+    private class SideView extends AbstractList<OfferT> {
+        private final NavigableMap<OfferRate, PriceLevel<OfferT>> sideLevels;
+
+        private SideView(NavigableMap<OfferRate, PriceLevel<OfferT>> sideLevels) {
+            this.sideLevels = sideLevels;
+        }
+
+        @Override
+        public OfferT get(int index) {
+            if (index < 0)
+                throw new IndexOutOfBoundsException(Integer.toString(index));
+
+            int levelStart = 0;
+            for (PriceLevel<OfferT> level : sideLevels.values()) {
+                int levelEnd = levelStart + level.size();
+                if (index < levelEnd) {
+                    Iterator<OfferT> i = level.iterator();
+                    for (int j = levelStart; j < index; j++)
+                        i.next();
+                    return i.next();
+                }
+                levelStart = levelEnd;
+            }
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+
+        @Override
+        public int size() {
+            int result = 0;
+            for (PriceLevel<OfferT> level : sideLevels.values())
+                result += level.size();
+            return result;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return sideLevels.isEmpty();
+        }
+
+        @Override
+        public Iterator<OfferT> iterator() {
+            Iterator<PriceLevel<OfferT>> levelIterator = sideLevels.values().iterator();
+            return new Iterator<OfferT>() {
+                private Iterator<OfferT> offerIterator = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    // levels are never empty
+                    return offerIterator.hasNext() || levelIterator.hasNext();
+                }
+
+                @Override
+                public OfferT next() {
+                    if (!offerIterator.hasNext())
+                        offerIterator = levelIterator.next().iterator();
+                    return offerIterator.next();
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,318 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.match.MutableMatchResult;
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.util.TimingWheel;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * All offers of one side of the order book sharing the same rate, in time priority (FIFO) order.
+ * Keeps the aggregated amount of its offers, as a fixed-point number if the rate has fixed-point representation.
+ * Only displayed amounts of iceberg offers count in the amount of the level, their hidden amounts are aggregated separately.
+ * <p>
+ * Offers are kept in a doubly linked list of {@link Entry} objects, so that an offer can be removed in constant time by its entry.
+ */
+class PriceLevel<OfferT extends Offer> implements Iterable<OfferT> {
+    private final OfferRate rate;
+    private Entry<OfferT> head;
+    private Entry<OfferT> tail;
+    private int size;
+    /**
+     * Number of offers at this level with an owner
+     */
+    private int ownedSize;
+    private BigDecimal amount = ZERO;
+    private final FixedPoint fixedPoint;
+    private long fixedAmount;
+    private BigDecimal hiddenAmount = ZERO;
+    private long fixedHiddenAmount;
+
+    /**
+     * Set by the order book on the first change of the level since the last snapshot, until the snapshot copies the level
+     */
+    boolean depthChanged;
+
+    static final class Entry<OfferT extends Offer> {
+        final Object id;
+        /**
+         * Key of the offer in an order book indexed by primitive long ids, 0 otherwise
+         */
+        final long longId;
+        /**
+         * Expiry of a good till date offer, null for other offers
+         */
+        TimingWheel.Timer<Entry<OfferT>> expiry;
+        /**
+         * Neighbours in the list of passive offers of the same owner, most recently inserted first
+         */
+        Entry<OfferT> ownerPrev;
+        Entry<OfferT> ownerNext;
+        private final OfferT offer;
+        private PriceLevel<OfferT> level;
+        private Entry<OfferT> prev;
+        private Entry<OfferT> next;
+
+        private Entry(Object id, long longId, OfferT offer, PriceLevel<OfferT> level) {
+            this.id = id;
+            this.longId = longId;
+            this.offer = offer;
+            this.level = level;
+        }
+
+        OfferT getOffer() {
+            return offer;
+        }
+
+        /**
+         * @return the level containing this entry or null if the entry was removed
+         */
+        PriceLevel<OfferT> getLevel() {
+            return level;
+        }
+
+        /**
+         * @return the entry behind this one in the queue of its level, or null if this is the last one
+         */
+        Entry<OfferT> getNext() {
+            return next;
+        }
+    }
+
+    PriceLevel(OfferRate rate) {
+        assert rate != null;
+        assert !rate.isMarket();
+
+        this.rate = rate;
+        fixedPoint = rate.getFixedPoint();
+    }
+
+    OfferRate getRate() {
+        return rate;
+    }
+
+    /**
+     * @return sum of amounts of all offers at this level
+     */
+    BigDecimal getAmount() {
+        return fixedPoint == null ? amount : fixedPoint.fromAmount(fixedAmount);
+    }
+
+    /**
+     * @return sum of amounts of all offers at this level in units of the amount scale, valid if the level has a fixed-point rate
+     */
+    long getFixedAmount() {
+        assert fixedPoint != null;
+
+        return fixedAmount;
+    }
+
+    /**
+     * @return sum of hidden amounts of iceberg offers at this level
+     */
+    BigDecimal getHiddenAmount() {
+        return fixedPoint == null ? hiddenAmount : fixedPoint.fromAmount(fixedHiddenAmount);
+    }
+
+    /**
+     * @return sum of hidden amounts in units of the amount scale, valid if the level has a fixed-point rate
+     */
+    long getFixedHiddenAmount() {
+        assert fixedPoint != null;
+
+        return fixedHiddenAmount;
+    }
+
+    private void addAmount(OfferT o) {
+        if (fixedPoint == null) {
+            amount = amount.add(o.getAmount());
+            if (o.getDisplayAmount() != null)
+                hiddenAmount = hiddenAmount.add(o.getHiddenAmount());
+        } else {
+            fixedAmount += o.getFixedAmount();
+            fixedHiddenAmount += o.getFixedHiddenAmount();
+        }
+    }
+
+    private void subtractAmount(OfferT o) {
+        if (fixedPoint == null) {
+            amount = amount.subtract(o.getAmount());
+            if (o.getDisplayAmount() != null)
+                hiddenAmount = hiddenAmount.subtract(o.getHiddenAmount());
+        } else {
+            fixedAmount -= o.getFixedAmount();
+            fixedHiddenAmount -= o.getFixedHiddenAmount();
+        }
+    }
+
+    OfferT first() {
+        return head == null ? null : head.offer;
+    }
+
+    Entry<OfferT> firstEntry() {
+        return head;
+    }
+
+    /**
+     * Append the offer at the end of the queue
+     *
+     * @param id key of the offer in the order book index
+     */
+    Entry<OfferT> add(Object id, OfferT o) {
+        return add(new Entry<>(id, 0, o, this));
+    }
+
+    /**
+     * Append the offer at the end of the queue
+     *
+     * @param id key of the offer in the order book index of long ids
+     */
+    Entry<OfferT> addLong(long id, OfferT o) {
+        return add(new Entry<>(null, id, o, this));
+    }
+
+    private Entry<OfferT> add(Entry<OfferT> e) {
+        OfferT o = e.offer;
+        assert o != null;
+        assert rate.compareTo(o.getRate()) == 0;
+        assert Objects.equals(fixedPoint, o.getFixedPoint());
+
+        if (tail == null) {
+            head = e;
+        } else {
+            tail.next = e;
+            e.prev = tail;
+        }
+        tail = e;
+        size++;
+        if (o.getOwner() != 0)
+            ownedSize++;
+        addAmount(o);
+        return e;
+    }
+
+    void remove(Entry<OfferT> e) {
+        assert e != null;
+        assert e.level == this;
+
+        unlink(e);
+        e.level = null;
+        size--;
+        if (e.offer.getOwner() != 0)
+            ownedSize--;
+        subtractAmount(e.offer);
+    }
+
+    /**
+     * Reduce the amount of an offer in place, keeping its position in the queue
+     *
+     * @see Offer#amendAmount(BigDecimal)
+     */
+    void amend(Entry<OfferT> e, BigDecimal amount) {
+        assert e.level == this;
+        assert amount.compareTo(e.offer.getOriginalAmount()) <= 0;
+
+        subtractAmount(e.offer);
+        try {
+            e.offer.amendAmount(amount);
+        } finally {
+            addAmount(e.offer);
+        }
+    }
+
+    /**
+     * Move the entry of an iceberg offer, whose filled slice was just refilled from its hidden amount, to the end of the queue
+     */
+    void requeue(Entry<OfferT> e) {
+        assert e.level == this;
+
+        OfferT o = e.offer;
+        if (fixedPoint == null) {
+            amount = amount.add(o.getAmount());
+            hiddenAmount = hiddenAmount.subtract(o.getAmount());
+        } else {
+            fixedAmount += o.getFixedAmount();
+            fixedHiddenAmount -= o.getFixedAmount();
+        }
+
+        if (tail == e)
+            return;
+        unlink(e);
+        tail.next = e;
+        e.prev = tail;
+        tail = e;
+    }
+
+    private void unlink(Entry<OfferT> e) {
+        if (e.prev == null)
+            head = e.next;
+        else
+            e.prev.next = e.next;
+
+        if (e.next == null)
+            tail = e.prev;
+        else
+            e.next.prev = e.prev;
+
+        e.prev = e.next = null;
+    }
+
+    /**
+     * Account for an amount executed in place from one of the offers of this level, which keeps its time priority
+     */
+    void reduce(MutableMatchResult fill) {
+        assert fill.isRateMatch();
+
+        if (fixedPoint == null)
+            amount = amount.subtract(fill.getAmount());
+        else
+            fixedAmount -= fill.getFixedAmount();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return true if any offer at this level has an owner
+     */
+    boolean hasOwnedOffers() {
+        return ownedSize != 0;
+    }
+
+    boolean isEmpty() {
+        return head == null;
+    }
+
+    @Override
+    public Iterator<OfferT> iterator() {
+        return new Iterator<OfferT>() {
+            private Entry<OfferT> next = head;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public OfferT next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+
+                OfferT result = next.offer;
+                next = next.next;
+                return result;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return getAmount() + "@" + rate;
+    }
+}
@@ -0,0 +1,126 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.util.MpscRingBuffer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Single writer of an {@link Exchange}. Commands submitted from any thread are queued in a bounded lock-free ring buffer
+ * and applied in submission order by one matching thread, which is the only thread touching the exchange.
+ * <p>
+ * Futures returned by this class are completed by the matching thread, so dependent stages should be asynchronous
+ * or short.
+ */
+public class Sequencer<TransactionT extends Transaction, OfferT extends Offer> implements AutoCloseable {
+    /**
+     * Number of empty polls before the matching thread parks
+     */
+    private static final int SPINS = 1000;
+
+    private final Exchange<TransactionT, OfferT> exchange;
+    private final MpscRingBuffer<Runnable> commands;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean parked;
+
+    /**
+     * @param capacity size of the command queue, a power of 2. Submitting threads wait while the queue is full.
+     */
+    public Sequencer(Exchange<TransactionT, OfferT> exchange, int capacity, ThreadFactory threadFactory) {
+        assert exchange != null;
+
+        this.exchange = exchange;
+        commands = new MpscRingBuffer<>(capacity);
+        thread = threadFactory.newThread(this::run);
+    }
+
+    public Sequencer<TransactionT, OfferT> start() {
+        thread.start();
+        return this;
+    }
+
+    /**
+     * @see Exchange#post(Offer)
+     */
+    public CompletableFuture<Offer> post(OfferT o) {
+        return submit(x -> x.post(o));
+    }
+
+    /**
+     * @see Exchange#cancel(Object)
+     */
+    public CompletableFuture<OfferT> cancel(Object id) {
+        return submit(x -> x.cancel(id));
+    }
+
+    /**
+     * Queue a command to be applied to the exchange by the matching thread. Commands may also read the exchange,
+     * which gives them a view consistent with all commands submitted before.
+     *
+     * @return future of the command result, completed exceptionally if the command throws
+     * @throws IllegalStateException if the sequencer is closed
+     */
+    public <R> CompletableFuture<R> submit(Function<? super Exchange<TransactionT, OfferT>, R> command) {
+        if (!running)
+            throw new IllegalStateException("Sequencer closed");
+
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                result.complete(command.apply(exchange));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        };
+
+        while (!commands.offer(task))
+            Thread.yield();
+
+        if (parked)
+            LockSupport.unpark(thread);
+
+        return result;
+    }
+
+    private void run() {
+        int idle = 0;
+        while (true) {
+            Runnable task = commands.poll();
+            if (task != null) {
+                task.run();
+                idle = 0;
+            } else if (!running) {
+                break;
+            } else if (++idle < SPINS) {
+                Thread.yield();
+            } else {
+                parked = true;
+                // re-check after publishing the flag, a producer may have missed it
+                if (commands.isEmpty() && running)
+                    LockSupport.park(this);
+                parked = false;
+                idle = 0;
+            }
+        }
+    }
+
+    /**
+     * Stop accepting commands and wait until the matching thread applies all queued commands.
+     * Commands submitted concurrently with closing may never complete.
+     * If the calling thread is interrupted while waiting, returns early with its interrupt flag set.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
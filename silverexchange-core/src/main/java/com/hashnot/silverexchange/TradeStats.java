@@ -0,0 +1,112 @@
+package com.hashnot.silverexchange;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * Statistics of all transactions of an exchange since its creation or the last {@link #reset()}, updated with each transaction.
+ * Price values are null until the first transaction.
+ */
+public class TradeStats {
+    private BigDecimal open;
+    private BigDecimal last;
+    private BigDecimal high;
+    private BigDecimal low;
+    private BigDecimal volume = ZERO;
+    private BigDecimal quoteVolume = ZERO;
+    private long count;
+
+    public TradeStats() {
+    }
+
+    /**
+     * @param stats statistics to copy
+     */
+    public TradeStats(TradeStats stats) {
+        open = stats.open;
+        last = stats.last;
+        high = stats.high;
+        low = stats.low;
+        volume = stats.volume;
+        quoteVolume = stats.quoteVolume;
+        count = stats.count;
+    }
+
+    /**
+     * Account for a transaction, called by the exchange
+     */
+    public void update(BigDecimal amount, BigDecimal rate) {
+        assert amount != null;
+        assert rate != null;
+
+        if (count == 0) {
+            open = high = low = rate;
+        } else if (rate.compareTo(high) > 0) {
+            high = rate;
+        } else if (rate.compareTo(low) < 0) {
+            low = rate;
+        }
+        last = rate;
+        volume = volume.add(amount);
+        quoteVolume = quoteVolume.add(amount.multiply(rate));
+        count++;
+    }
+
+    public void reset() {
+        open = last = high = low = null;
+        volume = quoteVolume = ZERO;
+        count = 0;
+    }
+
+    public BigDecimal getOpen() {
+        return open;
+    }
+
+    public BigDecimal getLast() {
+        return last;
+    }
+
+    public BigDecimal getHigh() {
+        return high;
+    }
+
+    public BigDecimal getLow() {
+        return low;
+    }
+
+    /**
+     * @return total amount of all transactions
+     */
+    public BigDecimal getVolume() {
+        return volume;
+    }
+
+    /**
+     * @return total value (amount times rate) of all transactions
+     */
+    public BigDecimal getQuoteVolume() {
+        return quoteVolume;
+    }
+
+    /**
+     * @return volume-weighted average price or null if there was no transaction
+     */
+    public BigDecimal getVwap() {
+        return count == 0 ? null : quoteVolume.divide(volume, MathContext.DECIMAL64);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "last=" + last
+                + ", high=" + high
+                + ", low=" + low
+                + ", volume=" + volume
+                ;
+    }
+}
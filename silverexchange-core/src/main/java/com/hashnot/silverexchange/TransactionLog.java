@@ -0,0 +1,141 @@
+package com.hashnot.silverexchange;
+
+import java.util.AbstractList;
+import java.util.function.ToLongFunction;
+
+/**
+ * Most recent transactions of an exchange, oldest first, kept in a ring buffer according to a retention policy:
+ * at most a number of transactions and optionally only those within a time window from the newest one.
+ * <p>
+ * Timestamps of the time window are kept in a primitive array, so eviction doesn't touch the transaction objects.
+ * Transactions must be added in the order of their timestamps.
+ */
+public class TransactionLog<TransactionT> extends AbstractList<TransactionT> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxSize;
+    private final ToLongFunction<? super TransactionT> timestampFunction;
+    private final long window;
+
+    private Object[] elements;
+    private long[] timestamps;
+    private int head;
+    private int size;
+
+    /**
+     * @param maxSize           maximum number of retained transactions, 0 to retain none
+     * @param timestampFunction function returning timestamp of a transaction, or null to retain transactions regardless of their age
+     * @param window            maximum difference between timestamps of the newest and the oldest retained transaction, in units of the timestamp function
+     */
+    public TransactionLog(int maxSize, ToLongFunction<? super TransactionT> timestampFunction, long window) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("Negative size");
+        if (window < 0)
+            throw new IllegalArgumentException("Negative window");
+
+        this.maxSize = maxSize;
+        this.timestampFunction = timestampFunction;
+        this.window = window;
+        int capacity = Math.min(maxSize, INITIAL_CAPACITY);
+        elements = new Object[capacity];
+        if (timestampFunction != null)
+            timestamps = new long[capacity];
+    }
+
+    /**
+     * @return log retaining all transactions
+     */
+    public static <TransactionT> TransactionLog<TransactionT> unbounded() {
+        return new TransactionLog<>(Integer.MAX_VALUE, null, 0);
+    }
+
+    /**
+     * @return log retaining the given number of the most recent transactions
+     */
+    public static <TransactionT> TransactionLog<TransactionT> last(int maxSize) {
+        return new TransactionLog<>(maxSize, null, 0);
+    }
+
+    /**
+     * @return log retaining transactions not older than the window before the newest transaction
+     */
+    public static <TransactionT> TransactionLog<TransactionT> window(ToLongFunction<? super TransactionT> timestampFunction, long window) {
+        return new TransactionLog<>(Integer.MAX_VALUE, timestampFunction, window);
+    }
+
+    /**
+     * Append the transaction, evicting the oldest ones that fall out of the retention policy
+     */
+    @Override
+    public boolean add(TransactionT tx) {
+        if (maxSize == 0)
+            return false;
+
+        modCount++;
+        long timestamp = 0;
+        if (timestampFunction != null) {
+            timestamp = timestampFunction.applyAsLong(tx);
+            long cutoff = timestamp - window;
+            while (size > 0 && timestamps[head] < cutoff)
+                removeOldest();
+        }
+
+        if (size == maxSize)
+            removeOldest();
+        else if (size == elements.length)
+            grow();
+
+        int i = index(size);
+        elements[i] = tx;
+        if (timestamps != null)
+            timestamps[i] = timestamp;
+        size++;
+        return true;
+    }
+
+    private void removeOldest() {
+        elements[head] = null;
+        head = index(1);
+        size--;
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min((long) elements.length * 2, maxSize);
+        Object[] newElements = new Object[capacity];
+        long[] newTimestamps = timestamps == null ? null : new long[capacity];
+        for (int i = 0; i < size; i++) {
+            newElements[i] = elements[index(i)];
+            if (timestamps != null)
+                newTimestamps[i] = timestamps[index(i)];
+        }
+        elements = newElements;
+        timestamps = newTimestamps;
+        head = 0;
+    }
+
+    private int index(int offset) {
+        int i = head + offset;
+        return i < elements.length ? i : i - elements.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TransactionT get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+
+        return (TransactionT) elements[index(index)];
+    }
+
+    /**
+     * @return the newest transaction or null if there's none
+     */
+    public TransactionT getLast() {
+        return size == 0 ? null : get(size - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,168 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.util.LongHashMap;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Pending stop offers, sorted by stop price per side in order of triggering: bids from the lowest stop price, asks from the highest one.
+ * <p>
+ * Stops triggered by a range of trade prices form a prefix of each side, so they're popped in O(log n + k) time for k triggered offers,
+ * and stops which aren't triggered are never visited. Offers of the same stop price are triggered in order of posting.
+ */
+public class TriggerBook<OfferT extends Offer> {
+    private final Map<Side, NavigableMap<BigDecimal, ArrayDeque<OfferT>>> stops = new EnumMap<>(Side.class);
+
+    /**
+     * Function returning the key of an offer in the index, or null if offers are identified by identity
+     */
+    private final Function<? super OfferT, ?> idFunction;
+
+    /**
+     * All pending offers by their id
+     */
+    private final Map<Object, OfferT> index;
+
+    /**
+     * Pending offers of each owner by their id, in order of posting unless offers are identified by identity
+     */
+    private final LongHashMap<Map<Object, OfferT>> owners = new LongHashMap<>();
+
+    /**
+     * @param idFunction function returning a unique key of an offer; if null, offers are identified by object identity
+     */
+    TriggerBook(Function<? super OfferT, ?> idFunction) {
+        this.idFunction = idFunction;
+        index = idFunction == null ? new IdentityHashMap<>() : new HashMap<>();
+        for (Side side : Side.values()) {
+            Comparator<BigDecimal> order = side == Side.BID ? Comparator.naturalOrder() : Comparator.reverseOrder();
+            stops.put(side, new TreeMap<>(order));
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if an offer of the same id is already pending
+     */
+    void add(OfferT o) {
+        assert o.getStopPrice() != null;
+
+        Object id = id(o);
+        if (index.containsKey(id))
+            throw new IllegalArgumentException("Duplicate offer id " + id);
+
+        index.put(id, o);
+        if (o.getOwner() != 0) {
+            Map<Object, OfferT> ownerOffers = owners.get(o.getOwner());
+            if (ownerOffers == null)
+                owners.put(o.getOwner(), ownerOffers = idFunction == null ? new IdentityHashMap<>() : new LinkedHashMap<>());
+            ownerOffers.put(id, o);
+        }
+        stops.get(o.getSide()).computeIfAbsent(o.getStopPrice(), price -> new ArrayDeque<>()).add(o);
+    }
+
+    /**
+     * @return the removed offer, or null if there was no pending offer of that id
+     */
+    OfferT cancel(Object id) {
+        OfferT o = index.remove(id);
+        if (o == null)
+            return null;
+        removeOwner(id, o);
+
+        NavigableMap<BigDecimal, ArrayDeque<OfferT>> sideStops = stops.get(o.getSide());
+        ArrayDeque<OfferT> queue = sideStops.get(o.getStopPrice());
+        // offers may be equal without being the same
+        for (Iterator<OfferT> i = queue.iterator(); i.hasNext(); ) {
+            if (i.next() == o) {
+                i.remove();
+                break;
+            }
+        }
+        if (queue.isEmpty())
+            sideStops.remove(o.getStopPrice());
+        return o;
+    }
+
+    /**
+     * Remove bids of stop prices up to the highest trade price and asks of stop prices down to the lowest one
+     *
+     * @return the triggered offers, bids first, each side in order of triggering
+     */
+    List<OfferT> trigger(BigDecimal lowPrice, BigDecimal highPrice) {
+        List<OfferT> result = new ArrayList<>();
+        pop(stops.get(Side.BID).headMap(highPrice, true), result);
+        pop(stops.get(Side.ASK).headMap(lowPrice, true), result);
+        return result;
+    }
+
+    private void pop(NavigableMap<BigDecimal, ArrayDeque<OfferT>> triggered, List<OfferT> result) {
+        if (triggered.isEmpty())
+            return;
+
+        for (ArrayDeque<OfferT> queue : triggered.values()) {
+            for (OfferT o : queue) {
+                Object id = id(o);
+                index.remove(id);
+                removeOwner(id, o);
+                result.add(o);
+            }
+        }
+        triggered.clear();
+    }
+
+    private void removeOwner(Object id, OfferT o) {
+        long owner = o.getOwner();
+        if (owner == 0)
+            return;
+
+        Map<Object, OfferT> ownerOffers = owners.get(owner);
+        ownerOffers.remove(id);
+        if (ownerOffers.isEmpty())
+            owners.remove(owner);
+    }
+
+    /**
+     * @return pending offers of the owner, found in time proportional to their number
+     */
+    public List<OfferT> getOffersOfOwner(long owner) {
+        Map<Object, OfferT> ownerOffers = owners.get(owner);
+        return ownerOffers == null ? Collections.emptyList() : new ArrayList<>(ownerOffers.values());
+    }
+
+    /**
+     * @return pending offer of the given id or null if there's none
+     */
+    public OfferT get(Object id) {
+        return index.get(id);
+    }
+
+    Object id(OfferT o) {
+        return idFunction == null ? o : idFunction.apply(o);
+    }
+
+    /**
+     * @return pending offers of each side, in order of triggering
+     */
+    public Map<Side, List<OfferT>> getAllOffers() {
+        Map<Side, List<OfferT>> result = new EnumMap<>(Side.class);
+        for (Side side : Side.values()) {
+            List<OfferT> sideOffers = new ArrayList<>();
+            for (ArrayDeque<OfferT> queue : stops.get(side).values())
+                sideOffers.addAll(queue);
+            result.put(side, sideOffers);
+        }
+        return result;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+}
@@ -0,0 +1,25 @@
+package com.hashnot.silverexchange.ext;
+
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.match.Side;
+
+import java.math.BigDecimal;
+
+/**
+ * Receives changes of aggregated price levels of an order book. Applying the changes to a snapshot of the order book
+ * taken before the first of them reproduces the current state of the book.
+ */
+public interface IDepthListener {
+    enum Change {
+        ADDED,
+        CHANGED,
+        REMOVED
+    }
+
+    /**
+     * @param sequence number of the change, consecutive within the order book
+     * @param amount   new aggregated amount of the level, zero if the level was removed
+     * @param count    new number of offers at the level
+     */
+    void levelChanged(long sequence, Change change, Side side, OfferRate rate, BigDecimal amount, int count);
+}
@@ -0,0 +1,25 @@
+package com.hashnot.silverexchange.ext;
+
+import com.hashnot.silverexchange.match.Offer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary representation of offers and their ids in a journal. Implementations write at the current position of the buffer
+ * and may throw {@link java.nio.BufferOverflowException} if the buffer is too small.
+ */
+public interface IJournalCodec<OfferT extends Offer> {
+    /**
+     * Write the offer as it was posted
+     */
+    void writeOffer(OfferT offer, ByteBuffer buffer);
+
+    OfferT readOffer(ByteBuffer buffer);
+
+    /**
+     * Write a key of an offer, as returned by the id function of the exchange
+     */
+    void writeId(Object id, ByteBuffer buffer);
+
+    Object readId(ByteBuffer buffer);
+}
@@ -0,0 +1,67 @@
+package com.hashnot.silverexchange.match;
+
+import java.math.BigDecimal;
+
+/**
+ * A result of an in-place match {@link Offer#fill(Offer, ITransactionListener, MutableMatchResult)}, owned by the caller and reused between matches.
+ */
+public class MutableMatchResult {
+    boolean rateMatch;
+    BigDecimal amount;
+    long fixedAmount;
+    boolean activeFilled;
+    boolean passiveFilled;
+
+    void reset() {
+        rateMatch = false;
+        amount = null;
+        fixedAmount = 0;
+        activeFilled = false;
+        passiveFilled = false;
+    }
+
+    /**
+     * @return false if the offers didn't match due to their rates, nothing was executed
+     */
+    public boolean isRateMatch() {
+        return rateMatch;
+    }
+
+    /**
+     * @return the executed amount, null if the offers didn't match
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return the executed amount in units of the amount scale, if the offers were matched in fixed-point mode
+     */
+    public long getFixedAmount() {
+        return fixedAmount;
+    }
+
+    /**
+     * @return true if no amount of the active offer remains
+     */
+    public boolean isActiveFilled() {
+        return activeFilled;
+    }
+
+    /**
+     * @return true if no amount of the passive offer remains and it should be removed from the order book
+     */
+    public boolean isPassiveFilled() {
+        return passiveFilled;
+    }
+
+    @Override
+    public String toString() {
+        return
+                "rateMatch=" + rateMatch
+                        + ", amount=" + amount
+                        + ", activeFilled=" + activeFilled
+                        + ", passiveFilled=" + passiveFilled
+                ;
+    }
+}
@@ -1,5 +1,6 @@
 package com.hashnot.silverexchange.match;
 
+import com.hashnot.silverexchange.FixedPoint;
 import com.hashnot.silverexchange.OfferRate;
 import com.hashnot.silverexchange.util.BigDecimals;
 
@@ -11,9 +12,60 @@ import java.util.Objects;
  */
 public class Offer {
     private Side side;
+
+    /**
+     * Remaining amount, reduced by in-place matching. In fixed-point mode it's null until it's requested
+     */
     private BigDecimal amount;
     private OfferRate rate;
 
+    /**
+     * Amount of the offer before any match, changed by amending the offer, null in a fixed-point remainder
+     */
+    private BigDecimal originalAmount;
+
+    /**
+     * Scales of the fixed-point representation, null if the offer has none
+     */
+    private FixedPoint fixedPoint;
+    private long fixedAmount;
+    private long fixedOriginalAmount;
+
+    private TimeInForce timeInForce = TimeInForce.GTC;
+
+    /**
+     * Time when a {@link TimeInForce#GTD} offer expires, in units of the time of the exchange
+     */
+    private long expireTime;
+
+    /**
+     * Trade price at or through which a stop offer is triggered, null if the offer isn't a stop offer or was already triggered
+     */
+    private BigDecimal stopPrice;
+
+    /**
+     * Size of the displayed slice of an iceberg offer, null for other offers
+     */
+    private BigDecimal displayAmount;
+    private long fixedDisplayAmount;
+
+    /**
+     * Remaining amount of a passive iceberg offer not displayed yet, in fixed-point mode only as the long number
+     */
+    private BigDecimal hiddenAmount = BigDecimal.ZERO;
+    private long fixedHiddenAmount;
+
+    /**
+     * Handling of a post-only offer crossing the order book, null if the offer may execute on posting
+     */
+    private PostOnly postOnly;
+
+    /**
+     * Id of the account owning the offer, 0 if the offer isn't checked for self-trades
+     */
+    private long owner;
+    private SelfTradePrevention selfTradePrevention = SelfTradePrevention.CANCEL_NEWEST;
+
     public Offer(Side side, BigDecimal amount, OfferRate rate) {
         assert side != null;
         assert amount != null;
@@ -24,9 +76,24 @@ public class Offer {
 
         this.side = side;
         this.amount = amount;
+        this.originalAmount = amount;
         this.rate = rate;
     }
 
+    /**
+     * Fixed-point remainder of an offer
+     */
+    private Offer(Side side, long fixedAmount, OfferRate rate, FixedPoint fixedPoint) {
+        assert fixedAmount > 0;
+
+        this.side = side;
+        this.fixedAmount = fixedAmount;
+        this.fixedOriginalAmount = fixedAmount;
+        this.originalAmount = null;
+        this.rate = rate;
+        this.fixedPoint = fixedPoint;
+    }
+
     public static int compareByRate(Offer a, Offer b) {
         return a.getRate().compareTo(b.getRate()) * a.getSide().orderSignum;
     }
@@ -36,6 +103,8 @@ public class Offer {
     }
 
     public BigDecimal getAmount() {
+        if (amount == null)
+            amount = fixedPoint.fromAmount(fixedAmount);
         return amount;
     }
 
@@ -44,42 +113,395 @@ public class Offer {
     }
 
     /**
+     * @return the amount of the offer before it was matched for the first time
+     */
+    public BigDecimal getOriginalAmount() {
+        return originalAmount != null ? originalAmount : fixedPoint.fromAmount(fixedOriginalAmount);
+    }
+
+    /**
+     * @return cumulative amount executed by in-place matching, the original amount less the remaining amount
+     */
+    public BigDecimal getFilledAmount() {
+        return fixedPoint == null ? originalAmount.subtract(amount).subtract(hiddenAmount) : fixedPoint.fromAmount(fixedOriginalAmount - fixedAmount - fixedHiddenAmount);
+    }
+
+    public TimeInForce getTimeInForce() {
+        return timeInForce;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the time in force is {@link TimeInForce#GTD}, which requires an expire time
+     * @see #setGoodTillDate(long)
+     */
+    public void setTimeInForce(TimeInForce timeInForce) {
+        assert timeInForce != null;
+
+        if (timeInForce == TimeInForce.GTD)
+            throw new IllegalArgumentException("Good till date requires expire time");
+        this.timeInForce = timeInForce;
+    }
+
+    /**
+     * Make this a {@link TimeInForce#GTD} offer
+     *
+     * @param expireTime time when the offer expires, in units of the time of the exchange, e.g. milliseconds since the epoch
+     */
+    public void setGoodTillDate(long expireTime) {
+        if (expireTime < 0)
+            throw new IllegalArgumentException("Negative expire time");
+
+        timeInForce = TimeInForce.GTD;
+        this.expireTime = expireTime;
+    }
+
+    /**
+     * @return time when a {@link TimeInForce#GTD} offer expires
+     */
+    public long getExpireTime() {
+        assert timeInForce == TimeInForce.GTD : "Not a good till date offer";
+
+        return expireTime;
+    }
+
+    /**
+     * @return trade price triggering a pending stop offer, or null if the offer is not a pending stop offer
+     */
+    public BigDecimal getStopPrice() {
+        return stopPrice;
+    }
+
+    /**
+     * Make this a stop offer, executed only once the exchange trades at or through the stop price: at or above it for bids,
+     * at or below it for asks. A stop offer of a market rate is a stop order, that of a limit rate a stop-limit order.
+     *
+     * @param stopPrice the trigger price, or null to post the offer right away
+     */
+    public void setStopPrice(BigDecimal stopPrice) {
+        if (stopPrice != null && !BigDecimals.gtz(stopPrice))
+            throw new IllegalArgumentException("Non-positive stop price");
+
+        this.stopPrice = stopPrice;
+    }
+
+    /**
+     * @return handling of the offer if it would execute on posting, null if it's not a post-only offer
+     */
+    public PostOnly getPostOnly() {
+        return postOnly;
+    }
+
+    /**
+     * Make this a post-only offer, which only ever rests in the order book and never takes liquidity from it.
+     * Whether it would execute is checked against the best opposite rate only, not by matching.
+     *
+     * @param postOnly handling of the offer if it would execute, or null to let it execute
+     * @throws IllegalArgumentException if this is a market offer, which can't rest
+     */
+    public void setPostOnly(PostOnly postOnly) {
+        if (postOnly != null && isMarketOrder())
+            throw new IllegalArgumentException("Post-only market offer");
+
+        this.postOnly = postOnly;
+    }
+
+    /**
+     * Move the rate of an offer which isn't in the order book, a post-only offer before it rests or an amended one before it's posted again
+     */
+    public void reprice(OfferRate rate) {
+        assert rate != null && !rate.isMarket();
+
+        this.rate = fixedPoint == null ? rate : rate.toFixedPoint(fixedPoint);
+    }
+
+    /**
+     * @return id of the account owning the offer, 0 if it has none
+     */
+    public long getOwner() {
+        return owner;
+    }
+
+    /**
+     * Tag the offer with its owner, so that it never executes against another offer of the same owner
+     *
+     * @param owner id of the account owning the offer, or 0 to let it execute against any offer
+     */
+    public void setOwner(long owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * @return what happens when this active offer would execute against an offer of the same owner
+     */
+    public SelfTradePrevention getSelfTradePrevention() {
+        return selfTradePrevention;
+    }
+
+    /**
+     * @param selfTradePrevention what happens when this active offer would execute against an offer of the same owner,
+     *                            {@link SelfTradePrevention#CANCEL_NEWEST} by default
+     */
+    public void setSelfTradePrevention(SelfTradePrevention selfTradePrevention) {
+        assert selfTradePrevention != null;
+
+        this.selfTradePrevention = selfTradePrevention;
+    }
+
+    /**
+     * @return true if the offer would execute against the passive one due to their rates
+     */
+    public boolean crosses(Offer passive) {
+        return rateMatch(passive);
+    }
+
+    /**
+     * @return size of the displayed slice of an iceberg offer, or null if the offer displays its whole amount
+     */
+    public BigDecimal getDisplayAmount() {
+        return displayAmount;
+    }
+
+    /**
+     * Make this an iceberg offer. Once it rests in the order book only a slice of the display amount is visible and matched;
+     * when the slice is filled, another one is taken from the hidden amount and the offer moves to the back of its price level.
+     * Must be called before the offer is posted.
+     *
+     * @param displayAmount size of the displayed slice
+     */
+    public void setDisplayAmount(BigDecimal displayAmount) {
+        assert fixedPoint == null;
+        assert displayAmount != null;
+
+        if (!BigDecimals.gtz(displayAmount))
+            throw new IllegalArgumentException("Non-positive display amount");
+        this.displayAmount = displayAmount;
+    }
+
+    /**
+     * @return remaining amount of an iceberg offer which is not displayed, zero for other offers
+     */
+    public BigDecimal getHiddenAmount() {
+        return fixedPoint == null ? hiddenAmount : fixedPoint.fromAmount(fixedHiddenAmount);
+    }
+
+    /**
+     * @return the hidden amount in units of the amount scale
+     */
+    public long getFixedHiddenAmount() {
+        assert fixedPoint != null : "Not a fixed-point offer";
+
+        return fixedHiddenAmount;
+    }
+
+    /**
+     * Move the remaining amount over the display amount of an iceberg offer to its hidden amount, called when the offer rests
+     * in the order book. An active iceberg offer executes its whole amount.
+     */
+    public void hideReserve() {
+        if (displayAmount == null)
+            return;
+
+        if (fixedPoint == null) {
+            if (amount.compareTo(displayAmount) > 0) {
+                hiddenAmount = hiddenAmount.add(amount.subtract(displayAmount));
+                amount = displayAmount;
+            }
+        } else if (fixedAmount > fixedDisplayAmount) {
+            fixedHiddenAmount += fixedAmount - fixedDisplayAmount;
+            fixedAmount = fixedDisplayAmount;
+            amount = null;
+        }
+    }
+
+    /**
+     * Move the hidden amount of an iceberg offer back to its remaining amount, when the offer is taken out of the order book to be posted again
+     */
+    public void showReserve() {
+        if (fixedPoint == null) {
+            amount = amount.add(hiddenAmount);
+            hiddenAmount = BigDecimal.ZERO;
+        } else {
+            fixedAmount += fixedHiddenAmount;
+            fixedHiddenAmount = 0;
+            amount = null;
+        }
+    }
+
+    /**
+     * Change the amount of the offer before any match, keeping its filled amount, so the remaining amount changes by the difference.
+     * A reduction is taken from the hidden amount of an iceberg offer first.
+     *
+     * @param originalAmount the new amount of the offer before any match
+     * @throws IllegalArgumentException if the amount isn't above the filled amount or, in fixed-point mode, doesn't fit in the amount scale;
+     *                                  the offer is left unchanged
+     */
+    public void amendAmount(BigDecimal originalAmount) {
+        assert originalAmount != null;
+        assert this.originalAmount != null : "Not amending a remainder";
+
+        if (originalAmount.compareTo(getFilledAmount()) <= 0)
+            throw new IllegalArgumentException("Amount not above filled amount");
+
+        if (fixedPoint == null) {
+            BigDecimal diff = originalAmount.subtract(this.originalAmount);
+            if (diff.signum() < 0) {
+                BigDecimal fromHidden = hiddenAmount.min(diff.negate());
+                hiddenAmount = hiddenAmount.subtract(fromHidden);
+                diff = diff.add(fromHidden);
+            }
+            amount = amount.add(diff);
+        } else {
+            long fixedOriginalAmount = fixedPoint.toAmount(originalAmount);
+            long diff = fixedOriginalAmount - this.fixedOriginalAmount;
+            if (diff < 0) {
+                long fromHidden = Math.min(fixedHiddenAmount, -diff);
+                fixedHiddenAmount -= fromHidden;
+                diff += fromHidden;
+            }
+            fixedAmount += diff;
+            amount = null;
+            this.fixedOriginalAmount = fixedOriginalAmount;
+        }
+        this.originalAmount = originalAmount;
+    }
+
+    /**
+     * Display the next slice of a filled iceberg offer, in place
+     *
+     * @return false if nothing was hidden, the offer is filled
+     */
+    public boolean refill() {
+        assert isFilled();
+
+        if (fixedPoint == null) {
+            if (hiddenAmount.signum() == 0)
+                return false;
+            amount = hiddenAmount.min(displayAmount);
+            hiddenAmount = hiddenAmount.subtract(amount);
+        } else {
+            if (fixedHiddenAmount == 0)
+                return false;
+            fixedAmount = Math.min(fixedHiddenAmount, fixedDisplayAmount);
+            fixedHiddenAmount -= fixedAmount;
+            amount = null;
+        }
+        return true;
+    }
+
+    /**
+     * Set the remaining amount of an offer restored from a checkpoint, the rest of the original amount counts as filled.
+     * Must be called before conversion to fixed-point representation.
+     */
+    public void restoreAmount(BigDecimal amount) {
+        assert fixedPoint == null;
+        assert amount != null;
+
+        if (!BigDecimals.gtz(amount) || amount.compareTo(originalAmount) > 0)
+            throw new IllegalArgumentException("Amount out of range");
+        this.amount = amount;
+    }
+
+    /**
+     * Set the hidden amount of an iceberg offer restored from a checkpoint, after its remaining displayed amount.
+     * Must be called before conversion to fixed-point representation.
+     */
+    public void restoreHiddenAmount(BigDecimal hiddenAmount) {
+        assert fixedPoint == null;
+        assert displayAmount != null;
+
+        if (hiddenAmount.signum() < 0 || amount.add(hiddenAmount).compareTo(originalAmount) > 0)
+            throw new IllegalArgumentException("Amount out of range");
+        this.hiddenAmount = hiddenAmount;
+    }
+
+    /**
+     * Convert amount and rate of this offer to fixed-point representation, used when matching against other offers of the same scales.
+     *
+     * @throws IllegalArgumentException if amount or rate don't fit in the given scales
+     */
+    public void toFixedPoint(FixedPoint fixedPoint) {
+        assert fixedPoint != null;
+
+        long fixedAmount = fixedPoint.toAmount(getAmount());
+        long fixedOriginalAmount = fixedPoint.toAmount(getOriginalAmount());
+        long fixedDisplayAmount = displayAmount == null ? 0 : fixedPoint.toAmount(displayAmount);
+        long fixedHiddenAmount = hiddenAmount.signum() == 0 ? 0 : fixedPoint.toAmount(hiddenAmount);
+        OfferRate fixedRate = rate.toFixedPoint(fixedPoint);
+
+        this.fixedAmount = fixedAmount;
+        this.fixedOriginalAmount = fixedOriginalAmount;
+        this.fixedDisplayAmount = fixedDisplayAmount;
+        this.fixedHiddenAmount = fixedHiddenAmount;
+        this.rate = fixedRate;
+        this.fixedPoint = fixedPoint;
+    }
+
+    /**
+     * @return scales of the fixed-point representation or null if the offer has none
+     */
+    public FixedPoint getFixedPoint() {
+        return fixedPoint;
+    }
+
+    /**
+     * @return the amount in units of the amount scale
+     */
+    public long getFixedAmount() {
+        assert fixedPoint != null : "Not a fixed-point offer";
+
+        return fixedAmount;
+    }
+
+    /**
+     * Match without modifying the offers. Remainders are new, plain {@link Offer} objects, use {@link #fill(Offer, ITransactionListener, MutableMatchResult)}
+     * to keep subclass identity of partially matched offers.
+     *
      * @param passive             An offer from the order book (hence the name passive, it's waiting in the order book), against
      *                            which <code>this</code> (active) order is executed
      * @param transactionListener Transaction handler that will receive the transaction
      * @return object containing either {@link OfferMatchResult#activeRemainder} in case active offer had bigger amount, {@link OfferMatchResult#passiveRemainder} when passive offer had bigger amount or both null when amounts where equal
      */
-    public <OfferT extends Offer> OfferMatchResult<OfferT> match(OfferT passive, ITransactionListener<OfferT> transactionListener) {
+    public <OfferT extends Offer> OfferMatchResult<Offer> match(OfferT passive, ITransactionListener<OfferT> transactionListener) {
         assert side != passive.getSide() : "Not executing against offer of opposite side";
 
         if (!rateMatch(passive)) {
             // no execution due to no price match
-            return new OfferMatchResult<>((OfferT) this, passive);
+            return new OfferMatchResult<>(this, passive);
         }
 
-        BigDecimal amountDiff = amount.subtract(passive.getAmount());
-        int amountDiffSig = amountDiff.signum();
+        // in fixed-point mode amounts are compared and subtracted as long numbers
+        boolean fixed = isFixedPoint(passive);
+        long fixedAmountDiff = 0;
+        BigDecimal amountDiff = null;
+        int amountDiffSig;
+        if (fixed) {
+            fixedAmountDiff = fixedAmount - passive.getFixedAmount();
+            amountDiffSig = Long.signum(fixedAmountDiff);
+        } else {
+            amountDiff = getAmount().subtract(passive.getAmount());
+            amountDiffSig = amountDiff.signum();
+        }
 
         // here we have to null either of remainders in the result
-        OfferT remainder;
-        OfferT passiveRemainder;
+        Offer remainder;
+        Offer passiveRemainder;
         BigDecimal transactionAmount;
 
         if (amountDiffSig == 0) {
             // 1-to-1 match
-            transactionAmount = amount;
+            transactionAmount = getAmount();
             remainder = passiveRemainder = null;
         } else if (amountDiffSig > 0) {
             // if this.amount > against.amount, null passiveRemainder and tx.amount comes from against
-            remainder = (OfferT) new Offer(side, amountDiff, rate);
+            remainder = fixed ? new Offer(side, fixedAmountDiff, rate, fixedPoint) : new Offer(side, amountDiff, rate);
             passiveRemainder = null;
             transactionAmount = passive.getAmount();
 
             // otherwise, i.e. this.amount < against.amount, null remainder and tx.amount comes from this
         } else {
             remainder = null;
-            passiveRemainder = (OfferT) new Offer(passive.getSide(), amountDiff.negate(), passive.getRate());
-            transactionAmount = amount;
+            passiveRemainder = fixed ? new Offer(passive.getSide(), -fixedAmountDiff, passive.getRate(), fixedPoint) : new Offer(passive.getSide(), amountDiff.negate(), passive.getRate());
+            transactionAmount = getAmount();
         }
 
         transactionListener.notifyTransaction(transactionAmount, passive.getRate().getValue(), (OfferT) this);
@@ -87,6 +509,114 @@ public class Offer {
         return new OfferMatchResult<>(remainder, passiveRemainder);
     }
 
+    /**
+     * Match this (active) offer against the passive one in place: the executed amount is subtracted from the remaining amounts of both offers.
+     * Unlike {@link #match(Offer, ITransactionListener)} it creates no remainders nor result objects, so in fixed-point mode
+     * it allocates nothing except the executed amount passed to the transaction listener.
+     *
+     * @param passive             An offer from the order book
+     * @param transactionListener Transaction handler that will receive the transaction, called before amounts of the offers are reduced
+     * @param result              holder overwritten with the outcome of the match
+     * @return the result parameter
+     */
+    public <OfferT extends Offer> MutableMatchResult fill(OfferT passive, ITransactionListener<OfferT> transactionListener, MutableMatchResult result) {
+        assert side != passive.getSide() : "Not executing against offer of opposite side";
+        assert !isFilled() && !passive.isFilled();
+
+        result.reset();
+        if (!rateMatch(passive))
+            return result;
+
+        result.rateMatch = true;
+        Offer p = passive;
+        if (isFixedPoint(p)) {
+            long executed = Math.min(fixedAmount, p.fixedAmount);
+            result.fixedAmount = executed;
+            // reuse the amount of the offer being filled if it's still known
+            if (executed == p.fixedAmount && p.amount != null)
+                result.amount = p.amount;
+            else if (executed == fixedAmount && amount != null)
+                result.amount = amount;
+            else
+                result.amount = fixedPoint.fromAmount(executed);
+            transactionListener.notifyTransaction(result.amount, passive.getRate().getValue(), (OfferT) this);
+
+            reduce(executed);
+            p.reduce(executed);
+        } else {
+            BigDecimal activeAmount = getAmount();
+            BigDecimal passiveAmount = passive.getAmount();
+            BigDecimal executed = activeAmount.compareTo(passiveAmount) <= 0 ? activeAmount : passiveAmount;
+            result.amount = executed;
+            transactionListener.notifyTransaction(executed, passive.getRate().getValue(), (OfferT) this);
+
+            amount = activeAmount.subtract(executed);
+            p.amount = passiveAmount.subtract(executed);
+        }
+
+        result.activeFilled = isFilled();
+        result.passiveFilled = passive.isFilled();
+        return result;
+    }
+
+    /**
+     * Prevent a self-trade of offers of the same owner: reduce the amounts of both offers in place by the smaller of them,
+     * as {@link #fill(Offer, ITransactionListener, MutableMatchResult)} would, but without a transaction.
+     * The reduction is taken off the original amounts too, so it's not counted as filled.
+     *
+     * @param result holder overwritten with the reduced amount and the offers reduced to nothing
+     * @return the result parameter
+     */
+    public MutableMatchResult decrement(Offer passive, MutableMatchResult result) {
+        assert side != passive.getSide() : "Not executing against offer of opposite side";
+        assert !isFilled() && !passive.isFilled();
+
+        result.reset();
+        result.rateMatch = true;
+        if (isFixedPoint(passive)) {
+            long reduced = Math.min(fixedAmount, passive.fixedAmount);
+            result.fixedAmount = reduced;
+            result.amount = fixedPoint.fromAmount(reduced);
+            reduce(reduced);
+            passive.reduce(reduced);
+            fixedOriginalAmount -= reduced;
+            passive.fixedOriginalAmount -= reduced;
+        } else {
+            BigDecimal activeAmount = getAmount();
+            BigDecimal passiveAmount = passive.getAmount();
+            BigDecimal reduced = activeAmount.compareTo(passiveAmount) <= 0 ? activeAmount : passiveAmount;
+            result.amount = reduced;
+            amount = activeAmount.subtract(reduced);
+            passive.amount = passiveAmount.subtract(reduced);
+        }
+        // null for a fixed-point remainder, whose original amount is only kept in fixed point
+        if (originalAmount != null)
+            originalAmount = originalAmount.subtract(result.amount);
+        if (passive.originalAmount != null)
+            passive.originalAmount = passive.originalAmount.subtract(result.amount);
+
+        result.activeFilled = isFilled();
+        result.passiveFilled = passive.isFilled();
+        return result;
+    }
+
+    private void reduce(long executed) {
+        fixedAmount -= executed;
+        // BigDecimal amount is recreated on request
+        amount = null;
+    }
+
+    /**
+     * @return true if no amount of this offer remains after in-place matching
+     */
+    public boolean isFilled() {
+        return fixedPoint == null ? amount.signum() == 0 : fixedAmount == 0;
+    }
+
+    private boolean isFixedPoint(Offer passive) {
+        return fixedPoint != null && fixedPoint.equals(passive.fixedPoint);
+    }
+
     boolean rateMatch(Offer passive) {
         assert side != passive.side;
         return rate.compareTo(passive.rate) * side.orderSignum <= 0;
@@ -99,7 +629,7 @@ public class Offer {
     @Override
     public String toString() {
         return side
-                + " " + amount
+                + " " + getAmount()
                 + "@" + rate
                 ;
     }
@@ -108,7 +638,7 @@ public class Offer {
     public int hashCode() {
         return Objects.hash(
                 side,
-                amount,
+                getAmount(),
                 rate
         );
     }
@@ -123,7 +653,7 @@ public class Offer {
     private boolean equals(Offer o) {
         return
                 side == o.side
-                        && amount.equals(o.amount)
+                        && getAmount().equals(o.getAmount())
                         && rate.equals(o.rate)
                 ;
     }
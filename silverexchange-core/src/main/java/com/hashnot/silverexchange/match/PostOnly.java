@@ -0,0 +1,17 @@
+package com.hashnot.silverexchange.match;
+
+/**
+ * What happens to a post-only offer which would execute against the order book when it's posted
+ */
+public enum PostOnly {
+    /**
+     * The offer is returned unexecuted
+     */
+    REJECT,
+
+    /**
+     * The rate is moved one tick, a unit of the price scale, behind the best opposite rate and the offer rests in the order book.
+     * Only in fixed-point mode, which defines the price scale; otherwise the offer is rejected.
+     */
+    REPRICE
+}
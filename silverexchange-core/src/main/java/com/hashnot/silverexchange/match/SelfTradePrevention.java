@@ -0,0 +1,21 @@
+package com.hashnot.silverexchange.match;
+
+/**
+ * What happens when an active offer would execute against a passive offer of the same owner. Decided by the active offer.
+ */
+public enum SelfTradePrevention {
+    /**
+     * The remainder of the active offer is cancelled, the passive offer stays in the order book
+     */
+    CANCEL_NEWEST,
+
+    /**
+     * The passive offer is removed from the order book and the active one executes further
+     */
+    CANCEL_OLDEST,
+
+    /**
+     * Both offers are reduced by the smaller of their amounts without a transaction, the one reduced to nothing is cancelled
+     */
+    DECREMENT
+}
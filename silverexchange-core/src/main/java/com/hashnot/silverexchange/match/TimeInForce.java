@@ -0,0 +1,35 @@
+package com.hashnot.silverexchange.match;
+
+/**
+ * How long an offer stays active
+ */
+public enum TimeInForce {
+    /**
+     * Good till cancelled: the remainder rests in the order book until it's filled or cancelled
+     */
+    GTC(true),
+
+    /**
+     * Immediate or cancel: executed as far as possible, the remainder is cancelled
+     */
+    IOC(false),
+
+    /**
+     * Fill or kill: executed in full or not at all
+     */
+    FOK(false),
+
+    /**
+     * Good till date: as {@link #GTC}, but the remainder is cancelled at the expire time of the offer
+     */
+    GTD(true);
+
+    /**
+     * True if the remainder of a limit offer rests in the order book
+     */
+    public final boolean rests;
+
+    TimeInForce(boolean rests) {
+        this.rests = rests;
+    }
+}
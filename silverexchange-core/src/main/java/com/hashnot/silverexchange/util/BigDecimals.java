@@ -1,10 +1,16 @@
 package com.hashnot.silverexchange.util;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 import static java.math.BigDecimal.ZERO;
 
 public class BigDecimals {
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte BYTES = 2;
+
     private BigDecimals() {
         // util class
     }
@@ -15,4 +21,40 @@ public class BigDecimals {
     public static boolean gtz(BigDecimal num) {
         return num.compareTo(ZERO) > 0;
     }
+
+    /**
+     * Write the number in binary form: scale, then the unscaled value as a long, or as bytes if it doesn't fit in a long.
+     * A null is written as a single byte.
+     */
+    public static void write(BigDecimal num, ByteBuffer buffer) {
+        if (num == null) {
+            buffer.put(NULL);
+            return;
+        }
+
+        BigInteger unscaled = num.unscaledValue();
+        if (unscaled.bitLength() < Long.SIZE) {
+            buffer.put(LONG).putInt(num.scale()).putLong(unscaled.longValue());
+        } else {
+            byte[] bytes = unscaled.toByteArray();
+            buffer.put(BYTES).putInt(num.scale()).putInt(bytes.length).put(bytes);
+        }
+    }
+
+    /**
+     * @return number written by {@link #write(BigDecimal, ByteBuffer)}
+     */
+    public static BigDecimal read(ByteBuffer buffer) {
+        byte type = buffer.get();
+        if (type == NULL)
+            return null;
+
+        int scale = buffer.getInt();
+        if (type == LONG)
+            return BigDecimal.valueOf(buffer.getLong(), scale);
+
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
 }
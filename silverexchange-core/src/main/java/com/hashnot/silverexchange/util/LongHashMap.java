@@ -0,0 +1,128 @@
+package com.hashnot.silverexchange.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash map of primitive long keys, without boxing the keys or allocating an entry per mapping.
+ * <p>
+ * Open addressing with linear probing in power-of-2 arrays kept at most half full; removal shifts the following entries back,
+ * so there are no tombstones and lookups never degrade after many removals. Null values aren't supported.
+ */
+public final class LongHashMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private V[] values;
+    private int mask;
+    private int size;
+
+    public LongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of mappings that fit without resizing
+     */
+    public LongHashMap(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Negative size");
+
+        allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(long key) {
+        // Fibonacci hashing spreads sequential keys, the common case of ids, over the whole table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32);
+    }
+
+    private int slot(long key) {
+        int i = hash(key) & mask;
+        while (values[i] != null && keys[i] != key)
+            i = i + 1 & mask;
+        return i;
+    }
+
+    /**
+     * @return value of the key or null if the map doesn't contain it
+     */
+    public V get(long key) {
+        return values[slot(key)];
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value of the key or null if there was none
+     */
+    public V put(long key, V value) {
+        assert value != null;
+
+        int i = slot(key);
+        V previous = values[i];
+        keys[i] = key;
+        values[i] = value;
+        if (previous == null && ++size > values.length / 2)
+            rehash(values.length * 2);
+        return previous;
+    }
+
+    /**
+     * @return the removed value or null if the map didn't contain the key
+     */
+    public V remove(long key) {
+        int i = slot(key);
+        V previous = values[i];
+        if (previous == null)
+            return null;
+
+        // shift back entries of the following run that would be unreachable across the emptied slot
+        int empty = i;
+        for (int j = i + 1 & mask; values[j] != null; j = j + 1 & mask) {
+            int home = hash(keys[j]) & mask;
+            if ((j - home & mask) >= (j - empty & mask)) {
+                keys[empty] = keys[j];
+                values[empty] = values[j];
+                empty = j;
+            }
+        }
+        values[empty] = null;
+        size--;
+        return previous;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        V[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+}
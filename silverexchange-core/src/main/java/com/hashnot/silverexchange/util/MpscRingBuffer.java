@@ -0,0 +1,94 @@
+package com.hashnot.silverexchange.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producer threads and a single consumer thread.
+ * <p>
+ * Each slot has a sequence number telling whether it's free for the producer of the given position or published for the consumer,
+ * producers claim positions with a CAS on the tail.
+ */
+public class MpscRingBuffer<E> {
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Accessed only by the consumer
+     */
+    private long head;
+
+    /**
+     * @param capacity a power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a positive power of 2");
+
+        mask = capacity - 1;
+        elements = new Object[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++)
+            sequences.set(i, i);
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    public boolean offer(E e) {
+        assert e != null;
+
+        long position;
+        int index;
+        while (true) {
+            position = tail.get();
+            index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1))
+                    break;
+            } else if (diff < 0) {
+                // the consumer didn't free the slot since the previous lap
+                return false;
+            }
+            // else another producer claimed the position, retry
+        }
+
+        elements[index] = e;
+        // publish
+        sequences.set(index, position + 1);
+        return true;
+    }
+
+    /**
+     * May be called only by the consumer thread
+     *
+     * @return the oldest element or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1)
+            return null;
+
+        E e = (E) elements[index];
+        elements[index] = null;
+        // free the slot for the next lap
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        return e;
+    }
+
+    /**
+     * May be called only by the consumer thread
+     */
+    public boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
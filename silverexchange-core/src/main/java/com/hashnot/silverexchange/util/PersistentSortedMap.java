@@ -0,0 +1,233 @@
+package com.hashnot.silverexchange.util;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable sorted map. Modifications return a new map sharing all but O(log n) nodes with the original one,
+ * so any version can be safely read by other threads while newer versions are being created.
+ * <p>
+ * Implemented as a treap with path copying; nodes have random priorities, which keeps the tree balanced in expectation.
+ */
+public final class PersistentSortedMap<K, V> implements Iterable<V> {
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+    private final int size;
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int priority;
+        final Node<K, V> left;
+        final Node<K, V> right;
+
+        Node(K key, V value, int priority, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+        }
+
+        Node<K, V> withLeft(Node<K, V> left) {
+            return left == this.left ? this : new Node<>(key, value, priority, left, right);
+        }
+
+        Node<K, V> withRight(Node<K, V> right) {
+            return right == this.right ? this : new Node<>(key, value, priority, left, right);
+        }
+    }
+
+    private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root, int size) {
+        this.comparator = comparator;
+        this.root = root;
+        this.size = size;
+    }
+
+    public static <K, V> PersistentSortedMap<K, V> empty(Comparator<? super K> comparator) {
+        assert comparator != null;
+
+        return new PersistentSortedMap<>(comparator, null, 0);
+    }
+
+    /**
+     * @return value of the key or null if the map doesn't contain it
+     */
+    public V get(K key) {
+        Node<K, V> n = find(key);
+        return n == null ? null : n.value;
+    }
+
+    private Node<K, V> find(K key) {
+        Node<K, V> n = root;
+        while (n != null) {
+            int c = comparator.compare(key, n.key);
+            if (c == 0)
+                return n;
+            n = c < 0 ? n.left : n.right;
+        }
+        return null;
+    }
+
+    /**
+     * @return map with the value of the key set or replaced
+     */
+    public PersistentSortedMap<K, V> put(K key, V value) {
+        assert key != null;
+
+        if (find(key) != null)
+            return new PersistentSortedMap<>(comparator, replace(root, key, value), size);
+        else
+            return new PersistentSortedMap<>(comparator, insert(root, key, value, ThreadLocalRandom.current().nextInt()), size + 1);
+    }
+
+    private Node<K, V> replace(Node<K, V> n, K key, V value) {
+        int c = comparator.compare(key, n.key);
+        if (c == 0)
+            return new Node<>(key, value, n.priority, n.left, n.right);
+        else if (c < 0)
+            return n.withLeft(replace(n.left, key, value));
+        else
+            return n.withRight(replace(n.right, key, value));
+    }
+
+    /**
+     * Insert a key not present in the subtree
+     */
+    private Node<K, V> insert(Node<K, V> n, K key, V value, int priority) {
+        if (n == null)
+            return new Node<>(key, value, priority, null, null);
+
+        if (priority > n.priority) {
+            Node<K, V>[] split = split(n, key);
+            return new Node<>(key, value, priority, split[0], split[1]);
+        } else if (comparator.compare(key, n.key) < 0) {
+            return n.withLeft(insert(n.left, key, value, priority));
+        } else {
+            return n.withRight(insert(n.right, key, value, priority));
+        }
+    }
+
+    /**
+     * @return subtrees of keys lower and higher than the key, which is not present in the subtree
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node<K, V>[] split(Node<K, V> n, K key) {
+        if (n == null)
+            return new Node[2];
+
+        if (comparator.compare(key, n.key) < 0) {
+            Node<K, V>[] result = split(n.left, key);
+            result[1] = n.withLeft(result[1]);
+            return result;
+        } else {
+            Node<K, V>[] result = split(n.right, key);
+            result[0] = n.withRight(result[0]);
+            return result;
+        }
+    }
+
+    /**
+     * @return map without the key, or this map if it doesn't contain the key
+     */
+    public PersistentSortedMap<K, V> remove(K key) {
+        if (find(key) == null)
+            return this;
+
+        return new PersistentSortedMap<>(comparator, remove(root, key), size - 1);
+    }
+
+    private Node<K, V> remove(Node<K, V> n, K key) {
+        int c = comparator.compare(key, n.key);
+        if (c == 0)
+            return merge(n.left, n.right);
+        else if (c < 0)
+            return n.withLeft(remove(n.left, key));
+        else
+            return n.withRight(remove(n.right, key));
+    }
+
+    /**
+     * @param low subtree of keys all lower than keys of the high subtree
+     */
+    private Node<K, V> merge(Node<K, V> low, Node<K, V> high) {
+        if (low == null)
+            return high;
+        if (high == null)
+            return low;
+
+        if (low.priority > high.priority)
+            return low.withRight(merge(low.right, high));
+        else
+            return high.withLeft(merge(low, high.left));
+    }
+
+    /**
+     * @return value of the lowest key or null if the map is empty
+     */
+    public V first() {
+        Node<K, V> n = root;
+        if (n == null)
+            return null;
+        while (n.left != null)
+            n = n.left;
+        return n.value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return iterator of values in order of their keys
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private final Deque<Node<K, V>> path = new ArrayDeque<>();
+
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(Node<K, V> n) {
+                for (; n != null; n = n.left)
+                    path.push(n);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public V next() {
+                if (path.isEmpty())
+                    throw new NoSuchElementException();
+
+                Node<K, V> n = path.pop();
+                pushLeft(n.right);
+                return n.value;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (V value : this) {
+            if (result.length() > 1)
+                result.append(", ");
+            result.append(value);
+        }
+        return result.append(']').toString();
+    }
+}
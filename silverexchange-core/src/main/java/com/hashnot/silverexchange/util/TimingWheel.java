@@ -0,0 +1,215 @@
+package com.hashnot.silverexchange.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: timers of non-negative deadlines, in ticks of any unit, scheduled and cancelled in constant time
+ * and expired in constant amortized time each, however many of them there are.
+ * <p>
+ * Each level has 64 slots, a slot of level n spanning 64<sup>n</sup> ticks. A timer is put in the lowest level whose span covers
+ * its deadline, and moved to lower levels as the time approaches it. Occupied slots are marked in a bitmap of each level,
+ * so advancing the time jumps straight to the next occupied slot instead of visiting every tick.
+ * <p>
+ * Timers of the same tick expire in order of scheduling. Not thread safe.
+ */
+public final class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+
+    public static final class Timer<T> {
+        private final long deadline;
+        private final T value;
+        private Timer<T> prev;
+        private Timer<T> next;
+
+        /**
+         * Index of the slot holding the timer, -1 once it expired or was cancelled
+         */
+        private int slot = -1;
+
+        private Timer(long deadline, T value) {
+            this.deadline = deadline;
+            this.value = value;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return true until the timer expires or is cancelled
+         */
+        public boolean isScheduled() {
+            return slot >= 0;
+        }
+    }
+
+    /**
+     * Heads of the lists of timers of each slot of each level
+     */
+    private final Timer<T>[] heads = newTimers(LEVELS * SLOTS);
+    private final Timer<T>[] tails = heads.clone();
+    private final long[] occupied = new long[LEVELS];
+
+    /**
+     * Time up to which all timers have expired
+     */
+    private long time;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Timer<T>[] newTimers(int size) {
+        return new Timer[size];
+    }
+
+    /**
+     * @param time current time, in ticks
+     */
+    public TimingWheel(long time) {
+        if (time < 0)
+            throw new IllegalArgumentException("Negative time");
+
+        this.time = time;
+    }
+
+    /**
+     * @param deadline time of expiry, in ticks; a timer of a past deadline expires on the next advance
+     */
+    public Timer<T> schedule(long deadline, T value) {
+        Timer<T> timer = new Timer<>(deadline, value);
+        place(timer, Math.max(deadline, time + 1));
+        size++;
+        return timer;
+    }
+
+    /**
+     * @return false if the timer has already expired or was cancelled
+     */
+    public boolean cancel(Timer<T> timer) {
+        if (!timer.isScheduled())
+            return false;
+
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    /**
+     * Move the time forward, expiring all timers of deadlines up to the given time in order of their deadlines.
+     * The consumer may schedule and cancel timers.
+     *
+     * @return number of the expired timers
+     */
+    public int advance(long now, Consumer<? super T> expired) {
+        int count = 0;
+        while (size > 0) {
+            long next = nextTick();
+            if (next > now)
+                break;
+
+            time = next;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                int shift = level * SLOT_BITS;
+                if ((time & (1L << shift) - 1) == 0)
+                    cascade(level * SLOTS + (int) (time >>> shift & SLOTS - 1));
+            }
+
+            Timer<T> timer;
+            while ((timer = heads[(int) (time & SLOTS - 1)]) != null) {
+                unlink(timer);
+                size--;
+                count++;
+                expired.accept(timer.value);
+            }
+        }
+
+        if (now > time)
+            time = now;
+        return count;
+    }
+
+    /**
+     * @return the earliest tick after the current time when a slot of any level is due
+     */
+    private long nextTick() {
+        long result = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            long bitmap = occupied[level];
+            if (bitmap == 0)
+                continue;
+
+            int shift = level * SLOT_BITS;
+            long current = time >>> shift;
+            // slots are visited in a circle, starting after the current one
+            int distance = Long.numberOfTrailingZeros(Long.rotateRight(bitmap, (int) (current + 1 & SLOTS - 1)));
+            result = Math.min(result, current + 1 + distance << shift);
+        }
+        return result;
+    }
+
+    /**
+     * Move timers of the slot to lower levels, relative to the current time
+     */
+    private void cascade(int slot) {
+        Timer<T> timer = heads[slot];
+        while (timer != null) {
+            Timer<T> next = timer.next;
+            unlink(timer);
+            place(timer, Math.max(timer.deadline, time));
+            timer = next;
+        }
+    }
+
+    /**
+     * @param at tick when the timer expires, not earlier than the current time
+     */
+    private void place(Timer<T> timer, long at) {
+        long delta = at - time;
+        int level = delta < SLOTS ? 0 : (63 - Long.numberOfLeadingZeros(delta)) / SLOT_BITS;
+        int index = (int) (at >>> level * SLOT_BITS & SLOTS - 1);
+        int slot = level * SLOTS + index;
+
+        timer.slot = slot;
+        timer.prev = tails[slot];
+        timer.next = null;
+        if (tails[slot] == null)
+            heads[slot] = timer;
+        else
+            tails[slot].next = timer;
+        tails[slot] = timer;
+        occupied[level] |= 1L << index;
+    }
+
+    private void unlink(Timer<T> timer) {
+        int slot = timer.slot;
+        if (timer.prev == null)
+            heads[slot] = timer.next;
+        else
+            timer.prev.next = timer.next;
+        if (timer.next == null)
+            tails[slot] = timer.prev;
+        else
+            timer.next.prev = timer.prev;
+
+        if (heads[slot] == null)
+            occupied[slot / SLOTS] &= ~(1L << slot % SLOTS);
+        timer.prev = timer.next = null;
+        timer.slot = -1;
+    }
+
+    /**
+     * @return time up to which all timers have expired
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,186 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.TestModelFactory.IdOffer;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.match.TimeInForce;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.hashnot.silverexchange.TestModelFactory.*;
+import static com.hashnot.silverexchange.util.BigDecimalsTest.*;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointTest {
+    private final Path directory;
+
+    CheckpointTest() throws IOException {
+        directory = Files.createTempDirectory("checkpoint");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(p);
+        }
+    }
+
+    private static List<Integer> ids(Exchange<?, IdOffer> exchange, Side side) {
+        return exchange.getAllOffers().get(side).stream().map(o -> o.id).collect(Collectors.toList());
+    }
+
+    @Test
+    void testRestoreKeepsOrderAndRemainingAmounts() throws IOException {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        x.post(new IdOffer(1, Side.ASK, ONE, TWO));
+        x.post(new IdOffer(2, Side.ASK, ONE, TWO));
+        x.post(new IdOffer(3, Side.ASK, ONE, ONE));
+        x.post(new IdOffer(4, Side.BID, new BigDecimal("1.5"), TWO));
+        x.post(new IdOffer(5, Side.BID, ONE, ONE));
+
+        Path file = directory.resolve("checkpoint.dat");
+        ByteBuffer image = Checkpoint.capture(x, 42, ID_CODEC);
+        assertEquals(42, Checkpoint.getSequence(image));
+        Checkpoint.write(image, file);
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        assertEquals(42, Checkpoint.restore(file, restored, ID_CODEC));
+
+        assertEquals(asList(1, 2), ids(restored, Side.ASK));
+        assertEquals(asList(5), ids(restored, Side.BID));
+        IdOffer partial = restored.getOffer(1);
+        assertEquals(new BigDecimal("0.5"), partial.getAmount());
+        assertEquals(ONE, partial.getOriginalAmount());
+        assertEquals(x.getDepth(Side.ASK, 10), restored.getDepth(Side.ASK, 10));
+    }
+
+    @Test
+    void testRestoreKeepsGoodTillDate() throws IOException {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        IdOffer gtd = new IdOffer(1, Side.ASK, ONE, TWO);
+        gtd.setGoodTillDate(1000);
+        x.post(gtd);
+        x.post(new IdOffer(2, Side.ASK, ONE, TWO));
+
+        Path file = directory.resolve("checkpoint.dat");
+        Checkpoint.write(Checkpoint.capture(x, 2, ID_CODEC), file);
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        Checkpoint.restore(file, restored, ID_CODEC);
+
+        assertEquals(TimeInForce.GTD, restored.getOffer(1).getTimeInForce());
+        assertEquals(1000, restored.getOffer(1).getExpireTime());
+        assertEquals(TimeInForce.GTC, restored.getOffer(2).getTimeInForce());
+        assertEquals(asList(restored.getOffer(1)), restored.expire(1000));
+        assertEquals(asList(2), ids(restored, Side.ASK));
+    }
+
+    @Test
+    void testRestoreKeepsStopOffers() throws IOException {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        IdOffer first = new IdOffer(1, Side.BID, ONE, THREE);
+        first.setStopPrice(TWO);
+        IdOffer second = new IdOffer(2, Side.BID, ONE, THREE);
+        second.setStopPrice(ONE);
+        IdOffer third = new IdOffer(3, Side.BID, ONE, THREE);
+        third.setStopPrice(ONE);
+        x.post(first);
+        x.post(second);
+        x.post(third);
+
+        Path file = directory.resolve("checkpoint.dat");
+        Checkpoint.write(Checkpoint.capture(x, 3, ID_CODEC), file);
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        Checkpoint.restore(file, restored, ID_CODEC);
+
+        assertEquals(asList(2, 3, 1), restored.getAllStopOffers().get(Side.BID).stream().map(o -> o.id).collect(Collectors.toList()));
+        assertEquals(TWO, restored.getStopOffer(1).getStopPrice());
+        assertTrue(OrderBook.isEmpty(restored.getAllOffers()));
+    }
+
+    @Test
+    void testRestoreKeepsIcebergSlices() throws IOException {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        IdOffer iceberg = new IdOffer(1, Side.ASK, new BigDecimal(5), ONE);
+        iceberg.setDisplayAmount(TWO);
+        x.post(iceberg);
+        x.post(new IdOffer(2, Side.BID, new BigDecimal("0.5"), ONE));
+
+        Path file = directory.resolve("checkpoint.dat");
+        Checkpoint.write(Checkpoint.capture(x, 2, ID_CODEC), file);
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        Checkpoint.restore(file, restored, ID_CODEC);
+
+        IdOffer offer = restored.getOffer(1);
+        assertEquals(TWO, offer.getDisplayAmount());
+        assertEquals(new BigDecimal("1.5"), offer.getAmount());
+        assertEquals(THREE, offer.getHiddenAmount());
+        assertEquals(x.getDepth(Side.ASK, 10), restored.getDepth(Side.ASK, 10));
+    }
+
+    @Test
+    void testRestoreInFixedPointMode() throws IOException {
+        Exchange<Transaction, IdOffer> x = new Exchange<>((amount, rate, offer) -> tx(amount, rate), o -> o.id, new FixedPoint(2, 2));
+        x.post(new IdOffer(1, Side.ASK, ONE, TWO));
+        x.post(new IdOffer(2, Side.BID, new BigDecimal("0.25"), TWO));
+
+        Path file = directory.resolve("checkpoint.dat");
+        Checkpoint.write(Checkpoint.capture(x, 2, ID_CODEC), file);
+
+        Exchange<Transaction, IdOffer> restored = new Exchange<>((amount, rate, offer) -> tx(amount, rate), o -> o.id, new FixedPoint(2, 2));
+        Checkpoint.restore(file, restored, ID_CODEC);
+
+        assertEquals(0, new BigDecimal("0.75").compareTo(restored.getOffer(1).getAmount()));
+        assertEquals(0, new BigDecimal("0.25").compareTo(restored.getOffer(1).getFilledAmount()));
+    }
+
+    @Test
+    void testRestoreWithJournalTail() throws Exception {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        Path file = directory.resolve("checkpoint.dat");
+        Path journalDirectory = directory.resolve("journal");
+        int segmentSize = 74;
+        try (Journal<IdOffer> journal = new Journal<>(journalDirectory, segmentSize, ID_CODEC)) {
+            x.setJournal(journal);
+            x.post(new IdOffer(1, Side.BID, ONE, ONE));
+            x.post(new IdOffer(2, Side.BID, ONE, ONE));
+            x.post(new IdOffer(3, Side.BID, ONE, ONE));
+            Checkpoint.write(Checkpoint.capture(x, journal.getSequence(), ID_CODEC), file);
+            journal.compact(journal.getSequence());
+            x.post(new IdOffer(4, Side.BID, ONE, ONE));
+            x.cancel(1);
+        }
+
+        try (Stream<Path> segments = Files.list(journalDirectory)) {
+            // segments fit one post each, those of the first two posts are deleted
+            assertEquals(2, segments.count());
+        }
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(journalDirectory, segmentSize, ID_CODEC)) {
+            assertEquals(5, journal.replay(restored, Checkpoint.restore(file, restored, ID_CODEC)));
+        }
+        assertEquals(asList(2, 3, 4), ids(restored, Side.BID));
+    }
+
+    @Test
+    void testNotACheckpoint() throws IOException {
+        Path file = directory.resolve("checkpoint.dat");
+        Files.write(file, new byte[]{1, 2});
+
+        assertThrows(IllegalArgumentException.class, () -> Checkpoint.restore(file, idExchange(), ID_CODEC));
+    }
+}
@@ -1,20 +1,31 @@
 package com.hashnot.silverexchange;
 
+import com.hashnot.silverexchange.ext.IDepthListener;
 import com.hashnot.silverexchange.ext.ITransactionFactory;
 import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.match.TimeInForce;
 import com.hashnot.silverexchange.test.MockitoExtension;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.hashnot.silverexchange.OfferRate.market;
 import static com.hashnot.silverexchange.TestModelFactory.*;
+import static com.hashnot.silverexchange.util.BigDecimalsTest.THREE;
+import static com.hashnot.silverexchange.util.BigDecimalsTest.TWO;
 import static java.math.BigDecimal.ONE;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 
 @ExtendWith({MockitoExtension.class})
 class ExchangeTest {
@@ -61,8 +72,233 @@ class ExchangeTest {
         Exchange<Transaction, Offer> x = new Exchange<>(txFactory);
 
         x.post(ask(ONE, ONE));
-        x.post(bid(ONE, ONE));
+        Offer active = bid(ONE, ONE);
+        x.post(active);
+
+        Mockito.verify(txFactory).create(eq(ONE), eq(ONE), same(active));
+    }
+
+    @Test
+    void testCancel() {
+        Exchange<Transaction, Offer> x = Exchange.create();
+        Offer offer = ask(ONE, ONE);
+        x.post(offer);
+
+        assertSame(offer, x.getOffer(offer));
+        assertSame(offer, x.cancel(offer));
+        assertNull(x.getOffer(offer));
+        assertTrue(OrderBook.isEmpty(x.getAllOffers()));
+    }
+
+    @Test
+    void testFixedPointMode() {
+        Exchange<Transaction, Offer> x = Exchange.create(new FixedPoint(2, 2));
+        x.post(ask(ONE, ONE));
+        x.post(ask(ONE, TWO));
+        x.post(bid(new BigDecimal("1.5"), TWO));
+
+        assertEquals(asList(tx(ONE, ONE), tx(new BigDecimal("0.50"), TWO)), x.getAllTransactions());
+        assertEquals(0, new BigDecimal("0.5").compareTo(x.getAllOffers().get(Side.ASK).get(0).getAmount()));
+    }
+
+    @Test
+    void testFillOrKillInFixedPointMode() {
+        Exchange<Transaction, Offer> x = Exchange.create(new FixedPoint(2, 2));
+        x.post(ask(ONE, ONE));
+        x.post(ask(new BigDecimal("0.5"), TWO));
+
+        Offer tooLarge = bid(new BigDecimal("1.51"), TWO);
+        tooLarge.setTimeInForce(TimeInForce.FOK);
+        assertSame(tooLarge, x.post(tooLarge));
+        assertEquals(emptyList(), x.getAllTransactions());
+
+        Offer exact = bid(new BigDecimal("1.5"), TWO);
+        exact.setTimeInForce(TimeInForce.FOK);
+        assertNull(x.post(exact));
+        assertEquals(asList(tx(ONE, ONE), tx(new BigDecimal("0.5"), TWO)), x.getAllTransactions());
+    }
+
+    @Test
+    void testExpire() {
+        Exchange<Transaction, Offer> x = Exchange.create();
+        Offer offer = ask(ONE, ONE);
+        offer.setGoodTillDate(10);
+        x.post(offer);
+
+        assertEquals(emptyList(), x.expire(9));
+        assertEquals(singletonList(offer), x.expire(10));
+        assertTrue(OrderBook.isEmpty(x.getAllOffers()));
+    }
+
+    @Test
+    void testStopOffersTriggeredByTradePrices() {
+        Exchange<Transaction, Offer> x = Exchange.create();
+        Offer buyStop = bid(ONE, market());
+        buyStop.setStopPrice(TWO);
+        Offer sellStop = ask(ONE, market());
+        sellStop.setStopPrice(ONE);
+        assertNull(x.post(buyStop));
+        assertNull(x.post(sellStop));
+        assertEquals(asList(buyStop), x.getAllStopOffers().get(Side.BID));
+        assertSame(sellStop, x.getStopOffer(sellStop));
+
+        x.post(ask(ONE, ONE));
+        x.post(ask(ONE, TWO));
+        x.post(ask(ONE, THREE));
+        // the sweep trades at 1 and 2, the bid stop buys the ask at 3 and the ask stop finds no bids
+        x.post(bid(TWO, TWO));
+
+        assertEquals(asList(tx(ONE, ONE), tx(ONE, TWO), tx(ONE, THREE)), x.getAllTransactions());
+        assertNull(buyStop.getStopPrice());
+        assertNull(x.getStopOffer(buyStop));
+        assertTrue(OrderBook.isEmpty(x.getAllStopOffers()));
+        assertTrue(OrderBook.isEmpty(x.getAllOffers()));
+    }
+
+    @Test
+    void testStopOffersTriggerInCascade() {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        IdOffer first = new IdOffer(1, Side.BID, ONE, THREE);
+        first.setStopPrice(ONE);
+        IdOffer second = new IdOffer(2, Side.BID, ONE, THREE);
+        second.setStopPrice(TWO);
+        IdOffer cancelled = new IdOffer(3, Side.BID, ONE, THREE);
+        cancelled.setStopPrice(ONE);
+        x.post(first);
+        x.post(second);
+        x.post(cancelled);
+        assertSame(cancelled, x.cancel(3));
+        assertThrows(IllegalArgumentException.class, () -> x.post(new IdOffer(1, Side.ASK, ONE, ONE)));
+
+        x.post(new IdOffer(4, Side.ASK, ONE, ONE));
+        x.post(new IdOffer(5, Side.ASK, ONE, TWO));
+        x.post(new IdOffer(6, Side.ASK, ONE, TWO));
+        // the trade at 1 triggers the first stop, its trade at 2 the second one
+        x.post(new IdOffer(7, Side.BID, ONE, ONE));
+
+        assertEquals(asList(tx(ONE, ONE), tx(ONE, TWO), tx(ONE, TWO)), x.getAllTransactions());
+        assertTrue(OrderBook.isEmpty(x.getAllOffers()));
+        assertTrue(OrderBook.isEmpty(x.getAllStopOffers()));
+    }
+
+    @Test
+    void testTransactionRetentionAndListener() {
+        Exchange<Transaction, Offer> x = new Exchange<>((amount, rate, offer) -> new Transaction(amount, new TransactionRate(rate)), null, null, TransactionLog.last(1));
+        List<BigDecimal> streamed = new ArrayList<>();
+        x.addTransactionListener((amount, rate, offer) -> streamed.add(rate));
 
-        Mockito.verify(txFactory).create(eq(ONE), eq(ONE), eq(bid(ONE, ONE)));
+        x.post(ask(ONE, ONE));
+        x.post(ask(ONE, TWO));
+        x.post(bid(TWO, TWO));
+
+        assertEquals(singletonList(tx(ONE, TWO)), x.getAllTransactions());
+        assertEquals(asList(ONE, TWO), streamed);
+    }
+
+    @Test
+    void testDepthListeners() {
+        Exchange<Transaction, Offer> x = Exchange.create();
+        List<Long> first = new ArrayList<>();
+        List<Long> second = new ArrayList<>();
+        IDepthListener firstListener = (sequence, change, side, rate, amount, count) -> first.add(sequence);
+        x.addDepthListener(firstListener);
+        x.addDepthListener((sequence, change, side, rate, amount, count) -> second.add(sequence));
+
+        x.post(ask(ONE, ONE));
+        x.removeDepthListener(firstListener);
+        x.post(ask(ONE, TWO));
+
+        assertEquals(singletonList(1L), first);
+        assertEquals(asList(1L, 2L), second);
+        assertEquals(2, x.getDepthSequence());
+    }
+
+    @Test
+    void testSnapshotPublishedAfterCommands() {
+        Exchange<Transaction, Offer> x = Exchange.create();
+        BookSnapshot empty = x.getSnapshot();
+        Offer offer = ask(ONE, TWO);
+
+        x.post(offer);
+        BookSnapshot posted = x.getSnapshot();
+        assertNull(x.cancel(ask(ONE, ONE)));
+        assertSame(posted, x.getSnapshot());
+        x.cancel(offer);
+
+        assertNull(empty.getBestRate(Side.ASK));
+        assertEquals(new OfferRate(TWO), posted.getBestRate(Side.ASK));
+        assertNull(x.getSnapshot().getBestRate(Side.ASK));
+        assertEquals(2, x.getSnapshot().getSequence());
+    }
+
+    @Test
+    void testTradeStatsPublishedAfterCommands() {
+        Exchange<Transaction, Offer> x = Exchange.create();
+        TradeStats empty = x.getPublishedTradeStats();
+
+        x.post(ask(ONE, TWO));
+        assertSame(empty, x.getPublishedTradeStats());
+        x.post(bid(ONE, TWO));
+        TradeStats traded = x.getPublishedTradeStats();
+        x.post(ask(ONE, THREE));
+
+        assertNull(empty.getLast());
+        assertEquals(TWO, traded.getLast());
+        assertEquals(1, traded.getCount());
+        assertSame(traded, x.getPublishedTradeStats());
+        assertNotSame(x.getTradeStats(), traded);
+    }
+
+    @Test
+    void testPostAll() {
+        Exchange<Transaction, Offer> x = Exchange.create();
+        Offer market = bid(TWO, OfferRate.market());
+
+        Offer[] remainders = x.postAll(asList(ask(ONE, ONE), bid(ONE, TWO), ask(ONE, TWO), market));
+
+        assertArrayEquals(new Offer[]{null, null, null, market}, remainders);
+        assertEquals(asList(tx(ONE, ONE), tx(ONE, TWO)), x.getAllTransactions());
+        assertEquals(4, x.getSnapshot().getSequence());
+    }
+
+    @Test
+    void testPostAllRejectsBatchWithTooPreciseOffer() {
+        Exchange<Transaction, Offer> x = Exchange.create(new FixedPoint(2, 2));
+
+        assertThrows(IllegalArgumentException.class, () -> x.postAll(asList(ask(ONE, ONE), ask(new BigDecimal("0.001"), ONE))));
+        assertTrue(OrderBook.isEmpty(x.getAllOffers()));
+    }
+
+    @Test
+    void testFixedPointModeRejectsTooPreciseOffer() {
+        Exchange<Transaction, Offer> x = Exchange.create(new FixedPoint(2, 2));
+
+        assertThrows(IllegalArgumentException.class, () -> x.post(ask(new BigDecimal("0.001"), ONE)));
+        assertTrue(OrderBook.isEmpty(x.getAllOffers()));
+    }
+
+    @Test
+    void testLongIds() {
+        Exchange<Transaction, IdOffer> x = Exchange.withLongIds((amount, rate, offer) -> tx(amount, rate), o -> o.id, null, TransactionLog.unbounded());
+        IdOffer ask1 = new IdOffer(1, Side.ASK, ONE, ONE);
+        IdOffer ask2 = new IdOffer(2, Side.ASK, ONE, TWO);
+        x.post(ask1);
+        x.post(ask2);
+        x.post(new IdOffer(3, Side.ASK, ONE, TWO));
+
+        assertThrows(IllegalArgumentException.class, () -> x.post(new IdOffer(1, Side.BID, ONE, ONE)));
+        assertSame(ask1, x.getOfferLong(1));
+        // boxed ids of any numeric type are accepted
+        assertSame(ask2, x.getOffer(2));
+        assertNull(x.getOffer("2"));
+
+        // a filled passive offer is removed from the index
+        x.post(new IdOffer(4, Side.BID, ONE, ONE));
+        assertNull(x.getOfferLong(1));
+        assertNull(x.cancelLong(1));
+
+        assertSame(ask2, x.cancelLong(2));
+        assertNotNull(x.cancel(3L));
+        assertTrue(OrderBook.isEmpty(x.getAllOffers()));
     }
 }
@@ -0,0 +1,48 @@
+package com.hashnot.silverexchange;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointTest {
+    private final FixedPoint fp = new FixedPoint(2, 4);
+
+    @Test
+    void testToFixedPoint() {
+        assertEquals(123, fp.toPrice(new BigDecimal("1.23")));
+        assertEquals(100, fp.toPrice(BigDecimal.ONE));
+        assertEquals(12300, fp.toAmount(new BigDecimal("1.23")));
+    }
+
+    @Test
+    void testFromFixedPoint() {
+        assertEquals(new BigDecimal("1.23"), fp.fromPrice(123));
+        assertEquals(new BigDecimal("0.0123"), fp.fromAmount(123));
+    }
+
+    @Test
+    void testTooManyDecimalPlacesFails() {
+        assertThrows(IllegalArgumentException.class, () -> fp.toPrice(new BigDecimal("1.234")));
+        assertEquals(123, fp.toPrice(new BigDecimal("1.2300")));
+    }
+
+    @Test
+    void testOverflowFails() {
+        assertThrows(IllegalArgumentException.class, () -> fp.toAmount(new BigDecimal(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void testNegativeScaleFails() {
+        assertThrows(IllegalArgumentException.class, () -> new FixedPoint(-1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new FixedPoint(0, -1));
+    }
+
+    @Test
+    void testEquals() {
+        assertEquals(new FixedPoint(2, 4), fp);
+        assertEquals(new FixedPoint(2, 4).hashCode(), fp.hashCode());
+        assertNotEquals(new FixedPoint(4, 2), fp);
+    }
+}
@@ -0,0 +1,328 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.TestModelFactory.IdOffer;
+import com.hashnot.silverexchange.match.PostOnly;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.match.TimeInForce;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.hashnot.silverexchange.TestModelFactory.*;
+import static com.hashnot.silverexchange.util.BigDecimalsTest.*;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    private static final int SEGMENT_SIZE = 1 << 16;
+
+    private final Path directory;
+
+    JournalTest() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(p);
+        }
+    }
+
+    private static List<Integer> ids(Exchange<?, IdOffer> exchange, Side side) {
+        return exchange.getAllOffers().get(side).stream().map(o -> o.id).collect(Collectors.toList());
+    }
+
+    @Test
+    void testReplayRebuildsOrderBook() throws Exception {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            x.setJournal(journal);
+            x.post(new IdOffer(1, Side.ASK, ONE, TWO));
+            x.post(new IdOffer(2, Side.ASK, ONE, THREE));
+            x.post(new IdOffer(3, Side.BID, new BigDecimal("0.5"), TWO));
+            x.post(new IdOffer(4, Side.BID, ONE, ONE));
+            x.cancel(2);
+            assertEquals(5, journal.getSequence());
+        }
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            assertEquals(5, journal.getSequence());
+            assertEquals(5, journal.replay(restored, 0));
+        }
+
+        assertEquals(singletonList(1), ids(restored, Side.ASK));
+        assertEquals(singletonList(4), ids(restored, Side.BID));
+        assertEquals(0, new BigDecimal("0.5").compareTo(restored.getOffer(1).getAmount()));
+        assertEquals(x.getAllTransactions(), restored.getAllTransactions());
+    }
+
+    @Test
+    void testReplayKeepsTimeInForceAndExpiries() throws Exception {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            x.setJournal(journal);
+            IdOffer first = new IdOffer(1, Side.ASK, ONE, TWO);
+            first.setGoodTillDate(100);
+            x.post(first);
+            IdOffer second = new IdOffer(2, Side.ASK, ONE, THREE);
+            second.setGoodTillDate(200);
+            x.post(second);
+            IdOffer ioc = new IdOffer(3, Side.BID, TWO, ONE);
+            ioc.setTimeInForce(TimeInForce.IOC);
+            x.post(ioc);
+            x.expire(150);
+            // no record without expired offers
+            x.expire(160);
+            assertEquals(4, journal.getSequence());
+        }
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            assertEquals(4, journal.replay(restored, 0));
+        }
+
+        assertEquals(singletonList(2), ids(restored, Side.ASK));
+        assertTrue(restored.getAllOffers().get(Side.BID).isEmpty());
+        IdOffer second = restored.getOffer(2);
+        assertEquals(TimeInForce.GTD, second.getTimeInForce());
+        assertEquals(200, second.getExpireTime());
+        assertEquals(singletonList(second), restored.expire(200));
+    }
+
+    @Test
+    void testReplayAmends() throws Exception {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            x.setJournal(journal);
+            x.post(new IdOffer(1, Side.ASK, THREE, TWO));
+            x.post(new IdOffer(2, Side.ASK, ONE, TWO));
+            x.amend(1, TWO, null);
+            x.amend(2, ONE, new OfferRate(THREE));
+            // unknown ids and invalid amounts are recorded too, and ignored again
+            x.amend(3, ONE, null);
+            assertThrows(IllegalArgumentException.class, () -> x.amend(1, ZERO, null));
+        }
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            assertEquals(6, journal.replay(restored, 0));
+        }
+
+        assertEquals(asList(1, 2), ids(restored, Side.ASK));
+        assertEquals(TWO, restored.getOffer(1).getAmount());
+        assertEquals(new OfferRate(THREE), restored.getOffer(2).getRate());
+    }
+
+    @Test
+    void testReplayKeepsPostOnlyAndOwners() throws Exception {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            x.setJournal(journal);
+            IdOffer ask = new IdOffer(1, Side.ASK, ONE, TWO);
+            ask.setOwner(7);
+            x.post(ask);
+            IdOffer postOnly = new IdOffer(2, Side.BID, ONE, TWO);
+            postOnly.setPostOnly(PostOnly.REJECT);
+            x.post(postOnly);
+            IdOffer selfTrade = new IdOffer(3, Side.BID, ONE, TWO);
+            selfTrade.setOwner(7);
+            x.post(selfTrade);
+        }
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            assertEquals(3, journal.replay(restored, 0));
+        }
+
+        assertEquals(singletonList(1), ids(restored, Side.ASK));
+        assertTrue(restored.getAllOffers().get(Side.BID).isEmpty());
+        assertTrue(restored.getAllTransactions().isEmpty());
+        assertEquals(7, restored.getOffer(1).getOwner());
+    }
+
+    @Test
+    void testReplayTriggersStopOffers() throws Exception {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            x.setJournal(journal);
+            IdOffer triggered = new IdOffer(1, Side.BID, ONE, THREE);
+            triggered.setStopPrice(ONE);
+            x.post(triggered);
+            IdOffer pending = new IdOffer(2, Side.ASK, ONE, ONE);
+            pending.setStopPrice(new BigDecimal("0.5"));
+            x.post(pending);
+            x.post(new IdOffer(3, Side.ASK, ONE, ONE));
+            x.post(new IdOffer(4, Side.BID, ONE, ONE));
+        }
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            journal.replay(restored, 0);
+        }
+
+        assertEquals(singletonList(1), ids(restored, Side.BID));
+        assertEquals(0, new BigDecimal("0.5").compareTo(restored.getStopOffer(2).getStopPrice()));
+        assertEquals(x.getAllTransactions(), restored.getAllTransactions());
+    }
+
+    @Test
+    void testReopenedJournalContinuesSequence() throws Exception {
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            journal.appendPost(new IdOffer(1, Side.ASK, ONE, TWO));
+        }
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            assertEquals(2, journal.appendPost(new IdOffer(2, Side.ASK, ONE, TWO)));
+        }
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            assertEquals(2, journal.replay(restored, 0));
+        }
+        assertEquals(asList(1, 2), ids(restored, Side.ASK));
+    }
+
+    @Test
+    void testRemainsOfInterruptedRecordIgnored() throws Exception {
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            journal.appendPost(new IdOffer(1, Side.BID, ONE, ONE));
+        }
+
+        // a longer record interrupted by a crash, before its length was written
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow(AssertionError::new);
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            for (int i = Integer.BYTES + buffer.getInt(0) + Integer.BYTES; i < 256; i++)
+                buffer.put(i, (byte) -1);
+        }
+
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            assertEquals(1, journal.getSequence());
+            assertEquals(2, journal.appendCancel(1));
+        }
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            assertEquals(2, journal.getSequence());
+            assertEquals(2, journal.replay(restored, 0));
+        }
+        assertTrue(ids(restored, Side.BID).isEmpty());
+    }
+
+    @Test
+    void testSegmentsRollOver() throws Exception {
+        int segmentSize = 64;
+        try (Journal<IdOffer> journal = new Journal<>(directory, segmentSize, ID_CODEC)) {
+            for (int i = 0; i < 10; i++)
+                journal.appendPost(new IdOffer(i, Side.BID, ONE, ONE));
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 1);
+        }
+
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, segmentSize, ID_CODEC)) {
+            assertEquals(10, journal.getSequence());
+            assertEquals(10, journal.replay(restored, 0));
+        }
+        assertEquals(asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), ids(restored, Side.BID));
+    }
+
+    @Test
+    void testReplayAfterSequence() throws Exception {
+        Exchange<Transaction, IdOffer> restored = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            journal.appendPost(new IdOffer(1, Side.BID, ONE, ONE));
+            journal.appendPost(new IdOffer(2, Side.BID, ONE, ONE));
+            journal.appendCancel(3);
+
+            assertEquals(3, journal.replay(restored, 1));
+            assertEquals(3, journal.replay(idExchange(), 3));
+        }
+        assertEquals(singletonList(2), ids(restored, Side.BID));
+    }
+
+    @Test
+    void testRejectedCommandsSkipped() throws Exception {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            x.setJournal(journal);
+            x.post(new IdOffer(1, Side.BID, ONE, ONE));
+            assertThrows(IllegalArgumentException.class, () -> x.post(new IdOffer(1, Side.BID, TWO, ONE)));
+            x.post(new IdOffer(2, Side.BID, ONE, ONE));
+
+            Exchange<Transaction, IdOffer> restored = idExchange();
+            assertEquals(3, journal.replay(restored, 0));
+            assertEquals(asList(1, 2), ids(restored, Side.BID));
+            assertEquals(ONE, restored.getOffer(1).getAmount());
+        }
+    }
+
+    @Test
+    void testBatchStoppedByRejectedOfferReplayed() throws Exception {
+        Exchange<Transaction, IdOffer> x = idExchange();
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            x.setJournal(journal);
+            x.post(new IdOffer(1, Side.BID, ONE, ONE));
+            assertThrows(IllegalArgumentException.class, () -> x.postAll(asList(
+                    new IdOffer(2, Side.BID, ONE, ONE),
+                    new IdOffer(1, Side.BID, TWO, ONE),
+                    new IdOffer(3, Side.BID, ONE, ONE)
+            )));
+
+            Exchange<Transaction, IdOffer> restored = idExchange();
+            assertEquals(3, journal.replay(restored, 0));
+            assertEquals(asList(1, 2), ids(restored, Side.BID));
+            assertEquals(ids(x, Side.BID), ids(restored, Side.BID));
+        }
+    }
+
+    @Test
+    void testFlush() throws Exception {
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            journal.appendPost(new IdOffer(1, Side.BID, ONE, ONE));
+            assertEquals(0, journal.getDurableSequence());
+
+            journal.flush();
+            assertEquals(1, journal.getDurableSequence());
+        }
+    }
+
+    @Test
+    void testFlusher() throws Exception {
+        try (Journal<IdOffer> journal = new Journal<>(directory, SEGMENT_SIZE, ID_CODEC)) {
+            journal.startFlusher(Thread::new, 1_000_000);
+            journal.appendPost(new IdOffer(1, Side.BID, ONE, ONE));
+
+            for (int i = 0; i < 1000 && journal.getDurableSequence() == 0; i++)
+                Thread.sleep(10);
+            assertEquals(1, journal.getDurableSequence());
+        }
+    }
+
+    @Test
+    void testRecordLargerThanSegment() throws Exception {
+        try (Journal<IdOffer> journal = new Journal<>(directory, 32, ID_CODEC)) {
+            assertThrows(IllegalArgumentException.class, () -> journal.appendPost(new IdOffer(1, Side.BID, ONE, ONE)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new Journal<>(directory, 8, ID_CODEC));
+    }
+}
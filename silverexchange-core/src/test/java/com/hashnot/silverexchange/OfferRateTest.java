@@ -2,6 +2,8 @@ package com.hashnot.silverexchange;
 
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
+
 import static com.hashnot.silverexchange.OfferRate.market;
 import static com.hashnot.silverexchange.util.BigDecimalsTest.ONE;
 import static com.hashnot.silverexchange.util.BigDecimalsTest.TWO;
@@ -77,4 +79,29 @@ class OfferRateTest {
         assertTrue(r1.compareTo(r2) < 0);
         assertTrue(r2.compareTo(r1) > 0);
     }
+
+    @Test
+    void testFixedPointCompare() {
+        FixedPoint fp = new FixedPoint(2, 0);
+        OfferRate r1 = new OfferRate(ONE).toFixedPoint(fp);
+        OfferRate r2 = new OfferRate(TWO).toFixedPoint(fp);
+
+        assertEquals(100, r1.getFixedValue());
+        assertTrue(r1.compareTo(r2) < 0);
+        assertTrue(r2.compareTo(r1) > 0);
+        assertEquals(0, r1.compareTo(new OfferRate(ONE)));
+        assertEquals(new OfferRate(ONE), r1);
+    }
+
+    @Test
+    void testMarketToFixedPoint() {
+        OfferRate r = market();
+        assertSame(r, r.toFixedPoint(new FixedPoint(2, 0)));
+        assertTrue(new OfferRate(ONE).toFixedPoint(new FixedPoint(2, 0)).compareTo(r) < 0);
+    }
+
+    @Test
+    void testToFixedPointTooPreciseFails() {
+        assertThrows(IllegalArgumentException.class, () -> new OfferRate(new BigDecimal("0.001")).toFixedPoint(new FixedPoint(2, 0)));
+    }
 }
@@ -1,17 +1,24 @@
 package com.hashnot.silverexchange;
 
+import com.hashnot.silverexchange.ext.IDepthListener;
+import com.hashnot.silverexchange.ext.IDepthListener.Change;
 import com.hashnot.silverexchange.match.ITransactionListener;
 import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.PostOnly;
+import com.hashnot.silverexchange.match.SelfTradePrevention;
 import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.match.TimeInForce;
 import com.hashnot.silverexchange.test.MockitoExtension;
 import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -24,8 +31,13 @@ import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @ExtendWith({MockitoExtension.class})
@@ -34,6 +46,9 @@ class OrderBookTest {
     @Mock
     private ITransactionListener<Offer> l;
 
+    @Mock
+    private IDepthListener d;
+
     @Test
     void postValidOfferToEmptyBookEmptyResult() {
         Offer remainder = b(l).post(ask(ONE, TWO));
@@ -59,17 +74,19 @@ class OrderBookTest {
     void testPostMatchingOfferResultTransaction() {
         OrderBook<Offer> book = b(l);
         book.post(ask(ONE, ONE));
-        Offer remainder = book.post(bid(ONE, ONE));
+        Offer active = bid(ONE, ONE);
+        Offer remainder = book.post(active);
 
-        verify(l).notifyTransaction(eq(ONE), eq(ONE), eq(bid(ONE, ONE)));
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
         assertNull(remainder);
 
 
         book = b(l);
         book.post(bid(ONE, ONE));
-        remainder = book.post(ask(ONE, ONE));
+        active = ask(ONE, ONE);
+        remainder = book.post(active);
 
-        verify(l).notifyTransaction(eq(ONE), eq(ONE), eq(bid(ONE, ONE)));
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
         assertNull(remainder);
     }
 
@@ -78,10 +95,12 @@ class OrderBookTest {
         OrderBook<Offer> book = b(l);
         book.post(ask(THREE, ONE));
 
-        Offer remainder = book.post(bid(TWO, ONE));
+        Offer active = bid(TWO, ONE);
+        Offer remainder = book.post(active);
 
-        verify(l).notifyTransaction(eq(TWO), eq(ONE), eq(bid(TWO, ONE)));
+        verify(l).notifyTransaction(eq(TWO), eq(ONE), same(active));
         assertNull(remainder);
+        assertEquals(sides(emptyList(), singletonList(ask(ONE, ONE))), book.getAllOffers());
     }
 
     @Test
@@ -90,11 +109,12 @@ class OrderBookTest {
         book.post(ask(ONE, ONE));
         book.post(ask(ONE, ONE));
 
-        Offer remainder = book.post(bid(THREE, ONE));
+        Offer active = bid(THREE, ONE);
+        Offer remainder = book.post(active);
 
-        verify(l).notifyTransaction(eq(ONE), eq(ONE), eq(bid(THREE, ONE)));
-        verify(l).notifyTransaction(eq(ONE), eq(ONE), eq(bid(THREE, ONE)));
+        verify(l, times(2)).notifyTransaction(eq(ONE), eq(ONE), same(active));
         assertNull(remainder);
+        assertEquals(sides(singletonList(bid(ONE, ONE)), emptyList()), book.getAllOffers());
     }
 
     @Test
@@ -172,6 +192,309 @@ class OrderBookTest {
         assertEquals(expected, book.getAllOffers());
     }
 
+    @Test
+    void testExecuteAcrossPriceLevels() {
+        OrderBook<Offer> book = b(l);
+        book.post(ask(ONE, TWO));
+        book.post(ask(ONE, ONE));
+        book.post(ask(ONE, THREE));
+
+        Offer active = bid(TWO, TWO);
+        Offer remainder = book.post(active);
+
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
+        verify(l).notifyTransaction(eq(ONE), eq(TWO), same(active));
+        assertNull(remainder);
+        assertEquals(sides(emptyList(), singletonList(ask(ONE, THREE))), book.getAllOffers());
+    }
+
+    @Test
+    void testSameRateDifferentScaleSharesPriceLevel() {
+        OrderBook<Offer> book = b(l);
+        Offer offer1 = ask(ONE, ONE);
+        Offer offer2 = ask(TWO, new BigDecimal("1.0"));
+        Offer offer3 = ask(ONE, ONE);
+        book.post(offer1);
+        book.post(offer2);
+        book.post(offer3);
+
+        assertEquals(sides(emptyList(), asList(offer1, offer2, offer3)), book.getAllOffers());
+    }
+
+    @Test
+    void testBestRate() {
+        OrderBook<Offer> book = b(l);
+        assertNull(book.getBestRate(Side.ASK));
+
+        Offer offer1 = ask(ONE, TWO);
+        Offer offer2 = ask(ONE, THREE);
+        book.post(offer2);
+        book.post(offer1);
+        book.post(ask(ONE, TWO));
+        assertEquals(new OfferRate(TWO), book.getBestRate(Side.ASK));
+        assertEquals(TWO, book.getBestAmount(Side.ASK));
+
+        book.cancel(offer1);
+        assertEquals(ONE, book.getBestAmount(Side.ASK));
+
+        book.post(bid(TWO, TWO));
+        assertEquals(new OfferRate(THREE), book.getBestRate(Side.ASK));
+        assertEquals(new OfferRate(TWO), book.getBestRate(Side.BID));
+
+        book.cancel(offer2);
+        assertNull(book.getBestRate(Side.ASK));
+        assertNull(book.getBestAmount(Side.ASK));
+    }
+
+    @Test
+    void testDepth() {
+        OrderBook<Offer> book = b(l);
+        book.post(bid(ONE, ONE));
+        book.post(bid(TWO, TWO));
+        book.post(bid(ONE, TWO));
+        book.post(bid(ONE, THREE));
+
+        assertEquals(asList(
+                new DepthLevel(new OfferRate(THREE), ONE, 1),
+                new DepthLevel(new OfferRate(TWO), THREE, 2)
+        ), book.getDepth(Side.BID, 2));
+        assertEquals(3, book.getDepth(Side.BID, 10).size());
+        assertEquals(emptyList(), book.getDepth(Side.ASK, 10));
+        assertEquals(emptyList(), book.getDepth(Side.BID, 0));
+        assertThrows(IllegalArgumentException.class, () -> book.getDepth(Side.BID, -1));
+    }
+
+    @Test
+    void testDepthChanges() {
+        OrderBook<Offer> book = b(l);
+        book.setDepthListener(d);
+        Offer offer = ask(ONE, ONE);
+
+        book.post(ask(ONE, TWO));
+        book.post(ask(ONE, TWO));
+        book.post(ask(ONE, THREE));
+        book.post(bid(new BigDecimal("2.5"), THREE));
+        book.post(offer);
+        book.cancel(offer);
+
+        InOrder inOrder = inOrder(d);
+        inOrder.verify(d).levelChanged(1, Change.ADDED, Side.ASK, new OfferRate(TWO), ONE, 1);
+        inOrder.verify(d).levelChanged(2, Change.CHANGED, Side.ASK, new OfferRate(TWO), TWO, 2);
+        inOrder.verify(d).levelChanged(3, Change.ADDED, Side.ASK, new OfferRate(THREE), ONE, 1);
+        inOrder.verify(d).levelChanged(4, Change.REMOVED, Side.ASK, new OfferRate(TWO), ZERO, 0);
+        inOrder.verify(d).levelChanged(5, Change.CHANGED, Side.ASK, new OfferRate(THREE), new BigDecimal("0.5"), 1);
+        inOrder.verify(d).levelChanged(6, Change.ADDED, Side.ASK, new OfferRate(ONE), ONE, 1);
+        inOrder.verify(d).levelChanged(7, Change.REMOVED, Side.ASK, new OfferRate(ONE), ZERO, 0);
+        inOrder.verifyNoMoreInteractions();
+        assertEquals(7, book.getSequence());
+    }
+
+    @Test
+    void testDepthSequenceWithoutListener() {
+        OrderBook<Offer> book = b(l);
+        book.post(ask(ONE, TWO));
+        book.post(bid(ONE, ONE));
+        assertEquals(2, book.getSequence());
+
+        book.setDepthListener(d);
+        book.post(bid(ONE, TWO));
+
+        verify(d).levelChanged(eq(3L), eq(Change.REMOVED), eq(Side.ASK), any(), any(), anyInt());
+        verify(d, never()).levelChanged(eq(4L), any(), any(), any(), any(), anyInt());
+        verify(d, times(1)).levelChanged(anyLong(), any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void testSnapshot() {
+        OrderBook<Offer> book = b(l);
+        Offer offer = ask(ONE, THREE);
+        book.post(ask(ONE, TWO));
+        book.post(offer);
+        BookSnapshot before = book.snapshot();
+
+        book.post(bid(ONE, ONE));
+        book.post(bid(new BigDecimal("0.5"), TWO));
+        book.cancel(offer);
+        BookSnapshot after = book.snapshot();
+
+        assertEquals(2, before.getSequence());
+        assertEquals(asList(
+                new DepthLevel(new OfferRate(TWO), ONE, 1),
+                new DepthLevel(new OfferRate(THREE), ONE, 1)
+        ), before.getDepth(Side.ASK, 10));
+        assertEquals(emptyList(), before.getDepth(Side.BID, 10));
+
+        assertEquals(book.getSequence(), after.getSequence());
+        assertEquals(singletonList(new DepthLevel(new OfferRate(TWO), new BigDecimal("0.5"), 1)), after.getDepth(Side.ASK, 10));
+        assertEquals(book.getDepth(Side.BID, 10), after.getDepth(Side.BID, 10));
+        assertEquals(new OfferRate(ONE), after.getBestRate(Side.BID));
+        assertThrows(IllegalArgumentException.class, () -> after.getDepth(Side.BID, -1));
+    }
+
+    @Test
+    void testSnapshotOfLevelsReplacedSinceLast() {
+        OrderBook<Offer> book = b(l);
+        Offer added = ask(ONE, THREE);
+        book.post(ask(ONE, TWO));
+        BookSnapshot before = book.snapshot();
+
+        book.post(bid(ONE, TWO));
+        book.post(ask(TWO, TWO));
+        book.post(added);
+        book.cancel(added);
+        BookSnapshot after = book.snapshot();
+
+        assertEquals(singletonList(new DepthLevel(new OfferRate(TWO), ONE, 1)), before.getDepth(Side.ASK, 10));
+        assertEquals(singletonList(new DepthLevel(new OfferRate(TWO), TWO, 1)), after.getDepth(Side.ASK, 10));
+        assertEquals(book.getDepth(Side.ASK, 10), after.getDepth(Side.ASK, 10));
+        assertEquals(emptyList(), after.getDepth(Side.BID, 10));
+    }
+
+    @Test
+    void testCancel() {
+        OrderBook<Offer> book = b(l);
+        Offer offer1 = ask(ONE, ONE);
+        Offer offer2 = ask(ONE, TWO);
+        book.post(offer1);
+        book.post(offer2);
+
+        assertSame(offer1, book.cancel(offer1));
+        assertNull(book.cancel(offer1));
+        assertNull(book.get(offer1));
+        assertEquals(sides(emptyList(), singletonList(offer2)), book.getAllOffers());
+
+        Offer active = bid(ONE, TWO);
+        book.post(active);
+        assertTrue(book.isEmpty());
+        verify(l).notifyTransaction(eq(ONE), eq(TWO), same(active));
+    }
+
+    @Test
+    void testCancelById() {
+        Map<Offer, Integer> ids = new IdentityHashMap<>();
+        OrderBook<Offer> book = new OrderBook<>(l, ids::get);
+        Offer offer1 = ask(ONE, ONE);
+        Offer offer2 = ask(ONE, ONE);
+        ids.put(offer1, 1);
+        ids.put(offer2, 2);
+        book.post(offer1);
+        book.post(offer2);
+
+        assertSame(offer2, book.get(2));
+        assertSame(offer2, book.cancel(2));
+        assertNull(book.cancel(2));
+        assertEquals(sides(emptyList(), singletonList(offer1)), book.getAllOffers());
+    }
+
+    @Test
+    void testAmendReducingAmountKeepsPriority() {
+        OrderBook<Offer> book = b(l);
+        Offer first = ask(THREE, ONE);
+        Offer second = ask(ONE, ONE);
+        book.post(first);
+        book.post(second);
+        book.post(bid(ONE, ONE));
+
+        // one of three filled, amended to one and a half: a half remains
+        assertSame(first, book.amend(first, new BigDecimal("1.5"), null));
+        assertEquals(new BigDecimal("1.5"), book.getBestAmount(Side.ASK));
+        assertEquals(asList(first, second), book.getAllOffers().get(Side.ASK));
+        assertEquals(new BigDecimal("0.5"), first.getAmount());
+        assertEquals(new BigDecimal("1.0"), first.getFilledAmount());
+
+        assertThrows(IllegalArgumentException.class, () -> book.amend(first, ONE, null));
+        assertEquals(new BigDecimal("0.5"), first.getAmount());
+        assertEquals(new BigDecimal("1.5"), book.getBestAmount(Side.ASK));
+        assertNull(book.amend(bid(ONE, ONE), ONE, null));
+    }
+
+    @Test
+    void testAmendIncreasingAmountLosesPriority() {
+        OrderBook<Offer> book = b(l);
+        Offer first = ask(ONE, ONE);
+        Offer second = ask(ONE, ONE);
+        book.post(first);
+        book.post(second);
+
+        book.amend(first, TWO, null);
+        assertEquals(asList(second, first), book.getAllOffers().get(Side.ASK));
+        assertEquals(THREE, book.getBestAmount(Side.ASK));
+    }
+
+    @Test
+    void testAmendRateReinsertsOffer() {
+        OrderBook<Offer> book = b(l);
+        Offer ask = ask(ONE, THREE);
+        book.post(ask);
+        Offer bid = bid(TWO, ONE);
+        book.post(bid);
+
+        book.amend(ask, ONE, new OfferRate(TWO));
+        assertEquals(new OfferRate(TWO), book.getBestRate(Side.ASK));
+
+        // moved across the book, the bid executes as a newly posted offer
+        assertSame(bid, book.amend(bid, TWO, new OfferRate(TWO)));
+        verify(l).notifyTransaction(eq(ONE), eq(TWO), same(bid));
+        assertEquals(sides(singletonList(bid), emptyList()), book.getAllOffers());
+        assertEquals(ONE, bid.getAmount());
+    }
+
+    @Test
+    void testAmendCrossingPostOnlyCancelled() {
+        OrderBook<Offer> book = b(l);
+        Offer ask = ask(ONE, TWO);
+        ask.setPostOnly(PostOnly.REJECT);
+        book.post(ask);
+        book.post(bid(ONE, ONE));
+
+        assertNull(book.amend(ask, ONE, new OfferRate(ONE)));
+        assertNull(book.get(ask));
+        assertEquals(sides(singletonList(bid(ONE, ONE)), emptyList()), book.getAllOffers());
+        verify(l, never()).notifyTransaction(any(), any(), any());
+    }
+
+    @Test
+    void testDuplicateIdFails() {
+        OrderBook<Offer> book = new OrderBook<>(l, o -> 1);
+        book.post(ask(ONE, ONE));
+
+        assertThrows(IllegalArgumentException.class, () -> book.post(ask(ONE, TWO)));
+        assertEquals(sides(emptyList(), singletonList(ask(ONE, ONE))), book.getAllOffers());
+    }
+
+    @Test
+    void testPassiveRemainderKeepsId() {
+        OrderBook<Offer> book = b(l);
+        Offer offer = ask(TWO, ONE);
+        book.post(offer);
+        book.post(bid(ONE, ONE));
+
+        assertEquals(ask(ONE, ONE), book.get(offer));
+        assertEquals(ask(ONE, ONE), book.cancel(offer));
+        assertTrue(book.isEmpty());
+    }
+
+    @Test
+    void testActiveRemainderKeepsId() {
+        OrderBook<Offer> book = b(l);
+        book.post(ask(ONE, ONE));
+        Offer offer = bid(TWO, ONE);
+        book.post(offer);
+
+        assertEquals(bid(ONE, ONE), book.cancel(offer));
+        assertTrue(book.isEmpty());
+    }
+
+    @Test
+    void testFilledOfferRemovedFromIndex() {
+        OrderBook<Offer> book = b(l);
+        Offer offer = ask(ONE, ONE);
+        book.post(offer);
+        book.post(bid(ONE, ONE));
+
+        assertNull(book.cancel(offer));
+    }
+
     @Test
     void testMarketOrderOnEmptyOrderBook() {
         //given
@@ -207,10 +530,11 @@ class OrderBookTest {
         book.post(ask(ONE, ONE));
 
         //when
-        Offer remainder = book.post(bid(ONE, market()));
+        Offer active = bid(ONE, market());
+        Offer remainder = book.post(active);
 
         //expect
-        verify(l).notifyTransaction(eq(ONE), eq(ONE), eq(bid(ONE, market())));
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
         assertNull(remainder);
         assertTrue(book.isEmpty());
     }
@@ -222,10 +546,11 @@ class OrderBookTest {
         book.post(ask(ONE, ONE));
 
         //when
-        Offer remainder = book.post(bid(TWO, market()));
+        Offer active = bid(TWO, market());
+        Offer remainder = book.post(active);
 
         //expect
-        verify(l).notifyTransaction(eq(ONE), eq(ONE), eq(bid(TWO, market())));
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
         assertEquals(bid(ONE, market()), remainder);
         assertTrue(book.isEmpty());
     }
@@ -237,14 +562,355 @@ class OrderBookTest {
         book.post(ask(TWO, ONE));
 
         //when
-        Offer remainder = book.post(bid(ONE, market()));
+        Offer active = bid(ONE, market());
+        Offer remainder = book.post(active);
 
         //expect
-        verify(l).notifyTransaction(eq(ONE), eq(ONE), eq(bid(ONE, market())));
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
         assertNull(remainder);
         assertEquals(sides(emptyList(), singletonList(ask(ONE, ONE))), book.getAllOffers());
     }
 
+    @Test
+    void testImmediateOrCancelRemainderNotInserted() {
+        OrderBook<Offer> book = b(l);
+        book.post(ask(ONE, ONE));
+
+        Offer active = bid(TWO, ONE);
+        active.setTimeInForce(TimeInForce.IOC);
+        Offer remainder = book.post(active);
+
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
+        assertSame(active, remainder);
+        assertEquals(0, ONE.compareTo(remainder.getAmount()));
+        assertTrue(book.isEmpty());
+
+        Offer unmatched = bid(ONE, ONE);
+        unmatched.setTimeInForce(TimeInForce.IOC);
+        assertSame(unmatched, book.post(unmatched));
+        assertTrue(book.isEmpty());
+    }
+
+    @Test
+    void testFillOrKillNotFilledLeavesBookUntouched() {
+        OrderBook<Offer> book = b(l);
+        book.post(ask(ONE, ONE));
+        book.post(ask(ONE, TWO));
+        book.post(ask(ONE, THREE));
+
+        Offer active = bid(THREE, TWO);
+        active.setTimeInForce(TimeInForce.FOK);
+        Offer remainder = book.post(active);
+
+        verify(l, never()).notifyTransaction(any(), any(), any());
+        assertSame(active, remainder);
+        assertEquals(THREE, remainder.getAmount());
+        assertEquals(3, book.getAllOffers().get(Side.ASK).size());
+        assertTrue(book.getAllOffers().get(Side.BID).isEmpty());
+    }
+
+    @Test
+    void testFillOrKillNotFilledAgainstOwnOffer() {
+        OrderBook<Offer> book = b(l);
+        book.post(ask(ONE, ONE));
+        Offer own = ask(ONE, TWO);
+        own.setOwner(1);
+        book.post(own);
+        book.post(ask(TWO, TWO));
+
+        for (SelfTradePrevention selfTradePrevention : asList(SelfTradePrevention.CANCEL_NEWEST, SelfTradePrevention.DECREMENT)) {
+            Offer active = bid(TWO, TWO);
+            active.setOwner(1);
+            active.setTimeInForce(TimeInForce.FOK);
+            active.setSelfTradePrevention(selfTradePrevention);
+            assertSame(active, book.post(active));
+        }
+        verify(l, never()).notifyTransaction(any(), any(), any());
+        assertEquals(ONE, own.getAmount());
+        assertEquals(3, book.getAllOffers().get(Side.ASK).size());
+
+        // the cancelled offer of the same owner supplies nothing, the offer behind it does
+        Offer active = bid(TWO, TWO);
+        active.setOwner(1);
+        active.setTimeInForce(TimeInForce.FOK);
+        active.setSelfTradePrevention(SelfTradePrevention.CANCEL_OLDEST);
+        assertNull(book.post(active));
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
+        verify(l).notifyTransaction(eq(ONE), eq(TWO), same(active));
+        assertEquals(sides(emptyList(), singletonList(ask(ONE, TWO))), book.getAllOffers());
+    }
+
+    @Test
+    void testFillOrKillFilledBeforeOwnOffer() {
+        OrderBook<Offer> book = b(l);
+        book.post(ask(ONE, ONE));
+        Offer own = ask(ONE, ONE);
+        own.setOwner(1);
+        book.post(own);
+        Offer ownBeyond = ask(ONE, TWO);
+        ownBeyond.setOwner(1);
+        book.post(ownBeyond);
+
+        Offer active = bid(ONE, TWO);
+        active.setOwner(1);
+        active.setTimeInForce(TimeInForce.FOK);
+        assertNull(book.post(active));
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
+        assertEquals(sides(emptyList(), asList(own, ownBeyond)), book.getAllOffers());
+    }
+
+    @Test
+    void testFillOrKillFilledAcrossPriceLevels() {
+        OrderBook<Offer> book = b(l);
+        book.post(ask(ONE, ONE));
+        book.post(ask(ONE, TWO));
+        book.post(ask(ONE, THREE));
+
+        Offer active = bid(TWO, TWO);
+        active.setTimeInForce(TimeInForce.FOK);
+        Offer remainder = book.post(active);
+
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
+        verify(l).notifyTransaction(eq(ONE), eq(TWO), same(active));
+        assertNull(remainder);
+        assertEquals(sides(emptyList(), singletonList(ask(ONE, THREE))), book.getAllOffers());
+
+        Offer market = bid(TWO, market());
+        market.setTimeInForce(TimeInForce.FOK);
+        assertSame(market, book.post(market));
+        assertEquals(1, book.getAllOffers().get(Side.ASK).size());
+    }
+
+    @Test
+    void testGoodTillDateExpires() {
+        OrderBook<Offer> book = b(l);
+        Offer first = ask(ONE, ONE);
+        first.setGoodTillDate(100);
+        Offer second = ask(ONE, TWO);
+        second.setGoodTillDate(50);
+        Offer cancelled = ask(ONE, TWO);
+        cancelled.setGoodTillDate(60);
+        Offer filled = bid(ONE, new BigDecimal("0.5"));
+        filled.setGoodTillDate(70);
+        Offer gtc = ask(ONE, THREE);
+        book.post(first);
+        book.post(second);
+        book.post(cancelled);
+        book.post(filled);
+        book.post(gtc);
+
+        assertSame(cancelled, book.cancel(cancelled));
+        book.post(ask(ONE, new BigDecimal("0.5")));
+
+        assertEquals(emptyList(), book.expire(49));
+        assertEquals(singletonList(second), book.expire(99));
+        assertEquals(singletonList(first), book.expire(1000));
+        assertEquals(singletonList(gtc), book.getAllOffers().get(Side.ASK));
+        assertNull(book.get(first));
+    }
+
+    @Test
+    void testIcebergDisplaysSliceAndRefillsAtBackOfLevel() {
+        OrderBook<Offer> book = b(l);
+        Offer iceberg = ask(new BigDecimal(5), ONE);
+        iceberg.setDisplayAmount(TWO);
+        Offer other = ask(ONE, ONE);
+        book.post(iceberg);
+        book.post(other);
+
+        assertEquals(THREE, book.getBestAmount(Side.ASK));
+
+        // fills the slice, the iceberg is refilled behind the other offer
+        book.post(bid(TWO, ONE));
+        assertEquals(asList(other, iceberg), book.getAllOffers().get(Side.ASK));
+        assertEquals(THREE, book.getBestAmount(Side.ASK));
+
+        // an active offer larger than the level takes the refilled slices in turn
+        Offer active = bid(new BigDecimal(4), ONE);
+        assertNull(book.post(active));
+        verify(l, times(2)).notifyTransaction(eq(ONE), eq(ONE), same(active));
+        verify(l).notifyTransaction(eq(TWO), eq(ONE), same(active));
+        assertEquals(sides(emptyList(), emptyList()), book.getAllOffers());
+        assertEquals(new BigDecimal(5), iceberg.getFilledAmount());
+    }
+
+    @Test
+    void testActiveIcebergExecutesWholeAmount() {
+        OrderBook<Offer> book = b(l);
+        book.post(ask(THREE, ONE));
+
+        Offer active = bid(new BigDecimal(5), ONE);
+        active.setDisplayAmount(ONE);
+        assertNull(book.post(active));
+
+        verify(l).notifyTransaction(eq(THREE), eq(ONE), same(active));
+        assertEquals(ONE, book.getBestAmount(Side.BID));
+        assertEquals(ONE, active.getHiddenAmount());
+    }
+
+    @Test
+    void testFillOrKillCountsHiddenAmounts() {
+        OrderBook<Offer> book = b(l);
+        Offer iceberg = ask(THREE, ONE);
+        iceberg.setDisplayAmount(ONE);
+        book.post(iceberg);
+
+        Offer active = bid(THREE, ONE);
+        active.setTimeInForce(TimeInForce.FOK);
+        assertNull(book.post(active));
+        assertTrue(book.isEmpty());
+    }
+
+    @Test
+    void testPostOnlyRejectedIfItWouldExecute() {
+        OrderBook<Offer> book = b(l);
+        Offer ask = ask(ONE, TWO);
+        book.post(ask);
+
+        Offer crossing = bid(ONE, TWO);
+        crossing.setPostOnly(PostOnly.REJECT);
+        assertSame(crossing, book.post(crossing));
+        verify(l, never()).notifyTransaction(any(), any(), any());
+
+        Offer passive = bid(ONE, ONE);
+        passive.setPostOnly(PostOnly.REJECT);
+        assertNull(book.post(passive));
+        assertEquals(sides(singletonList(passive), singletonList(ask)), book.getAllOffers());
+    }
+
+    @Test
+    void testPostOnlyRepricedBehindBestRate() {
+        FixedPoint fixedPoint = new FixedPoint(2, 2);
+        OrderBook<Offer> book = b(l);
+        Offer ask = ask(ONE, new BigDecimal("2.5"));
+        ask.toFixedPoint(fixedPoint);
+        book.post(ask);
+
+        Offer bid = bid(ONE, THREE);
+        bid.setPostOnly(PostOnly.REPRICE);
+        bid.toFixedPoint(fixedPoint);
+        assertNull(book.post(bid));
+
+        verify(l, never()).notifyTransaction(any(), any(), any());
+        assertEquals(0, new BigDecimal("2.49").compareTo(bid.getRate().getValue()));
+        assertEquals(bid.getRate(), book.getBestRate(Side.BID));
+    }
+
+    @Test
+    void testPostOnlyRejectedWithoutPriceScale() {
+        OrderBook<Offer> book = b(l);
+        book.post(ask(ONE, new BigDecimal("2.50")));
+
+        Offer bid = bid(ONE, THREE);
+        bid.setPostOnly(PostOnly.REPRICE);
+        assertSame(bid, book.post(bid));
+
+        verify(l, never()).notifyTransaction(any(), any(), any());
+        assertEquals(new OfferRate(THREE), bid.getRate());
+        assertNull(book.getBestRate(Side.BID));
+    }
+
+    @Test
+    void testPostOnlyMarketOfferFails() {
+        Offer offer = bid(ONE, market());
+        assertThrows(IllegalArgumentException.class, () -> offer.setPostOnly(PostOnly.REJECT));
+    }
+
+    @Test
+    void testSelfTradeCancelsNewest() {
+        OrderBook<Offer> book = b(l);
+        Offer other = ask(ONE, ONE);
+        other.setOwner(2);
+        Offer own = ask(ONE, ONE);
+        own.setOwner(1);
+        book.post(other);
+        book.post(own);
+
+        Offer active = bid(THREE, ONE);
+        active.setOwner(1);
+        assertSame(active, book.post(active));
+
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
+        assertEquals(TWO, active.getAmount());
+        assertEquals(sides(emptyList(), singletonList(own)), book.getAllOffers());
+    }
+
+    @Test
+    void testSelfTradeCancelsOldest() {
+        OrderBook<Offer> book = b(l);
+        Offer own = ask(ONE, ONE);
+        own.setOwner(1);
+        Offer other = ask(ONE, ONE);
+        other.setOwner(2);
+        book.post(own);
+        book.post(other);
+
+        Offer active = bid(TWO, ONE);
+        active.setOwner(1);
+        active.setSelfTradePrevention(SelfTradePrevention.CANCEL_OLDEST);
+        assertNull(book.post(active));
+
+        verify(l).notifyTransaction(eq(ONE), eq(ONE), same(active));
+        assertEquals(ONE, active.getAmount());
+        assertEquals(sides(singletonList(active), emptyList()), book.getAllOffers());
+    }
+
+    @Test
+    void testSelfTradeDecrementsBothOffers() {
+        OrderBook<Offer> book = b(l);
+        Offer own = ask(THREE, ONE);
+        own.setOwner(1);
+        book.post(own);
+
+        Offer active = bid(ONE, ONE);
+        active.setOwner(1);
+        active.setSelfTradePrevention(SelfTradePrevention.DECREMENT);
+        assertNull(book.post(active));
+        assertEquals(TWO, book.getBestAmount(Side.ASK));
+        // prevented amounts aren't filled
+        assertEquals(TWO, own.getOriginalAmount());
+        assertEquals(0, own.getFilledAmount().signum());
+        assertEquals(0, active.getFilledAmount().signum());
+
+        Offer larger = bid(THREE, ONE);
+        larger.setOwner(1);
+        larger.setSelfTradePrevention(SelfTradePrevention.DECREMENT);
+        assertNull(book.post(larger));
+
+        verify(l, never()).notifyTransaction(any(), any(), any());
+        assertEquals(sides(singletonList(larger), emptyList()), book.getAllOffers());
+        assertEquals(ONE, larger.getAmount());
+        assertEquals(ONE, larger.getOriginalAmount());
+        assertEquals(0, larger.getFilledAmount().signum());
+    }
+
+    @Test
+    void testOffersOfOwner() {
+        OrderBook<Offer> book = b(l);
+        Offer first = ask(ONE, TWO);
+        Offer second = ask(ONE, THREE);
+        Offer bid = bid(ONE, ONE);
+        Offer other = ask(ONE, TWO);
+        for (Offer o : asList(first, second, bid))
+            o.setOwner(1);
+        other.setOwner(2);
+        for (Offer o : asList(first, second, bid, other))
+            book.post(o);
+
+        assertEquals(asList(bid, second, first), book.getOffersOfOwner(1));
+        assertEquals(singletonList(other), book.getOffersOfOwner(2));
+        assertEquals(emptyList(), book.getOffersOfOwner(3));
+
+        // filled, cancelled and amended offers
+        book.post(bid(ONE, TWO));
+        book.cancel(bid);
+        book.amend(second, ONE, new OfferRate(TWO));
+        assertEquals(singletonList(second), book.getOffersOfOwner(1));
+        book.cancel(second);
+        assertEquals(emptyList(), book.getOffersOfOwner(1));
+        assertEquals(singletonList(other), book.getOffersOfOwner(2));
+    }
+
     @Test
     void testCtorAssert() {
         Assumptions.assumeTrue(OrderBook.class.desiredAssertionStatus());
@@ -0,0 +1,103 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.match.MutableMatchResult;
+import com.hashnot.silverexchange.match.Offer;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+
+import static com.hashnot.silverexchange.TestModelFactory.ask;
+import static com.hashnot.silverexchange.TestModelFactory.bid;
+import static com.hashnot.silverexchange.util.BigDecimalsTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriceLevelTest {
+    @Test
+    void testEmptyLevel() {
+        PriceLevel<Offer> level = new PriceLevel<>(new OfferRate(ONE));
+
+        assertTrue(level.isEmpty());
+        assertNull(level.first());
+        assertNull(level.firstEntry());
+        assertEquals(ZERO, level.getAmount());
+    }
+
+    @Test
+    void testFifoOrderAndAmount() {
+        PriceLevel<Offer> level = new PriceLevel<>(new OfferRate(ONE));
+        Offer o1 = ask(ONE, ONE);
+        Offer o2 = ask(TWO, ONE);
+        PriceLevel.Entry<Offer> e1 = level.add(1, o1);
+        level.add(2, o2);
+
+        assertEquals(2, level.size());
+        assertEquals(THREE, level.getAmount());
+        assertSame(o1, level.first());
+        assertEquals(1, level.firstEntry().id);
+
+        level.remove(e1);
+        assertSame(o2, level.first());
+        assertEquals(TWO, level.getAmount());
+        assertNull(e1.getLevel());
+    }
+
+    @Test
+    void testRemoveFromMiddle() {
+        PriceLevel<Offer> level = new PriceLevel<>(new OfferRate(ONE));
+        Offer o1 = ask(ONE, ONE);
+        Offer o3 = ask(THREE, ONE);
+        level.add(1, o1);
+        PriceLevel.Entry<Offer> e2 = level.add(2, ask(TWO, ONE));
+        level.add(3, o3);
+
+        level.remove(e2);
+
+        Iterator<Offer> i = level.iterator();
+        assertSame(o1, i.next());
+        assertSame(o3, i.next());
+        assertFalse(i.hasNext());
+        assertEquals(new BigDecimal(4), level.getAmount());
+    }
+
+    @Test
+    void testRemoveLast() {
+        PriceLevel<Offer> level = new PriceLevel<>(new OfferRate(ONE));
+        PriceLevel.Entry<Offer> e = level.add(1, ask(ONE, ONE));
+
+        level.remove(e);
+
+        assertTrue(level.isEmpty());
+        assertEquals(0, level.size());
+        assertEquals(ZERO, level.getAmount());
+
+        Offer o = ask(TWO, ONE);
+        level.add(2, o);
+        assertSame(o, level.first());
+    }
+
+    @Test
+    void testReduceKeepsPriority() {
+        PriceLevel<Offer> level = new PriceLevel<>(new OfferRate(ONE));
+        Offer passive = ask(THREE, ONE);
+        PriceLevel.Entry<Offer> e = level.add(1, passive);
+        level.add(2, ask(ONE, ONE));
+
+        MutableMatchResult fill = bid(ONE, ONE).fill(passive, (amount, rate, offer) -> {
+        }, new MutableMatchResult());
+        level.reduce(fill);
+
+        assertSame(passive, level.first());
+        assertSame(passive, e.getOffer());
+        assertEquals(TWO, passive.getAmount());
+        assertEquals(THREE, level.getAmount());
+    }
+
+    @Test
+    void testSameRateDifferentScale() {
+        PriceLevel<Offer> level = new PriceLevel<>(new OfferRate(ONE));
+        level.add(1, ask(ONE, new BigDecimal("1.00")));
+
+        assertEquals(1, level.size());
+    }
+}
@@ -0,0 +1,60 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.Side;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import static com.hashnot.silverexchange.TestModelFactory.ask;
+import static com.hashnot.silverexchange.TestModelFactory.bid;
+import static com.hashnot.silverexchange.util.BigDecimalsTest.ONE;
+import static com.hashnot.silverexchange.util.BigDecimalsTest.TWO;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequencerTest {
+    @Test
+    void testCommandsAppliedInOrder() throws Exception {
+        Exchange<Transaction, Offer> x = Exchange.create();
+        try (Sequencer<Transaction, Offer> sequencer = new Sequencer<>(x, 2, Executors.defaultThreadFactory()).start()) {
+            Offer passive = ask(TWO, ONE);
+            assertNull(sequencer.post(passive).get());
+
+            CompletableFuture<Offer> fill = sequencer.post(bid(ONE, ONE));
+            CompletableFuture<Offer> cancel = sequencer.cancel(passive);
+            CompletableFuture<Integer> txs = sequencer.submit(e -> e.getAllTransactions().size());
+
+            assertNull(fill.get());
+            assertNotNull(cancel.get());
+            assertEquals(1, (int) txs.get());
+            assertTrue(sequencer.submit(e -> e.getAllOffers().get(Side.ASK).isEmpty()).get());
+        }
+    }
+
+    @Test
+    void testFailedCommand() throws Exception {
+        try (Sequencer<Transaction, Offer> sequencer = new Sequencer<>(Exchange.create(), 2, Executors.defaultThreadFactory()).start()) {
+            CompletableFuture<Object> result = sequencer.submit(e -> {
+                throw new IllegalStateException();
+            });
+
+            ExecutionException e = assertThrows(ExecutionException.class, result::get);
+            assertTrue(e.getCause() instanceof IllegalStateException);
+
+            // the matching thread survives
+            assertEquals(0, (int) sequencer.submit(x -> x.getAllTransactions().size()).get());
+        }
+    }
+
+    @Test
+    void testClosedSequencer() throws Exception {
+        Sequencer<Transaction, Offer> sequencer = new Sequencer<>(Exchange.create(), 2, Executors.defaultThreadFactory()).start();
+        CompletableFuture<Offer> queued = sequencer.post(ask(ONE, ONE));
+        sequencer.close();
+
+        assertTrue(queued.isDone());
+        assertThrows(IllegalStateException.class, () -> sequencer.post(ask(ONE, ONE)));
+    }
+}
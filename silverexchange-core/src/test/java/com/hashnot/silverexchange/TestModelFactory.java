@@ -1,10 +1,13 @@
 package com.hashnot.silverexchange;
 
+import com.hashnot.silverexchange.ext.IJournalCodec;
 import com.hashnot.silverexchange.match.ITransactionListener;
 import com.hashnot.silverexchange.match.Offer;
 import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.util.BigDecimals;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
@@ -40,4 +43,44 @@ public class TestModelFactory {
         result.put(Side.ASK, asks);
         return result;
     }
+
+    /**
+     * Offer with an id, for tests of journals
+     */
+    public static class IdOffer extends Offer {
+        public final int id;
+
+        public IdOffer(int id, Side side, BigDecimal amount, BigDecimal rate) {
+            super(side, amount, new OfferRate(rate));
+            this.id = id;
+        }
+    }
+
+    public static Exchange<Transaction, IdOffer> idExchange() {
+        return new Exchange<>((amount, rate, offer) -> tx(amount, rate), o -> o.id);
+    }
+
+    public static final IJournalCodec<IdOffer> ID_CODEC = new IJournalCodec<IdOffer>() {
+        @Override
+        public void writeOffer(IdOffer offer, ByteBuffer buffer) {
+            buffer.putInt(offer.id).put((byte) offer.getSide().ordinal());
+            BigDecimals.write(offer.getOriginalAmount(), buffer);
+            BigDecimals.write(offer.getRate().getValue(), buffer);
+        }
+
+        @Override
+        public IdOffer readOffer(ByteBuffer buffer) {
+            return new IdOffer(buffer.getInt(), Side.values()[buffer.get()], BigDecimals.read(buffer), BigDecimals.read(buffer));
+        }
+
+        @Override
+        public void writeId(Object id, ByteBuffer buffer) {
+            buffer.putInt((Integer) id);
+        }
+
+        @Override
+        public Object readId(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
 }
@@ -0,0 +1,49 @@
+package com.hashnot.silverexchange;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static com.hashnot.silverexchange.util.BigDecimalsTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TradeStatsTest {
+    @Test
+    void testEmpty() {
+        TradeStats stats = new TradeStats();
+
+        assertNull(stats.getLast());
+        assertNull(stats.getHigh());
+        assertNull(stats.getLow());
+        assertNull(stats.getVwap());
+        assertEquals(ZERO, stats.getVolume());
+        assertEquals(0, stats.getCount());
+    }
+
+    @Test
+    void testUpdate() {
+        TradeStats stats = new TradeStats();
+        stats.update(ONE, TWO);
+        stats.update(TWO, THREE);
+        stats.update(ONE, ONE);
+
+        assertEquals(TWO, stats.getOpen());
+        assertEquals(ONE, stats.getLast());
+        assertEquals(THREE, stats.getHigh());
+        assertEquals(ONE, stats.getLow());
+        assertEquals(new BigDecimal(4), stats.getVolume());
+        assertEquals(new BigDecimal(9), stats.getQuoteVolume());
+        assertEquals(0, new BigDecimal("2.25").compareTo(stats.getVwap()));
+        assertEquals(3, stats.getCount());
+    }
+
+    @Test
+    void testReset() {
+        TradeStats stats = new TradeStats();
+        stats.update(ONE, TWO);
+        stats.reset();
+
+        assertNull(stats.getLast());
+        assertEquals(ZERO, stats.getVolume());
+    }
+}
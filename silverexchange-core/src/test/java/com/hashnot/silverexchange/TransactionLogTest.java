@@ -0,0 +1,78 @@
+package com.hashnot.silverexchange;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionLogTest {
+    @Test
+    void testUnboundedGrows() {
+        TransactionLog<Integer> log = TransactionLog.unbounded();
+        IntStream.range(0, 100).forEach(log::add);
+
+        assertEquals(IntStream.range(0, 100).boxed().collect(toList()), log);
+        assertEquals(99, (int) log.getLast());
+    }
+
+    @Test
+    void testLastEvictsOldest() {
+        TransactionLog<Integer> log = TransactionLog.last(3);
+        assertNull(log.getLast());
+
+        IntStream.range(0, 5).forEach(log::add);
+
+        assertEquals(asList(2, 3, 4), log);
+        assertEquals(4, (int) log.getLast());
+    }
+
+    @Test
+    void testLastWrapsAfterGrowing() {
+        TransactionLog<Integer> log = TransactionLog.last(20);
+        IntStream.range(0, 50).forEach(log::add);
+
+        assertEquals(IntStream.range(30, 50).boxed().collect(toList()), log);
+    }
+
+    @Test
+    void testWindowEvictsOldTransactions() {
+        // transactions are their own timestamps
+        TransactionLog<Integer> log = TransactionLog.window(Integer::longValue, 10);
+        log.add(0);
+        log.add(5);
+        log.add(10);
+        assertEquals(asList(0, 5, 10), log);
+
+        log.add(12);
+        assertEquals(asList(5, 10, 12), log);
+
+        log.add(100);
+        assertEquals(asList(100), log);
+    }
+
+    @Test
+    void testRetainNone() {
+        TransactionLog<Integer> log = TransactionLog.last(0);
+        assertFalse(log.add(1));
+        assertEquals(emptyList(), log);
+    }
+
+    @Test
+    void testGetOutOfBounds() {
+        TransactionLog<Integer> log = TransactionLog.last(2);
+        log.add(1);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> log.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> log.get(-1));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> TransactionLog.last(-1));
+        assertThrows(IllegalArgumentException.class, () -> TransactionLog.window(Integer::longValue, -1));
+    }
+}
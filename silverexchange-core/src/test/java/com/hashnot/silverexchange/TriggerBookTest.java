@@ -0,0 +1,93 @@
+package com.hashnot.silverexchange;
+
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.Side;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static com.hashnot.silverexchange.OfferRate.market;
+import static com.hashnot.silverexchange.TestModelFactory.*;
+import static com.hashnot.silverexchange.util.BigDecimalsTest.*;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TriggerBookTest {
+    private static Offer stop(Offer o, BigDecimal stopPrice) {
+        o.setStopPrice(stopPrice);
+        return o;
+    }
+
+    @Test
+    void testTriggerOrder() {
+        TriggerBook<Offer> book = new TriggerBook<>(null);
+        Offer bid2 = stop(bid(ONE, market()), TWO);
+        Offer bid1 = stop(bid(ONE, market()), ONE);
+        Offer bid1b = stop(bid(TWO, market()), ONE);
+        Offer bid3 = stop(bid(ONE, market()), THREE);
+        Offer ask1 = stop(ask(ONE, market()), ONE);
+        Offer ask2 = stop(ask(ONE, market()), TWO);
+        for (Offer o : asList(bid2, bid1, bid1b, bid3, ask1, ask2))
+            book.add(o);
+
+        assertEquals(asList(bid1, bid1b, bid2, bid3), book.getAllOffers().get(Side.BID));
+        assertEquals(asList(ask2, ask1), book.getAllOffers().get(Side.ASK));
+
+        assertEquals(asList(bid1, bid1b, bid2), book.trigger(THREE, TWO));
+        assertEquals(asList(ask2), book.trigger(TWO, new BigDecimal("0.5")));
+        assertEquals(emptyList(), book.trigger(new BigDecimal("1.5"), new BigDecimal("2.5")));
+        assertEquals(2, book.size());
+        assertNull(book.get(bid1));
+        assertSame(bid3, book.get(bid3));
+    }
+
+    @Test
+    void testCancel() {
+        TriggerBook<Offer> book = new TriggerBook<>(null);
+        Offer first = stop(bid(ONE, market()), ONE);
+        Offer equal = stop(bid(ONE, market()), ONE);
+        book.add(first);
+        book.add(equal);
+
+        assertSame(equal, book.cancel(equal));
+        assertNull(book.cancel(equal));
+        assertEquals(asList(first), book.getAllOffers().get(Side.BID));
+        assertSame(first, book.cancel(first));
+        assertTrue(book.isEmpty());
+        assertEquals(emptyList(), book.trigger(ONE, ONE));
+    }
+
+    @Test
+    void testOffersOfOwner() {
+        TriggerBook<Offer> book = new TriggerBook<>(null);
+        Offer bid = stop(bid(ONE, market()), TWO);
+        Offer ask = stop(ask(ONE, market()), ONE);
+        Offer other = stop(bid(ONE, market()), TWO);
+        bid.setOwner(1);
+        ask.setOwner(1);
+        other.setOwner(2);
+        for (Offer o : asList(bid, ask, other))
+            book.add(o);
+
+        assertEquals(2, book.getOffersOfOwner(1).size());
+        assertTrue(book.getOffersOfOwner(1).containsAll(asList(bid, ask)));
+
+        book.cancel(ask);
+        assertEquals(asList(bid), book.getOffersOfOwner(1));
+        book.trigger(TWO, TWO);
+        assertEquals(emptyList(), book.getOffersOfOwner(1));
+        assertEquals(emptyList(), book.getOffersOfOwner(2));
+    }
+
+    @Test
+    void testDuplicateId() {
+        TriggerBook<IdOffer> book = new TriggerBook<>(o -> o.id);
+        IdOffer offer = new IdOffer(1, Side.ASK, ONE, ONE);
+        offer.setStopPrice(ONE);
+        book.add(offer);
+
+        assertThrows(IllegalArgumentException.class, () -> book.add(offer));
+        assertSame(offer, book.get(1));
+    }
+}
@@ -1,5 +1,6 @@
 package com.hashnot.silverexchange.match;
 
+import com.hashnot.silverexchange.FixedPoint;
 import com.hashnot.silverexchange.OfferRate;
 import com.hashnot.silverexchange.Transaction;
 import org.junit.jupiter.api.Assumptions;
@@ -181,6 +182,211 @@ class OfferTest {
         assertEquals(expected, result);
     }
 
+    @Test
+    void testFixedPointPartialMatchWithRemainder() {
+        FixedPoint fp = new FixedPoint(2, 2);
+        Offer passive = bid(ONE, TWO);
+        passive.toFixedPoint(fp);
+        Offer active = ask(THREE, TWO);
+        active.toFixedPoint(fp);
+
+        TestTransactionListener l = new TestTransactionListener();
+        OfferMatchResult<Offer> result = active.match(passive, l);
+
+        assertNull(result.passiveRemainder);
+        assertEquals(200, result.activeRemainder.getFixedAmount());
+        assertEquals(0, TWO.compareTo(result.activeRemainder.getAmount()));
+        assertEquals(tx(ONE, TWO), l.transaction);
+    }
+
+    @Test
+    void testFixedPointDecrementNotFilled() {
+        FixedPoint fp = new FixedPoint(2, 2);
+        Offer passive = bid(THREE, TWO);
+        passive.toFixedPoint(fp);
+        Offer active = ask(ONE, TWO);
+        active.toFixedPoint(fp);
+
+        MutableMatchResult result = active.decrement(passive, new MutableMatchResult());
+
+        assertTrue(result.isActiveFilled());
+        assertEquals(0, TWO.compareTo(passive.getAmount()));
+        assertEquals(0, TWO.compareTo(passive.getOriginalAmount()));
+        assertEquals(0, passive.getFilledAmount().signum());
+        assertEquals(0, active.getFilledAmount().signum());
+    }
+
+    @Test
+    void testFixedPointPartialMatchWithPassiveRemainder() {
+        FixedPoint fp = new FixedPoint(2, 2);
+        Offer passive = bid(THREE, TWO);
+        passive.toFixedPoint(fp);
+        Offer active = ask(ONE, TWO);
+        active.toFixedPoint(fp);
+
+        TestTransactionListener l = new TestTransactionListener();
+        OfferMatchResult<Offer> result = active.match(passive, l);
+
+        assertNull(result.activeRemainder);
+        assertEquals(200, result.passiveRemainder.getFixedAmount());
+        assertSame(passive.getRate(), result.passiveRemainder.getRate());
+        assertEquals(tx(ONE, TWO), l.transaction);
+    }
+
+    @Test
+    void testFillReducesActiveInPlace() {
+        Offer passive = bid(ONE, TWO);
+        Offer active = ask(THREE, TWO);
+
+        TestTransactionListener l = new TestTransactionListener();
+        MutableMatchResult result = active.fill(passive, l, new MutableMatchResult());
+
+        assertTrue(result.isRateMatch());
+        assertEquals(ONE, result.getAmount());
+        assertFalse(result.isActiveFilled());
+        assertTrue(result.isPassiveFilled());
+        assertEquals(TWO, active.getAmount());
+        assertTrue(passive.isFilled());
+        assertEquals(tx(ONE, TWO), l.transaction);
+    }
+
+    @Test
+    void testFillReducesPassiveInPlace() {
+        Offer passive = bid(THREE, TWO);
+        Offer active = ask(ONE, TWO);
+
+        MutableMatchResult result = active.fill(passive, new TestTransactionListener(), new MutableMatchResult());
+
+        assertTrue(result.isActiveFilled());
+        assertFalse(result.isPassiveFilled());
+        assertEquals(TWO, passive.getAmount());
+    }
+
+    @Test
+    void testFillNoRateMatch() {
+        Offer passive = bid(ONE, ONE);
+        Offer active = ask(ONE, TWO);
+
+        TestTransactionListener l = new TestTransactionListener();
+        MutableMatchResult result = new MutableMatchResult();
+        assertSame(result, active.fill(passive, l, result));
+
+        assertFalse(result.isRateMatch());
+        assertNull(result.getAmount());
+        assertEquals(ONE, active.getAmount());
+        assertEquals(ONE, passive.getAmount());
+        assertNull(l.transaction);
+    }
+
+    @Test
+    void testFixedPointFillReusesResult() {
+        FixedPoint fp = new FixedPoint(2, 2);
+        Offer passive = bid(THREE, TWO);
+        passive.toFixedPoint(fp);
+        MutableMatchResult result = new MutableMatchResult();
+
+        for (int i = 0; i < 3; i++) {
+            Offer active = ask(ONE, TWO);
+            active.toFixedPoint(fp);
+            active.fill(passive, new TestTransactionListener(), result);
+
+            assertEquals(100, result.getFixedAmount());
+            assertTrue(result.isActiveFilled());
+            assertEquals(i == 2, result.isPassiveFilled());
+        }
+        assertEquals(0, passive.getFixedAmount());
+    }
+
+    @Test
+    void testFilledAmount() {
+        Offer passive = bid(THREE, TWO);
+        assertEquals(ZERO, passive.getFilledAmount());
+
+        ask(ONE, TWO).fill(passive, new TestTransactionListener(), new MutableMatchResult());
+
+        assertEquals(THREE, passive.getOriginalAmount());
+        assertEquals(ONE, passive.getFilledAmount());
+    }
+
+    @Test
+    void testFixedPointFilledAmount() {
+        FixedPoint fp = new FixedPoint(2, 2);
+        Offer passive = bid(THREE, TWO);
+        passive.toFixedPoint(fp);
+        Offer active = ask(ONE, TWO);
+        active.toFixedPoint(fp);
+
+        active.fill(passive, new TestTransactionListener(), new MutableMatchResult());
+
+        assertEquals(THREE, passive.getOriginalAmount());
+        assertEquals(0, ONE.compareTo(passive.getFilledAmount()));
+        assertEquals(0, ONE.compareTo(active.getFilledAmount()));
+    }
+
+    @Test
+    void testToFixedPointTooPreciseAmountFails() {
+        Offer o = ask(new BigDecimal("0.001"), ONE);
+        assertThrows(IllegalArgumentException.class, () -> o.toFixedPoint(new FixedPoint(2, 2)));
+        assertNull(o.getFixedPoint());
+    }
+
+    @Test
+    void testRestoreAmount() {
+        Offer o = ask(TWO, ONE);
+        o.restoreAmount(ONE);
+
+        assertEquals(ONE, o.getAmount());
+        assertEquals(ONE, o.getFilledAmount());
+        assertThrows(IllegalArgumentException.class, () -> o.restoreAmount(THREE));
+        assertThrows(IllegalArgumentException.class, () -> o.restoreAmount(ZERO));
+    }
+
+    @Test
+    void testIcebergRefill() {
+        Offer o = ask(new BigDecimal(5), ONE);
+        o.setDisplayAmount(TWO);
+        assertEquals(ZERO, o.getHiddenAmount());
+
+        o.hideReserve();
+        assertEquals(TWO, o.getAmount());
+        assertEquals(THREE, o.getHiddenAmount());
+
+        bid(TWO, ONE).fill(o, new TestTransactionListener(), new MutableMatchResult());
+        assertTrue(o.refill());
+        assertEquals(TWO, o.getAmount());
+        assertEquals(ONE, o.getHiddenAmount());
+        assertEquals(TWO, o.getFilledAmount());
+
+        bid(TWO, ONE).fill(o, new TestTransactionListener(), new MutableMatchResult());
+        assertTrue(o.refill());
+        assertEquals(ONE, o.getAmount());
+        assertEquals(ZERO, o.getHiddenAmount());
+
+        bid(ONE, ONE).fill(o, new TestTransactionListener(), new MutableMatchResult());
+        assertFalse(o.refill());
+        assertEquals(new BigDecimal(5), o.getFilledAmount());
+        assertThrows(IllegalArgumentException.class, () -> o.setDisplayAmount(ZERO));
+    }
+
+    @Test
+    void testIcebergRefillInFixedPointMode() {
+        FixedPoint fp = new FixedPoint(2, 2);
+        Offer o = ask(new BigDecimal("2.5"), ONE);
+        o.setDisplayAmount(ONE);
+        o.toFixedPoint(fp);
+        o.hideReserve();
+        assertEquals(0, ONE.compareTo(o.getAmount()));
+        assertEquals(150, o.getFixedHiddenAmount());
+
+        Offer active = bid(ONE, ONE);
+        active.toFixedPoint(fp);
+        active.fill(o, new TestTransactionListener(), new MutableMatchResult());
+        assertTrue(o.refill());
+        assertEquals(100, o.getFixedAmount());
+        assertEquals(50, o.getFixedHiddenAmount());
+        assertEquals(0, ONE.compareTo(o.getFilledAmount()));
+    }
+
     @Test
     void testConstructorAssertions() {
         Assumptions.assumeTrue(Offer.class.desiredAssertionStatus());
@@ -3,9 +3,12 @@ package com.hashnot.silverexchange.util;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 
 import static com.hashnot.silverexchange.util.BigDecimals.gtz;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class BigDecimalsTest {
@@ -32,4 +35,20 @@ public class BigDecimalsTest {
     void testGtzOnZero() {
         assertFalse(gtz(ZERO));
     }
+
+    @Test
+    void testBinaryRoundTrip() {
+        BigDecimal small = new BigDecimal("-123.4500");
+        BigDecimal large = new BigDecimal("123456789012345678901234567890.123");
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        BigDecimals.write(small, buffer);
+        BigDecimals.write(null, buffer);
+        BigDecimals.write(large, buffer);
+
+        buffer.flip();
+        assertEquals(small, BigDecimals.read(buffer));
+        assertNull(BigDecimals.read(buffer));
+        assertEquals(large, BigDecimals.read(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
 }
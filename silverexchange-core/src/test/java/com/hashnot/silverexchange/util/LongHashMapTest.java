@@ -0,0 +1,60 @@
+package com.hashnot.silverexchange.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashMapTest {
+    @Test
+    void testPutGetRemove() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+
+        assertNull(map.put(1, "a"));
+        assertNull(map.put(-1, "b"));
+        assertNull(map.put(Long.MIN_VALUE, "c"));
+        assertEquals("a", map.put(1, "A"));
+
+        assertEquals(3, map.size());
+        assertEquals("A", map.get(1));
+        assertTrue(map.containsKey(Long.MIN_VALUE));
+
+        assertEquals("b", map.remove(-1));
+        assertNull(map.remove(-1));
+        assertEquals(2, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+    }
+
+    @Test
+    void testSameAsHashMap() {
+        LongHashMap<Long> map = new LongHashMap<>(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(0);
+
+        // narrow range of keys, so that runs of colliding keys are often broken by removals
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(1000) * 1024L;
+            if (random.nextBoolean())
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            else
+                assertEquals(expected.remove(key), map.remove(key));
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 1000 * 1024L; key += 1024)
+            assertEquals(expected.get(key), map.get(key));
+    }
+
+    @Test
+    void testNegativeSize() {
+        assertThrows(IllegalArgumentException.class, () -> new LongHashMap<>(-1));
+    }
+}
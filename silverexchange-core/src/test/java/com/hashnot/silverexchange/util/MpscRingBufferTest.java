@@ -0,0 +1,79 @@
+package com.hashnot.silverexchange.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscRingBufferTest {
+    @Test
+    void testFifo() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+
+        assertFalse(buffer.isEmpty());
+        assertEquals(1, (int) buffer.poll());
+        assertEquals(2, (int) buffer.poll());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    void testFullBuffer() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(2);
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertFalse(buffer.offer(3));
+
+        assertEquals(1, (int) buffer.poll());
+        assertTrue(buffer.offer(3));
+        assertEquals(2, (int) buffer.poll());
+        assertEquals(3, (int) buffer.poll());
+    }
+
+    @Test
+    void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(0));
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(3));
+    }
+
+    @Test
+    void testConcurrentProducers() throws InterruptedException {
+        int producers = 4;
+        int count = 10_000;
+        MpscRingBuffer<int[]> buffer = new MpscRingBuffer<>(16);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < count; i++)
+                    while (!buffer.offer(new int[]{producer, i}))
+                        Thread.yield();
+            });
+            threads.add(t);
+            t.start();
+        }
+
+        // elements of each producer arrive in order, none is lost
+        int[] next = new int[producers];
+        for (int received = 0; received < producers * count; ) {
+            int[] e = buffer.poll();
+            if (e == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[e[0]]++, e[1]);
+            received++;
+        }
+        for (Thread t : threads)
+            t.join();
+
+        assertTrue(buffer.isEmpty());
+    }
+}
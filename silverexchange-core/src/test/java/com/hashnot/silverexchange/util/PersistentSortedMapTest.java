@@ -0,0 +1,82 @@
+package com.hashnot.silverexchange.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentSortedMapTest {
+    private static <V> List<V> values(PersistentSortedMap<?, V> map) {
+        List<V> result = new ArrayList<>();
+        map.forEach(result::add);
+        return result;
+    }
+
+    @Test
+    void testEmpty() {
+        PersistentSortedMap<Integer, String> map = PersistentSortedMap.empty(Comparator.naturalOrder());
+
+        assertTrue(map.isEmpty());
+        assertNull(map.first());
+        assertNull(map.get(1));
+        assertSame(map, map.remove(1));
+        assertEquals(emptyList(), values(map));
+    }
+
+    @Test
+    void testPutReplaceRemove() {
+        PersistentSortedMap<Integer, String> map = PersistentSortedMap.<Integer, String>empty(Comparator.reverseOrder())
+                .put(1, "a")
+                .put(3, "c")
+                .put(2, "b");
+
+        assertEquals(asList("c", "b", "a"), values(map));
+        assertEquals("c", map.first());
+
+        PersistentSortedMap<Integer, String> replaced = map.put(2, "B");
+        assertEquals(3, replaced.size());
+        assertEquals("B", replaced.get(2));
+
+        PersistentSortedMap<Integer, String> removed = replaced.remove(3);
+        assertEquals(asList("B", "a"), values(removed));
+        assertEquals(2, removed.size());
+    }
+
+    @Test
+    void testOldVersionsUnchanged() {
+        PersistentSortedMap<Integer, String> v1 = PersistentSortedMap.<Integer, String>empty(Comparator.naturalOrder()).put(1, "a").put(2, "b");
+        PersistentSortedMap<Integer, String> v2 = v1.put(3, "c").remove(1).put(2, "B");
+
+        assertEquals(asList("a", "b"), values(v1));
+        assertEquals(asList("B", "c"), values(v2));
+    }
+
+    @Test
+    void testRandomOperationsMatchTreeMap() {
+        Random random = new Random(42);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        PersistentSortedMap<Integer, Integer> map = PersistentSortedMap.empty(Comparator.naturalOrder());
+
+        for (int i = 0; i < 10_000; i++) {
+            int key = random.nextInt(200);
+            if (random.nextBoolean()) {
+                expected.put(key, i);
+                map = map.put(key, i);
+            } else {
+                expected.remove(key);
+                map = map.remove(key);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.values()), values(map));
+        assertEquals(expected.firstEntry().getValue(), map.first());
+    }
+}
@@ -0,0 +1,120 @@
+package com.hashnot.silverexchange.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    @Test
+    void testExpiresInOrderOfDeadlines() {
+        TimingWheel<String> wheel = new TimingWheel<>(0);
+        wheel.schedule(5000, "c");
+        wheel.schedule(10, "a");
+        wheel.schedule(70, "b");
+        wheel.schedule(10, "a2");
+
+        List<String> expired = new ArrayList<>();
+        assertEquals(2, wheel.advance(69, expired::add));
+        assertEquals(asList("a", "a2"), expired);
+        assertEquals(69, wheel.getTime());
+
+        assertEquals(2, wheel.advance(5000, expired::add));
+        assertEquals(asList("a", "a2", "b", "c"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testCancel() {
+        TimingWheel<String> wheel = new TimingWheel<>(0);
+        TimingWheel.Timer<String> timer = wheel.schedule(100, "a");
+        wheel.schedule(100, "b");
+
+        assertTrue(wheel.cancel(timer));
+        assertFalse(timer.isScheduled());
+        assertFalse(wheel.cancel(timer));
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(100, expired::add);
+        assertEquals(asList("b"), expired);
+    }
+
+    @Test
+    void testPastDeadlineExpiresOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000);
+        TimingWheel.Timer<String> timer = wheel.schedule(10, "a");
+        assertEquals(10, timer.getDeadline());
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1000, expired::add);
+        assertEquals(emptyList(), expired);
+        wheel.advance(1001, expired::add);
+        assertEquals(asList("a"), expired);
+    }
+
+    @Test
+    void testLargeTimes() {
+        long start = 1_500_000_000_000L;
+        TimingWheel<String> wheel = new TimingWheel<>(start);
+        wheel.schedule(Long.MAX_VALUE, "b");
+        wheel.schedule(start + 86_400_000L, "a");
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(start + 86_399_999L, expired::add);
+        assertEquals(emptyList(), expired);
+        wheel.advance(Long.MAX_VALUE - 1, expired::add);
+        assertEquals(asList("a"), expired);
+        wheel.advance(Long.MAX_VALUE, expired::add);
+        assertEquals(asList("a", "b"), expired);
+    }
+
+    @Test
+    void testScheduleWhileExpiring() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(0);
+        wheel.schedule(1, 1);
+
+        List<Integer> expired = new ArrayList<>();
+        wheel.advance(10, value -> {
+            expired.add(value);
+            if (value < 5)
+                wheel.schedule(value + 1, value + 1);
+        });
+        assertEquals(asList(1, 2, 3, 4, 5), expired);
+    }
+
+    @Test
+    void testRandomTimers() {
+        TimingWheel<Long> wheel = new TimingWheel<>(0);
+        List<TimingWheel.Timer<Long>> timers = new ArrayList<>();
+        Random random = new Random(0);
+        long now = 0;
+        for (int round = 0; round < 1000; round++) {
+            for (int i = random.nextInt(10); i > 0; i--) {
+                long deadline = now + (long) Math.pow(2, random.nextDouble() * 40);
+                timers.add(wheel.schedule(deadline, deadline));
+            }
+            if (!timers.isEmpty() && random.nextInt(4) == 0)
+                wheel.cancel(timers.remove(random.nextInt(timers.size())));
+
+            long from = now;
+            long to = now + (long) Math.pow(2, random.nextDouble() * 36);
+            long[] last = {from};
+            wheel.advance(to, deadline -> {
+                assertTrue(deadline > from && deadline <= to);
+                assertTrue(deadline >= last[0]);
+                last[0] = deadline;
+            });
+            now = to;
+
+            for (TimingWheel.Timer<Long> timer : timers)
+                assertEquals(timer.getDeadline() > now, timer.isScheduled());
+            timers.removeIf(timer -> !timer.isScheduled());
+            assertEquals(timers.size(), wheel.size());
+        }
+    }
+}
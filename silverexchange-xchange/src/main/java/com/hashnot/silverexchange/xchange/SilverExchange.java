@@ -1,39 +1,280 @@
 package com.hashnot.silverexchange.xchange;
 
 import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.FixedPoint;
+import com.hashnot.silverexchange.TransactionLog;
+import com.hashnot.silverexchange.xchange.impl.ExchangeRegistry;
+import com.hashnot.silverexchange.xchange.impl.JournalingExchangeFactory;
 import com.hashnot.silverexchange.xchange.impl.SilverTransactionFactory;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverTransaction;
 import com.hashnot.silverexchange.xchange.service.IIdGenerator;
+import com.hashnot.silverexchange.xchange.service.SequenceIdGenerator;
 import com.hashnot.silverexchange.xchange.service.account.SilverAccountService;
 import com.hashnot.silverexchange.xchange.service.marketdata.SilverMarketDataService;
 import com.hashnot.silverexchange.xchange.service.trade.SilverTradeService;
 import com.hashnot.silverexchange.xchange.util.Clock;
+import com.hashnot.silverexchange.xchange.util.SimulationClock;
 import org.knowm.xchange.BaseExchange;
 import org.knowm.xchange.ExchangeSpecification;
+import org.knowm.xchange.currency.CurrencyPair;
 import org.knowm.xchange.exceptions.ExchangeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-public class SilverExchange extends BaseExchange {
+public class SilverExchange extends BaseExchange implements AutoCloseable {
+
+    final private static Logger log = LoggerFactory.getLogger(SilverExchange.class);
 
     static final String NAME = "SilverExchange";
-    private IIdGenerator idGenerator;
+
+    /**
+     * Exchange specific parameter: scale of prices in fixed-point mode, used for all currency pairs. Fixed-point mode is enabled if both scales are given.
+     */
+    public static final String PARAM_PRICE_SCALE = "priceScale";
+
+    /**
+     * Exchange specific parameter: scale of amounts in fixed-point mode.
+     */
+    public static final String PARAM_AMOUNT_SCALE = "amountScale";
+
+    /**
+     * Exchange specific parameter: size of the command queue of each currency pair, a power of 2. If given, orders of each pair are matched
+     * by a single thread reading the queue instead of the calling threads taking a lock.
+     */
+    public static final String PARAM_SEQUENCER_CAPACITY = "sequencerCapacity";
+
+    /**
+     * Exchange specific parameter: maximum number of the most recent trades of each currency pair retained for {@link SilverMarketDataService#getTrades}.
+     * All trades are retained by default.
+     */
+    public static final String PARAM_TRADE_HISTORY_SIZE = "tradeHistorySize";
+
+    /**
+     * Exchange specific parameter: ISO-8601 duration (e.g. PT1H) of the window of retained trades, counted back from the newest trade.
+     */
+    public static final String PARAM_TRADE_HISTORY_WINDOW = "tradeHistoryWindow";
+
+    /**
+     * Exchange specific parameter: directory of command journals. If given, orders and cancellations are journaled before they're executed,
+     * and order books of all journaled currency pairs are rebuilt from the journals when the services are initialized.
+     */
+    public static final String PARAM_JOURNAL_DIRECTORY = "journalDirectory";
+
+    /**
+     * Exchange specific parameter: size in bytes of journal segment files, pre-allocated and memory-mapped. 64 MiB by default.
+     */
+    public static final String PARAM_JOURNAL_SEGMENT_SIZE = "journalSegmentSize";
+
+    /**
+     * Exchange specific parameter: ISO-8601 duration between forcing the journals to the disk, 1 ms by default.
+     * Journaled commands survive a crash of the process immediately, and a crash of the system once forced.
+     */
+    public static final String PARAM_JOURNAL_FLUSH_INTERVAL = "journalFlushInterval";
+
+    /**
+     * Exchange specific parameter: ISO-8601 duration between checkpoints of journaled order books. A checkpoint holds all orders
+     * of a currency pair, so on restart only journal records following it are replayed, and older journal segments are deleted.
+     */
+    public static final String PARAM_CHECKPOINT_INTERVAL = "checkpointInterval";
+
+    /**
+     * Exchange specific parameter: ISO-8601 instant (e.g. 2018-01-01T00:00:00Z) starting a simulation. If given, the exchange runs on
+     * a {@link SimulationClock}, which moves only when advanced, and generates ids from {@link #PARAM_SIMULATION_SEED}, so that a backtest
+     * gives the same results every time and isn't slowed down to the wall-clock time.
+     */
+    public static final String PARAM_SIMULATION_START = "simulationStart";
+
+    /**
+     * Exchange specific parameter: seed of ids generated in a simulation, 0 by default. Ignored if the exchange was created with an id generator.
+     */
+    public static final String PARAM_SIMULATION_SEED = "simulationSeed";
+
+    /**
+     * Exchange specific parameter: generator of order and trade ids, either {@value #ID_GENERATOR_RANDOM} (the default) for random UUIDs,
+     * or {@value #ID_GENERATOR_SEQUENCE} for much cheaper time-ordered UUIDs of a {@link SequenceIdGenerator}.
+     * Ignored in a simulation and if the exchange was created with an id generator.
+     */
+    public static final String PARAM_ID_GENERATOR = "idGenerator";
+
+    public static final String ID_GENERATOR_RANDOM = "random";
+    public static final String ID_GENERATOR_SEQUENCE = "sequence";
+
+    private static final int DEFAULT_JOURNAL_SEGMENT_SIZE = 64 << 20;
+    private static final Duration DEFAULT_JOURNAL_FLUSH_INTERVAL = Duration.ofMillis(1);
+
+    /**
+     * The id generator given to the constructor, or null for the default of the mode
+     */
+    final private IIdGenerator customIdGenerator;
+
+    private SimulationClock simulationClock;
+
+    private ExchangeRegistry exchanges;
+    private JournalingExchangeFactory journalingFactory;
+    private ScheduledExecutorService checkpointScheduler;
 
     public SilverExchange() {
-        idGenerator = IIdGenerator.DEFAULT;
+        this(null);
     }
 
     public SilverExchange(IIdGenerator idGenerator) {
-        this.idGenerator = idGenerator;
+        customIdGenerator = idGenerator;
     }
 
     @Override
     protected void initServices() {
-        Clock clock = Clock.systemDefaultZone();
-        Exchange exchange = new Exchange(new SilverTransactionFactory(idGenerator, clock));
+        Object simulationStart = exchangeSpecification.getExchangeSpecificParametersItem(PARAM_SIMULATION_START);
+        Clock clock;
+        IIdGenerator idGenerator;
+        if (simulationStart == null) {
+            clock = Clock.systemDefaultZone();
+            idGenerator = customIdGenerator == null ? idGenerator(exchangeSpecification) : customIdGenerator;
+        } else {
+            Object seed = exchangeSpecification.getExchangeSpecificParametersItem(PARAM_SIMULATION_SEED);
+            clock = simulationClock = new SimulationClock(Instant.parse(simulationStart.toString()));
+            idGenerator = customIdGenerator != null ? customIdGenerator : IIdGenerator.seeded(seed == null ? 0 : Long.parseLong(seed.toString()));
+        }
+
+        SilverTransactionFactory transactionFactory = new SilverTransactionFactory(idGenerator, clock);
+        FixedPoint fixedPoint = fixedPoint(exchangeSpecification);
+        Object sequencerCapacity = exchangeSpecification.getExchangeSpecificParametersItem(PARAM_SEQUENCER_CAPACITY);
+        Supplier<TransactionLog<SilverTransaction>> transactionLog = transactionLog(exchangeSpecification);
+        Function<CurrencyPair, Exchange<SilverTransaction, SilverOrder>> exchangeFactory =
+                pair -> new Exchange<>(transactionFactory, SilverOrder::getId, fixedPoint, transactionLog.get());
+        JournalingExchangeFactory journalingFactory = this.journalingFactory = journalingFactory(exchangeSpecification, exchangeFactory);
+        ExchangeRegistry exchanges = this.exchanges = new ExchangeRegistry(
+                journalingFactory == null ? exchangeFactory : journalingFactory,
+                sequencerCapacity == null ? 0 : Integer.parseInt(sequencerCapacity.toString()),
+                clock
+        );
+        if (journalingFactory != null) {
+            recover(exchanges, journalingFactory);
+            checkpointScheduler = scheduleCheckpoints(exchangeSpecification, exchanges, journalingFactory);
+        }
 
         this.accountService = new SilverAccountService();
-        this.marketDataService = new SilverMarketDataService(exchange, clock);
-        this.tradeService = new SilverTradeService(exchange, idGenerator, clock);
+        this.marketDataService = new SilverMarketDataService(exchanges, clock);
+        this.tradeService = new SilverTradeService(exchanges, idGenerator, clock);
+    }
+
+    /**
+     * Shut the exchange down: stop the checkpoints, stop the matching threads after they apply queued commands,
+     * then stop the journal flushers and force the journals to the disk.
+     * If the calling thread is interrupted while waiting for a checkpoint, still closes the rest and keeps its interrupt flag set.
+     */
+    @Override
+    public void close() {
+        if (checkpointScheduler != null) {
+            checkpointScheduler.shutdown();
+            try {
+                checkpointScheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (exchanges != null)
+            exchanges.close();
+        if (journalingFactory != null)
+            journalingFactory.close();
+    }
+
+    /**
+     * @return clock of the simulation, to be advanced by the backtest, or null if the exchange runs on the system clock
+     */
+    public SimulationClock getSimulationClock() {
+        return simulationClock;
+    }
+
+    static IIdGenerator idGenerator(ExchangeSpecification spec) {
+        Object type = spec.getExchangeSpecificParametersItem(PARAM_ID_GENERATOR);
+        if (type == null || ID_GENERATOR_RANDOM.equals(type))
+            return IIdGenerator.DEFAULT;
+        else if (ID_GENERATOR_SEQUENCE.equals(type))
+            return new SequenceIdGenerator();
+        else
+            throw new IllegalArgumentException("Unknown id generator " + type);
+    }
+
+    static FixedPoint fixedPoint(ExchangeSpecification spec) {
+        Object priceScale = spec.getExchangeSpecificParametersItem(PARAM_PRICE_SCALE);
+        Object amountScale = spec.getExchangeSpecificParametersItem(PARAM_AMOUNT_SCALE);
+        if (priceScale == null && amountScale == null)
+            return null;
+        else if (priceScale == null || amountScale == null)
+            throw new IllegalArgumentException("Fixed-point mode requires both " + PARAM_PRICE_SCALE + " and " + PARAM_AMOUNT_SCALE);
+        else
+            return new FixedPoint(Integer.parseInt(priceScale.toString()), Integer.parseInt(amountScale.toString()));
+    }
+
+    static JournalingExchangeFactory journalingFactory(ExchangeSpecification spec, Function<CurrencyPair, Exchange<SilverTransaction, SilverOrder>> exchangeFactory) {
+        Object directory = spec.getExchangeSpecificParametersItem(PARAM_JOURNAL_DIRECTORY);
+        if (directory == null)
+            return null;
+
+        Object segmentSize = spec.getExchangeSpecificParametersItem(PARAM_JOURNAL_SEGMENT_SIZE);
+        Object flushInterval = spec.getExchangeSpecificParametersItem(PARAM_JOURNAL_FLUSH_INTERVAL);
+        return new JournalingExchangeFactory(
+                exchangeFactory,
+                Paths.get(directory.toString()),
+                segmentSize == null ? DEFAULT_JOURNAL_SEGMENT_SIZE : Integer.parseInt(segmentSize.toString()),
+                (flushInterval == null ? DEFAULT_JOURNAL_FLUSH_INTERVAL : Duration.parse(flushInterval.toString())).toNanos()
+        );
+    }
+
+    private static void recover(ExchangeRegistry exchanges, JournalingExchangeFactory journalingFactory) {
+        try {
+            for (CurrencyPair pair : journalingFactory.getJournaledPairs())
+                exchanges.call(pair, exchange -> null);
+        } catch (IOException e) {
+            throw new ExchangeException("Couldn't read journals", e);
+        }
+    }
+
+    /**
+     * @return the scheduler of checkpoints, or null if they aren't enabled
+     */
+    private static ScheduledExecutorService scheduleCheckpoints(ExchangeSpecification spec, ExchangeRegistry exchanges, JournalingExchangeFactory journalingFactory) {
+        Object interval = spec.getExchangeSpecificParametersItem(PARAM_CHECKPOINT_INTERVAL);
+        if (interval == null)
+            return null;
+
+        long millis = Duration.parse(interval.toString()).toMillis();
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                journalingFactory.checkpoint(exchanges);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Checkpoint failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    static Supplier<TransactionLog<SilverTransaction>> transactionLog(ExchangeSpecification spec) {
+        Object size = spec.getExchangeSpecificParametersItem(PARAM_TRADE_HISTORY_SIZE);
+        Object window = spec.getExchangeSpecificParametersItem(PARAM_TRADE_HISTORY_WINDOW);
+        int maxSize = size == null ? Integer.MAX_VALUE : Integer.parseInt(size.toString());
+        if (window == null)
+            return () -> new TransactionLog<>(maxSize, null, 0);
+
+        long windowMillis = Duration.parse(window.toString()).toMillis();
+        return () -> new TransactionLog<>(maxSize, tx -> tx.getTimestamp().toEpochMilli(), windowMillis);
     }
 
     @Override
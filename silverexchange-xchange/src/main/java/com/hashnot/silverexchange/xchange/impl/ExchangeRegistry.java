@@ -0,0 +1,257 @@
+package com.hashnot.silverexchange.xchange.impl;
+
+import com.hashnot.silverexchange.BookSnapshot;
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.Sequencer;
+import com.hashnot.silverexchange.TradeStats;
+import com.hashnot.silverexchange.ext.IDepthListener;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import com.hashnot.silverexchange.xchange.util.Clock;
+import com.hashnot.silverexchange.xchange.util.SimulationClock;
+import org.knowm.xchange.currency.CurrencyPair;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Matching engines of all currency pairs, created by the first command which may change one, so that reading market data
+ * of a pair never creates its engine.
+ * <p>
+ * The engines aren't thread safe, so they're accessed only through commands run by {@link #call(CurrencyPair, Function)}.
+ * By default each {@link Exchange} is the lock guarding its own order book and transactions, so that different pairs can be processed concurrently.
+ * In sequenced mode each exchange has a {@link Sequencer} instead, and commands are queued to its matching thread without locking.
+ * Price levels can also be read from the snapshot published by each exchange, without waiting for the commands.
+ * <p>
+ * With a clock, good till date orders which expired by the time of a command are removed before the command is applied,
+ * so commands never see them; snapshots may still show them until the next command of the pair.
+ */
+public class ExchangeRegistry {
+    private final ConcurrentMap<CurrencyPair, Book> books = new ConcurrentHashMap<>();
+    private final Function<CurrencyPair, Exchange<SilverTransaction, SilverOrder>> exchangeFactory;
+    private final int sequencerCapacity;
+    private final Clock clock;
+
+    /**
+     * Depth listeners of pairs without an exchange, added to the exchange when it's created. Also the lock of creating exchanges.
+     */
+    private final Map<CurrencyPair, List<IDepthListener>> pendingListeners = new HashMap<>();
+
+    public ExchangeRegistry(Function<CurrencyPair, Exchange<SilverTransaction, SilverOrder>> exchangeFactory) {
+        this(exchangeFactory, 0);
+    }
+
+    /**
+     * @param sequencerCapacity if positive, enables sequenced mode with command queues of that size (a power of 2)
+     */
+    public ExchangeRegistry(Function<CurrencyPair, Exchange<SilverTransaction, SilverOrder>> exchangeFactory, int sequencerCapacity) {
+        this(exchangeFactory, sequencerCapacity, null);
+    }
+
+    /**
+     * @param clock if not null, time of expiry of good till date orders, which expire in milliseconds since the epoch
+     */
+    public ExchangeRegistry(Function<CurrencyPair, Exchange<SilverTransaction, SilverOrder>> exchangeFactory, int sequencerCapacity, Clock clock) {
+        if (sequencerCapacity < 0 || sequencerCapacity > 0 && Integer.bitCount(sequencerCapacity) != 1)
+            throw new IllegalArgumentException("Sequencer capacity must be a power of 2");
+
+        this.exchangeFactory = exchangeFactory;
+        this.sequencerCapacity = sequencerCapacity;
+        this.clock = clock;
+    }
+
+    /**
+     * Run the command against the exchange of the pair, created if it doesn't exist yet.
+     *
+     * @return result of the command
+     */
+    public <R> R call(CurrencyPair pair, Function<? super Exchange<SilverTransaction, SilverOrder>, R> command) {
+        if (pair == null)
+            throw new IllegalArgumentException("Null currency pair");
+
+        return book(pair).call(expiring(command));
+    }
+
+    private Book book(CurrencyPair pair) {
+        Book book = books.get(pair);
+        if (book != null)
+            return book;
+
+        synchronized (pendingListeners) {
+            return books.computeIfAbsent(pair, this::createBook);
+        }
+    }
+
+    /**
+     * Run the command against the exchange of the pair if there was any order of the pair yet.
+     *
+     * @return result of the command or null if there is no exchange of the pair
+     */
+    public <R> R callIfPresent(CurrencyPair pair, Function<? super Exchange<SilverTransaction, SilverOrder>, R> command) {
+        Book book = pair == null ? null : books.get(pair);
+        return book == null ? null : book.call(expiring(command));
+    }
+
+    /**
+     * @return the command preceded by expiry of orders, evaluated by the thread owning the exchange
+     */
+    private <R> Function<? super Exchange<SilverTransaction, SilverOrder>, R> expiring(Function<? super Exchange<SilverTransaction, SilverOrder>, R> command) {
+        if (clock == null)
+            return command;
+
+        return exchange -> {
+            exchange.expire(clock.get().toEpochMilli());
+            return command.apply(exchange);
+        };
+    }
+
+    /**
+     * Expire good till date orders of the pair when a {@link SimulationClock} reaches the expire time, even if no command comes by then,
+     * so that market data of a simulation shows the expiry at its time. Other clocks have no timers; orders then expire before the next command.
+     *
+     * @param expireTime milliseconds since the epoch
+     */
+    public void expireAt(CurrencyPair pair, long expireTime) {
+        if (clock instanceof SimulationClock)
+            ((SimulationClock) clock).schedule(Instant.ofEpochMilli(expireTime), () -> callIfPresent(pair, exchange -> null));
+    }
+
+    /**
+     * @return price levels of the pair after the last command of its exchange, or null if there's no exchange of the pair
+     */
+    public BookSnapshot getSnapshot(CurrencyPair pair) {
+        if (pair == null)
+            throw new IllegalArgumentException("Null currency pair");
+
+        Book book = books.get(pair);
+        return book == null ? null : book.exchange.getSnapshot();
+    }
+
+    /**
+     * @return statistics of transactions of the pair after the last command of its exchange, or null if there's no exchange of the pair
+     */
+    public TradeStats getTradeStats(CurrencyPair pair) {
+        if (pair == null)
+            throw new IllegalArgumentException("Null currency pair");
+
+        Book book = books.get(pair);
+        return book == null ? null : book.exchange.getPublishedTradeStats();
+    }
+
+    /**
+     * Register the depth listener with the exchange of the pair and run the command, or if there's no exchange of the pair yet,
+     * register the listener with the exchange once it's created
+     *
+     * @param command run after the listener is registered, by the thread owning the exchange
+     * @return result of the command, or null if there's no exchange of the pair yet
+     */
+    public <R> R addDepthListener(CurrencyPair pair, IDepthListener listener, Function<? super Exchange<SilverTransaction, SilverOrder>, R> command) {
+        if (pair == null)
+            throw new IllegalArgumentException("Null currency pair");
+
+        Book book;
+        synchronized (pendingListeners) {
+            book = books.get(pair);
+            if (book == null) {
+                pendingListeners.computeIfAbsent(pair, p -> new ArrayList<>()).add(listener);
+                return null;
+            }
+        }
+        return book.call(exchange -> {
+            exchange.addDepthListener(listener);
+            return command.apply(exchange);
+        });
+    }
+
+    public void removeDepthListener(CurrencyPair pair, IDepthListener listener) {
+        Book book;
+        synchronized (pendingListeners) {
+            book = books.get(pair);
+            if (book == null) {
+                List<IDepthListener> pending = pendingListeners.get(pair);
+                if (pending != null)
+                    pending.remove(listener);
+                return;
+            }
+        }
+        book.call(exchange -> {
+            exchange.removeDepthListener(listener);
+            return null;
+        });
+    }
+
+    /**
+     * @return read-only view of pairs of all existing exchanges
+     */
+    public Set<CurrencyPair> getPairs() {
+        return Collections.unmodifiableSet(books.keySet());
+    }
+
+    public boolean isSequenced() {
+        return sequencerCapacity > 0;
+    }
+
+    /**
+     * Stop matching threads of all exchanges, after they apply queued commands. Does nothing if not in sequenced mode.
+     */
+    public void close() {
+        for (Book book : books.values())
+            if (book.sequencer != null)
+                book.sequencer.close();
+    }
+
+    private Book createBook(CurrencyPair pair) {
+        Exchange<SilverTransaction, SilverOrder> exchange = exchangeFactory.apply(pair);
+        List<IDepthListener> listeners = pendingListeners.remove(pair);
+        if (listeners != null)
+            listeners.forEach(exchange::addDepthListener);
+        if (!isSequenced())
+            return new Book(exchange, null);
+
+        Sequencer<SilverTransaction, SilverOrder> sequencer = new Sequencer<>(exchange, sequencerCapacity, r -> {
+            Thread t = new Thread(r, "sequencer-" + pair);
+            t.setDaemon(true);
+            return t;
+        });
+        return new Book(exchange, sequencer.start());
+    }
+
+    private static class Book {
+        final private Exchange<SilverTransaction, SilverOrder> exchange;
+        final private Sequencer<SilverTransaction, SilverOrder> sequencer;
+
+        Book(Exchange<SilverTransaction, SilverOrder> exchange, Sequencer<SilverTransaction, SilverOrder> sequencer) {
+            this.exchange = exchange;
+            this.sequencer = sequencer;
+        }
+
+        <R> R call(Function<? super Exchange<SilverTransaction, SilverOrder>, R> command) {
+            if (sequencer == null) {
+                synchronized (exchange) {
+                    return command.apply(exchange);
+                }
+            }
+
+            try {
+                return sequencer.submit(command).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                else if (cause instanceof Error)
+                    throw (Error) cause;
+                else
+                    throw e;
+            }
+        }
+    }
+}
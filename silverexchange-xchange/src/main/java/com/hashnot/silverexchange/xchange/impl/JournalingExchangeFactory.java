@@ -0,0 +1,114 @@
+package com.hashnot.silverexchange.xchange.impl;
+
+import com.hashnot.silverexchange.Checkpoint;
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.Journal;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import org.knowm.xchange.currency.CurrencyPair;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Creates exchanges recording their commands in journals, one directory per currency pair. A new exchange is first rebuilt
+ * from the checkpoint of its pair, if there is one, and then by replaying the journal records following the checkpoint.
+ */
+public class JournalingExchangeFactory implements Function<CurrencyPair, Exchange<SilverTransaction, SilverOrder>>, AutoCloseable {
+    private static final char SEPARATOR = '-';
+    private static final String CHECKPOINT = "checkpoint.dat";
+
+    final private Function<CurrencyPair, Exchange<SilverTransaction, SilverOrder>> exchangeFactory;
+    final private Path directory;
+    final private int segmentSize;
+    final private long flushIntervalNanos;
+    final private Map<CurrencyPair, Journal<SilverOrder>> journals = new ConcurrentHashMap<>();
+
+    /**
+     * @param segmentSize        size of journal segment files
+     * @param flushIntervalNanos interval of forcing journals to the disk
+     */
+    public JournalingExchangeFactory(Function<CurrencyPair, Exchange<SilverTransaction, SilverOrder>> exchangeFactory, Path directory, int segmentSize, long flushIntervalNanos) {
+        this.exchangeFactory = exchangeFactory;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalNanos = flushIntervalNanos;
+    }
+
+    @Override
+    public Exchange<SilverTransaction, SilverOrder> apply(CurrencyPair pair) {
+        Exchange<SilverTransaction, SilverOrder> exchange = exchangeFactory.apply(pair);
+        Path pairDirectory = directory(pair);
+        SilverOrderCodec codec = new SilverOrderCodec(pair);
+        try {
+            Journal<SilverOrder> journal = new Journal<>(pairDirectory, segmentSize, codec);
+            Path checkpoint = pairDirectory.resolve(CHECKPOINT);
+            long sequence = Files.exists(checkpoint) ? Checkpoint.restore(checkpoint, exchange, codec) : 0;
+            journal.replay(exchange, sequence);
+            exchange.setJournal(journal);
+            journals.put(pair, journal.startFlusher(r -> {
+                Thread t = new Thread(r, "journal-" + pair);
+                t.setDaemon(true);
+                return t;
+            }, flushIntervalNanos));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return exchange;
+    }
+
+    private Path directory(CurrencyPair pair) {
+        return directory.resolve(pair.base.getCurrencyCode() + SEPARATOR + pair.counter.getCurrencyCode());
+    }
+
+    /**
+     * Write checkpoints of all journaled exchanges and delete journal segments preceding them. Offers are captured by commands
+     * of the registry, the checkpoints are written by the calling thread.
+     */
+    public void checkpoint(ExchangeRegistry exchanges) throws IOException {
+        for (Map.Entry<CurrencyPair, Journal<SilverOrder>> e : journals.entrySet()) {
+            CurrencyPair pair = e.getKey();
+            Journal<SilverOrder> journal = e.getValue();
+            SilverOrderCodec codec = new SilverOrderCodec(pair);
+            ByteBuffer image = exchanges.call(pair, exchange -> Checkpoint.capture(exchange, journal.getSequence(), codec));
+            Checkpoint.write(image.duplicate(), directory(pair).resolve(CHECKPOINT));
+            journal.compact(Checkpoint.getSequence(image));
+        }
+    }
+
+    /**
+     * @return pairs of existing journals, whose exchanges should be created at startup
+     */
+    public List<CurrencyPair> getJournaledPairs() throws IOException {
+        if (!Files.isDirectory(directory))
+            return Collections.emptyList();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(Files::isDirectory)
+                    .map(p -> p.getFileName().toString())
+                    .filter(name -> name.indexOf(SEPARATOR) > 0)
+                    .map(name -> new CurrencyPair(name.substring(0, name.indexOf(SEPARATOR)), name.substring(name.indexOf(SEPARATOR) + 1)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Stop flushers and force all journals to the disk
+     */
+    @Override
+    public void close() {
+        for (Journal<SilverOrder> journal : journals.values())
+            journal.close();
+    }
+}
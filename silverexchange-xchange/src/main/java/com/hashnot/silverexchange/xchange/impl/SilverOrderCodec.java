@@ -0,0 +1,52 @@
+package com.hashnot.silverexchange.xchange.impl;
+
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.ext.IJournalCodec;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import org.knowm.xchange.currency.CurrencyPair;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.UUID;
+
+import static com.hashnot.silverexchange.util.BigDecimals.read;
+import static com.hashnot.silverexchange.util.BigDecimals.write;
+
+/**
+ * Binary form of orders of one currency pair, which isn't written with each order
+ */
+public class SilverOrderCodec implements IJournalCodec<SilverOrder> {
+    final private CurrencyPair pair;
+
+    public SilverOrderCodec(CurrencyPair pair) {
+        this.pair = pair;
+    }
+
+    @Override
+    public void writeOffer(SilverOrder order, ByteBuffer buffer) {
+        writeId(order.getId(), buffer);
+        buffer.put((byte) order.getSide().ordinal());
+        write(order.getOriginalAmount(), buffer);
+        write(order.getRate().getValue(), buffer);
+        buffer.putLong(order.getTimestamp().getEpochSecond()).putInt(order.getTimestamp().getNano());
+    }
+
+    @Override
+    public SilverOrder readOffer(ByteBuffer buffer) {
+        UUID id = readId(buffer);
+        Side side = Side.values()[buffer.get()];
+        return new SilverOrder(id, pair, side, read(buffer), new OfferRate(read(buffer)), Instant.ofEpochSecond(buffer.getLong(), buffer.getInt()));
+    }
+
+    @Override
+    public void writeId(Object id, ByteBuffer buffer) {
+        UUID uuid = (UUID) id;
+        buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+    }
+
+    @Override
+    public UUID readId(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
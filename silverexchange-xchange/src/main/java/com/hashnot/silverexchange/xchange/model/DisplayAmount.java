@@ -0,0 +1,38 @@
+package com.hashnot.silverexchange.xchange.model;
+
+import org.knowm.xchange.dto.Order.IOrderFlags;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Flag of an iceberg order, of which only a slice of the display amount is visible in the order book at a time
+ */
+public final class DisplayAmount implements IOrderFlags {
+    final private BigDecimal displayAmount;
+
+    public DisplayAmount(BigDecimal displayAmount) {
+        assert displayAmount != null;
+
+        this.displayAmount = displayAmount;
+    }
+
+    public BigDecimal getDisplayAmount() {
+        return displayAmount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof DisplayAmount && displayAmount.compareTo(((DisplayAmount) o).displayAmount) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(displayAmount.stripTrailingZeros());
+    }
+
+    @Override
+    public String toString() {
+        return "DisplayAmount " + displayAmount;
+    }
+}
@@ -0,0 +1,38 @@
+package com.hashnot.silverexchange.xchange.model;
+
+import org.knowm.xchange.dto.Order.IOrderFlags;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Flag of a limit order cancelled at the given time, unless it's filled before
+ */
+public final class GoodTillDate implements IOrderFlags {
+    final private Instant expireTime;
+
+    public GoodTillDate(Instant expireTime) {
+        assert expireTime != null;
+
+        this.expireTime = expireTime;
+    }
+
+    public Instant getExpireTime() {
+        return expireTime;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof GoodTillDate && expireTime.equals(((GoodTillDate) o).expireTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(expireTime);
+    }
+
+    @Override
+    public String toString() {
+        return "GoodTillDate " + expireTime;
+    }
+}
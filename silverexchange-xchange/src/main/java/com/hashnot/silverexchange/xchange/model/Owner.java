@@ -0,0 +1,39 @@
+package com.hashnot.silverexchange.xchange.model;
+
+import org.knowm.xchange.dto.Order.IOrderFlags;
+
+/**
+ * Flag of an order of an account, which never trades with other orders of the same account and is listed by the open orders of that account
+ */
+public final class Owner implements IOrderFlags {
+    final private long owner;
+
+    /**
+     * @param owner non-zero id of the account
+     */
+    public Owner(long owner) {
+        if (owner == 0)
+            throw new IllegalArgumentException("Zero owner id");
+
+        this.owner = owner;
+    }
+
+    public long getOwner() {
+        return owner;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Owner && owner == ((Owner) o).owner;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(owner);
+    }
+
+    @Override
+    public String toString() {
+        return "Owner " + owner;
+    }
+}
@@ -0,0 +1,43 @@
+package com.hashnot.silverexchange.xchange.model;
+
+import com.hashnot.silverexchange.match.SelfTradePrevention;
+import org.knowm.xchange.dto.Order.IOrderFlags;
+
+/**
+ * What happens when an order with an {@link Owner} would trade with another order of the same owner, cancel newest by default
+ *
+ * @see SelfTradePrevention
+ */
+public enum SelfTradePreventionFlags implements IOrderFlags {
+    /**
+     * The remainder of the new order is cancelled
+     */
+    CANCEL_NEWEST(SelfTradePrevention.CANCEL_NEWEST),
+
+    /**
+     * The resting order is cancelled and the new one executes further
+     */
+    CANCEL_OLDEST(SelfTradePrevention.CANCEL_OLDEST),
+
+    /**
+     * Both orders are reduced by the smaller of their amounts, without a trade
+     */
+    DECREMENT(SelfTradePrevention.DECREMENT);
+
+    final private SelfTradePrevention selfTradePrevention;
+
+    SelfTradePreventionFlags(SelfTradePrevention selfTradePrevention) {
+        this.selfTradePrevention = selfTradePrevention;
+    }
+
+    public SelfTradePrevention getSelfTradePrevention() {
+        return selfTradePrevention;
+    }
+
+    public static SelfTradePreventionFlags valueOf(SelfTradePrevention selfTradePrevention) {
+        for (SelfTradePreventionFlags flag : values())
+            if (flag.selfTradePrevention == selfTradePrevention)
+                return flag;
+        throw new IllegalArgumentException("Unknown self-trade prevention " + selfTradePrevention);
+    }
+}
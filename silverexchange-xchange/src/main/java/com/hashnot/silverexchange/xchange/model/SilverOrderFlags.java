@@ -0,0 +1,31 @@
+package com.hashnot.silverexchange.xchange.model;
+
+import org.knowm.xchange.dto.Order.IOrderFlags;
+
+/**
+ * Time in force of limit orders, good till cancelled by default, and post-only handling
+ *
+ * @see GoodTillDate
+ */
+public enum SilverOrderFlags implements IOrderFlags {
+    /**
+     * Executed as far as possible, the remainder is cancelled
+     */
+    IMMEDIATE_OR_CANCEL,
+
+    /**
+     * Executed in full or not at all
+     */
+    FILL_OR_KILL,
+
+    /**
+     * Only ever rests in the order book; cancelled if it would trade when placed
+     */
+    POST_ONLY,
+
+    /**
+     * Only ever rests in the order book; if it would trade when placed, its price is moved one unit of the price scale behind the best
+     * opposite price. Without a configured price scale the order is cancelled, as with {@link #POST_ONLY}.
+     */
+    POST_ONLY_REPRICE
+}
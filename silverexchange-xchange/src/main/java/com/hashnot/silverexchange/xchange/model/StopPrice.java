@@ -0,0 +1,39 @@
+package com.hashnot.silverexchange.xchange.model;
+
+import org.knowm.xchange.dto.Order.IOrderFlags;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Flag of a stop-limit order, placed in the order book once the exchange trades at or through the stop price:
+ * at or above it for bids, at or below it for asks
+ */
+public final class StopPrice implements IOrderFlags {
+    final private BigDecimal stopPrice;
+
+    public StopPrice(BigDecimal stopPrice) {
+        assert stopPrice != null;
+
+        this.stopPrice = stopPrice;
+    }
+
+    public BigDecimal getStopPrice() {
+        return stopPrice;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof StopPrice && stopPrice.compareTo(((StopPrice) o).stopPrice) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(stopPrice.stripTrailingZeros());
+    }
+
+    @Override
+    public String toString() {
+        return "StopPrice " + stopPrice;
+    }
+}
@@ -0,0 +1,64 @@
+package com.hashnot.silverexchange.xchange.replay;
+
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.util.BigDecimals;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.file.Path;
+
+/**
+ * Reader of order flow in the binary format written by {@link BinaryOrderFlowWriter}. Each event consists of the timestamp
+ * in nanoseconds since the epoch, type and id, followed, if it's a post, by the side ordinal, amount and price
+ * in the form of {@link BigDecimals#write}.
+ */
+public class BinaryOrderFlowReader extends OrderFlowReader {
+    static final byte POST = 1;
+    static final byte CANCEL = 2;
+
+    private static final Side[] SIDES = Side.values();
+
+    public BinaryOrderFlowReader(Path file, int bufferSize) throws IOException {
+        super(file, bufferSize);
+    }
+
+    @Override
+    public long read(IOrderFlowHandler handler) throws IOException {
+        long events = 0;
+        while (true) {
+            int start = buffer.position();
+            try {
+                parse(handler);
+                events++;
+            } catch (BufferUnderflowException e) {
+                // the event continues past the buffer, the handler wasn't called yet
+                buffer.position(start);
+                if (!fill()) {
+                    if (buffer.hasRemaining())
+                        throw new IllegalArgumentException("Truncated event after " + events + " events");
+                    return events;
+                }
+            }
+        }
+    }
+
+    private void parse(IOrderFlowHandler handler) {
+        long timestamp = buffer.getLong();
+        byte type = buffer.get();
+        long id = buffer.getLong();
+
+        if (type == POST) {
+            byte side = buffer.get();
+            if (side < 0 || side >= SIDES.length)
+                throw new IllegalArgumentException("Unknown side " + side);
+            BigDecimal amount = BigDecimals.read(buffer);
+            BigDecimal price = BigDecimals.read(buffer);
+            handler.post(timestamp, id, SIDES[side], amount, price);
+        } else if (type == CANCEL) {
+            handler.cancel(timestamp, id);
+        } else {
+            throw new IllegalArgumentException("Unknown event type " + type);
+        }
+    }
+}
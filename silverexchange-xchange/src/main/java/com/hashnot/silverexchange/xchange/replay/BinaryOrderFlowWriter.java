@@ -0,0 +1,92 @@
+package com.hashnot.silverexchange.xchange.replay;
+
+import com.hashnot.silverexchange.match.Side;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.hashnot.silverexchange.util.BigDecimals.write;
+import static com.hashnot.silverexchange.xchange.replay.BinaryOrderFlowReader.CANCEL;
+import static com.hashnot.silverexchange.xchange.replay.BinaryOrderFlowReader.POST;
+
+/**
+ * Writer of order flow in the binary format, e.g. to convert a CSV file read by {@link CsvOrderFlowReader} to a more compact
+ * form that is faster to read.
+ */
+public class BinaryOrderFlowWriter implements IOrderFlowHandler, AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    public BinaryOrderFlowWriter(Path file, int bufferSize) throws IOException {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Non-positive buffer size");
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public void post(long timestamp, long id, Side side, BigDecimal amount, BigDecimal price) {
+        while (true) {
+            int start = buffer.position();
+            try {
+                buffer.putLong(timestamp).put(POST).putLong(id).put((byte) side.ordinal());
+                write(amount, buffer);
+                write(price, buffer);
+                return;
+            } catch (BufferOverflowException e) {
+                retry(start);
+            }
+        }
+    }
+
+    @Override
+    public void cancel(long timestamp, long id) {
+        while (true) {
+            int start = buffer.position();
+            try {
+                buffer.putLong(timestamp).put(CANCEL).putLong(id);
+                return;
+            } catch (BufferOverflowException e) {
+                retry(start);
+            }
+        }
+    }
+
+    /**
+     * Discard the unfinished event and write out the preceding ones, making room to write the event again
+     */
+    private void retry(int start) {
+        if (start == 0)
+            throw new IllegalArgumentException("Event larger than buffer");
+
+        buffer.position(start);
+        try {
+            drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
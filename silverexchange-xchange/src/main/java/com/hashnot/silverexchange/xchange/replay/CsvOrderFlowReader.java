@@ -0,0 +1,170 @@
+package com.hashnot.silverexchange.xchange.replay;
+
+import com.hashnot.silverexchange.match.Side;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+/**
+ * Reader of order flow in CSV, one event per line:
+ * <pre>
+ * timestamp,P,id,side,amount,price
+ * timestamp,C,id
+ * </pre>
+ * where P is a post and C a cancel, the timestamp is in nanoseconds since the epoch, the side is either B(ID) or A(SK)
+ * and the price is empty for market orders. Empty lines, lines starting with # and a header line are skipped.
+ * <p>
+ * Lines are parsed in place, in the buffer, without creating a String of each line.
+ */
+public class CsvOrderFlowReader extends OrderFlowReader {
+    private static final int FIELDS = 6;
+
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    private char[] chars = new char[32];
+
+    private long line;
+
+    public CsvOrderFlowReader(Path file, int bufferSize) throws IOException {
+        super(file, bufferSize);
+    }
+
+    @Override
+    public long read(IOrderFlowHandler handler) throws IOException {
+        long events = 0;
+        int scanned = buffer.position();
+        while (true) {
+            int end = indexOf('\n', scanned);
+            if (end < 0) {
+                int unscanned = buffer.limit() - buffer.position();
+                if (fill()) {
+                    scanned = unscanned;
+                    continue;
+                }
+                if (!buffer.hasRemaining())
+                    return events;
+                // the last line has no line break
+                end = buffer.limit();
+            }
+
+            line++;
+            try {
+                if (parse(buffer.position(), end, handler))
+                    events++;
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid event at line " + line, e);
+            }
+            buffer.position(Math.min(end + 1, buffer.limit()));
+            scanned = buffer.position();
+        }
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < buffer.limit(); i++)
+            if (buffer.get(i) == c)
+                return i;
+        return -1;
+    }
+
+    /**
+     * @return false if the line holds no event
+     */
+    private boolean parse(int start, int end, IOrderFlowHandler handler) {
+        if (end > start && buffer.get(end - 1) == '\r')
+            end--;
+        if (end == start || buffer.get(start) == '#')
+            return false;
+        if (line == 1 && !isDigit(buffer.get(start)))
+            return false;
+
+        int fields = split(start, end);
+        if (fields < 3)
+            throw new IllegalArgumentException("Missing fields");
+
+        long timestamp = parseLong(0);
+        long id = parseLong(2);
+        switch (first(1)) {
+            case 'P':
+                if (fields < 5)
+                    throw new IllegalArgumentException("Missing fields");
+                BigDecimal price = fields < 6 || fieldStart[5] == fieldEnd[5] ? null : parseDecimal(5);
+                handler.post(timestamp, id, parseSide(3), parseDecimal(4), price);
+                return true;
+            case 'C':
+                handler.cancel(timestamp, id);
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown event type");
+        }
+    }
+
+    /**
+     * @return number of the fields found, up to {@link #FIELDS}
+     */
+    private int split(int start, int end) {
+        int field = 0;
+        fieldStart[0] = start;
+        for (int i = start; i < end && field < FIELDS; i++) {
+            if (buffer.get(i) == ',') {
+                fieldEnd[field++] = i;
+                if (field < FIELDS)
+                    fieldStart[field] = i + 1;
+            }
+        }
+        if (field < FIELDS)
+            fieldEnd[field++] = end;
+        return field;
+    }
+
+    private byte first(int field) {
+        if (fieldStart[field] == fieldEnd[field])
+            throw new IllegalArgumentException("Empty field " + field);
+        return buffer.get(fieldStart[field]);
+    }
+
+    private Side parseSide(int field) {
+        switch (first(field)) {
+            case 'B':
+                return Side.BID;
+            case 'A':
+                return Side.ASK;
+            default:
+                throw new IllegalArgumentException("Unknown side");
+        }
+    }
+
+    private long parseLong(int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        if (start == end)
+            throw new IllegalArgumentException("Empty field " + field);
+
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (!isDigit(b))
+                throw new IllegalArgumentException("Not a number in field " + field);
+            int digit = b - '0';
+            if (result > (Long.MAX_VALUE - digit) / 10)
+                throw new IllegalArgumentException("Number too large in field " + field);
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private BigDecimal parseDecimal(int field) {
+        int length = fieldEnd[field] - fieldStart[field];
+        if (chars.length < length)
+            chars = new char[Math.max(length, chars.length * 2)];
+        for (int i = 0; i < length; i++)
+            chars[i] = (char) buffer.get(fieldStart[field] + i);
+
+        // NumberFormatException is an IllegalArgumentException
+        return new BigDecimal(chars, 0, length);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -0,0 +1,23 @@
+package com.hashnot.silverexchange.xchange.replay;
+
+import com.hashnot.silverexchange.match.Side;
+
+import java.math.BigDecimal;
+
+/**
+ * Receiver of events read from an order flow file
+ */
+public interface IOrderFlowHandler {
+    /**
+     * @param timestamp nanoseconds since the epoch
+     * @param id        id of the order, unique within the file
+     * @param price     limit price, or null for a market order
+     */
+    void post(long timestamp, long id, Side side, BigDecimal amount, BigDecimal price);
+
+    /**
+     * @param timestamp nanoseconds since the epoch
+     * @param id        id of a previously posted order
+     */
+    void cancel(long timestamp, long id);
+}
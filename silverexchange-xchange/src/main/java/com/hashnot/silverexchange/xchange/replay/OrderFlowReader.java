@@ -0,0 +1,66 @@
+package com.hashnot.silverexchange.xchange.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader of an order flow file, streaming it through a buffer of a fixed size, so files of any size can be read.
+ */
+public abstract class OrderFlowReader implements AutoCloseable {
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    protected final ByteBuffer buffer;
+
+    protected OrderFlowReader(Path file, int bufferSize) throws IOException {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Non-positive buffer size");
+
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+        buffer.flip();
+    }
+
+    /**
+     * Open a reader of the format matching the file name, CSV for files ending with .csv and binary for all the others
+     */
+    public static OrderFlowReader open(Path file, int bufferSize) throws IOException {
+        if (file.getFileName().toString().endsWith(".csv"))
+            return new CsvOrderFlowReader(file, bufferSize);
+        else
+            return new BinaryOrderFlowReader(file, bufferSize);
+    }
+
+    /**
+     * Pass all events of the file to the handler, in order of the file
+     *
+     * @return number of the events
+     * @throws IllegalArgumentException if the file is malformed
+     */
+    public abstract long read(IOrderFlowHandler handler) throws IOException;
+
+    /**
+     * Move the unread bytes to the beginning of the buffer and read more after them
+     *
+     * @return false at the end of the file
+     * @throws IllegalArgumentException if the buffer is already full, i.e. a single event is larger than the buffer
+     */
+    protected boolean fill() throws IOException {
+        buffer.compact();
+        try {
+            if (!buffer.hasRemaining())
+                throw new IllegalArgumentException("Event larger than buffer");
+            return channel.read(buffer) > 0;
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,108 @@
+package com.hashnot.silverexchange.xchange.replay;
+
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.match.ITransactionListener;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.xchange.impl.SilverTransactionFactory;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import com.hashnot.silverexchange.xchange.util.VirtualClock;
+import org.knowm.xchange.currency.CurrencyPair;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Replay of recorded order flow of one currency pair, posting and cancelling orders directly in the exchange,
+ * with the clock of the exchange advanced to the timestamp of each event.
+ * <p>
+ * An order with id n in the file is posted with the id {@code new UUID(0, n)}, so replaying the same file to an exchange
+ * with deterministic transaction ids gives the same results every time.
+ */
+public class Replay implements IOrderFlowHandler {
+    final private Exchange<SilverTransaction, SilverOrder> exchange;
+    final private CurrencyPair pair;
+    final private VirtualClock clock;
+
+    private long posts;
+    private long cancels;
+    private long rejected;
+    private long transactions;
+
+    /**
+     * @param clock the clock of the transaction factory of the exchange
+     */
+    public Replay(Exchange<SilverTransaction, SilverOrder> exchange, CurrencyPair pair, VirtualClock clock) {
+        this.exchange = exchange;
+        this.pair = pair;
+        this.clock = clock;
+    }
+
+    /**
+     * Replay all events of the reader
+     *
+     * @return counts of the events replayed by this call
+     */
+    public ReplayReport run(OrderFlowReader reader) throws IOException {
+        posts = cancels = rejected = transactions = 0;
+        ITransactionListener<SilverOrder> listener = (amount, rate, active) -> transactions++;
+
+        exchange.addTransactionListener(listener);
+        long start = System.nanoTime();
+        try {
+            reader.read(this);
+        } finally {
+            exchange.removeTransactionListener(listener);
+        }
+        return new ReplayReport(posts, cancels, rejected, transactions, System.nanoTime() - start);
+    }
+
+    @Override
+    public void post(long timestamp, long id, Side side, BigDecimal amount, BigDecimal price) {
+        clock.advanceTo(timestamp);
+        posts++;
+        try {
+            OfferRate rate = price == null ? OfferRate.market() : new OfferRate(price);
+            exchange.post(new SilverOrder(new UUID(0, id), pair, side, amount, rate, clock.get()));
+        } catch (IllegalArgumentException e) {
+            rejected++;
+        }
+    }
+
+    @Override
+    public void cancel(long timestamp, long id) {
+        clock.advanceTo(timestamp);
+        cancels++;
+        if (exchange.cancel(new UUID(0, id)) == null)
+            rejected++;
+    }
+
+    /**
+     * Replay a file to an empty exchange and print the report
+     * <p>
+     * Arguments: file currencyPair [bufferSize]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: Replay file BASE/COUNTER [bufferSize]");
+            System.exit(1);
+        }
+
+        Path file = Paths.get(args[0]);
+        CurrencyPair pair = new CurrencyPair(args[1]);
+        int bufferSize = args.length > 2 ? Integer.parseInt(args[2]) : OrderFlowReader.DEFAULT_BUFFER_SIZE;
+
+        VirtualClock clock = new VirtualClock(Instant.EPOCH);
+        long[] ids = {0};
+        Exchange<SilverTransaction, SilverOrder> exchange = new Exchange<>(new SilverTransactionFactory(() -> new UUID(0, ++ids[0]), clock), SilverOrder::getId);
+
+        try (OrderFlowReader reader = OrderFlowReader.open(file, bufferSize)) {
+            System.out.println(new Replay(exchange, pair, clock).run(reader));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.hashnot.silverexchange.xchange.replay;
+
+/**
+ * Counts of a replayed order flow and the time it took
+ */
+public class ReplayReport {
+    final private long posts;
+    final private long cancels;
+    final private long rejected;
+    final private long transactions;
+    final private long elapsedNanos;
+
+    public ReplayReport(long posts, long cancels, long rejected, long transactions, long elapsedNanos) {
+        this.posts = posts;
+        this.cancels = cancels;
+        this.rejected = rejected;
+        this.transactions = transactions;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return number of posted orders, including the rejected ones
+     */
+    public long getPosts() {
+        return posts;
+    }
+
+    /**
+     * @return number of cancels, including those of orders no longer in the book
+     */
+    public long getCancels() {
+        return cancels;
+    }
+
+    /**
+     * @return number of orders rejected by the exchange and cancels of orders not in the book
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getTransactions() {
+        return transactions;
+    }
+
+    public long getEvents() {
+        return posts + cancels;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getEventsPerSecond() {
+        return elapsedNanos == 0 ? 0 : getEvents() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d events (%d posts, %d cancels, %d rejected), %d transactions in %.3f s, %.0f events/s",
+                getEvents(), posts, cancels, rejected, transactions, elapsedNanos / 1e9, getEventsPerSecond());
+    }
+}
@@ -1,8 +1,25 @@
 package com.hashnot.silverexchange.xchange.service;
 
+import java.util.Random;
 import java.util.UUID;
 import java.util.function.Supplier;
 
 public interface IIdGenerator extends Supplier<UUID> {
     IIdGenerator DEFAULT = UUID::randomUUID;
+
+    /**
+     * @return generator of random (version 4) UUIDs, generating the same sequence of ids for the same seed
+     */
+    static IIdGenerator seeded(long seed) {
+        Random random = new Random(seed);
+        return () -> {
+            long msb;
+            long lsb;
+            synchronized (random) {
+                msb = random.nextLong();
+                lsb = random.nextLong();
+            }
+            return new UUID(msb & ~0xF000L | 0x4000L, lsb & ~(0xC0L << 56) | (0x80L << 56));
+        };
+    }
 }
@@ -1,10 +1,15 @@
 package com.hashnot.silverexchange.xchange.service.marketdata;
 
+import com.hashnot.silverexchange.DepthLevel;
 import com.hashnot.silverexchange.match.Side;
 import com.hashnot.silverexchange.xchange.model.SilverOrder;
 import com.hashnot.silverexchange.xchange.util.Clock;
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order.OrderType;
 import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -19,4 +24,25 @@ class OrderBookConverter {
                 toOrders(offers.get(Side.BID))
         );
     }
+
+    /**
+     * @return order book with one order per price level, with the aggregated amount of the level
+     */
+    static OrderBook toOrderBook(CurrencyPair pair, List<DepthLevel> bids, List<DepthLevel> asks, Clock clock) {
+        return new OrderBook(
+                from(clock.get()),
+                toLevelOrders(pair, OrderType.ASK, asks),
+                toLevelOrders(pair, OrderType.BID, bids)
+        );
+    }
+
+    private static List<LimitOrder> toLevelOrders(CurrencyPair pair, OrderType type, List<DepthLevel> levels) {
+        List<LimitOrder> result = new ArrayList<>(levels.size());
+        for (DepthLevel level : levels)
+            result.add(new LimitOrder.Builder(type, pair)
+                    .limitPrice(level.getRate().getValue())
+                    .originalAmount(level.getAmount())
+                    .build());
+        return result;
+    }
 }
@@ -1,8 +1,10 @@
 package com.hashnot.silverexchange.xchange.service.marketdata;
 
-import com.hashnot.silverexchange.Exchange;
-import com.hashnot.silverexchange.xchange.model.SilverOrder;
-import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import com.hashnot.silverexchange.BookSnapshot;
+import com.hashnot.silverexchange.TradeStats;
+import com.hashnot.silverexchange.ext.IDepthListener;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.xchange.impl.ExchangeRegistry;
 import com.hashnot.silverexchange.xchange.util.Clock;
 import org.knowm.xchange.currency.CurrencyPair;
 import org.knowm.xchange.dto.marketdata.OrderBook;
@@ -13,28 +15,106 @@ import org.knowm.xchange.service.marketdata.MarketDataService;
 import static com.hashnot.silverexchange.xchange.service.marketdata.OrderBookConverter.toOrderBook;
 import static com.hashnot.silverexchange.xchange.service.marketdata.TickerConverter.toTicker;
 import static com.hashnot.silverexchange.xchange.service.marketdata.TransactionConverter.toTrades;
+import static java.util.Collections.emptyList;
 
 public class SilverMarketDataService implements MarketDataService {
-    final private Exchange<SilverTransaction, SilverOrder> exchange;
+    final private ExchangeRegistry exchanges;
     final private Clock clock;
 
-    public SilverMarketDataService(Exchange<SilverTransaction, SilverOrder> exchange, Clock clock) {
-        this.exchange = exchange;
+    public SilverMarketDataService(ExchangeRegistry exchanges, Clock clock) {
+        this.exchanges = exchanges;
         this.clock = clock;
     }
 
+    /**
+     * Read from the state published after the last command, without waiting for the exchange of the pair.
+     *
+     * @return ticker of the pair, empty if no order of the pair was placed yet
+     */
     @Override
     public Ticker getTicker(CurrencyPair currencyPair, Object... args) {
-        return toTicker(exchange.getAllOffers(), exchange.getAllTransactions(), clock);
+        BookSnapshot snapshot = exchanges.getSnapshot(currencyPair);
+        if (snapshot == null)
+            return toTicker(currencyPair, null, null, new TradeStats(), clock);
+
+        return toTicker(
+                currencyPair,
+                snapshot.getBestRate(Side.BID),
+                snapshot.getBestRate(Side.ASK),
+                exchanges.getTradeStats(currencyPair),
+                clock
+        );
     }
 
+    /**
+     * @param args optional maximum number of price levels of each side, a {@link Number}. If given, the order book has one order
+     *             per price level with the aggregated amount of the level, read from the last published snapshot without waiting
+     *             for the matching engine; otherwise it contains all orders. The order book is empty if no order of the pair was placed yet.
+     */
     @Override
     public OrderBook getOrderBook(CurrencyPair currencyPair, Object... args) {
-        return toOrderBook(exchange.getAllOffers(), clock);
+        Integer depth = depth(args);
+        if (depth == null) {
+            OrderBook orderBook = exchanges.callIfPresent(currencyPair, exchange -> toOrderBook(exchange.getAllOffers(), clock));
+            return orderBook != null ? orderBook : emptyOrderBook(currencyPair);
+        }
+
+        BookSnapshot snapshot = exchanges.getSnapshot(currencyPair);
+        if (snapshot == null)
+            return emptyOrderBook(currencyPair);
+        return toOrderBook(
+                currencyPair,
+                snapshot.getDepth(Side.BID, depth),
+                snapshot.getDepth(Side.ASK, depth),
+                clock
+        );
+    }
+
+    /**
+     * Subscribe to changes of the aggregated price levels. The listener is registered together with taking the returned snapshot,
+     * so applying the following changes to the snapshot keeps it up to date; a gap in sequence numbers means a change was missed.
+     * The listener is called by the thread changing the order book and shouldn't block it.
+     *
+     * A subscription to a pair without orders yet doesn't create its order book; the listener receives changes from the first order on.
+     *
+     * @return order book of all price levels, with one order per level, at the time of subscription
+     */
+    public OrderBook subscribeOrderBook(CurrencyPair currencyPair, IDepthListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("Null listener");
+
+        OrderBook orderBook = exchanges.addDepthListener(currencyPair, listener, exchange -> toOrderBook(
+                currencyPair,
+                exchange.getDepth(Side.BID, Integer.MAX_VALUE),
+                exchange.getDepth(Side.ASK, Integer.MAX_VALUE),
+                clock
+        ));
+        return orderBook != null ? orderBook : emptyOrderBook(currencyPair);
+    }
+
+    public void unsubscribeOrderBook(CurrencyPair currencyPair, IDepthListener listener) {
+        exchanges.removeDepthListener(currencyPair, listener);
+    }
+
+    private OrderBook emptyOrderBook(CurrencyPair currencyPair) {
+        return toOrderBook(currencyPair, emptyList(), emptyList(), clock);
+    }
+
+    private static Integer depth(Object[] args) {
+        if (args == null || args.length == 0 || args[0] == null)
+            return null;
+        else if (args[0] instanceof Number)
+            return ((Number) args[0]).intValue();
+        else
+            throw new IllegalArgumentException("Order book depth is not a number: " + args[0]);
     }
 
+    /**
+     * @return trades of the pair, empty if no order of the pair was placed yet
+     */
     @Override
     public Trades getTrades(CurrencyPair currencyPair, Object... args) {
-        return toTrades(exchange.getAllTransactions());
+        Trades trades = exchanges.callIfPresent(currencyPair, exchange -> toTrades(currencyPair, exchange.getAllTransactions()));
+        return trades != null ? trades : toTrades(currencyPair, emptyList());
     }
 }
@@ -1,40 +1,37 @@
 package com.hashnot.silverexchange.xchange.service.marketdata;
 
-import com.hashnot.silverexchange.match.Side;
-import com.hashnot.silverexchange.xchange.model.SilverOrder;
-import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.TradeStats;
 import com.hashnot.silverexchange.xchange.util.Clock;
+import org.knowm.xchange.currency.CurrencyPair;
 import org.knowm.xchange.dto.marketdata.Ticker;
 
 import java.math.BigDecimal;
-import java.util.Collection;
 import java.util.Date;
-import java.util.List;
-import java.util.Map;
-import java.util.function.Consumer;
-import java.util.function.Function;
 
 public class TickerConverter {
-    static Ticker toTicker(Map<Side, List<SilverOrder>> offers, List<SilverTransaction> transactions, Clock clock) {
-        Ticker.Builder builder = new Ticker.Builder();
-
-        consumeFirst(offers, Side.ASK, builder::ask);
-        consumeFirst(offers, Side.BID, builder::bid);
-        consumeFirst(transactions, combine(t -> t.getRate().getValue(), builder::last));
-        builder.timestamp(Date.from(clock.get()));
-
-        return builder.build();
-    }
-
-    private static void consumeFirst(Map<Side, List<SilverOrder>> offers, Side side, Consumer<BigDecimal> consumer) {
-        consumeFirst(offers.get(side), combine(o -> o.getRate().getValue(), consumer));
-    }
-
-    private static <E> void consumeFirst(Collection<E> collection, Consumer<E> consumer) {
-        collection.stream().findFirst().ifPresent(consumer);
+    /**
+     * @param bid   rate of the best bid or null if there's none
+     * @param ask   rate of the best ask or null if there's none
+     * @param stats statistics of all transactions of the pair
+     */
+    static Ticker toTicker(CurrencyPair pair, OfferRate bid, OfferRate ask, TradeStats stats, Clock clock) {
+        return new Ticker.Builder()
+                .currencyPair(pair)
+                .bid(value(bid))
+                .ask(value(ask))
+                .open(stats.getOpen())
+                .last(stats.getLast())
+                .high(stats.getHigh())
+                .low(stats.getLow())
+                .vwap(stats.getVwap())
+                .volume(stats.getVolume())
+                .quoteVolume(stats.getQuoteVolume())
+                .timestamp(Date.from(clock.get()))
+                .build();
     }
 
-    private static <I, O> Consumer<I> combine(Function<I, O> fn, Consumer<O> c) {
-        return e -> c.accept(fn.apply(e));
+    private static BigDecimal value(OfferRate rate) {
+        return rate == null ? null : rate.getValue();
     }
 }
@@ -1,6 +1,7 @@
 package com.hashnot.silverexchange.xchange.service.marketdata;
 
 import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import org.knowm.xchange.currency.CurrencyPair;
 import org.knowm.xchange.dto.marketdata.Trade;
 import org.knowm.xchange.dto.marketdata.Trades;
 
@@ -10,10 +11,11 @@ import java.util.stream.Collectors;
 import static java.util.Date.from;
 
 public class TransactionConverter {
-    public static Trade toTrade(SilverTransaction tx) {
+    public static Trade toTrade(SilverTransaction tx, CurrencyPair pair) {
         assert tx != null;
 
         return new Trade.Builder()
+                .currencyPair(pair)
                 .price(tx.getRate().getValue())
                 .timestamp(from(tx.getTimestamp()))
                 .originalAmount(tx.getAmount())
@@ -21,9 +23,9 @@ public class TransactionConverter {
                 .build();
     }
 
-    static Trades toTrades(List<SilverTransaction> transactions) {
+    static Trades toTrades(CurrencyPair pair, List<SilverTransaction> transactions) {
         List<Trade> trades = transactions.stream()
-                .map(TransactionConverter::toTrade)
+                .map(tx -> toTrade(tx, pair))
                 .collect(Collectors.toList());
         return new Trades(trades, Trades.TradeSortType.SortByTimestamp);
     }
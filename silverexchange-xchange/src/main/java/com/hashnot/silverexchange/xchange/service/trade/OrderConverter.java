@@ -1,66 +1,246 @@
 package com.hashnot.silverexchange.xchange.service.trade;
 
 import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.PostOnly;
+import com.hashnot.silverexchange.match.SelfTradePrevention;
 import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.match.TimeInForce;
+import com.hashnot.silverexchange.xchange.model.DisplayAmount;
+import com.hashnot.silverexchange.xchange.model.GoodTillDate;
+import com.hashnot.silverexchange.xchange.model.Owner;
+import com.hashnot.silverexchange.xchange.model.SelfTradePreventionFlags;
 import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverOrderFlags;
+import com.hashnot.silverexchange.xchange.model.StopPrice;
 import com.hashnot.silverexchange.xchange.service.IIdGenerator;
 import com.hashnot.silverexchange.xchange.util.Clock;
 import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.Order.IOrderFlags;
+import org.knowm.xchange.dto.Order.OrderStatus;
 import org.knowm.xchange.dto.Order.OrderType;
 import org.knowm.xchange.dto.trade.LimitOrder;
 import org.knowm.xchange.dto.trade.MarketOrder;
 import org.knowm.xchange.dto.trade.OpenOrders;
+import org.knowm.xchange.dto.trade.StopOrder;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class OrderConverter {
     static OpenOrders toOpenOrders(Map<Side, List<SilverOrder>> book) {
+        return toOpenOrders(book, Collections.emptyMap());
+    }
+
+    /**
+     * @param stops pending stop orders; only stop-limit orders are listed, as open orders are limit orders
+     */
+    static OpenOrders toOpenOrders(Map<Side, List<SilverOrder>> book, Map<Side, List<SilverOrder>> stops) {
         return new OpenOrders(
                 Stream.concat(
-                        book.get(Side.BID).stream(),
-                        book.get(Side.ASK).stream()
+                        Stream.concat(
+                                book.get(Side.BID).stream(),
+                                book.get(Side.ASK).stream()
+                        ),
+                        stops.values().stream()
+                                .flatMap(List::stream)
+                                .filter(o -> !o.isMarketOrder())
                 )
                         .map(OrderConverter::toLimitOrder)
                         .collect(Collectors.toList())
         );
     }
 
+    /**
+     * @param stops pending stop orders; only stop-limit orders are listed
+     * @return open orders of one owner, found by the index of owners
+     */
+    static List<LimitOrder> toLimitOrders(List<SilverOrder> offers, List<SilverOrder> stops) {
+        List<LimitOrder> result = new ArrayList<>(offers.size() + stops.size());
+        for (SilverOrder offer : offers)
+            result.add(toLimitOrder(offer));
+        for (SilverOrder stop : stops)
+            if (!stop.isMarketOrder())
+                result.add(toLimitOrder(stop));
+        return result;
+    }
 
     public static LimitOrder toLimitOrder(SilverOrder order) {
+        return toLimitOrder(order, null);
+    }
+
+    /**
+     * @param remainder non-executed part of the order returned by the exchange, which is cancelled, or null if there's none
+     * @return the order right after it was placed, with the amount executed by then
+     */
+    static LimitOrder toPlacedOrder(SilverOrder order, Offer remainder) {
+        if (remainder != null)
+            return toLimitOrder(order, OrderStatus.CANCELED);
+        return toLimitOrder(order, order.isFilled() ? OrderStatus.FILLED : null);
+    }
+
+    /**
+     * @param status status of the order, or null for that of an open order
+     */
+    private static LimitOrder toLimitOrder(SilverOrder order, OrderStatus status) {
         OrderType orderType = fromSide(order.getSide());
         CurrencyPair pair = order.getPair();
+        BigDecimal filled = order.getFilledAmount();
+        if (status == null)
+            status = order.getStopPrice() != null ? OrderStatus.PENDING_NEW : filled.signum() == 0 ? OrderStatus.NEW : OrderStatus.PARTIALLY_FILLED;
 
-        return
+        LimitOrder.Builder builder =
                 new LimitOrder.Builder(orderType, pair)
                         .id(order.getId().toString())
                         .limitPrice(order.getRate().getValue())
-                        .originalAmount(order.getAmount())
-                        .timestamp(Date.from(order.getTimestamp()))
-                        .build();
+                        .originalAmount(order.getOriginalAmount())
+                        .cumulativeAmount(filled)
+                        .orderStatus(status)
+                        .timestamp(Date.from(order.getTimestamp()));
+        // only good till cancelled and good till date orders stay open
+        if (order.getTimeInForce() == TimeInForce.GTD)
+            builder.flag(new GoodTillDate(Instant.ofEpochMilli(order.getExpireTime())));
+        if (order.getStopPrice() != null)
+            builder.flag(new StopPrice(order.getStopPrice()));
+        if (order.getDisplayAmount() != null)
+            builder.flag(new DisplayAmount(order.getDisplayAmount()));
+        if (order.getPostOnly() != null)
+            builder.flag(order.getPostOnly() == PostOnly.REJECT ? SilverOrderFlags.POST_ONLY : SilverOrderFlags.POST_ONLY_REPRICE);
+        addOwner(order, builder);
+        return builder.build();
+    }
+
+    private static void addOwner(SilverOrder order, Order.Builder builder) {
+        if (order.getOwner() == 0)
+            return;
+        builder.flag(new Owner(order.getOwner()));
+        if (order.getSelfTradePrevention() != SelfTradePrevention.CANCEL_NEWEST)
+            builder.flag(SelfTradePreventionFlags.valueOf(order.getSelfTradePrevention()));
+    }
+
+    /**
+     * @return pending stop order of a market rate
+     */
+    public static StopOrder toStopOrder(SilverOrder order) {
+        assert order.getStopPrice() != null && order.isMarketOrder();
+
+        StopOrder.Builder builder =
+                new StopOrder.Builder(fromSide(order.getSide()), order.getPair())
+                        .id(order.getId().toString())
+                        .stopPrice(order.getStopPrice())
+                        .originalAmount(order.getOriginalAmount())
+                        .orderStatus(OrderStatus.PENDING_NEW)
+                        .timestamp(Date.from(order.getTimestamp()));
+        addOwner(order, builder);
+        return builder.build();
     }
 
     static SilverOrder fromLimitOrder(LimitOrder limitOrder, IIdGenerator idGenerator, Clock clock) {
-        return new SilverOrder(
+        SilverOrder order = new SilverOrder(
                 idGenerator.get(), limitOrder.getCurrencyPair(),
                 toSide(limitOrder.getType()),
                 limitOrder.getOriginalAmount(),
                 new OfferRate(limitOrder.getLimitPrice()),
                 clock.get()
         );
+        setTimeInForce(order, limitOrder.getOrderFlags());
+        setPostOnly(order, limitOrder.getOrderFlags());
+        for (IOrderFlags flag : limitOrder.getOrderFlags()) {
+            if (flag instanceof StopPrice)
+                order.setStopPrice(((StopPrice) flag).getStopPrice());
+            else if (flag instanceof DisplayAmount)
+                order.setDisplayAmount(((DisplayAmount) flag).getDisplayAmount());
+        }
+        setOwner(order, limitOrder.getOrderFlags());
+        return order;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the flags hold more than one time in force
+     */
+    private static void setTimeInForce(SilverOrder order, Set<IOrderFlags> flags) {
+        int count = 0;
+        for (IOrderFlags flag : flags) {
+            if (flag == SilverOrderFlags.IMMEDIATE_OR_CANCEL)
+                order.setTimeInForce(TimeInForce.IOC);
+            else if (flag == SilverOrderFlags.FILL_OR_KILL)
+                order.setTimeInForce(TimeInForce.FOK);
+            else if (flag instanceof GoodTillDate)
+                order.setGoodTillDate(((GoodTillDate) flag).getExpireTime().toEpochMilli());
+            else
+                continue;
+            count++;
+        }
+        if (count > 1)
+            throw new IllegalArgumentException("Conflicting time in force flags " + flags);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the flags hold both post-only flags
+     */
+    private static void setPostOnly(SilverOrder order, Set<IOrderFlags> flags) {
+        boolean reject = flags.contains(SilverOrderFlags.POST_ONLY);
+        boolean reprice = flags.contains(SilverOrderFlags.POST_ONLY_REPRICE);
+        if (reject && reprice)
+            throw new IllegalArgumentException("Conflicting post-only flags " + flags);
+        if (reject || reprice)
+            order.setPostOnly(reject ? PostOnly.REJECT : PostOnly.REPRICE);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the flags hold more than one self-trade prevention flag, or one without an owner
+     */
+    private static void setOwner(SilverOrder order, Set<IOrderFlags> flags) {
+        int count = 0;
+        for (IOrderFlags flag : flags) {
+            if (flag instanceof Owner) {
+                order.setOwner(((Owner) flag).getOwner());
+            } else if (flag instanceof SelfTradePreventionFlags) {
+                order.setSelfTradePrevention(((SelfTradePreventionFlags) flag).getSelfTradePrevention());
+                count++;
+            }
+        }
+        if (count > 1)
+            throw new IllegalArgumentException("Conflicting self-trade prevention flags " + flags);
+        if (count > 0 && order.getOwner() == 0)
+            throw new IllegalArgumentException("Self-trade prevention without owner");
     }
 
     static SilverOrder fromMarketOrder(MarketOrder marketOrder, IIdGenerator idGenerator, Clock clock) {
-        return new SilverOrder(
+        SilverOrder order = new SilverOrder(
                 idGenerator.get(), marketOrder.getCurrencyPair(),
                 toSide(marketOrder.getType()),
                 marketOrder.getOriginalAmount(),
                 OfferRate.market(),
                 clock.get()
         );
+        setOwner(order, marketOrder.getOrderFlags());
+        return order;
+    }
+
+    static SilverOrder fromStopOrder(StopOrder stopOrder, IIdGenerator idGenerator, Clock clock) {
+        if (stopOrder.getStopPrice() == null)
+            throw new IllegalArgumentException("No stop price");
+
+        SilverOrder order = new SilverOrder(
+                idGenerator.get(), stopOrder.getCurrencyPair(),
+                toSide(stopOrder.getType()),
+                stopOrder.getOriginalAmount(),
+                OfferRate.market(),
+                clock.get()
+        );
+        order.setStopPrice(stopOrder.getStopPrice());
+        setOwner(order, stopOrder.getOrderFlags());
+        return order;
     }
 
     private static OrderType fromSide(Side side) {
@@ -79,10 +259,23 @@ public class OrderConverter {
     }
 
 
+    /**
+     * @return orders of a public order book, with the remaining amount of each order as its amount, only the displayed slice of an iceberg order
+     */
     public static List<LimitOrder> toOrders(List<SilverOrder> offers) {
         return offers.stream()
-                .map(OrderConverter::toLimitOrder)
+                .map(OrderConverter::toBookOrder)
                 .collect(Collectors.toList())
                 ;
     }
+
+    private static LimitOrder toBookOrder(SilverOrder order) {
+        return
+                new LimitOrder.Builder(fromSide(order.getSide()), order.getPair())
+                        .id(order.getId().toString())
+                        .limitPrice(order.getRate().getValue())
+                        .originalAmount(order.getAmount())
+                        .timestamp(Date.from(order.getTimestamp()))
+                        .build();
+    }
 }
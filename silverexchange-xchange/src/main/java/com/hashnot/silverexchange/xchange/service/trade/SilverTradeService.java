@@ -1,24 +1,31 @@
 package com.hashnot.silverexchange.xchange.service.trade;
 
-import com.google.common.collect.Iterables;
-import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.OfferRate;
 import com.hashnot.silverexchange.match.Offer;
+import com.hashnot.silverexchange.match.TimeInForce;
+import com.hashnot.silverexchange.xchange.impl.ExchangeRegistry;
+import com.hashnot.silverexchange.xchange.model.Owner;
 import com.hashnot.silverexchange.xchange.model.SilverOrder;
-import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import com.hashnot.silverexchange.xchange.model.StopPrice;
 import com.hashnot.silverexchange.xchange.service.IIdGenerator;
 import com.hashnot.silverexchange.xchange.util.Clock;
+import org.knowm.xchange.currency.CurrencyPair;
 import org.knowm.xchange.dto.Order;
 import org.knowm.xchange.dto.trade.*;
 import org.knowm.xchange.exceptions.ExchangeException;
 import org.knowm.xchange.exceptions.NotAvailableFromExchangeException;
 import org.knowm.xchange.service.trade.TradeService;
+import org.knowm.xchange.service.trade.params.CancelOrderByCurrencyPair;
 import org.knowm.xchange.service.trade.params.CancelOrderByIdParams;
 import org.knowm.xchange.service.trade.params.CancelOrderParams;
 import org.knowm.xchange.service.trade.params.TradeHistoryParams;
+import org.knowm.xchange.service.trade.params.orders.OpenOrdersParamCurrencyPair;
+import org.knowm.xchange.service.trade.params.orders.OpenOrdersParamMultiCurrencyPair;
 import org.knowm.xchange.service.trade.params.orders.OpenOrdersParams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -27,46 +34,198 @@ import static com.hashnot.silverexchange.xchange.service.trade.OrderConverter.*;
 public class SilverTradeService implements TradeService {
     final private static Logger log = LoggerFactory.getLogger(SilverTradeService.class);
 
-    final private Exchange<SilverTransaction, SilverOrder> exchange;
+    final private ExchangeRegistry exchanges;
     final private IIdGenerator idGenerator;
     final private Clock clock;
 
-    public SilverTradeService(Exchange<SilverTransaction, SilverOrder> exchange, IIdGenerator idGenerator, Clock clock) {
-        this.exchange = exchange;
+    public SilverTradeService(ExchangeRegistry exchanges, IIdGenerator idGenerator, Clock clock) {
+        this.exchanges = exchanges;
         this.idGenerator = idGenerator;
         this.clock = clock;
     }
 
     @Override
     public OpenOrders getOpenOrders() {
-        return toOpenOrders(exchange.getAllOffers());
+        List<LimitOrder> orders = new ArrayList<>();
+        for (CurrencyPair pair : exchanges.getPairs())
+            orders.addAll(exchanges.call(pair, exchange -> toOpenOrders(exchange.getAllOffers(), exchange.getAllStopOffers()).getOpenOrders()));
+        return new OpenOrders(orders);
     }
 
+    /**
+     * Open orders of the currency pairs and of the owner given by the params. Pairs select their order books directly, and orders of an owner
+     * are found by the index of owners of each book, in time proportional to their number, not to the size of the book.
+     * Orders are listed by pair, most recently placed first if filtered by owner.
+     *
+     * @param params {@link OpenOrdersParamCurrencyPair}, {@link OpenOrdersParamMultiCurrencyPair} or {@link SilverOpenOrdersParams},
+     *               or any params or null for open orders of all pairs and owners
+     */
     @Override
-    public OpenOrders getOpenOrders(OpenOrdersParams $) {
-        return getOpenOrders();
+    public OpenOrders getOpenOrders(OpenOrdersParams params) {
+        Collection<CurrencyPair> pairs = null;
+        if (params instanceof OpenOrdersParamCurrencyPair && ((OpenOrdersParamCurrencyPair) params).getCurrencyPair() != null)
+            pairs = Collections.singleton(((OpenOrdersParamCurrencyPair) params).getCurrencyPair());
+        else if (params instanceof OpenOrdersParamMultiCurrencyPair && ((OpenOrdersParamMultiCurrencyPair) params).getCurrencyPairs() != null)
+            pairs = ((OpenOrdersParamMultiCurrencyPair) params).getCurrencyPairs();
+        long owner = params instanceof SilverOpenOrdersParams ? ((SilverOpenOrdersParams) params).getOwner() : 0;
+        if (pairs == null) {
+            if (owner == 0)
+                return getOpenOrders();
+            pairs = exchanges.getPairs();
+        }
+
+        List<LimitOrder> orders = new ArrayList<>();
+        for (CurrencyPair pair : pairs) {
+            List<LimitOrder> pairOrders = exchanges.callIfPresent(pair, exchange -> owner == 0
+                    ? toOpenOrders(exchange.getAllOffers(), exchange.getAllStopOffers()).getOpenOrders()
+                    : toLimitOrders(exchange.getOffersOfOwner(owner), exchange.getStopOffersOfOwner(owner)));
+            if (pairOrders != null)
+                orders.addAll(pairOrders);
+        }
+        return new OpenOrders(orders);
+    }
+
+    /**
+     * Open orders params of an optional currency pair and an optional owner
+     */
+    public static class SilverOpenOrdersParams implements OpenOrdersParamCurrencyPair {
+        private CurrencyPair currencyPair;
+        private long owner;
+
+        @Override
+        public CurrencyPair getCurrencyPair() {
+            return currencyPair;
+        }
+
+        @Override
+        public void setCurrencyPair(CurrencyPair currencyPair) {
+            this.currencyPair = currencyPair;
+        }
+
+        /**
+         * @return id of the account owning the orders, 0 for orders of any owner
+         */
+        public long getOwner() {
+            return owner;
+        }
+
+        public void setOwner(long owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean accept(LimitOrder order) {
+            return (currencyPair == null || currencyPair.equals(order.getCurrencyPair()))
+                    && (owner == 0 || order.getOrderFlags().contains(new Owner(owner)));
+        }
     }
 
     @Override
     public String placeLimitOrder(LimitOrder limitOrder) {
         SilverOrder order = fromLimitOrder(limitOrder, idGenerator, clock);
-        Offer remainder = exchange.post(order);
-        assert remainder == null : "Remainder from posting market order";
+        // the remainder of an immediate-or-cancel or fill-or-kill order is cancelled
+        post(order);
         return order.getId().toString();
     }
 
+    /**
+     * Place the orders with one command per currency pair. Orders of the same pair are executed in the order of the list.
+     *
+     * @return the orders after the command placing them, at the indexes of the orders: with ids, executed amounts, and status
+     * {@link Order.OrderStatus#FILLED}, {@link Order.OrderStatus#CANCELED} for the cancelled remainder of an immediate-or-cancel,
+     * fill-or-kill or post-only order, or that of an open order
+     */
+    public List<LimitOrder> placeLimitOrders(List<LimitOrder> limitOrders) {
+        SilverOrder[] orders = new SilverOrder[limitOrders.size()];
+        Map<CurrencyPair, List<SilverOrder>> ordersByPair = new LinkedHashMap<>();
+        for (int i = 0; i < orders.length; i++) {
+            orders[i] = fromLimitOrder(limitOrders.get(i), idGenerator, clock);
+            ordersByPair.computeIfAbsent(orders[i].getPair(), pair -> new ArrayList<>()).add(orders[i]);
+        }
+
+        Map<SilverOrder, LimitOrder> placed = new IdentityHashMap<>();
+        for (Map.Entry<CurrencyPair, List<SilverOrder>> e : ordersByPair.entrySet()) {
+            List<SilverOrder> pairOrders = e.getValue();
+            // converted by the thread owning the exchange, as the next command may change the orders
+            exchanges.call(e.getKey(), exchange -> {
+                Offer[] remainders = exchange.postAll(pairOrders);
+                for (int i = 0; i < remainders.length; i++)
+                    placed.put(pairOrders.get(i), toPlacedOrder(pairOrders.get(i), remainders[i]));
+                return null;
+            });
+            pairOrders.forEach(this::scheduleExpiry);
+        }
+
+        List<LimitOrder> result = new ArrayList<>(orders.length);
+        for (SilverOrder order : orders)
+            result.add(placed.get(order));
+        return result;
+    }
+
     @Override
     public String placeMarketOrder(MarketOrder marketOrder) {
         SilverOrder order = fromMarketOrder(marketOrder, idGenerator, clock);
-        Offer remainder = exchange.post(order);
+        Offer remainder = post(order);
+        // market orders are immediate-or-cancel
         if (remainder != null)
-            log.warn("Unhandled remainder from executing market order {}", remainder);
+            log.debug("Cancelled remainder of market order {}", remainder);
         return order.getId().toString();
     }
 
+    private Offer post(SilverOrder order) {
+        Offer remainder = exchanges.call(order.getPair(), exchange -> exchange.post(order));
+        scheduleExpiry(order);
+        return remainder;
+    }
+
+    /**
+     * Let a simulation clock expire the order on time, see {@link ExchangeRegistry#expireAt(CurrencyPair, long)}
+     */
+    private void scheduleExpiry(SilverOrder order) {
+        if (order.getTimeInForce() == TimeInForce.GTD)
+            exchanges.expireAt(order.getPair(), order.getExpireTime());
+    }
+
+    /**
+     * Place a stop order, executed as a market order once the exchange trades at or through the stop price.
+     * Stop-limit orders are placed with {@link #placeLimitOrder(LimitOrder)} and a {@link StopPrice} flag.
+     */
     @Override
     public String placeStopOrder(StopOrder stopOrder) {
-        throw new NotAvailableFromExchangeException();
+        SilverOrder order = fromStopOrder(stopOrder, idGenerator, clock);
+        post(order);
+        return order.getId().toString();
+    }
+
+    /**
+     * Amend an open limit order in one command, instead of cancelling it and placing a new one. Reducing the amount at the same limit price
+     * keeps the time priority of the order; any other change moves it behind the orders of its new price, where it may execute.
+     *
+     * @param limitOrder order of the id of the amended one, with its new original amount and limit price, or no price to keep it.
+     *                   With a currency pair the change goes straight to its order book, otherwise the order is searched for in all of them.
+     * @return id of the order, which is kept
+     * @throws ExchangeException if there's no open limit order of that id, or if the changed order was cancelled instead of staying open
+     *                           or executing in full, as a post-only order which would execute is
+     */
+    public String changeOrder(LimitOrder limitOrder) {
+        verifyAmount(limitOrder.getOriginalAmount());
+
+        UUID id = toId(limitOrder.getId());
+        if (id != null) {
+            OfferRate rate = limitOrder.getLimitPrice() == null ? null : new OfferRate(limitOrder.getLimitPrice());
+            Collection<CurrencyPair> pairs = limitOrder.getCurrencyPair() == null ? exchanges.getPairs() : Collections.singleton(limitOrder.getCurrencyPair());
+            for (CurrencyPair pair : pairs) {
+                // null if there's no such order in the pair, false if the amended order was cancelled
+                Boolean amended = exchanges.callIfPresent(pair, exchange -> exchange.getOffer(id) == null
+                        ? null
+                        : exchange.amend(id, limitOrder.getOriginalAmount(), rate) != null);
+                if (amended == Boolean.TRUE)
+                    return limitOrder.getId();
+                if (amended != null)
+                    throw new ExchangeException("Order " + limitOrder.getId() + " cancelled by the change");
+            }
+        }
+        throw new ExchangeException("No open order " + limitOrder.getId());
     }
 
     public static class SilverCancelOrderParams implements CancelOrderByIdParams {
@@ -89,7 +248,12 @@ public class SilverTradeService implements TradeService {
 
     @Override
     public boolean cancelOrder(CancelOrderParams orderParams) {
-        return cancelOrder(getIdFromParam(orderParams));
+        UUID id = getIdFromParam(orderParams);
+        if (orderParams instanceof CancelOrderByCurrencyPair) {
+            return cancelOrder(((CancelOrderByCurrencyPair) orderParams).getCurrencyPair(), id);
+        } else {
+            return cancelOrder(id);
+        }
     }
 
     private static UUID getIdFromParam(CancelOrderParams orderParams) {
@@ -107,18 +271,17 @@ public class SilverTradeService implements TradeService {
     }
 
     private boolean cancelOrder(UUID id) {
-        Iterator<SilverOrder> i = Iterables.concat(exchange.getAllOffers().values()).iterator();
-        while (i.hasNext()) {
-            Offer offer = i.next();
-            SilverOrder order = (SilverOrder) offer;
-            if (order.getId().equals(id)) {
-                i.remove();
+        for (CurrencyPair pair : exchanges.getPairs()) {
+            if (cancelOrder(pair, id))
                 return true;
-            }
         }
         return false;
     }
 
+    private boolean cancelOrder(CurrencyPair pair, UUID id) {
+        return Boolean.TRUE.equals(exchanges.callIfPresent(pair, exchange -> exchange.cancel(id) != null));
+    }
+
     @Override
     public UserTrades getTradeHistory(TradeHistoryParams params) {
         throw new NotAvailableFromExchangeException();
@@ -130,8 +293,8 @@ public class SilverTradeService implements TradeService {
     }
 
     @Override
-    public OpenOrdersParams createOpenOrdersParams() {
-        return null;
+    public SilverOpenOrdersParams createOpenOrdersParams() {
+        return new SilverOpenOrdersParams();
     }
 
     @Override
@@ -144,19 +307,49 @@ public class SilverTradeService implements TradeService {
 
     @Override
     public void verifyOrder(MarketOrder marketOrder) {
-        if (marketOrder.getOriginalAmount() == null)
+        verifyAmount(marketOrder.getOriginalAmount());
+    }
+
+    private static void verifyAmount(BigDecimal amount) {
+        if (amount == null)
             throw new IllegalArgumentException("No Amount");
     }
 
     @Override
     public Collection<Order> getOrder(String... orderIds) {
-        return exchange.getAllOffers().values().stream().flatMap(List::stream)
-                .filter(o -> match(o, orderIds))
-                .map(OrderConverter::toLimitOrder)
+        return Arrays.stream(orderIds)
+                .map(SilverTradeService::toId)
+                .filter(Objects::nonNull)
+                .map(this::getOrder)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
-    private static boolean match(Offer o, String[] ids) {
-        return Arrays.asList(ids).contains(((SilverOrder) o).getId().toString());
+    private Order getOrder(UUID id) {
+        for (CurrencyPair pair : exchanges.getPairs()) {
+            Order order = exchanges.call(pair, exchange -> {
+                SilverOrder offer = exchange.getOffer(id);
+                if (offer != null)
+                    return toLimitOrder(offer);
+                SilverOrder stop = exchange.getStopOffer(id);
+                if (stop == null)
+                    return null;
+                return stop.isMarketOrder() ? toStopOrder(stop) : toLimitOrder(stop);
+            });
+            if (order != null)
+                return order;
+        }
+        return null;
+    }
+
+    /**
+     * @return UUID represented by the id string or null if the string is not a valid UUID, hence not an id of any order
+     */
+    private static UUID toId(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,126 @@
+package com.hashnot.silverexchange.xchange.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.PriorityQueue;
+
+/**
+ * Clock of a discrete-event simulation, e.g. a backtest. The time moves only when advanced, and jumps straight to the next event,
+ * so a simulation runs as fast as its events can be processed and gives the same results every time.
+ * <p>
+ * Timers run when the clock is advanced past their time, in order of their time and then of scheduling, with the clock showing
+ * the time of the timer. They run in the thread advancing the clock, without holding any lock of the clock, so they may
+ * schedule further timers.
+ */
+public class SimulationClock extends VirtualClock {
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private long scheduled;
+
+    public static final class Timer implements Comparable<Timer> {
+        private final long time;
+        private final long order;
+        private final Runnable task;
+        private volatile boolean cancelled;
+
+        private Timer(long time, long order, Runnable task) {
+            this.time = time;
+            this.order = order;
+            this.task = task;
+        }
+
+        /**
+         * Prevent the timer from running, unless it already has
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(Timer o) {
+            int result = Long.compare(time, o.time);
+            return result != 0 ? result : Long.compare(order, o.order);
+        }
+    }
+
+    public SimulationClock(Instant start) {
+        super(start);
+    }
+
+    /**
+     * Run the task once the clock is advanced to the given time, or on the next advance if the time has already passed
+     */
+    public synchronized Timer schedule(Instant time, Runnable task) {
+        assert task != null;
+
+        Timer timer = new Timer(toNanos(time), scheduled++, task);
+        timers.add(timer);
+        return timer;
+    }
+
+    public Timer schedule(Duration delay, Runnable task) {
+        return schedule(get().plus(delay), task);
+    }
+
+    /**
+     * Run all timers due up to the given time, then move the clock to that time
+     *
+     * @param nanos nanoseconds since the epoch
+     */
+    @Override
+    public void advanceTo(long nanos) {
+        Timer timer;
+        while ((timer = poll(nanos)) != null)
+            timer.task.run();
+        super.advanceTo(nanos);
+    }
+
+    public void advance(Duration duration) {
+        advanceTo(Math.addExact(getNanos(), duration.toNanos()));
+    }
+
+    /**
+     * Move the clock to the time of the next timer and run it
+     *
+     * @return false if there are no timers to run
+     */
+    public boolean runNext() {
+        Timer timer = poll(Long.MAX_VALUE);
+        if (timer == null)
+            return false;
+
+        timer.task.run();
+        return true;
+    }
+
+    /**
+     * @return time of the next timer or null if there is none
+     */
+    public synchronized Instant getNextTime() {
+        removeCancelled();
+        Timer timer = timers.peek();
+        return timer == null ? null : Instant.ofEpochSecond(0, timer.time);
+    }
+
+    /**
+     * Remove the next timer due up to the given time and move the clock to its time
+     */
+    private synchronized Timer poll(long nanos) {
+        removeCancelled();
+        Timer timer = timers.peek();
+        if (timer == null || timer.time > nanos)
+            return null;
+
+        timers.poll();
+        super.advanceTo(timer.time);
+        return timer;
+    }
+
+    private void removeCancelled() {
+        while (!timers.isEmpty() && timers.peek().cancelled)
+            timers.poll();
+    }
+}
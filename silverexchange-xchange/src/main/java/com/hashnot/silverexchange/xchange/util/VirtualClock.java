@@ -0,0 +1,49 @@
+package com.hashnot.silverexchange.xchange.util;
+
+import java.time.Instant;
+
+/**
+ * Clock showing the time of the simulated events, e.g. those of a replayed order flow, instead of the wall-clock time.
+ * The time never goes back, so events recorded slightly out of order keep the latest time seen.
+ * <p>
+ * Advanced by a single thread, read by any thread.
+ */
+public class VirtualClock implements Clock {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * Nanoseconds since the epoch
+     */
+    private volatile long time;
+
+    public VirtualClock(Instant start) {
+        time = toNanos(start);
+    }
+
+    @Override
+    public Instant get() {
+        long time = this.time;
+        return Instant.ofEpochSecond(Math.floorDiv(time, NANOS_PER_SECOND), Math.floorMod(time, NANOS_PER_SECOND));
+    }
+
+    /**
+     * @return nanoseconds since the epoch
+     */
+    public long getNanos() {
+        return time;
+    }
+
+    /**
+     * Move the clock to the given time, unless it's already later
+     *
+     * @param nanos nanoseconds since the epoch
+     */
+    public void advanceTo(long nanos) {
+        if (nanos > time)
+            time = nanos;
+    }
+
+    public static long toNanos(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+    }
+}
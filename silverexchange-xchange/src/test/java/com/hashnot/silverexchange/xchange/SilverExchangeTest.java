@@ -1,10 +1,35 @@
 package com.hashnot.silverexchange.xchange;
 
+import com.hashnot.silverexchange.FixedPoint;
+import com.hashnot.silverexchange.TransactionLog;
+import com.hashnot.silverexchange.TransactionRate;
+import com.hashnot.silverexchange.xchange.model.GoodTillDate;
+import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import com.hashnot.silverexchange.xchange.service.IIdGenerator;
+import com.hashnot.silverexchange.xchange.service.SequenceIdGenerator;
 import org.junit.jupiter.api.Test;
 import org.knowm.xchange.Exchange;
 import org.knowm.xchange.ExchangeFactory;
+import org.knowm.xchange.ExchangeSpecification;
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.trade.LimitOrder;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.hashnot.silverexchange.xchange.model.TestModelFactory.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 class SilverExchangeTest {
     @Test
@@ -12,4 +37,158 @@ class SilverExchangeTest {
         Exchange x = ExchangeFactory.INSTANCE.createExchange(SilverExchange.class.getName());
         assertEquals(SilverExchange.NAME, x.getExchangeSpecification().getExchangeName());
     }
+
+    @Test
+    void testFixedPointParams() {
+        ExchangeSpecification spec = new ExchangeSpecification(SilverExchange.class);
+        assertNull(SilverExchange.fixedPoint(spec));
+
+        spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_PRICE_SCALE, 2);
+        assertThrows(IllegalArgumentException.class, () -> SilverExchange.fixedPoint(spec));
+
+        spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_AMOUNT_SCALE, "8");
+        assertEquals(new FixedPoint(2, 8), SilverExchange.fixedPoint(spec));
+    }
+
+    @Test
+    void testIdGeneratorParam() {
+        ExchangeSpecification spec = new ExchangeSpecification(SilverExchange.class);
+        assertSame(IIdGenerator.DEFAULT, SilverExchange.idGenerator(spec));
+
+        spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_ID_GENERATOR, SilverExchange.ID_GENERATOR_SEQUENCE);
+        assertTrue(SilverExchange.idGenerator(spec) instanceof SequenceIdGenerator);
+
+        spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_ID_GENERATOR, "uuid");
+        assertThrows(IllegalArgumentException.class, () -> SilverExchange.idGenerator(spec));
+    }
+
+    @Test
+    void testSequencedExchange() throws IOException {
+        ExchangeSpecification spec = new ExchangeSpecification(SilverExchange.class);
+        spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_SEQUENCER_CAPACITY, 16);
+        Exchange x = ExchangeFactory.INSTANCE.createExchange(spec);
+
+        LimitOrder order = new LimitOrder.Builder(Order.OrderType.BID, CurrencyPair.BTC_EUR)
+                .originalAmount(BigDecimal.ONE)
+                .limitPrice(BigDecimal.ONE)
+                .build();
+        String id = x.getTradeService().placeLimitOrder(order);
+
+        assertEquals(1, x.getTradeService().getOpenOrders().getOpenOrders().size());
+        assertTrue(x.getTradeService().cancelOrder(id));
+    }
+
+    @Test
+    void testSimulation() throws IOException {
+        ExchangeSpecification spec = new ExchangeSpecification(SilverExchange.class);
+        spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_SIMULATION_START, "2018-01-01T00:00:00Z");
+        SilverExchange x = (SilverExchange) ExchangeFactory.INSTANCE.createExchange(spec);
+        SilverExchange same = (SilverExchange) ExchangeFactory.INSTANCE.createExchange(spec);
+        assertNull(((SilverExchange) ExchangeFactory.INSTANCE.createExchange(SilverExchange.class.getName())).getSimulationClock());
+
+        x.getSimulationClock().advance(Duration.ofHours(1));
+        LimitOrder order = new LimitOrder.Builder(Order.OrderType.BID, CurrencyPair.BTC_EUR)
+                .originalAmount(BigDecimal.ONE)
+                .limitPrice(BigDecimal.ONE)
+                .build();
+        String id = x.getTradeService().placeLimitOrder(order);
+
+        assertEquals(same.getTradeService().placeLimitOrder(order), id);
+        assertEquals(Instant.parse("2018-01-01T01:00:00Z"), x.getTradeService().getOpenOrders().getOpenOrders().get(0).getTimestamp().toInstant());
+
+        // expired by the clock, without another command
+        x.getTradeService().placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, CurrencyPair.BTC_EUR)
+                .originalAmount(BigDecimal.ONE)
+                .limitPrice(BigDecimal.TEN)
+                .flag(new GoodTillDate(Instant.parse("2018-01-01T01:30:00Z")))
+                .build());
+        assertEquals(1, x.getMarketDataService().getOrderBook(CurrencyPair.BTC_EUR, 10).getAsks().size());
+        x.getSimulationClock().advance(Duration.ofHours(1));
+        assertTrue(x.getMarketDataService().getOrderBook(CurrencyPair.BTC_EUR, 10).getAsks().isEmpty());
+    }
+
+    @Test
+    void testJournaledExchangeRecovers() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        try {
+            ExchangeSpecification spec = new ExchangeSpecification(SilverExchange.class);
+            spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_JOURNAL_DIRECTORY, directory.toString());
+            spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_JOURNAL_SEGMENT_SIZE, 4096);
+            Exchange x = ExchangeFactory.INSTANCE.createExchange(spec);
+            String id = x.getTradeService().placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, CurrencyPair.BTC_EUR)
+                    .originalAmount(BigDecimal.ONE)
+                    .limitPrice(BigDecimal.ONE)
+                    .build());
+            String cancelled = x.getTradeService().placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, CurrencyPair.ETH_EUR)
+                    .originalAmount(BigDecimal.ONE)
+                    .limitPrice(BigDecimal.ONE)
+                    .build());
+            x.getTradeService().cancelOrder(cancelled);
+
+            Exchange restarted = ExchangeFactory.INSTANCE.createExchange(spec);
+
+            List<LimitOrder> openOrders = restarted.getTradeService().getOpenOrders().getOpenOrders();
+            assertEquals(1, openOrders.size());
+            assertEquals(id, openOrders.get(0).getId());
+            assertEquals(CurrencyPair.BTC_EUR, openOrders.get(0).getCurrencyPair());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    void testCloseStopsThreadsAndForcesJournals() throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        try {
+            ExchangeSpecification spec = new ExchangeSpecification(SilverExchange.class);
+            spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_JOURNAL_DIRECTORY, directory.toString());
+            spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_JOURNAL_SEGMENT_SIZE, 4096);
+            spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_JOURNAL_FLUSH_INTERVAL, "PT1H");
+            spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_CHECKPOINT_INTERVAL, "PT1H");
+            spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_SEQUENCER_CAPACITY, 16);
+
+            Set<Thread> before = Thread.getAllStackTraces().keySet();
+            SilverExchange x = (SilverExchange) ExchangeFactory.INSTANCE.createExchange(spec);
+            String id = x.getTradeService().placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, CurrencyPair.BTC_EUR)
+                    .originalAmount(BigDecimal.ONE)
+                    .limitPrice(BigDecimal.ONE)
+                    .build());
+            Set<Thread> started = new HashSet<>(Thread.getAllStackTraces().keySet());
+            started.removeAll(before);
+            assertFalse(started.isEmpty());
+
+            x.close();
+            for (Thread t : started)
+                assertFalse(t.isAlive(), t.getName());
+
+            try (SilverExchange restarted = (SilverExchange) ExchangeFactory.INSTANCE.createExchange(spec)) {
+                List<LimitOrder> openOrders = restarted.getTradeService().getOpenOrders().getOpenOrders();
+                assertEquals(1, openOrders.size());
+                assertEquals(id, openOrders.get(0).getId());
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    void testTradeHistoryParams() {
+        ExchangeSpecification spec = new ExchangeSpecification(SilverExchange.class);
+        spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_TRADE_HISTORY_SIZE, 2);
+        spec.setExchangeSpecificParametersItem(SilverExchange.PARAM_TRADE_HISTORY_WINDOW, "PT1S");
+        TransactionLog<SilverTransaction> log = SilverExchange.transactionLog(spec).get();
+
+        log.add(new SilverTransaction(ID, ONE, new TransactionRate(ONE), TS));
+        log.add(new SilverTransaction(ID, ONE, new TransactionRate(TWO), TS.plusMillis(500)));
+        log.add(new SilverTransaction(ID, ONE, new TransactionRate(THREE), TS.plusMillis(1200)));
+
+        assertEquals(2, log.size());
+        assertEquals(TWO, log.get(0).getRate().getValue());
+    }
 }
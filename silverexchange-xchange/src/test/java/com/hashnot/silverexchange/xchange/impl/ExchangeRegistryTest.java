@@ -0,0 +1,142 @@
+package com.hashnot.silverexchange.xchange.impl;
+
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.ext.IDepthListener;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import com.hashnot.silverexchange.xchange.util.SimulationClock;
+import com.hashnot.silverexchange.xchange.util.VirtualClock;
+import org.junit.jupiter.api.Test;
+import org.knowm.xchange.currency.CurrencyPair;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.hashnot.silverexchange.xchange.model.TestModelFactory.*;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExchangeRegistryTest {
+    private final ExchangeRegistry registry = new ExchangeRegistry(ExchangeRegistryTest::exchange);
+
+    private static Exchange<SilverTransaction, SilverOrder> exchange(CurrencyPair pair) {
+        return new Exchange<>(new SilverTransactionFactory(ID_GEN, CLOCK), SilverOrder::getId);
+    }
+
+    @Test
+    void testCallCreatesExchangeOnce() {
+        assertNull(registry.callIfPresent(PAIR, x -> x));
+        assertTrue(registry.getPairs().isEmpty());
+
+        Exchange<SilverTransaction, SilverOrder> exchange = registry.call(PAIR, x -> x);
+
+        assertNotNull(exchange);
+        assertSame(exchange, registry.call(PAIR, x -> x));
+        assertSame(exchange, registry.callIfPresent(PAIR, x -> x));
+        assertEquals(singleton(PAIR), registry.getPairs());
+    }
+
+    @Test
+    void testExchangePerPair() {
+        assertNotSame(registry.call(PAIR, x -> x), registry.call(CurrencyPair.ETH_EUR, x -> x));
+        assertEquals(2, registry.getPairs().size());
+    }
+
+    @Test
+    void testNullPair() {
+        assertThrows(IllegalArgumentException.class, () -> registry.call(null, x -> x));
+        assertNull(registry.callIfPresent(null, x -> x));
+    }
+
+    @Test
+    void testSnapshot() {
+        assertThrows(IllegalArgumentException.class, () -> registry.getSnapshot(null));
+        assertNull(registry.getSnapshot(PAIR));
+        assertNull(registry.getTradeStats(PAIR));
+        assertTrue(registry.getPairs().isEmpty());
+
+        registry.call(PAIR, x -> x.post(ask(ONE, ONE)));
+
+        assertEquals(1, registry.getSnapshot(PAIR).getDepth(Side.ASK, 10).size());
+        assertEquals(0, registry.getTradeStats(PAIR).getCount());
+        assertEquals(singleton(PAIR), registry.getPairs());
+    }
+
+    @Test
+    void testDepthListenerOfPairWithoutExchange() {
+        List<Long> sequences = new ArrayList<>();
+        IDepthListener listener = (sequence, change, side, rate, amount, count) -> sequences.add(sequence);
+
+        assertNull(registry.addDepthListener(PAIR, listener, x -> x));
+        assertTrue(registry.getPairs().isEmpty());
+
+        SilverOrder order = ask(ONE, ONE);
+        registry.call(PAIR, x -> x.post(order));
+        registry.removeDepthListener(PAIR, listener);
+        registry.call(PAIR, x -> x.cancel(order.getId()));
+
+        assertEquals(singletonList(1L), sequences);
+        assertNotNull(registry.addDepthListener(PAIR, listener, x -> x));
+    }
+
+    @Test
+    void testGoodTillDateExpiresOnSimulationClock() {
+        SimulationClock clock = new SimulationClock(TS);
+        ExchangeRegistry simulated = new ExchangeRegistry(ExchangeRegistryTest::exchange, 0, clock);
+        SilverOrder order = ask(ONE, ONE);
+        long expireTime = TS.toEpochMilli() + 1000;
+        order.setGoodTillDate(expireTime);
+        simulated.call(PAIR, x -> x.post(order));
+        simulated.expireAt(PAIR, expireTime);
+
+        clock.advance(Duration.ofMillis(999));
+        assertEquals(1, simulated.getSnapshot(PAIR).getDepth(Side.ASK, 10).size());
+
+        // no command, the timer expires the order
+        clock.advance(Duration.ofMillis(1));
+        assertTrue(simulated.getSnapshot(PAIR).getDepth(Side.ASK, 10).isEmpty());
+        assertNull(clock.getNextTime());
+    }
+
+    @Test
+    void testGoodTillDateExpiresBeforeCommand() {
+        VirtualClock clock = new VirtualClock(TS);
+        ExchangeRegistry expiring = new ExchangeRegistry(ExchangeRegistryTest::exchange, 0, clock);
+        SilverOrder order = ask(ONE, ONE);
+        order.setGoodTillDate(1000);
+        expiring.call(PAIR, x -> x.post(order));
+
+        clock.advanceTo(VirtualClock.toNanos(Instant.ofEpochMilli(999)));
+        assertSame(order, expiring.call(PAIR, x -> x.getOffer(ID)));
+
+        clock.advanceTo(VirtualClock.toNanos(Instant.ofEpochMilli(1000)));
+        assertNull(expiring.call(PAIR, x -> x.getOffer(ID)));
+        assertTrue(expiring.getSnapshot(PAIR).getDepth(Side.ASK, 10).isEmpty());
+    }
+
+    @Test
+    void testSequenced() throws InterruptedException {
+        ExchangeRegistry sequenced = new ExchangeRegistry(ExchangeRegistryTest::exchange, 4);
+        assertTrue(sequenced.isSequenced());
+
+        String thread = sequenced.call(PAIR, x -> Thread.currentThread().getName());
+        assertNotEquals(Thread.currentThread().getName(), thread);
+        assertEquals(thread, sequenced.call(PAIR, x -> Thread.currentThread().getName()));
+
+        // exceptions of commands are rethrown in the calling thread
+        assertThrows(IllegalStateException.class, () -> sequenced.call(PAIR, x -> {
+            throw new IllegalStateException();
+        }));
+
+        sequenced.close();
+    }
+
+    @Test
+    void testInvalidSequencerCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new ExchangeRegistry(ExchangeRegistryTest::exchange, 3));
+    }
+}
@@ -0,0 +1,81 @@
+package com.hashnot.silverexchange.xchange.impl;
+
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.hashnot.silverexchange.xchange.model.TestModelFactory.*;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalingExchangeFactoryTest {
+    private final Path directory;
+
+    JournalingExchangeFactoryTest() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.delete(p);
+        }
+    }
+
+    private JournalingExchangeFactory factory() {
+        return new JournalingExchangeFactory(pair -> new Exchange<>(new SilverTransactionFactory(ID_GEN, CLOCK), SilverOrder::getId), directory, 4096, 1_000_000);
+    }
+
+    private static SilverOrder order(Side side, BigDecimal amount) {
+        return new SilverOrder(UUID.randomUUID(), PAIR, side, amount, new OfferRate(ONE), TS);
+    }
+
+    @Test
+    void testRecoverFromCheckpointAndJournal() throws Exception {
+        JournalingExchangeFactory factory = factory();
+        ExchangeRegistry exchanges = new ExchangeRegistry(factory);
+        SilverOrder partial = order(Side.ASK, TWO);
+        SilverOrder cancelled = order(Side.ASK, ONE);
+        SilverOrder late = order(Side.ASK, THREE);
+        exchanges.call(PAIR, x -> x.post(partial));
+        exchanges.call(PAIR, x -> x.post(order(Side.BID, ONE)));
+        exchanges.call(PAIR, x -> x.post(cancelled));
+        factory.checkpoint(exchanges);
+        exchanges.call(PAIR, x -> x.post(late));
+        exchanges.call(PAIR, x -> x.cancel(cancelled.getId()));
+        factory.close();
+
+        JournalingExchangeFactory restartedFactory = factory();
+        assertEquals(singletonList(PAIR), restartedFactory.getJournaledPairs());
+        ExchangeRegistry restarted = new ExchangeRegistry(restartedFactory);
+        Exchange<SilverTransaction, SilverOrder> x = restarted.call(PAIR, e -> e);
+
+        assertEquals(2, x.getAllOffers().get(Side.ASK).size());
+        assertEquals(ONE, x.getOffer(partial.getId()).getAmount());
+        assertEquals(ONE, x.getOffer(partial.getId()).getFilledAmount());
+        assertNull(x.getOffer(cancelled.getId()));
+        assertNotNull(x.getOffer(late.getId()));
+        assertTrue(Files.exists(directory.resolve("BTC-EUR").resolve("checkpoint.dat")));
+        restartedFactory.close();
+    }
+
+    @Test
+    void testNoJournals() throws IOException {
+        assertEquals(emptyList(), new JournalingExchangeFactory(null, directory.resolve("missing"), 4096, 1).getJournaledPairs());
+    }
+}
@@ -0,0 +1,48 @@
+package com.hashnot.silverexchange.xchange.impl;
+
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.UUID;
+
+import static com.hashnot.silverexchange.xchange.model.TestModelFactory.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SilverOrderCodecTest {
+    private final SilverOrderCodec codec = new SilverOrderCodec(PAIR);
+
+    @Test
+    void testOrderRoundTrip() {
+        UUID id = UUID.randomUUID();
+        Instant timestamp = Instant.ofEpochSecond(1_500_000_000L, 123);
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        codec.writeOffer(new SilverOrder(id, PAIR, Side.ASK, new BigDecimal("1.50"), new OfferRate(TWO), timestamp), buffer);
+        codec.writeOffer(new SilverOrder(id, PAIR, Side.BID, ONE, OfferRate.market(), timestamp), buffer);
+
+        buffer.flip();
+        SilverOrder order = codec.readOffer(buffer);
+        assertEquals(id, order.getId());
+        assertEquals(PAIR, order.getPair());
+        assertEquals(Side.ASK, order.getSide());
+        assertEquals(new BigDecimal("1.50"), order.getAmount());
+        assertEquals(new OfferRate(TWO), order.getRate());
+        assertEquals(timestamp, order.getTimestamp());
+
+        assertTrue(codec.readOffer(buffer).isMarketOrder());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void testIdRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        codec.writeId(ID, buffer);
+
+        buffer.flip();
+        assertEquals(ID, codec.readId(buffer));
+    }
+}
@@ -0,0 +1,86 @@
+package com.hashnot.silverexchange.xchange.replay;
+
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.test.MockitoExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BinaryOrderFlowReaderTest {
+    private static final BigDecimal HUGE = new BigDecimal("123456789012345678901234567890.5");
+
+    private final Path file;
+
+    @Mock
+    private IOrderFlowHandler handler;
+
+    BinaryOrderFlowReaderTest() throws IOException {
+        file = Files.createTempFile("flow", ".bin");
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.delete(file);
+    }
+
+    private void write(int bufferSize) throws IOException {
+        try (BinaryOrderFlowWriter writer = new BinaryOrderFlowWriter(file, bufferSize)) {
+            writer.post(1000, 1, Side.BID, BigDecimal.ONE, new BigDecimal("100.25"));
+            writer.post(2000, 2, Side.ASK, HUGE, null);
+            writer.cancel(3000, 1);
+        }
+    }
+
+    private long read(int bufferSize) throws IOException {
+        try (OrderFlowReader reader = OrderFlowReader.open(file, bufferSize)) {
+            assertTrue(reader instanceof BinaryOrderFlowReader);
+            return reader.read(handler);
+        }
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        // events span the boundaries of the small buffers
+        write(64);
+        assertEquals(3, read(64));
+
+        InOrder inOrder = inOrder(handler);
+        inOrder.verify(handler).post(1000, 1, Side.BID, BigDecimal.ONE, new BigDecimal("100.25"));
+        inOrder.verify(handler).post(2000, 2, Side.ASK, HUGE, null);
+        inOrder.verify(handler).cancel(3000, 1);
+        verifyNoMoreInteractions(handler);
+    }
+
+    @Test
+    void testTruncated() throws IOException {
+        write(1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> read(1024));
+        verify(handler, times(2)).post(anyLong(), anyLong(), any(), any(), any());
+        verify(handler, never()).cancel(anyLong(), anyLong());
+    }
+
+    @Test
+    void testEventLargerThanBuffer() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> write(16));
+
+        write(1024);
+        assertThrows(IllegalArgumentException.class, () -> read(16));
+    }
+}
@@ -0,0 +1,84 @@
+package com.hashnot.silverexchange.xchange.replay;
+
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.test.MockitoExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CsvOrderFlowReaderTest {
+    private final Path file;
+
+    @Mock
+    private IOrderFlowHandler handler;
+
+    CsvOrderFlowReaderTest() throws IOException {
+        file = Files.createTempFile("flow", ".csv");
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.delete(file);
+    }
+
+    private long read(String content, int bufferSize) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        try (OrderFlowReader reader = OrderFlowReader.open(file, bufferSize)) {
+            assertTrue(reader instanceof CsvOrderFlowReader);
+            return reader.read(handler);
+        }
+    }
+
+    @Test
+    void testRead() throws IOException {
+        String content = "timestamp,type,id,side,amount,price\n" +
+                "1000,P,1,BID,1.5,100.25\r\n" +
+                "\n" +
+                "# comment\n" +
+                "2000,POST,2,ASK,2,\n" +
+                "3000,C,1";
+
+        // lines span the boundaries of the small buffer
+        assertEquals(3, read(content, 40));
+
+        InOrder inOrder = inOrder(handler);
+        inOrder.verify(handler).post(1000, 1, Side.BID, new BigDecimal("1.5"), new BigDecimal("100.25"));
+        inOrder.verify(handler).post(2000, 2, Side.ASK, new BigDecimal("2"), null);
+        inOrder.verify(handler).cancel(3000, 1);
+        verifyNoMoreInteractions(handler);
+    }
+
+    @Test
+    void testEmpty() throws IOException {
+        assertEquals(0, read("", 16));
+        verifyZeroInteractions(handler);
+    }
+
+    @Test
+    void testInvalidLine() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> read("1,C,1\n2,P,2,BID,x,1\n", 64));
+        assertEquals("Invalid event at line 2", e.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> read("1,X,1\n", 64));
+        assertThrows(IllegalArgumentException.class, () -> read("1,P,1,SELL,1,1\n", 64));
+        assertThrows(IllegalArgumentException.class, () -> read("1,P,1\n", 64));
+        assertThrows(IllegalArgumentException.class, () -> read("1,C,99999999999999999999\n", 64));
+    }
+
+    @Test
+    void testLineLongerThanBuffer() {
+        assertThrows(IllegalArgumentException.class, () -> read("1000,P,1,BID,1.5,100.25\n", 8));
+    }
+}
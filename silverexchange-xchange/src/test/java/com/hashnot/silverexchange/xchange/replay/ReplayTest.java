@@ -0,0 +1,78 @@
+package com.hashnot.silverexchange.xchange.replay;
+
+import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.xchange.impl.SilverTransactionFactory;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverTransaction;
+import com.hashnot.silverexchange.xchange.util.VirtualClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static com.hashnot.silverexchange.xchange.model.TestModelFactory.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayTest {
+    private final Path file;
+    private final VirtualClock clock = new VirtualClock(Instant.EPOCH);
+    private final Exchange<SilverTransaction, SilverOrder> exchange = new Exchange<>(new SilverTransactionFactory(ID_GEN, clock), SilverOrder::getId);
+
+    ReplayTest() throws IOException {
+        file = Files.createTempFile("flow", ".csv");
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.delete(file);
+    }
+
+    @Test
+    void testReplay() throws IOException {
+        String content = "1000000000,P,1,ASK,2,100\n" +
+                "2000000000,P,2,ASK,1,101\n" +
+                "3000000000,P,3,BID,3,\n" +
+                "4000000000,P,4,BID,1,99\n" +
+                "4000000001,P,5,BID,0,99\n" +
+                "5000000000,C,4\n" +
+                "6000000000,C,1\n";
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+
+        ReplayReport report;
+        try (OrderFlowReader reader = OrderFlowReader.open(file, 64)) {
+            report = new Replay(exchange, PAIR, clock).run(reader);
+        }
+
+        assertEquals(5, report.getPosts());
+        assertEquals(2, report.getCancels());
+        // the zero amount order and the cancel of the filled order
+        assertEquals(2, report.getRejected());
+        assertEquals(2, report.getTransactions());
+        assertEquals(7, report.getEvents());
+
+        assertEquals(Instant.ofEpochSecond(6), clock.get());
+
+        List<SilverTransaction> transactions = exchange.getAllTransactions();
+        assertEquals(2, transactions.size());
+        assertEquals(Instant.ofEpochSecond(3), transactions.get(0).getTimestamp());
+
+        assertTrue(exchange.getAllOffers().get(Side.ASK).isEmpty());
+        assertTrue(exchange.getAllOffers().get(Side.BID).isEmpty());
+        assertNull(exchange.getOffer(new UUID(0, 4)));
+    }
+
+    @Test
+    void testClockNeverGoesBack() {
+        clock.advanceTo(2_000_000_000L);
+        clock.advanceTo(1_000_000_000L);
+        assertEquals(Instant.ofEpochSecond(2), clock.get());
+        assertEquals(2_000_000_000L, VirtualClock.toNanos(clock.get()));
+    }
+}
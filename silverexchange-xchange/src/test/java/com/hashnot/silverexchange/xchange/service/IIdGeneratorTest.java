@@ -0,0 +1,24 @@
+package com.hashnot.silverexchange.xchange.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IIdGeneratorTest {
+    @Test
+    void testSeeded() {
+        IIdGenerator a = IIdGenerator.seeded(1);
+        IIdGenerator b = IIdGenerator.seeded(1);
+
+        UUID first = a.get();
+        assertEquals(first, b.get());
+        assertEquals(a.get(), b.get());
+        assertNotEquals(first, a.get());
+        assertNotEquals(first, IIdGenerator.seeded(2).get());
+
+        assertEquals(4, first.version());
+        assertEquals(2, first.variant());
+    }
+}
@@ -0,0 +1,55 @@
+package com.hashnot.silverexchange.xchange.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceIdGeneratorTest {
+    private static final long TIME = 1514764800000L;
+
+    @Test
+    void testTimeOrderedIds() {
+        SequenceIdGenerator generator = new SequenceIdGenerator(TIME, 1);
+        UUID first = generator.get();
+        UUID second = generator.get();
+
+        assertEquals(7, first.version());
+        assertEquals(2, first.variant());
+        assertTrue(first.compareTo(second) < 0);
+        assertEquals((TIME << 20) + 1, SequenceIdGenerator.toLong(first));
+        assertEquals(SequenceIdGenerator.toLong(first) + 1, SequenceIdGenerator.toLong(second));
+
+        // a generator created later continues the sequence
+        UUID restarted = new SequenceIdGenerator(TIME + 1, 1).get();
+        assertTrue(second.compareTo(restarted) < 0);
+        assertTrue(SequenceIdGenerator.toLong(second) < SequenceIdGenerator.toLong(restarted));
+    }
+
+    @Test
+    void testBlocksAreUniqueAcrossThreads() throws InterruptedException {
+        SequenceIdGenerator generator = new SequenceIdGenerator(TIME, 16);
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++)
+                    ids.add(generator.get());
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+
+        assertEquals(4000, ids.size());
+    }
+
+    @Test
+    void testInvalidParams() {
+        assertThrows(IllegalArgumentException.class, () -> new SequenceIdGenerator(TIME, 0));
+        assertThrows(IllegalArgumentException.class, () -> new SequenceIdGenerator(-1, 1));
+    }
+}
@@ -1,10 +1,15 @@
 package com.hashnot.silverexchange.xchange.service.marketdata;
 
+import com.hashnot.silverexchange.DepthLevel;
+import com.hashnot.silverexchange.OfferRate;
 import org.junit.jupiter.api.Test;
+import org.knowm.xchange.dto.Order;
 import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
 
 import static com.hashnot.silverexchange.xchange.model.TestModelFactory.*;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -18,5 +23,22 @@ class OrderBookConverterTest {
         assertEquals(TS_DATE, orderBook.getTimeStamp());
     }
 
+    @Test
+    void testConvertDepth() {
+        OrderBook orderBook = OrderBookConverter.toOrderBook(
+                PAIR,
+                singletonList(new DepthLevel(new OfferRate(ONE), THREE, 2)),
+                emptyList(),
+                CLOCK
+        );
+
+        assertTrue(orderBook.getAsks().isEmpty());
+        LimitOrder bid = orderBook.getBids().get(0);
+        assertEquals(Order.OrderType.BID, bid.getType());
+        assertEquals(PAIR, bid.getCurrencyPair());
+        assertEquals(ONE, bid.getLimitPrice());
+        assertEquals(THREE, bid.getOriginalAmount());
+    }
+
 
 }
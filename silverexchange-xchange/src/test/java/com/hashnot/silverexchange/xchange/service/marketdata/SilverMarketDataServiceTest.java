@@ -1,11 +1,16 @@
 package com.hashnot.silverexchange.xchange.service.marketdata;
 
 import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.ext.IDepthListener;
 import com.hashnot.silverexchange.test.MockitoExtension;
+import com.hashnot.silverexchange.xchange.impl.ExchangeRegistry;
+import com.hashnot.silverexchange.xchange.impl.SilverTransactionFactory;
 import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverTransaction;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.marketdata.Ticker;
 import org.knowm.xchange.dto.marketdata.Trade;
 import org.knowm.xchange.dto.marketdata.Trades;
 import org.knowm.xchange.dto.trade.LimitOrder;
@@ -14,6 +19,7 @@ import org.mockito.Mock;
 
 import java.io.IOException;
 import java.sql.Date;
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.hashnot.silverexchange.xchange.model.TestModelFactory.*;
@@ -26,13 +32,13 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class SilverMarketDataServiceTest {
     @Mock
-    private Exchange exchange;
+    private Exchange<SilverTransaction, SilverOrder> exchange;
 
     @Test
     void testGetTradesEmpyu() throws IOException {
         MarketDataService service = service(exchange);
 
-        Trades trades = service.getTrades(null);
+        Trades trades = service.getTrades(PAIR);
         assertNotNull(trades);
         assertTrue(trades.getTrades().isEmpty());
     }
@@ -42,7 +48,7 @@ class SilverMarketDataServiceTest {
         when(exchange.getAllTransactions()).thenReturn(singletonList(tx(ONE, ONE)));
         MarketDataService service = service(exchange);
 
-        Trades trades = service.getTrades(null);
+        Trades trades = service.getTrades(PAIR);
         assertNotNull(trades);
         assertFalse(trades.getTrades().isEmpty());
 
@@ -55,6 +61,7 @@ class SilverMarketDataServiceTest {
                 .id(ID_STR)
                 .build();
         assertEquals(singletonList(expectedTrade), trades.getTrades());
+        assertEquals(PAIR, trades.getTrades().get(0).getCurrencyPair());
     }
 
     @Test
@@ -64,7 +71,7 @@ class SilverMarketDataServiceTest {
 
         MarketDataService service = service(exchange);
 
-        OrderBook orderBook = service.getOrderBook(null);
+        OrderBook orderBook = service.getOrderBook(PAIR);
 
         verify(exchange).getAllOffers();
 
@@ -81,7 +88,85 @@ class SilverMarketDataServiceTest {
         assertEquals(ONE, bid.getOriginalAmount());
     }
 
-    private static MarketDataService service(Exchange exchange) {
-        return new SilverMarketDataService(exchange, CLOCK);
+    @Test
+    void testGetTickerShowsLastTrade() throws IOException {
+        Exchange<SilverTransaction, SilverOrder> x = new Exchange<>(new SilverTransactionFactory(ID_GEN, CLOCK));
+        x.post(ask(ONE, ONE));
+        x.post(ask(ONE, TWO));
+        x.post(ask(ONE, THREE));
+        x.post(bid(ONE, ONE));
+        x.post(bid(ONE, TWO));
+
+        Ticker ticker = service(x).getTicker(PAIR);
+
+        assertEquals(TWO, ticker.getLast());
+        assertEquals(THREE, ticker.getAsk());
+        assertNull(ticker.getBid());
+        assertEquals(TWO, ticker.getVolume());
+    }
+
+    @Test
+    void testGetOrderBookDepth() throws IOException {
+        Exchange<SilverTransaction, SilverOrder> x = new Exchange<>(new SilverTransactionFactory(ID_GEN, CLOCK));
+        x.post(ask(ONE, ONE));
+        x.post(ask(ONE, ONE));
+        x.post(ask(ONE, TWO));
+        x.post(ask(ONE, THREE));
+        MarketDataService service = service(x);
+
+        OrderBook orderBook = service.getOrderBook(PAIR, 2);
+
+        assertEquals(2, orderBook.getAsks().size());
+        assertEquals(ONE, orderBook.getAsks().get(0).getLimitPrice());
+        assertEquals(TWO, orderBook.getAsks().get(0).getOriginalAmount());
+        assertEquals(TWO, orderBook.getAsks().get(1).getLimitPrice());
+        assertEquals(emptyList(), orderBook.getBids());
+
+        assertEquals(4, service.getOrderBook(PAIR).getAsks().size());
+        assertThrows(IllegalArgumentException.class, () -> service.getOrderBook(PAIR, "2"));
+        assertThrows(IllegalArgumentException.class, () -> service.getOrderBook(PAIR, -1));
+    }
+
+    @Test
+    void testSubscribeOrderBook() {
+        Exchange<SilverTransaction, SilverOrder> x = new Exchange<>(new SilverTransactionFactory(ID_GEN, CLOCK));
+        x.post(ask(ONE, ONE));
+        SilverMarketDataService service = (SilverMarketDataService) service(x);
+        List<Long> sequences = new ArrayList<>();
+        IDepthListener listener = (sequence, change, side, rate, amount, count) -> sequences.add(sequence);
+
+        OrderBook snapshot = service.subscribeOrderBook(PAIR, listener);
+        x.post(ask(ONE, TWO));
+        service.unsubscribeOrderBook(PAIR, listener);
+        x.post(ask(ONE, THREE));
+
+        assertEquals(1, snapshot.getAsks().size());
+        assertEquals(ONE, snapshot.getAsks().get(0).getLimitPrice());
+        assertEquals(singletonList(2L), sequences);
+        assertThrows(IllegalArgumentException.class, () -> service.subscribeOrderBook(PAIR, null));
+    }
+
+    @Test
+    void testReadsDontCreateExchange() throws IOException {
+        ExchangeRegistry registry = new ExchangeRegistry(pair -> exchange);
+        SilverMarketDataService service = new SilverMarketDataService(registry, CLOCK);
+        IDepthListener listener = (sequence, change, side, rate, amount, count) -> {
+        };
+
+        assertNull(service.getTicker(PAIR).getLast());
+        assertTrue(service.getOrderBook(PAIR).getAsks().isEmpty());
+        assertTrue(service.getOrderBook(PAIR, 2).getBids().isEmpty());
+        assertTrue(service.getTrades(PAIR).getTrades().isEmpty());
+        assertTrue(service.subscribeOrderBook(PAIR, listener).getAsks().isEmpty());
+        assertTrue(registry.getPairs().isEmpty());
+
+        registry.call(PAIR, x -> x);
+        verify(exchange).addDepthListener(listener);
+    }
+
+    private static MarketDataService service(Exchange<SilverTransaction, SilverOrder> exchange) {
+        ExchangeRegistry registry = new ExchangeRegistry(pair -> exchange);
+        registry.call(PAIR, x -> x);
+        return new SilverMarketDataService(registry, CLOCK);
     }
 }
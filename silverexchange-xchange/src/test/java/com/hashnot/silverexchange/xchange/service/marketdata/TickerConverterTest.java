@@ -1,20 +1,19 @@
 package com.hashnot.silverexchange.xchange.service.marketdata;
 
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.TradeStats;
 import com.hashnot.silverexchange.test.MockitoExtension;
-import com.hashnot.silverexchange.xchange.model.SilverTransaction;
 import com.hashnot.silverexchange.xchange.util.Clock;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.knowm.xchange.dto.marketdata.Ticker;
 import org.mockito.Mock;
 
+import java.math.BigDecimal;
 import java.sql.Date;
 import java.time.Instant;
-import java.util.List;
 
 import static com.hashnot.silverexchange.xchange.model.TestModelFactory.*;
-import static java.util.Collections.emptyList;
-import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
 
@@ -29,17 +28,19 @@ class TickerConverterTest {
         Instant ts = Instant.ofEpochMilli(Integer.MAX_VALUE);
         when(clock.get()).thenReturn(ts);
 
-        Ticker ticker = TickerConverter.toTicker(sides(emptyList(), emptyList()), emptyList(), clock);
+        Ticker ticker = TickerConverter.toTicker(PAIR, null, null, new TradeStats(), clock);
 
         assertNull(ticker.getAsk());
         assertNull(ticker.getBid());
         assertEquals(Date.from(ts), ticker.getTimestamp());
-        assertNull(ticker.getCurrencyPair());
+        assertEquals(PAIR, ticker.getCurrencyPair());
         assertNotNull(ticker.toString());
         assertNull(ticker.getHigh());
         assertNull(ticker.getLow());
         assertNull(ticker.getOpen());
         assertNull(ticker.getLast());
+        assertNull(ticker.getVwap());
+        assertEquals(BigDecimal.ZERO, ticker.getVolume());
     }
 
     @Test
@@ -47,19 +48,22 @@ class TickerConverterTest {
         Instant ts = Instant.ofEpochMilli(Integer.MAX_VALUE);
         when(clock.get()).thenReturn(ts);
 
-        List<SilverTransaction> transactions = singletonList(tx(ONE, THREE));
+        TradeStats stats = new TradeStats();
+        stats.update(ONE, ONE);
+        stats.update(ONE, THREE);
 
-        Ticker t = TickerConverter.toTicker(sides(singletonList(bid(ONE, ONE)), singletonList(ask(ONE, TWO))), transactions, clock);
+        Ticker t = TickerConverter.toTicker(PAIR, new OfferRate(ONE), new OfferRate(TWO), stats, clock);
 
         assertEquals(Date.from(ts), t.getTimestamp());
         assertEquals(TWO, t.getAsk());
         assertEquals(ONE, t.getBid());
         assertEquals(THREE, t.getLast());
         assertNotNull(t.toString());
-        assertNull(t.getCurrencyPair());
-        assertNull(t.getHigh());
-        assertNull(t.getLow());
-        assertNull(t.getOpen());
-
+        assertEquals(PAIR, t.getCurrencyPair());
+        assertEquals(THREE, t.getHigh());
+        assertEquals(ONE, t.getLow());
+        assertEquals(ONE, t.getOpen());
+        assertEquals(TWO, t.getVolume());
+        assertEquals(0, TWO.compareTo(t.getVwap()));
     }
-}
\ No newline at end of file
+}
@@ -1,21 +1,38 @@
 package com.hashnot.silverexchange.xchange.service.trade;
 
+import com.hashnot.silverexchange.match.PostOnly;
+import com.hashnot.silverexchange.match.SelfTradePrevention;
 import com.hashnot.silverexchange.match.Side;
+import com.hashnot.silverexchange.match.TimeInForce;
 import com.hashnot.silverexchange.test.MockitoExtension;
+import com.hashnot.silverexchange.xchange.model.DisplayAmount;
+import com.hashnot.silverexchange.xchange.model.GoodTillDate;
+import com.hashnot.silverexchange.xchange.model.Owner;
+import com.hashnot.silverexchange.xchange.model.SelfTradePreventionFlags;
 import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverOrderFlags;
+import com.hashnot.silverexchange.xchange.model.StopPrice;
 import com.hashnot.silverexchange.xchange.service.IIdGenerator;
 import com.hashnot.silverexchange.xchange.util.Clock;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.knowm.xchange.dto.Order;
+import org.knowm.xchange.dto.Order.IOrderFlags;
 import org.knowm.xchange.dto.trade.LimitOrder;
 import org.knowm.xchange.dto.trade.MarketOrder;
+import org.knowm.xchange.dto.trade.StopOrder;
 import org.mockito.Mock;
 
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 
 import static com.hashnot.silverexchange.xchange.model.TestModelFactory.*;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
 
@@ -28,6 +45,14 @@ class OrderConverterTest {
     @Mock
     private Clock clock;
 
+    private static LimitOrder limitOrder(Set<IOrderFlags> flags) {
+        return new LimitOrder.Builder(Order.OrderType.BID, PAIR)
+                .originalAmount(ONE)
+                .limitPrice(TWO)
+                .flags(flags)
+                .build();
+    }
+
     @Test
     void testTimeOnFromLimitOrder() {
         UUID id = UUID.randomUUID();
@@ -82,4 +107,137 @@ class OrderConverterTest {
         assertNotNull(o.toString());
         assertTrue(o.hashCode() == 0 || o.hashCode() != 0);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testTimeInForceFlags() {
+        when(idGenerator.get()).thenReturn(ID);
+        when(clock.get()).thenReturn(TS);
+
+        assertEquals(TimeInForce.GTC, OrderConverter.fromLimitOrder(limitOrder(emptySet()), idGenerator, clock).getTimeInForce());
+        assertEquals(TimeInForce.IOC, OrderConverter.fromLimitOrder(limitOrder(singleton(SilverOrderFlags.IMMEDIATE_OR_CANCEL)), idGenerator, clock).getTimeInForce());
+        assertEquals(TimeInForce.FOK, OrderConverter.fromLimitOrder(limitOrder(singleton(SilverOrderFlags.FILL_OR_KILL)), idGenerator, clock).getTimeInForce());
+
+        Instant expireTime = Instant.ofEpochMilli(1000);
+        SilverOrder gtd = OrderConverter.fromLimitOrder(limitOrder(singleton(new GoodTillDate(expireTime))), idGenerator, clock);
+        assertEquals(TimeInForce.GTD, gtd.getTimeInForce());
+        assertEquals(1000, gtd.getExpireTime());
+
+        LimitOrder open = OrderConverter.toLimitOrder(gtd);
+        assertEquals(singleton(new GoodTillDate(expireTime)), open.getOrderFlags());
+    }
+
+    @Test
+    void testConflictingTimeInForceFlags() {
+        when(idGenerator.get()).thenReturn(ID);
+        when(clock.get()).thenReturn(TS);
+
+        LimitOrder order = limitOrder(new HashSet<>(Arrays.asList(SilverOrderFlags.IMMEDIATE_OR_CANCEL, SilverOrderFlags.FILL_OR_KILL)));
+
+        assertThrows(IllegalArgumentException.class, () -> OrderConverter.fromLimitOrder(order, idGenerator, clock));
+    }
+
+    @Test
+    void testDisplayAmountFlag() {
+        when(idGenerator.get()).thenReturn(ID);
+        when(clock.get()).thenReturn(TS);
+
+        LimitOrder order = new LimitOrder.Builder(Order.OrderType.ASK, PAIR)
+                .originalAmount(THREE)
+                .limitPrice(TWO)
+                .flag(new DisplayAmount(ONE))
+                .build();
+        SilverOrder iceberg = OrderConverter.fromLimitOrder(order, idGenerator, clock);
+        assertEquals(ONE, iceberg.getDisplayAmount());
+
+        iceberg.hideReserve();
+        assertEquals(singleton(new DisplayAmount(ONE)), OrderConverter.toLimitOrder(iceberg).getOrderFlags());
+        assertEquals(THREE, OrderConverter.toLimitOrder(iceberg).getOriginalAmount());
+        assertEquals(ONE, OrderConverter.toOrders(singletonList(iceberg)).get(0).getOriginalAmount());
+    }
+
+    @Test
+    void testOwnerFlag() {
+        when(idGenerator.get()).thenReturn(ID);
+        when(clock.get()).thenReturn(TS);
+
+        SilverOrder limit = OrderConverter.fromLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, PAIR)
+                .originalAmount(ONE)
+                .limitPrice(TWO)
+                .flag(new Owner(7))
+                .build(), idGenerator, clock);
+        assertEquals(7, limit.getOwner());
+        assertEquals(singleton(new Owner(7)), OrderConverter.toLimitOrder(limit).getOrderFlags());
+
+        MarketOrder marketOrder = new MarketOrder(Order.OrderType.BID, ONE, PAIR);
+        marketOrder.addOrderFlag(new Owner(7));
+        assertEquals(7, OrderConverter.fromMarketOrder(marketOrder, idGenerator, clock).getOwner());
+        assertThrows(IllegalArgumentException.class, () -> new Owner(0));
+    }
+
+    @Test
+    void testPostOnlyFlags() {
+        when(idGenerator.get()).thenReturn(ID);
+        when(clock.get()).thenReturn(TS);
+
+        SilverOrder postOnly = OrderConverter.fromLimitOrder(limitOrder(singleton(SilverOrderFlags.POST_ONLY)), idGenerator, clock);
+        assertEquals(PostOnly.REJECT, postOnly.getPostOnly());
+        assertEquals(singleton(SilverOrderFlags.POST_ONLY), OrderConverter.toLimitOrder(postOnly).getOrderFlags());
+
+        SilverOrder reprice = OrderConverter.fromLimitOrder(limitOrder(singleton(SilverOrderFlags.POST_ONLY_REPRICE)), idGenerator, clock);
+        assertEquals(PostOnly.REPRICE, reprice.getPostOnly());
+        assertEquals(singleton(SilverOrderFlags.POST_ONLY_REPRICE), OrderConverter.toLimitOrder(reprice).getOrderFlags());
+
+        assertNull(OrderConverter.fromLimitOrder(limitOrder(emptySet()), idGenerator, clock).getPostOnly());
+        LimitOrder both = limitOrder(new HashSet<>(Arrays.asList(SilverOrderFlags.POST_ONLY, SilverOrderFlags.POST_ONLY_REPRICE)));
+        assertThrows(IllegalArgumentException.class, () -> OrderConverter.fromLimitOrder(both, idGenerator, clock));
+    }
+
+    @Test
+    void testSelfTradePreventionFlags() {
+        when(idGenerator.get()).thenReturn(ID);
+        when(clock.get()).thenReturn(TS);
+
+        SilverOrder limit = OrderConverter.fromLimitOrder(limitOrder(new HashSet<>(Arrays.asList(new Owner(7), SelfTradePreventionFlags.DECREMENT))), idGenerator, clock);
+        assertEquals(SelfTradePrevention.DECREMENT, limit.getSelfTradePrevention());
+        assertEquals(new HashSet<>(Arrays.asList(new Owner(7), SelfTradePreventionFlags.DECREMENT)), OrderConverter.toLimitOrder(limit).getOrderFlags());
+
+        SilverOrder newest = OrderConverter.fromLimitOrder(limitOrder(singleton(new Owner(7))), idGenerator, clock);
+        assertEquals(SelfTradePrevention.CANCEL_NEWEST, newest.getSelfTradePrevention());
+
+        MarketOrder marketOrder = new MarketOrder(Order.OrderType.BID, ONE, PAIR);
+        marketOrder.addOrderFlag(new Owner(7));
+        marketOrder.addOrderFlag(SelfTradePreventionFlags.CANCEL_OLDEST);
+        assertEquals(SelfTradePrevention.CANCEL_OLDEST, OrderConverter.fromMarketOrder(marketOrder, idGenerator, clock).getSelfTradePrevention());
+
+        LimitOrder withoutOwner = limitOrder(singleton(SelfTradePreventionFlags.DECREMENT));
+        assertThrows(IllegalArgumentException.class, () -> OrderConverter.fromLimitOrder(withoutOwner, idGenerator, clock));
+        LimitOrder conflicting = limitOrder(new HashSet<>(Arrays.asList(new Owner(7), SelfTradePreventionFlags.DECREMENT, SelfTradePreventionFlags.CANCEL_OLDEST)));
+        assertThrows(IllegalArgumentException.class, () -> OrderConverter.fromLimitOrder(conflicting, idGenerator, clock));
+    }
+
+    @Test
+    void testStopOrders() {
+        when(idGenerator.get()).thenReturn(ID);
+        when(clock.get()).thenReturn(TS);
+
+        SilverOrder stopLimit = OrderConverter.fromLimitOrder(limitOrder(singleton(new StopPrice(ONE))), idGenerator, clock);
+        assertEquals(ONE, stopLimit.getStopPrice());
+        LimitOrder pending = OrderConverter.toLimitOrder(stopLimit);
+        assertEquals(singleton(new StopPrice(ONE)), pending.getOrderFlags());
+        assertEquals(Order.OrderStatus.PENDING_NEW, pending.getStatus());
+
+        StopOrder order = new StopOrder.Builder(Order.OrderType.ASK, PAIR)
+                .originalAmount(TWO)
+                .stopPrice(ONE)
+                .build();
+        SilverOrder stop = OrderConverter.fromStopOrder(order, idGenerator, clock);
+        assertEquals(Side.ASK, stop.getSide());
+        assertTrue(stop.getRate().isMarket());
+        assertEquals(ONE, stop.getStopPrice());
+
+        StopOrder converted = OrderConverter.toStopOrder(stop);
+        assertEquals(ID_STR, converted.getId());
+        assertEquals(ONE, converted.getStopPrice());
+        assertEquals(TWO, converted.getOriginalAmount());
+    }
+}
@@ -1,29 +1,49 @@
 package com.hashnot.silverexchange.xchange.service.trade;
 
-import com.google.common.collect.Lists;
 import com.hashnot.silverexchange.Exchange;
+import com.hashnot.silverexchange.OfferRate;
+import com.hashnot.silverexchange.match.PostOnly;
+import com.hashnot.silverexchange.match.Side;
 import com.hashnot.silverexchange.test.MockitoExtension;
+import com.hashnot.silverexchange.xchange.impl.ExchangeRegistry;
 import com.hashnot.silverexchange.xchange.impl.SilverTransactionFactory;
+import com.hashnot.silverexchange.xchange.model.Owner;
+import com.hashnot.silverexchange.xchange.model.SelfTradePreventionFlags;
+import com.hashnot.silverexchange.xchange.model.SilverOrder;
+import com.hashnot.silverexchange.xchange.model.SilverOrderFlags;
+import com.hashnot.silverexchange.xchange.model.StopPrice;
+import com.hashnot.silverexchange.xchange.model.SilverTransaction;
 import com.hashnot.silverexchange.xchange.model.TestModelFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.knowm.xchange.currency.CurrencyPair;
 import org.knowm.xchange.dto.Order;
 import org.knowm.xchange.dto.trade.LimitOrder;
 import org.knowm.xchange.dto.trade.MarketOrder;
 import org.knowm.xchange.dto.trade.OpenOrders;
 import org.knowm.xchange.dto.trade.StopOrder;
 import org.knowm.xchange.exceptions.ExchangeException;
-import org.knowm.xchange.exceptions.NotAvailableFromExchangeException;
 import org.knowm.xchange.service.trade.TradeService;
+import org.knowm.xchange.service.trade.params.CancelOrderByCurrencyPair;
+import org.knowm.xchange.service.trade.params.CancelOrderByIdParams;
 import org.knowm.xchange.service.trade.params.CancelOrderParams;
 import org.mockito.Mock;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static com.hashnot.silverexchange.xchange.model.TestModelFactory.*;
 import static java.math.BigDecimal.ONE;
+import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -34,10 +54,16 @@ import static org.mockito.Mockito.when;
 class SilverTradeServiceTest {
 
     @Mock
-    private Exchange exchange;
+    private Exchange<SilverTransaction, SilverOrder> exchange;
 
-    private static TradeService ts(Exchange exchange) {
-        return new SilverTradeService(exchange, ID_GEN, CLOCK);
+    private static TradeService ts(Exchange<SilverTransaction, SilverOrder> exchange) {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange);
+        exchanges.call(PAIR, x -> x);
+        return new SilverTradeService(exchanges, ID_GEN, CLOCK);
+    }
+
+    private static Exchange<SilverTransaction, SilverOrder> exchange() {
+        return new Exchange<>(new SilverTransactionFactory(ID_GEN, CLOCK), SilverOrder::getId);
     }
 
     @Test
@@ -52,6 +78,47 @@ class SilverTradeServiceTest {
         verify(exchange).post(any());
     }
 
+    @Test
+    void testPlaceLimitOrders() throws IOException {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> new Exchange<>(new SilverTransactionFactory(ID_GEN, CLOCK)));
+        SilverTradeService service = new SilverTradeService(exchanges, ID_GEN, CLOCK);
+
+        List<LimitOrder> placed = service.placeLimitOrders(asList(
+                new LimitOrder.Builder(Order.OrderType.BID, PAIR).originalAmount(ONE).limitPrice(ONE).build(),
+                new LimitOrder.Builder(Order.OrderType.BID, CurrencyPair.ETH_EUR).originalAmount(ONE).limitPrice(ONE).build(),
+                new LimitOrder.Builder(Order.OrderType.ASK, PAIR).originalAmount(ONE).limitPrice(ONE).build(),
+                new LimitOrder.Builder(Order.OrderType.ASK, CurrencyPair.ETH_EUR).originalAmount(ONE).limitPrice(TWO)
+                        .flag(SilverOrderFlags.IMMEDIATE_OR_CANCEL).build()
+        ));
+
+        assertEquals(asList(ID_STR, ID_STR, ID_STR, ID_STR), placed.stream().map(Order::getId).collect(Collectors.toList()));
+        assertEquals(asList(Order.OrderStatus.FILLED, Order.OrderStatus.NEW, Order.OrderStatus.FILLED, Order.OrderStatus.CANCELED),
+                placed.stream().map(Order::getStatus).collect(Collectors.toList()));
+        assertEquals(ONE, placed.get(2).getCumulativeAmount());
+        assertEquals(CurrencyPair.ETH_EUR, placed.get(3).getCurrencyPair());
+        assertEquals(0, placed.get(3).getCumulativeAmount().signum());
+        assertEquals(1, exchanges.call(PAIR, Exchange::getAllTransactions).size());
+        List<LimitOrder> openOrders = service.getOpenOrders().getOpenOrders();
+        assertEquals(1, openOrders.size());
+        assertEquals(CurrencyPair.ETH_EUR, openOrders.get(0).getCurrencyPair());
+    }
+
+    @Test
+    void testImmediateOrCancelRemainderNotOpen() throws IOException {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange());
+        SilverTradeService service = new SilverTradeService(exchanges, ID_GEN, CLOCK);
+        exchanges.call(PAIR, x -> x.post(new SilverOrder(UUID.randomUUID(), PAIR, Side.ASK, ONE, new OfferRate(ONE), TS)));
+
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR)
+                .originalAmount(TWO)
+                .limitPrice(ONE)
+                .flags(singleton(SilverOrderFlags.IMMEDIATE_OR_CANCEL))
+                .build());
+
+        assertEquals(1, exchanges.call(PAIR, Exchange::getAllTransactions).size());
+        assertTrue(service.getOpenOrders().getOpenOrders().isEmpty());
+    }
+
     @Test
     void testPlaceMarketOrder() throws IOException {
         when(exchange.post(any())).thenReturn(null);
@@ -80,16 +147,49 @@ class SilverTradeServiceTest {
         OpenOrders expected = new OpenOrders(singletonList(expectedOrder));
         assertEquals(expected.getOpenOrders(), openOrders.getOpenOrders());
 
-        assertNull(service.createOpenOrdersParams());
+        assertNotNull(service.createOpenOrdersParams());
         assertEquals(expected.getOpenOrders(), service.getOpenOrders(service.createOpenOrdersParams()).getOpenOrders());
     }
 
+    @Test
+    void testGetOpenOrdersByPairAndOwner() throws IOException {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange());
+        SilverTradeService service = new SilverTradeService(exchanges, UUID::randomUUID, CLOCK);
+        CurrencyPair other = CurrencyPair.ETH_BTC;
+
+        String own = service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, PAIR).originalAmount(ONE).limitPrice(TWO).flag(new Owner(1)).build());
+        String foreign = service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, PAIR).originalAmount(ONE).limitPrice(TWO).flag(new Owner(2)).build());
+        String ownOther = service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, other).originalAmount(ONE).limitPrice(ONE).flag(new Owner(1)).build());
+        String ownStop = service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR).originalAmount(ONE).limitPrice(ONE).flag(new Owner(1)).flag(new StopPrice(TWO)).build());
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, other).originalAmount(ONE).limitPrice(ONE).build());
+
+        SilverTradeService.SilverOpenOrdersParams params = service.createOpenOrdersParams();
+        params.setOwner(1);
+        List<LimitOrder> orders = service.getOpenOrders(params).getOpenOrders();
+        assertEquals(new HashSet<>(asList(own, ownOther, ownStop)), orders.stream().map(Order::getId).collect(Collectors.toSet()));
+        assertTrue(orders.stream().allMatch(params::accept));
+
+        params.setCurrencyPair(PAIR);
+        assertEquals(asList(own, ownStop), ids(service.getOpenOrders(params)));
+
+        params.setOwner(0);
+        assertEquals(asList(own, foreign, ownStop), ids(service.getOpenOrders(params)));
+
+        params.setCurrencyPair(CurrencyPair.LTC_BTC);
+        assertTrue(service.getOpenOrders(params).getOpenOrders().isEmpty());
+        assertEquals(5, service.getOpenOrders(null).getOpenOrders().size());
+    }
+
+    private static List<String> ids(OpenOrders openOrders) {
+        return openOrders.getOpenOrders().stream().map(Order::getId).collect(Collectors.toList());
+    }
+
     @Test
     void testCancelOrderOnEmptyOrderBook() throws IOException {
-        when(exchange.getAllOffers()).thenReturn(sides(emptyList(), emptyList()));
         TradeService service = ts(exchange);
 
         assertFalse(service.cancelOrder(ID_STR));
+        verify(exchange).cancel(ID);
     }
 
     @Test
@@ -103,18 +203,38 @@ class SilverTradeServiceTest {
 
     @Test
     void testCancelMatchingOrder() throws IOException {
-        when(exchange.getAllOffers()).thenReturn(sides(emptyList(), Lists.newArrayList(bid(ONE, ONE))));
-        TradeService service = ts(exchange);
+        TradeService service = ts(exchange());
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR)
+                .originalAmount(ONE)
+                .limitPrice(ONE)
+                .build());
 
         assertFalse(service.getOpenOrders().getOpenOrders().isEmpty());
         assertTrue(service.cancelOrder(ID_STR));
         assertTrue(service.getOpenOrders().getOpenOrders().isEmpty());
+        assertFalse(service.cancelOrder(ID_STR));
+    }
+
+    @Test
+    void testGetOrder() throws IOException {
+        TradeService service = ts(exchange());
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR)
+                .originalAmount(ONE)
+                .limitPrice(ONE)
+                .build());
+
+        LimitOrder expectedOrder = new LimitOrder.Builder(Order.OrderType.BID, PAIR)
+                .originalAmount(ONE)
+                .limitPrice(ONE)
+                .id(ID_STR)
+                .timestamp(TS_DATE)
+                .build();
+        assertEquals(singletonList(expectedOrder), service.getOrder(ID_STR, new UUID(0L, 1L).toString(), "not an id"));
     }
 
     @Test
     void testOverrideId() throws IOException {
-        Exchange x = new Exchange(new SilverTransactionFactory(ID_GEN, CLOCK));
-        TradeService service = ts(x);
+        TradeService service = ts(exchange());
 
         String actualId = service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, PAIR)
                 .originalAmount(ONE)
@@ -134,10 +254,207 @@ class SilverTradeServiceTest {
     }
 
     @Test
-    void testPlaceStopOrderFails() {
-        TradeService service = ts(exchange);
+    void testOrdersRoutedByPair() throws IOException {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange());
+        TradeService service = new SilverTradeService(exchanges, UUID::randomUUID, CLOCK);
+
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR)
+                .originalAmount(ONE)
+                .limitPrice(ONE)
+                .build());
+        String id = service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, CurrencyPair.ETH_EUR)
+                .originalAmount(ONE)
+                .limitPrice(ONE)
+                .build());
+
+        // orders of different pairs don't match
+        assertEquals(2, service.getOpenOrders().getOpenOrders().size());
+        assertEquals(1, (int) exchanges.call(PAIR, x -> x.getAllOffers().get(Side.BID).size()));
+        assertEquals(1, (int) exchanges.call(CurrencyPair.ETH_EUR, x -> x.getAllOffers().get(Side.ASK).size()));
+
+        assertEquals(CurrencyPair.ETH_EUR, service.getOrder(id).iterator().next().getCurrencyPair());
+
+        class CancelParams implements CancelOrderByIdParams, CancelOrderByCurrencyPair {
+            @Override
+            public String getOrderId() {
+                return id;
+            }
+
+            @Override
+            public CurrencyPair getCurrencyPair() {
+                return PAIR;
+            }
+        }
+        assertFalse(service.cancelOrder(new CancelParams()));
+        assertTrue(service.cancelOrder(id));
+        assertEquals(1, service.getOpenOrders().getOpenOrders().size());
+    }
+
+    @Test
+    void testSequencedMode() throws Exception {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange(), 64);
+        TradeService service = new SilverTradeService(exchanges, UUID::randomUUID, CLOCK);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> {
+                for (int j = 0; j < 100; j++) {
+                    service.placeLimitOrder(new LimitOrder.Builder(j % 2 == 0 ? Order.OrderType.BID : Order.OrderType.ASK, PAIR)
+                            .originalAmount(ONE)
+                            .limitPrice(ONE)
+                            .build());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results)
+            result.get();
+        executor.shutdown();
+
+        // every bid matched with an ask
+        assertEquals(emptyList(), service.getOpenOrders().getOpenOrders());
+        assertEquals(200, (int) exchanges.call(PAIR, x -> x.getAllTransactions().size()));
+        exchanges.close();
+    }
+
+    @Test
+    void testPartiallyFilledOrderKeepsIdentity() throws IOException {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange());
+        TradeService service = new SilverTradeService(exchanges, UUID::randomUUID, CLOCK);
+
+        String id = service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, PAIR)
+                .originalAmount(THREE)
+                .limitPrice(ONE)
+                .build());
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR)
+                .originalAmount(ONE)
+                .limitPrice(ONE)
+                .build());
+
+        SilverOrder resting = exchanges.call(PAIR, x -> x.getOffer(UUID.fromString(id)));
+        assertEquals(TWO, resting.getAmount());
+
+        LimitOrder order = (LimitOrder) service.getOrder(id).iterator().next();
+        assertEquals(id, order.getId());
+        assertEquals(TS_DATE, order.getTimestamp());
+        assertEquals(THREE, order.getOriginalAmount());
+        assertEquals(ONE, order.getCumulativeAmount());
+        assertEquals(Order.OrderStatus.PARTIALLY_FILLED, order.getStatus());
+
+        assertTrue(service.cancelOrder(id));
+        assertEquals(emptyList(), service.getOpenOrders().getOpenOrders());
+    }
+
+    @Test
+    void testStopOrders() throws IOException {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange());
+        TradeService service = new SilverTradeService(exchanges, UUID::randomUUID, CLOCK);
+
+        String stopId = service.placeStopOrder(new StopOrder.Builder(Order.OrderType.ASK, PAIR)
+                .originalAmount(ONE)
+                .stopPrice(TWO)
+                .build());
+        String stopLimitId = service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR)
+                .originalAmount(ONE)
+                .limitPrice(THREE)
+                .flag(new StopPrice(THREE))
+                .build());
+
+        StopOrder stop = (StopOrder) service.getOrder(stopId).iterator().next();
+        assertEquals(TWO, stop.getStopPrice());
+        assertEquals(Order.OrderStatus.PENDING_NEW, stop.getStatus());
+        List<LimitOrder> openOrders = service.getOpenOrders().getOpenOrders();
+        assertEquals(1, openOrders.size());
+        assertEquals(stopLimitId, openOrders.get(0).getId());
+        assertTrue(openOrders.get(0).getOrderFlags().contains(new StopPrice(THREE)));
+
+        // a trade at 3 triggers the stop-limit bid, which rests at 3 without a matching ask
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, PAIR).originalAmount(ONE).limitPrice(THREE).build());
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR).originalAmount(ONE).limitPrice(THREE).build());
+        LimitOrder triggered = (LimitOrder) service.getOrder(stopLimitId).iterator().next();
+        assertEquals(Order.OrderStatus.NEW, triggered.getStatus());
+
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, PAIR).originalAmount(ONE).limitPrice(THREE).build());
+
+        // a trade at 2 triggers the stop ask, cancelled without bids to sell to
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR).originalAmount(ONE).limitPrice(TWO).build());
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, PAIR).originalAmount(ONE).limitPrice(TWO).build());
+        assertEquals(3, exchanges.call(PAIR, Exchange::getAllTransactions).size());
+        assertTrue(service.getOrder(stopId, stopLimitId).isEmpty());
+        assertEquals(emptyList(), service.getOpenOrders().getOpenOrders());
+    }
+
+    @Test
+    void testCancelStopOrder() throws IOException {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange());
+        TradeService service = new SilverTradeService(exchanges, UUID::randomUUID, CLOCK);
+
+        String id = service.placeStopOrder(new StopOrder.Builder(Order.OrderType.BID, PAIR)
+                .originalAmount(ONE)
+                .stopPrice(TWO)
+                .build());
+
+        assertTrue(service.cancelOrder(id));
+        assertTrue(service.getOrder(id).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> service.placeStopOrder(new StopOrder.Builder(Order.OrderType.BID, PAIR).originalAmount(ONE).build()));
+    }
+
+    @Test
+    void testChangeOrder() throws IOException {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange());
+        SilverTradeService service = new SilverTradeService(exchanges, UUID::randomUUID, CLOCK);
+
+        String first = service.placeLimitOrder(new LimitOrder(Order.OrderType.ASK, TWO, PAIR, null, null, TWO));
+        String second = service.placeLimitOrder(new LimitOrder(Order.OrderType.ASK, ONE, PAIR, null, null, TWO));
+
+        // a smaller amount at the same price keeps the place in the queue
+        assertEquals(first, service.changeOrder(new LimitOrder(Order.OrderType.ASK, ONE, PAIR, first, null, null)));
+        List<LimitOrder> open = service.getOpenOrders().getOpenOrders();
+        assertEquals(asList(first, second), asList(open.get(0).getId(), open.get(1).getId()));
+        assertEquals(0, ONE.compareTo(open.get(0).getOriginalAmount()));
+
+        // found without the pair, moved to a better price
+        assertEquals(second, service.changeOrder(new LimitOrder(Order.OrderType.ASK, ONE, null, second, null, ONE)));
+        open = service.getOpenOrders().getOpenOrders();
+        assertEquals(asList(second, first), asList(open.get(0).getId(), open.get(1).getId()));
+        assertEquals(0, ONE.compareTo(open.get(0).getLimitPrice()));
+
+        assertThrows(ExchangeException.class, () -> service.changeOrder(new LimitOrder(Order.OrderType.ASK, ONE, PAIR, UUID.randomUUID().toString(), null, null)));
+        assertThrows(ExchangeException.class, () -> service.changeOrder(new LimitOrder(Order.OrderType.ASK, ONE, PAIR, "not an id", null, null)));
+    }
+
+    @Test
+    void testPostOnlyAndSelfTradePreventionFlags() throws IOException {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange());
+        SilverTradeService service = new SilverTradeService(exchanges, UUID::randomUUID, CLOCK);
+        String ask = service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.ASK, PAIR).originalAmount(TWO).limitPrice(ONE).flag(new Owner(1)).build());
+
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR).originalAmount(ONE).limitPrice(ONE)
+                .flag(SilverOrderFlags.POST_ONLY).build());
+        assertEquals(singletonList(ask), ids(service.getOpenOrders()));
+
+        service.placeLimitOrder(new LimitOrder.Builder(Order.OrderType.BID, PAIR).originalAmount(ONE).limitPrice(ONE)
+                .flag(new Owner(1)).flag(SelfTradePreventionFlags.DECREMENT).build());
+        List<LimitOrder> open = service.getOpenOrders().getOpenOrders();
+        assertEquals(singletonList(ask), ids(service.getOpenOrders()));
+        assertEquals(ONE, open.get(0).getOriginalAmount());
+        assertEquals(0, open.get(0).getCumulativeAmount().signum());
+        assertTrue(exchanges.call(PAIR, Exchange::getAllTransactions).isEmpty());
+    }
+
+    @Test
+    void testChangeOrderCancellingPostOnlyFails() throws IOException {
+        ExchangeRegistry exchanges = new ExchangeRegistry(pair -> exchange());
+        SilverTradeService service = new SilverTradeService(exchanges, UUID::randomUUID, CLOCK);
+        SilverOrder ask = new SilverOrder(UUID.randomUUID(), PAIR, Side.ASK, ONE, new OfferRate(TWO), TS);
+        ask.setPostOnly(PostOnly.REJECT);
+        exchanges.call(PAIR, x -> x.post(ask));
+        service.placeLimitOrder(new LimitOrder(Order.OrderType.BID, ONE, PAIR, null, null, ONE));
 
-        assertThrows(NotAvailableFromExchangeException.class, () -> service.placeStopOrder(new StopOrder.Builder(Order.OrderType.ASK, PAIR).build()));
+        assertThrows(ExchangeException.class, () -> service.changeOrder(new LimitOrder(Order.OrderType.ASK, ONE, PAIR, ask.getId().toString(), null, ONE)));
+        assertEquals(1, service.getOpenOrders().getOpenOrders().size());
+        assertTrue(exchanges.call(PAIR, Exchange::getAllTransactions).isEmpty());
     }
 
     @Test
@@ -0,0 +1,72 @@
+package com.hashnot.silverexchange.xchange.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationClockTest {
+    private static final Instant START = Instant.parse("2018-01-01T00:00:00Z");
+
+    private final SimulationClock clock = new SimulationClock(START);
+    private final List<String> events = new ArrayList<>();
+
+    private Runnable record(String name) {
+        return () -> events.add(name + "@" + Duration.between(START, clock.get()).getSeconds());
+    }
+
+    @Test
+    void testTimersRunInOrder() {
+        clock.schedule(START.plusSeconds(2), record("b"));
+        clock.schedule(START.plusSeconds(1), record("a"));
+        clock.schedule(START.plusSeconds(2), record("c"));
+        clock.schedule(START.plusSeconds(5), record("d"));
+
+        clock.advance(Duration.ofSeconds(3));
+
+        assertEquals(asList("a@1", "b@2", "c@2"), events);
+        assertEquals(START.plusSeconds(3), clock.get());
+        assertEquals(START.plusSeconds(5), clock.getNextTime());
+    }
+
+    @Test
+    void testRunNext() {
+        clock.schedule(Duration.ofMinutes(1), record("a"));
+        // scheduled by a timer, before the clock reaches the next one
+        clock.schedule(Duration.ofMinutes(2), () -> clock.schedule(Duration.ofSeconds(1), record("b")));
+        clock.schedule(Duration.ofMinutes(3), record("c"));
+
+        while (clock.runNext()) ;
+
+        assertEquals(asList("a@60", "b@121", "c@180"), events);
+        assertEquals(START.plusSeconds(180), clock.get());
+        assertNull(clock.getNextTime());
+    }
+
+    @Test
+    void testCancel() {
+        SimulationClock.Timer timer = clock.schedule(Duration.ofSeconds(1), record("a"));
+        clock.schedule(Duration.ofSeconds(2), record("b"));
+        timer.cancel();
+
+        assertTrue(timer.isCancelled());
+        assertEquals(START.plusSeconds(2), clock.getNextTime());
+        clock.advance(Duration.ofSeconds(2));
+        assertEquals(asList("b@2"), events);
+    }
+
+    @Test
+    void testPastTimerRunsOnNextAdvance() {
+        clock.advance(Duration.ofSeconds(10));
+        clock.schedule(START, record("a"));
+
+        clock.advance(Duration.ZERO);
+
+        assertEquals(asList("a@10"), events);
+    }
+}